@@ -0,0 +1,39 @@
+package com.example.dijasaliou.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tâche planifiée exécutée par une seule instance de l'application à chaque tick.
+ *
+ * UTILISATION :
+ * @Scheduled(cron = "0 0 3 * * *")
+ * @TacheExclusive(nom = "archive-stock", verrouMax = "PT2H", verrouMin = "PT10M")
+ * public void archiverProduitsEnRupture() { ... }
+ *
+ * → L'instance qui prend le verrou (table tache_verrou) exécute la méthode,
+ *   les autres sautent le tick (TacheExclusiveAspect).
+ *
+ * Durées au format ISO-8601 (Duration.parse) :
+ * - verrouMax : durée au-delà de laquelle le verrou expire même si l'instance
+ *   s'est arrêtée en cours de tâche — plus longue que la tâche, plus courte que la période ;
+ * - verrouMin : durée minimale de détention, même si la tâche finit plus tôt — couvre
+ *   le décalage d'horloge entre instances (sinon une instance en retard de quelques
+ *   secondes rejouerait le tick).
+ *
+ * Ne PAS l'utiliser sur une tâche qui traite un état propre à l'instance
+ * (compteurs ou tampons en mémoire) : chaque instance doit alors traiter le sien.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TacheExclusive {
+
+    /** Nom du verrou, unique par tâche */
+    String nom();
+
+    String verrouMax() default "PT30M";
+
+    String verrouMin() default "PT1M";
+}
@@ -0,0 +1,52 @@
+package com.example.dijasaliou.aspect;
+
+import com.example.dijasaliou.annotation.TacheExclusive;
+import com.example.dijasaliou.service.TacheVerrouService;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Aspect AOP des tâches planifiées exclusives
+ *
+ * FONCTIONNEMENT :
+ * 1. Intercepte les méthodes annotées avec @TacheExclusive
+ * 2. Tente de prendre le verrou de la tâche (TacheVerrouService)
+ * 3. Verrou détenu par une autre instance → le tick est sauté, la méthode n'est pas appelée
+ * 4. Verrou pris → la méthode s'exécute, puis le verrou est relâché (après la durée min)
+ *
+ * Ordre : avant @Transactional — une instance qui saute le tick n'ouvre pas de transaction.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class TacheExclusiveAspect {
+
+    private final TacheVerrouService verrouService;
+
+    public TacheExclusiveAspect(TacheVerrouService verrouService) {
+        this.verrouService = verrouService;
+    }
+
+    @Around("@annotation(tacheExclusive)")
+    public Object executerSiVerrouPris(ProceedingJoinPoint joinPoint, TacheExclusive tacheExclusive) throws Throwable {
+        LocalDateTime priseLe = verrouService.acquerir(tacheExclusive.nom(), Duration.parse(tacheExclusive.verrouMax()));
+        if (priseLe == null) {
+            log.debug("[TACHE_VERROU] {} exécutée par une autre instance, tick sauté", tacheExclusive.nom());
+            return null;
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            verrouService.liberer(tacheExclusive.nom(), priseLe, Duration.parse(tacheExclusive.verrouMin()));
+        }
+    }
+}
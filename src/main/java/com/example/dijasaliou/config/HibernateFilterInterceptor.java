@@ -23,16 +23,9 @@ public class HibernateFilterInterceptor implements HandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        // Récupérer le tenant_id du contexte
-        String tenantId = TenantContext.getCurrentTenant();
-
-        if (tenantId != null && !tenantId.isEmpty()) {
-            // Activer le filtre Hibernate avec le tenant_id
-            Session session = entityManager.unwrap(Session.class);
-
-            // Activer le filtre "tenantFilter" défini dans les entités
-            session.enableFilter("tenantFilter")
-                   .setParameter("tenantId", tenantId);
+        // Activer le filtre "tenantFilter" (tenant_id = :tenantPk) sur la session de la requête
+        if (TenantContext.isCurrentTenantSet()) {
+            TenantFilterAspect.activerFiltre(entityManager.unwrap(Session.class));
         }
 
         return true;
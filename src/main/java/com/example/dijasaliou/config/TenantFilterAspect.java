@@ -6,7 +6,6 @@ import jakarta.persistence.PersistenceContext;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
-import org.hibernate.Filter;
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +14,11 @@ import org.springframework.stereotype.Component;
 /**
  * Aspect AOP pour activer automatiquement le filtre tenant
  * sur TOUTES les méthodes des repositories
+ *
+ * Le filtre (tenant_id = :tenantPk) est activé UNE fois par session Hibernate :
+ * les appels suivants dans la même session ne le désactivent / réactivent plus.
+ * Le tenant ne change pas au cours d'une session (TenantContext est défini par
+ * JwtAuthenticationFilter avant l'ouverture de la session et nettoyé après).
  */
 @Aspect
 @Component
@@ -22,34 +26,48 @@ public class TenantFilterAspect {
 
     private static final Logger log = LoggerFactory.getLogger(TenantFilterAspect.class);
 
+    static final String FILTER_NAME = "tenantFilter";
+
     @PersistenceContext
     private EntityManager entityManager;
 
     /**
-     * Active le filtre tenant AVANT chaque appel aux repositories
+     * Active le filtre tenant AVANT le premier appel aux repositories de la session
      */
     @Before("execution(* com.example.dijasaliou.repository.*.*(..))")
     public void enableTenantFilter(JoinPoint joinPoint) {
-        String tenantId = TenantContext.getCurrentTenant();
-
-        if (tenantId != null && !tenantId.isEmpty()) {
-            Session session = entityManager.unwrap(Session.class);
+        if (!TenantContext.isCurrentTenantSet()) {
+            log.debug("[TenantFilterAspect] Pas de tenant_id dans le contexte pour: {}",
+                joinPoint.getSignature().getName());
+            return;
+        }
 
-            // Désactiver le filtre s'il est déjà actif (pour éviter les erreurs)
-            Filter filter = session.getEnabledFilter("tenantFilter");
-            if (filter != null) {
-                session.disableFilter("tenantFilter");
-            }
+        if (activerFiltre(entityManager.unwrap(Session.class))) {
+            log.debug("[TenantFilterAspect] Filtre activé pour tenant: {} - Méthode: {}",
+                TenantContext.getCurrentTenantPk(), joinPoint.getSignature().getName());
+        }
+    }
 
-            // Activer le filtre avec le nouveau tenant_id
-            session.enableFilter("tenantFilter")
-                   .setParameter("tenantId", tenantId);
+    /**
+     * Active le filtre tenant sur la session s'il ne l'est pas encore.
+     *
+     * Tenant défini sans clé primaire connue → -1 : aucune ligne visible (fail closed).
+     *
+     * @return true si le filtre vient d'être activé, false s'il l'était déjà
+     */
+    static boolean activerFiltre(Session session) {
+        if (session.getEnabledFilter(FILTER_NAME) != null) {
+            return false;
+        }
 
-            log.debug("[TenantFilterAspect] Filtre activé pour tenant: {} - Méthode: {}", tenantId,
-                joinPoint.getSignature().getName());
-        } else {
-            log.debug("[TenantFilterAspect] Pas de tenant_id dans le contexte pour: {}",
-                joinPoint.getSignature().getName());
+        Long tenantPk = TenantContext.getCurrentTenantPk();
+        if (tenantPk == null) {
+            log.warn("[TenantFilterAspect] Tenant {} sans clé primaire dans le contexte — aucune donnée visible",
+                TenantContext.getCurrentTenant());
+            tenantPk = -1L;
         }
+
+        session.enableFilter(FILTER_NAME).setParameter("tenantPk", tenantPk);
+        return true;
     }
 }
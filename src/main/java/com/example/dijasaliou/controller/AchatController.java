@@ -1,17 +1,24 @@
 package com.example.dijasaliou.controller;
 
+import com.example.dijasaliou.annotation.RequiresPlan;
 import com.example.dijasaliou.dto.AchatDto;
 import com.example.dijasaliou.dto.PagedResponse;
 import com.example.dijasaliou.dto.ProduitPourVenteDto;
 import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.service.AchatService;
+import com.example.dijasaliou.service.ExportService;
+import com.example.dijasaliou.service.TenantService;
 import com.example.dijasaliou.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.springframework.security.core.Authentication;
 
@@ -36,10 +43,15 @@ public class AchatController {
 
     private final AchatService achatService;
     private final UserService userService;
+    private final TenantService tenantService;
+    private final ExportService exportService;
 
-    public AchatController(AchatService achatService, UserService userService) {
+    public AchatController(AchatService achatService, UserService userService,
+                           TenantService tenantService, ExportService exportService) {
         this.achatService = achatService;
         this.userService = userService;
+        this.tenantService = tenantService;
+        this.exportService = exportService;
     }
 
     /**
@@ -156,6 +168,35 @@ public class AchatController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * GET /api/achats/export?debut=2026-01-01&fin=2026-12-31&format=CSV
+     *
+     * Export des achats de la période en XLSX (défaut) ou CSV, écrit en flux
+     * (mémoire constante quel que soit le nombre de lignes).
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
+    @RequiresPlan(
+            plans = {TenantEntity.Plan.PRO, TenantEntity.Plan.BUSINESS},
+            message = "L'export des achats est réservé aux plans PRO et BUSINESS"
+    )
+    public ResponseEntity<StreamingResponseBody> exporterAchats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin,
+            @RequestParam(defaultValue = "XLSX") ExportService.Format format) {
+
+        if (fin.isBefore(debut)) {
+            throw new IllegalArgumentException("La date de fin doit être après la date de début");
+        }
+        // Le flux est écrit hors du thread de la requête : tenant résolu ici
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, String.format(
+                        "attachment; filename=\"achats-%s-%s.%s\"", debut, fin, format.getExtension()))
+                .body(out -> exportService.exporterAchats(tenant, debut, fin, format, out));
+    }
+
     /**
      * DELETE /api/achats/{id}
      * Supprimer un achat
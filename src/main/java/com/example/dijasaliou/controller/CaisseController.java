@@ -2,7 +2,9 @@ package com.example.dijasaliou.controller;
 
 import com.example.dijasaliou.annotation.RequiresPlan;
 import com.example.dijasaliou.dto.ActiverCaisseRequest;
+import com.example.dijasaliou.dto.CaisseHistoriquePageDto;
 import com.example.dijasaliou.dto.CaisseSoldeDto;
+import com.example.dijasaliou.dto.CaisseSoldeJourDto;
 import com.example.dijasaliou.dto.MouvementCaisseRequest;
 import com.example.dijasaliou.dto.MouvementHistoriqueDto;
 import com.example.dijasaliou.dto.TransfertCaisseRequest;
@@ -28,6 +30,8 @@ import java.util.List;
  * Réservé aux rôles ADMIN / GERANT.
  *
  *   GET  /api/caisse                  → solde actuel (multi-comptes)
+ *   GET  /api/caisse/serie            → soldes de fin de journée sur une période
+ *   GET  /api/caisse/historique/page  → historique complet paginé (curseur)
  *   POST /api/caisse/activer          → activer la caisse (soldes initiaux)
  *   POST /api/caisse/transfert        → transférer d'un compte vers un autre
  *   POST /api/caisse/mouvement-manuel → entrée ou sortie manuelle
@@ -78,6 +82,46 @@ public class CaisseController {
         return ResponseEntity.ok(caisseService.getHistoriqueBetween(fromDate, asOfDate));
     }
 
+    /**
+     * GET /api/caisse/historique/page
+     *
+     * Historique complet de la caisse (ventes, achats, dépenses, paiements crédit,
+     * transferts, mouvements manuels), du plus récent au plus ancien, par pages de
+     * {@code taille} (défaut 50, max 200). {@code curseur} = {@code curseurSuivant}
+     * de la page précédente ; absent pour la première page.
+     */
+    @GetMapping("/historique/page")
+    @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
+    @RequiresPlan(
+            plans = {TenantEntity.Plan.BUSINESS},
+            message = "Le module Caisse est réservé au plan BUSINESS"
+    )
+    public ResponseEntity<CaisseHistoriquePageDto> getHistoriquePage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            @RequestParam(required = false) String curseur,
+            @RequestParam(required = false) Integer taille) {
+        return ResponseEntity.ok(caisseService.getHistoriquePage(fromDate, asOfDate, curseur, taille));
+    }
+
+    /**
+     * GET /api/caisse/serie?from=...&to=...
+     *
+     * Soldes de fin de journée par compte pour chaque jour de [from, to] (courbe
+     * de trésorerie). Calculés en un nombre constant de requêtes ; 366 jours maximum.
+     */
+    @GetMapping("/serie")
+    @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
+    @RequiresPlan(
+            plans = {TenantEntity.Plan.BUSINESS},
+            message = "Le module Caisse est réservé au plan BUSINESS"
+    )
+    public ResponseEntity<List<CaisseSoldeJourDto>> getSoldeSerie(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(caisseService.getSoldeSerie(from, to));
+    }
+
     @PostMapping("/activer")
     @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
     @RequiresPlan(
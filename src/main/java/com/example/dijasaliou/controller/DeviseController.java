@@ -134,6 +134,7 @@ public class DeviseController {
                 .orElseThrow(() -> new RuntimeException("Tenant introuvable"));
         tenant.setDevisePreferee(devise.getCode());
         tenantRepository.save(tenant);
+        tenantService.rafraichirTenant(tenant.getTenantUuid());
         return ResponseEntity.ok(DeviseDto.fromEntity(devise));
     }
 
@@ -1,10 +1,13 @@
 package com.example.dijasaliou.controller;
 
 import com.example.dijasaliou.dto.FifoBackfillRapportDto;
+import com.example.dijasaliou.dto.FifoBackfillStatutDto;
 import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.service.FifoBackfillJobService;
 import com.example.dijasaliou.service.FifoBackfillService;
 import com.example.dijasaliou.service.TenantService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,15 +21,17 @@ import org.springframework.web.bind.annotation.RestController;
  * Sécurité : réservé aux ADMIN du tenant courant.
  *
  *   GET  /api/admin/fifo/backfill/dry-run  → simulation, aucune écriture en base
- *   POST /api/admin/fifo/backfill          → exécution réelle, écrit les lignes
+ *   POST /api/admin/fifo/backfill          → lance l'exécution réelle en arrière-plan
+ *   GET  /api/admin/fifo/backfill/statut   → avancement et rapport du dernier backfill
  */
 @RestController
 @RequestMapping("/admin/fifo")
 @RequiredArgsConstructor
 public class FifoMigrationController {
 
-    private final FifoBackfillService fifoBackfillService;
-    private final TenantService       tenantService;
+    private final FifoBackfillService    fifoBackfillService;
+    private final FifoBackfillJobService fifoBackfillJobService;
+    private final TenantService          tenantService;
 
     /**
      * GET /api/admin/fifo/backfill/dry-run
@@ -44,17 +49,30 @@ public class FifoMigrationController {
     /**
      * POST /api/admin/fifo/backfill
      *
-     * Exécute le backfill réel pour le tenant courant :
-     *   - Reset des quantite_restante des achats.
+     * Lance en arrière-plan le backfill réel pour le tenant courant :
      *   - Suppression des anciennes lignes de consommation.
-     *   - Rejeu FIFO chronologique → création des nouvelles lignes.
+     *   - Reset des quantite_restante des achats.
+     *   - Rejeu FIFO chronologique par tranches → création des nouvelles lignes.
      *
+     * Répond 202 immédiatement ; 409 si un backfill est déjà en cours.
      * À utiliser une seule fois en production après déploiement.
      */
     @PostMapping("/backfill")
     @PreAuthorize("hasAuthority('ADMIN')")
-    public ResponseEntity<FifoBackfillRapportDto> executerBackfill() {
+    public ResponseEntity<FifoBackfillStatutDto> executerBackfill() {
         TenantEntity tenant = tenantService.getCurrentTenant();
-        return ResponseEntity.ok(fifoBackfillService.executerBackfill(tenant, false));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(fifoBackfillJobService.demarrer(tenant));
+    }
+
+    /**
+     * GET /api/admin/fifo/backfill/statut
+     *
+     * Avancement (ventes rejouées / total) du dernier backfill du tenant courant,
+     * avec le rapport une fois terminé.
+     */
+    @GetMapping("/backfill/statut")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<FifoBackfillStatutDto> statut() {
+        return ResponseEntity.ok(fifoBackfillJobService.statut(tenantService.getCurrentTenant().getTenantUuid()));
     }
 }
@@ -1,28 +1,46 @@
 package com.example.dijasaliou.controller;
 
 import com.example.dijasaliou.annotation.RequiresPlan;
+import com.example.dijasaliou.dto.RapportJobDto;
 import com.example.dijasaliou.entity.TenantEntity;
-import com.example.dijasaliou.service.RapportService;
+import com.example.dijasaliou.service.RapportJobService;
+import com.example.dijasaliou.service.RollupJourService;
+import com.example.dijasaliou.service.TenantService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/rapports")
 @RequiredArgsConstructor
 public class RapportController {
 
-    private final RapportService rapportService;
+    private final RapportJobService rapportJobService;
+    private final RollupJourService rollupJourService;
+    private final TenantService tenantService;
+
+    /** Attente maximale de GET /pdf quand le rapport n'est pas encore en cache. */
+    private static final Duration ATTENTE_MAX = Duration.ofMinutes(2);
 
     /**
      * GET /api/rapports/pdf?debut=2026-01-01&fin=2026-01-31
@@ -31,30 +49,115 @@ public class RapportController {
      * résumé exécutif, top produits, modes paiement, stock, crédits,
      * dépenses, bons de livraison, relevé chronologique, certification.
      *
+     * Téléchargement direct : servi depuis le cache des rapports, sinon attend la
+     * génération (partagée avec les demandes identiques en cours). Préférer
+     * POST /pdf/jobs puis GET /pdf/{id} pour ne pas bloquer la requête.
+     *
      * Accès : ADMIN ou GERANT uniquement.
      * Plan requis : BUSINESS.
      */
     @GetMapping(value = "/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
     @PreAuthorize("hasAnyAuthority('ADMIN', 'GERANT')")
     @RequiresPlan(plans = {TenantEntity.Plan.BUSINESS})
-    public ResponseEntity<byte[]> genererRapportPdf(
+    public ResponseEntity<Resource> genererRapportPdf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        validerPeriode(debut, fin);
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        RapportJobDto job = rapportJobService.soumettre(tenant, debut, fin);
+        Path fichier = rapportJobService.attendre(tenant, job.getId(), ATTENTE_MAX)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Le rapport n'a pas pu être généré, veuillez réessayer"));
+        return servir(job.getId(), fichier, String.format("rapport-%s-%s.pdf", debut, fin), ifNoneMatch);
+    }
+
+    /**
+     * POST /api/rapports/pdf/jobs?debut=2026-01-01&fin=2026-12-31
+     *
+     * Lance la génération du rapport en arrière-plan et répond 202 immédiatement.
+     * Rapport déjà en cache (mêmes données) → statut TERMINE tout de suite ;
+     * même rapport déjà en cours → même id, une seule génération.
+     */
+    @PostMapping("/pdf/jobs")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'GERANT')")
+    @RequiresPlan(plans = {TenantEntity.Plan.BUSINESS})
+    public ResponseEntity<RapportJobDto> soumettreRapportPdf(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin) {
 
+        validerPeriode(debut, fin);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(rapportJobService.soumettre(tenantService.getCurrentTenant(), debut, fin));
+    }
+
+    /**
+     * GET /api/rapports/pdf/jobs/{id}
+     *
+     * Statut de la génération (EN_COURS, TERMINE avec le lien de téléchargement, ECHEC).
+     */
+    @GetMapping("/pdf/jobs/{id}")
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'GERANT')")
+    @RequiresPlan(plans = {TenantEntity.Plan.BUSINESS})
+    public ResponseEntity<RapportJobDto> statutRapportPdf(@PathVariable String id) {
+        return ResponseEntity.of(rapportJobService.statut(tenantService.getCurrentTenant(), id));
+    }
+
+    /**
+     * GET /api/rapports/pdf/{id}
+     *
+     * Télécharge un rapport généré, lu en flux depuis le disque. L'id sert d'ETag :
+     * If-None-Match identique → 304 sans corps. 404 si le rapport n'est pas (ou plus) en cache.
+     */
+    @GetMapping(value = "/pdf/{id}", produces = MediaType.APPLICATION_PDF_VALUE)
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'GERANT')")
+    @RequiresPlan(plans = {TenantEntity.Plan.BUSINESS})
+    public ResponseEntity<Resource> telechargerRapportPdf(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        return rapportJobService.fichierPret(tenantService.getCurrentTenant(), id)
+                .map(fichier -> servir(id, fichier, "rapport-" + id.substring(0, 12) + ".pdf", ifNoneMatch))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * POST /api/rapports/rollup/reconstruire
+     *
+     * Vide puis recalcule les agrégats journaliers (rollup_jour) du tenant courant.
+     * Normalement inutile : les écritures antidatées invalident déjà les journées
+     * concernées. Sert après une correction directe en base.
+     *
+     * Accès : ADMIN uniquement.
+     */
+    @PostMapping("/rollup/reconstruire")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconstruireRollup() {
+        int jours = rollupJourService.reconstruire(tenantService.getCurrentTenant());
+        return ResponseEntity.ok(Map.of("joursAgreges", jours));
+    }
+
+    private static void validerPeriode(LocalDate debut, LocalDate fin) {
         if (fin.isBefore(debut)) {
             throw new IllegalArgumentException("La date de fin doit être après la date de début");
         }
         if (ChronoUnit.DAYS.between(debut, fin) > 366) {
             throw new IllegalArgumentException("La période ne peut pas dépasser 366 jours");
         }
+    }
 
-        byte[] pdfBytes = rapportService.genererRapportPdf(debut, fin);
-
-        String filename = String.format("rapport-%s-%s.pdf", debut, fin);
-
+    /** Le contenu d'une clé ne change jamais : l'ETag suffit, le fichier n'est pas relu pour un 304. */
+    private static ResponseEntity<Resource> servir(String id, Path fichier, String nomFichier, String ifNoneMatch) {
+        String etag = "\"" + id + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nomFichier + "\"")
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(pdfBytes);
+                .body(new FileSystemResource(fichier));
     }
 }
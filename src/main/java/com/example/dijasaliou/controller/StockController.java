@@ -4,11 +4,14 @@ import com.example.dijasaliou.annotation.RequiresPlan;
 import com.example.dijasaliou.dto.StockDto;
 import com.example.dijasaliou.dto.StockExportDto;
 import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.service.ExportService;
 import com.example.dijasaliou.service.StockService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -28,9 +31,11 @@ import java.util.Map;
 public class StockController {
 
     private final StockService stockService;
+    private final ExportService exportService;
 
-    public StockController(StockService stockService) {
+    public StockController(StockService stockService, ExportService exportService) {
         this.stockService = stockService;
+        this.exportService = exportService;
     }
 
     /**
@@ -87,6 +92,33 @@ public class StockController {
         return ResponseEntity.ok(stockService.obtenirStocksPourExport(debut, fin));
     }
 
+    /**
+     * GET /api/stock/export?debut=2026-03-01&fin=2026-03-31&format=XLSX
+     *
+     * Même contenu que /export-data, mais le fichier XLSX (défaut) ou CSV est
+     * produit par le serveur et écrit en flux : plus de construction du tableur
+     * côté frontend. Une ligne par produit, même filtrage par période.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
+    @RequiresPlan(
+            plans = {TenantEntity.Plan.PRO, TenantEntity.Plan.BUSINESS},
+            message = "L'export et l'inventaire du stock sont réservés aux plans PRO et BUSINESS"
+    )
+    public ResponseEntity<StreamingResponseBody> exporterStock(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin,
+            @RequestParam(defaultValue = "XLSX") ExportService.Format format) {
+
+        // Calculé dans le thread de la requête (contexte tenant), écrit ensuite en flux
+        List<StockExportDto> stocks = stockService.obtenirStocksPourExport(debut, fin);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"stock-" + LocalDate.now() + "." + format.getExtension() + "\"")
+                .body(out -> exportService.exporterStock(stocks, format, out));
+    }
+
     /**
      * GET /api/stock/produit/{nomProduit}
      * Obtenir le stock d'un produit spécifique
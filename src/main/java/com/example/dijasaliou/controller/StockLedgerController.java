@@ -0,0 +1,64 @@
+package com.example.dijasaliou.controller;
+
+import com.example.dijasaliou.dto.StockLedgerRapportDto;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.service.StockProduitService;
+import com.example.dijasaliou.service.StockService;
+import com.example.dijasaliou.service.TenantService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Endpoints admin pour le ledger de stock (table stock_produit).
+ *
+ * Sécurité : réservé aux ADMIN du tenant courant.
+ *
+ *   POST /api/admin/stock-ledger/rebuild       → reconstruit le ledger depuis les achats/ventes
+ *   GET  /api/admin/stock-ledger/verification  → compare le ledger au calcul complet
+ */
+@RestController
+@RequestMapping("/admin/stock-ledger")
+@RequiredArgsConstructor
+public class StockLedgerController {
+
+    private final StockProduitService stockProduitService;
+    private final StockService        stockService;
+    private final TenantService       tenantService;
+
+    /**
+     * POST /api/admin/stock-ledger/rebuild
+     *
+     * Reconstruit entièrement le ledger du tenant courant, puis vérifie le résultat.
+     */
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StockLedgerRapportDto> reconstruire() {
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        stockProduitService.reconstruire(tenant);
+        stockService.invalidateStockCache(tenant.getTenantUuid());
+
+        StockLedgerRapportDto rapport = stockService.verifierLedger(tenant, false);
+        rapport.setReconstruit(true);
+        return ResponseEntity.ok(rapport);
+    }
+
+    /**
+     * GET /api/admin/stock-ledger/verification?reparer=false
+     *
+     * Liste les écarts entre le ledger et le calcul complet (scan de tous les achats
+     * et ventes). Avec reparer=true, reconstruit le ledger si des écarts sont trouvés.
+     */
+    @GetMapping("/verification")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StockLedgerRapportDto> verifier(
+            @RequestParam(defaultValue = "false") boolean reparer) {
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        return ResponseEntity.ok(stockService.verifierLedger(tenant, reparer));
+    }
+}
@@ -1,22 +1,27 @@
 package com.example.dijasaliou.controller;
 
+import com.example.dijasaliou.annotation.RequiresPlan;
 import com.example.dijasaliou.dto.BeneficeStatistiquesDto;
 import com.example.dijasaliou.dto.PagedResponse;
+import com.example.dijasaliou.dto.PanierVenteRequest;
 import com.example.dijasaliou.dto.VenteDto;
 import com.example.dijasaliou.entity.AchatEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.VenteEntity;
 import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.service.ExportService;
 import com.example.dijasaliou.service.TenantService;
 import com.example.dijasaliou.service.UserService;
 import com.example.dijasaliou.service.VenteService;
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.springframework.security.core.Authentication;
 
@@ -39,13 +44,16 @@ public class VenteController {
     private final UserService userService;
     private final AchatRepository achatRepository;
     private final TenantService tenantService;
+    private final ExportService exportService;
 
     public VenteController(VenteService venteService, UserService userService,
-                           AchatRepository achatRepository, TenantService tenantService) {
+                           AchatRepository achatRepository, TenantService tenantService,
+                           ExportService exportService) {
         this.venteService = venteService;
         this.userService = userService;
         this.achatRepository = achatRepository;
         this.tenantService = tenantService;
+        this.exportService = exportService;
     }
 
     /**
@@ -108,6 +116,30 @@ public class VenteController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * POST /api/ventes/panier
+     * Encaisse toutes les lignes d'un panier en une requête (au lieu d'un POST /ventes par article).
+     * Atomique : une ligne refusée (stock insuffisant…) annule tout le panier.
+     * SÉCURITÉ : L'utilisateur est extrait du token JWT (Authentication).
+     */
+    @PostMapping("/panier")
+    public ResponseEntity<Map<String, Object>> creerPanier(
+            @Valid @RequestBody PanierVenteRequest panier,
+            Authentication authentication) {
+
+        UserEntity utilisateur = userService.obtenirUtilisateurParEmail(authentication.getName());
+        List<VenteEntity> ventes = venteService.creerPanier(panier.getLignes(), utilisateur);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("ventes", ventes.stream().map(VenteDto::fromEntity).collect(Collectors.toList()));
+        response.put("total", ventes.stream()
+                .map(VenteEntity::getPrixTotal)
+                .filter(java.util.Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
     /**
      * PUT /api/ventes/{id}
      * SÉCURITÉ : L'utilisateur est extrait du token JWT (Authentication),
@@ -262,6 +294,36 @@ public class VenteController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * GET /api/ventes/export?debut=2026-01-01&fin=2026-12-31&format=XLSX
+     *
+     * Export des ventes de la période en XLSX (défaut) ou CSV, écrit en flux :
+     * le téléchargement commence tout de suite et la mémoire reste constante,
+     * même pour des centaines de milliers de lignes.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('GERANT', 'ADMIN')")
+    @RequiresPlan(
+            plans = {TenantEntity.Plan.PRO, TenantEntity.Plan.BUSINESS},
+            message = "L'export des ventes est réservé aux plans PRO et BUSINESS"
+    )
+    public ResponseEntity<StreamingResponseBody> exporterVentes(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin,
+            @RequestParam(defaultValue = "XLSX") ExportService.Format format) {
+
+        if (fin.isBefore(debut)) {
+            throw new IllegalArgumentException("La date de fin doit être après la date de début");
+        }
+        // Le flux est écrit hors du thread de la requête : tenant résolu ici
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, String.format(
+                        "attachment; filename=\"ventes-%s-%s.%s\"", debut, fin, format.getExtension()))
+                .body(out -> exportService.exporterVentes(tenant, debut, fin, format, out));
+    }
+
     /**
      * GET /api/ventes/sorties?debut=2026-06-01&fin=2026-06-30
      *
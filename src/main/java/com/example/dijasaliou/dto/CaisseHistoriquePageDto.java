@@ -0,0 +1,26 @@
+package com.example.dijasaliou.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de l'historique de caisse (GET /api/caisse/historique/page).
+ *
+ * Les mouvements sont triés par (date, id) décroissants. Pour la page suivante,
+ * renvoyer {@code curseurSuivant} tel quel ; null quand l'historique est épuisé.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CaisseHistoriquePageDto {
+
+    private List<MouvementHistoriqueDto> mouvements;
+
+    /** Curseur opaque de la page suivante, null s'il n'y en a plus. */
+    private String                       curseurSuivant;
+}
@@ -0,0 +1,30 @@
+package com.example.dijasaliou.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Un point de la série de soldes de caisse : soldes de fin de journée par compte.
+ *
+ * Retourné (liste, un point par jour) par GET /api/caisse/serie. Un jour antérieur
+ * à l'activation a des soldes à 0, comme GET /api/caisse?asOfDate=...
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CaisseSoldeJourDto {
+
+    private LocalDate  jour;
+
+    private BigDecimal soldeEspeces;
+    private BigDecimal soldeWave;
+    private BigDecimal soldeOm;
+    private BigDecimal soldeVirement;
+    private BigDecimal soldeTotal;
+}
@@ -35,8 +35,10 @@ public class FifoBackfillRapportDto {
 
     private BigDecimal   beneficeTotalReconstitue;
 
+    /** Détail des premières anomalies (liste bornée, voir nbAnomalies pour le total). */
     @Builder.Default
     private List<String> anomalies = new ArrayList<>();
+    private long         nbAnomalies;
 
     private long         dureeMs;
 }
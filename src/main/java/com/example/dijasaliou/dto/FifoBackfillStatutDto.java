@@ -0,0 +1,36 @@
+package com.example.dijasaliou.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Avancement du backfill FIFO lancé en arrière-plan (POST /admin/fifo/backfill).
+ *
+ * Le rapport n'est renseigné qu'une fois le statut TERMINE ; l'erreur seulement en ECHEC.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FifoBackfillStatutDto {
+
+    public enum Statut { AUCUN, EN_COURS, TERMINE, ECHEC }
+
+    private Statut                 statut;
+    private String                 tenantUuid;
+
+    private long                   nbVentesTotal;
+    private long                   nbVentesTraitees;
+    /** 0 à 100. */
+    private int                    pourcentage;
+
+    private LocalDateTime          demarreLe;
+    private LocalDateTime          termineLe;
+
+    private FifoBackfillRapportDto rapport;
+    private String                 erreur;
+}
@@ -15,6 +15,11 @@ import java.time.LocalDateTime;
  *   - SORTIE  : sortie d'argent d'un compte (motif libre)
  *   - TRANSFERT : déplacement entre 2 comptes (compteSource → compteDestination)
  *
+ * L'historique paginé (GET /api/caisse/historique/page) y ajoute les opérations
+ * commerciales qui impactent la caisse (motif = produit, libellé ou client) :
+ *   - VENTE, PAIEMENT_CREDIT : entrées sur le compte du mode de paiement
+ *   - ACHAT, DEPENSE         : sorties du compte du mode de paiement
+ *
  * Format unifié pour faciliter l'affichage chronologique côté UI.
  */
 @Data
@@ -26,19 +31,23 @@ public class MouvementHistoriqueDto {
     public enum TypeHistorique {
         ENTREE,
         SORTIE,
-        TRANSFERT
+        TRANSFERT,
+        VENTE,
+        ACHAT,
+        DEPENSE,
+        PAIEMENT_CREDIT
     }
 
     private String          id;
     private TypeHistorique  type;
 
-    /** Pour ENTREE / SORTIE — le compte impacté. NULL pour TRANSFERT. */
+    /** Pour tout type sauf TRANSFERT — le compte impacté. NULL pour TRANSFERT. */
     private CompteCaisse    compte;
 
-    /** Pour TRANSFERT — compte source. NULL pour ENTREE/SORTIE. */
+    /** Pour TRANSFERT — compte source. NULL sinon. */
     private CompteCaisse    compteSource;
 
-    /** Pour TRANSFERT — compte destination. NULL pour ENTREE/SORTIE. */
+    /** Pour TRANSFERT — compte destination. NULL sinon. */
     private CompteCaisse    compteDestination;
 
     private BigDecimal      montant;
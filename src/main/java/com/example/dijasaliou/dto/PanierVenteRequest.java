@@ -0,0 +1,29 @@
+package com.example.dijasaliou.dto;
+
+import com.example.dijasaliou.entity.VenteEntity;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Corps de requête pour encaisser un panier (POST /ventes/panier).
+ * <p>
+ * Chaque ligne a le même format que le corps de POST /ventes. Le panier est
+ * atomique : si une ligne est refusée (stock insuffisant, prix invalide…),
+ * aucune vente n'est enregistrée.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PanierVenteRequest {
+
+    @NotEmpty(message = "Le panier doit contenir au moins une ligne")
+    @Size(max = 200, message = "Un panier ne peut dépasser 200 lignes")
+    @Valid
+    private List<VenteEntity> lignes;
+}
@@ -0,0 +1,38 @@
+package com.example.dijasaliou.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Génération d'un rapport PDF en arrière-plan (POST /rapports/pdf/jobs).
+ *
+ * L'identifiant est la clé du rapport dans le cache (tenant, période, version des
+ * données) : deux demandes identiques partagent la même génération. Le lien de
+ * téléchargement n'est renseigné qu'une fois le statut TERMINE ; l'erreur seulement en ECHEC.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RapportJobDto {
+
+    public enum Statut { EN_COURS, TERMINE, ECHEC }
+
+    private String        id;
+    private Statut        statut;
+
+    private LocalDate     debut;
+    private LocalDate     fin;
+
+    private LocalDateTime demarreLe;
+    private LocalDateTime termineLe;
+
+    /** GET de ce chemin (sous /api) pour télécharger le PDF. */
+    private String        telechargement;
+    private String        erreur;
+}
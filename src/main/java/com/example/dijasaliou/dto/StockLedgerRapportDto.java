@@ -0,0 +1,38 @@
+package com.example.dijasaliou.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rapport de vérification / reconstruction du ledger de stock (stock_produit).
+ *
+ * Compare, produit par produit, le ledger au calcul complet (scan de tous les
+ * achats et ventes) et liste les écarts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLedgerRapportDto {
+
+    private String       tenantUuid;
+
+    /** true = aucun écart entre le ledger et le scan complet. */
+    private boolean      coherent;
+
+    /** true = le ledger a été reconstruit (rebuild ou réparation après écarts). */
+    private boolean      reconstruit;
+
+    private long         nbProduitsLedger;
+    private long         nbProduitsScan;
+
+    @Builder.Default
+    private List<String> ecarts = new ArrayList<>();
+
+    private long         dureeMs;
+}
@@ -20,8 +20,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
     @Index(name = "idx_achat_utilisateur", columnList = "utilisateur_id"),
     @Index(name = "idx_achat_tenant", columnList = "tenant_id")
 })
-@org.hibernate.annotations.FilterDef(name = "tenantFilter", parameters = @org.hibernate.annotations.ParamDef(name = "tenantId", type = String.class))
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.FilterDef(name = "tenantFilter", parameters = @org.hibernate.annotations.ParamDef(name = "tenantPk", type = Long.class))
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,51 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Version d'un compte de caisse : contrôle de concurrence OPTIMISTE des sorties
+ * d'argent (transfert sortant, retrait manuel).
+ *
+ * Une ligne par (tenant, compte), créée à la première sortie du compte. Chaque
+ * sortie lit la version avant de vérifier le solde, puis l'incrémente par un
+ * UPDATE conditionnel (WHERE version = lue) : si une autre sortie du même compte
+ * a été validée entre-temps, l'UPDATE ne touche aucune ligne et la sortie est
+ * rejouée avec un solde à jour (CaisseService).
+ *
+ * Remplace le verrou pessimiste sur caisse_config, qui sérialisait toutes les
+ * opérations du tenant : des sorties sur des comptes différents ne se bloquent
+ * plus, et les entrées ne passent pas par cette table.
+ */
+@Entity
+@Table(name = "caisse_compte_version", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_caisse_version_tenant_compte", columnNames = {"tenant_id", "compte"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class CaisseCompteVersionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_caisse_version_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compte", nullable = false, length = 20)
+    private CompteCaisse compte;
+
+    /** Incrémentée à chaque sortie validée sur le compte. */
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
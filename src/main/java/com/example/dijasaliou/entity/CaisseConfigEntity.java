@@ -17,8 +17,12 @@ import java.time.LocalDateTime;
  *   - la date d'activation : seules les transactions à partir de cette date
  *     impactent la caisse (les achats / ventes / dépenses antérieurs sont ignorés)
  *
- * Le solde actuel est calculé EN TEMPS RÉEL dans CaisseService — il n'est jamais
- * stocké pour éviter toute désynchronisation.
+ * Le solde actuel est calculé EN TEMPS RÉEL dans CaisseService — seules des
+ * clôtures journalières servent de point de départ (CaisseSoldeJournalierEntity).
+ *
+ * {@code versionClotures} protège ces clôtures contre une écriture antidatée
+ * concurrente (voir CaisseClotureService) : modifiée uniquement par UPDATE
+ * conditionnel, jamais par la sauvegarde de l'entité.
  */
 @Entity
 @Table(
@@ -75,4 +79,8 @@ public class CaisseConfigEntity extends BaseEntity {
 
     @Column(name = "active_par", length = 36)
     private String activePar;
+
+    @Column(name = "version_clotures", nullable = false, updatable = false)
+    @Builder.Default
+    private Long versionClotures = 0L;
 }
@@ -0,0 +1,67 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Clôture journalière de la caisse : solde d'un compte à la fin d'une journée.
+ *
+ * Une ligne par (tenant, compte, jour), écrite par CaisseClotureScheduler peu après
+ * minuit (heure du tenant) pour la veille. CaisseService part de la dernière clôture
+ * et n'agrège que les flux postérieurs : le coût du calcul du solde dépend de
+ * l'activité depuis la veille, plus de l'ancienneté de la caisse.
+ *
+ * Ce n'est qu'un cache : toute écriture antidatée (vente, achat, dépense, paiement
+ * crédit, transfert, mouvement) supprime les clôtures à partir de son jour
+ * (InvalidationDonneesService). Le calcul retombe alors sur la clôture
+ * précédente — ou sur le solde initial — jusqu'à la prochaine clôture.
+ */
+@Entity
+@Table(name = "caisse_solde_journalier", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_caisse_solde_tenant_compte_jour", columnNames = {"tenant_id", "compte", "jour"})
+}, indexes = {
+        @Index(name = "idx_caisse_solde_tenant_jour", columnList = "tenant_id, jour")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class CaisseSoldeJournalierEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_caisse_solde_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compte", nullable = false, length = 20)
+    private CompteCaisse compte;
+
+    /** Journée clôturée (fuseau du tenant) : le solde inclut tous les flux jusqu'à sa fin. */
+    @Column(name = "jour", nullable = false)
+    private LocalDate jour;
+
+    @Column(name = "solde_cloture", nullable = false, precision = 15, scale = 2)
+    private BigDecimal soldeCloture;
+
+    @Column(name = "date_calcul", nullable = false)
+    private LocalDateTime dateCalcul;
+
+    @PrePersist
+    protected void onSave() {
+        this.dateCalcul = LocalDateTime.now();
+    }
+}
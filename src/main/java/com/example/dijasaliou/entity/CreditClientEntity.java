@@ -20,7 +20,7 @@ import java.util.List;
 )
 @org.hibernate.annotations.Filter(
         name = "tenantFilter",
-        condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)"
+        condition = "tenant_id = :tenantPk"
 )
 @Getter
 @Setter
@@ -23,7 +23,7 @@ import java.util.stream.Collectors;
                 @Index(name = "idx_depense_tenant", columnList = "tenant_id")
         }
 )
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,40 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Version des données d'un tenant : change après chaque transaction qui modifie ses
+ * ventes, achats, dépenses, crédits ou opérations de caisse.
+ *
+ * Une ligne par tenant, créée à la première écriture (absente = version 0), et
+ * incrémentée après le commit (DonneesVersionService) : elle sert de clé aux résultats
+ * calculés gardés en cache (rapports PDF), jamais de verrou.
+ */
+@Entity
+@Table(name = "donnees_version", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_donnees_version_tenant", columnNames = {"tenant_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class DonneesVersionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_donnees_version_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
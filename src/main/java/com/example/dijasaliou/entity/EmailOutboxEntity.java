@@ -0,0 +1,77 @@
+package com.example.dijasaliou.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email en attente d'envoi (table email_outbox).
+ *
+ * Inséré dans la transaction de l'opération qui le déclenche, envoyé ensuite
+ * par EmailOutboxService : un email n'est ni perdu si Brevo échoue, ni envoyé
+ * si l'opération est annulée (rollback).
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_statut_essai", columnList = "statut, prochain_essai")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "contenuHtml")
+public class EmailOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "destinataire", nullable = false, length = 255)
+    private String destinataire;
+
+    @Column(name = "sujet", nullable = false, length = 500)
+    private String sujet;
+
+    @Column(name = "contenu_html", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String contenuHtml;
+
+    /** Reply-To spécifique (formulaire de contact) ; null → Reply-To par défaut */
+    @Column(name = "reply_to", length = 255)
+    private String replyTo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    @Builder.Default
+    private Statut statut = Statut.EN_ATTENTE;
+
+    @Column(name = "tentatives", nullable = false)
+    @Builder.Default
+    private int tentatives = 0;
+
+    @Column(name = "prochain_essai", nullable = false)
+    private LocalDateTime prochainEssai;
+
+    @Column(name = "reserve_par", length = 150)
+    private String reservePar;
+
+    @Column(name = "reserve_jusqu_a")
+    private LocalDateTime reserveJusquA;
+
+    @Column(name = "derniere_erreur", length = 500)
+    private String derniereErreur;
+
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+
+    @Column(name = "date_envoi")
+    private LocalDateTime dateEnvoi;
+
+    public enum Statut {
+        EN_ATTENTE, // À envoyer à partir de prochainEssai
+        EN_COURS,   // Réservé par une instance jusqu'à reserveJusquA
+        ENVOYE,     // Accepté par Brevo
+        ECHEC       // Refusé définitivement ou tentatives épuisées
+    }
+}
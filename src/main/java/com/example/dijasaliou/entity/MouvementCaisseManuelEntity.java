@@ -27,7 +27,7 @@ import java.time.LocalDateTime;
         }
 )
 @org.hibernate.annotations.Filter(name = "tenantFilter",
-        condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+        condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
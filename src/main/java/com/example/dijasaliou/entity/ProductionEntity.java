@@ -28,7 +28,7 @@ import java.util.List;
     @Index(name = "idx_production_produit", columnList = "produit_fabrique_id"),
     @Index(name = "idx_production_date", columnList = "tenant_id, date_production")
 })
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
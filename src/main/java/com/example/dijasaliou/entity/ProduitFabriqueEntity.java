@@ -19,7 +19,7 @@ import lombok.*;
 @Table(name = "produits_fabriques", indexes = {
     @Index(name = "idx_produit_fabrique_tenant", columnList = "tenant_id")
 })
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,93 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Agrégat journalier de reporting : ventes, coût / bénéfice FIFO, paiements crédit,
+ * achats et dépenses d'une journée, pour un mode de paiement et un type de sortie.
+ *
+ * Une ligne par (tenant, jour, mode, type de sortie), écrite par RollupJourScheduler
+ * pour les journées terminées. Les rapports lisent ces lignes jusqu'au dernier jour
+ * agrégé (RollupJourEtatEntity) et les tables brutes au-delà (RollupJourService).
+ *
+ * Le mode regroupe ModePaiementVente, ModePaiementCaisse et PaiementCreditEntity.ModePaiement
+ * (mêmes noms) ; les achats, dépenses et paiements crédit ont toujours le type AUCUN.
+ *
+ * Ce n'est qu'un cache : toute écriture antidatée supprime les agrégats à partir de son
+ * jour (RollupJourService.invaliderDepuis, appelé par InvalidationDonneesService).
+ */
+@Entity
+@Table(name = "rollup_jour", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rollup_jour_tenant_jour_mode_type",
+                columnNames = {"tenant_id", "jour", "mode_paiement", "type_sortie"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class RollupJourEntity {
+
+    /** Valeur de mode_paiement / type_sortie quand la ligne source n'en a pas. */
+    public static final String AUCUN = "AUCUN";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_rollup_jour_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    @Column(name = "jour", nullable = false)
+    private LocalDate jour;
+
+    @Column(name = "mode_paiement", nullable = false, length = 20)
+    private String modePaiement;
+
+    @Column(name = "type_sortie", nullable = false, length = 20)
+    private String typeSortie;
+
+    @Column(name = "nb_ventes", nullable = false)
+    private long nbVentes;
+
+    @Column(name = "montant_ventes", nullable = false, precision = 19, scale = 4)
+    private BigDecimal montantVentes;
+
+    @Column(name = "cout_fifo", nullable = false, precision = 19, scale = 4)
+    private BigDecimal coutFifo;
+
+    @Column(name = "benefice_fifo", nullable = false, precision = 19, scale = 4)
+    private BigDecimal beneficeFifo;
+
+    /** Ventes ayant au moins une ligne de consommation FIFO. */
+    @Column(name = "nb_ventes_fifo", nullable = false)
+    private long nbVentesFifo;
+
+    @Column(name = "nb_paiements_credit", nullable = false)
+    private long nbPaiementsCredit;
+
+    @Column(name = "montant_paiements_credit", nullable = false, precision = 19, scale = 4)
+    private BigDecimal montantPaiementsCredit;
+
+    @Column(name = "nb_achats", nullable = false)
+    private long nbAchats;
+
+    @Column(name = "montant_achats", nullable = false, precision = 19, scale = 4)
+    private BigDecimal montantAchats;
+
+    @Column(name = "nb_depenses", nullable = false)
+    private long nbDepenses;
+
+    @Column(name = "montant_depenses", nullable = false, precision = 19, scale = 4)
+    private BigDecimal montantDepenses;
+}
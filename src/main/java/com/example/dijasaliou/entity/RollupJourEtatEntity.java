@@ -0,0 +1,48 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * État des agrégats journaliers d'un tenant : rollup_jour est exact jusqu'à
+ * {@code calculeJusquAu} inclus. Null juste après la création de l'état ou une remise
+ * à zéro (backfill FIFO, reconstruction) : le job établit alors le point de départ
+ * d'après le plus ancien mouvement du tenant.
+ *
+ * La version est incrémentée par chaque invalidation (écriture antidatée) et par
+ * chaque avancement du job : le job n'enregistre son avancement que si elle n'a pas
+ * bougé depuis sa lecture (UPDATE conditionnel), sinon il recommence au tick suivant.
+ */
+@Entity
+@Table(name = "rollup_jour_etat", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rollup_etat_tenant", columnNames = {"tenant_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class RollupJourEtatEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_rollup_etat_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    /** Dernier jour agrégé (fuseau du tenant) ; null = point de départ à établir. */
+    @Column(name = "calcule_jusqu_au")
+    private LocalDate calculeJusquAu;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
@@ -0,0 +1,210 @@
+package com.example.dijasaliou.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Ledger de stock : une ligne de synthèse par produit et par tenant.
+ *
+ * Maintenue en incrémental dans la même transaction que chaque achat / vente
+ * (voir StockProduitService) — GET /stock lit cette table au lieu de recharger
+ * tout l'historique des achats et des ventes.
+ *
+ * Clé fonctionnelle : (tenant, nomNormalise) avec nomNormalise = LOWER(TRIM(nom_produit)),
+ * exactement la clé de regroupement utilisée par StockService.
+ *
+ * Pas de @Version : les mises à jour passent par un verrou pessimiste sur la ligne
+ * (StockProduitRepository.findForUpdate), pas par l'optimistic locking.
+ */
+@Entity
+@Table(name = "stock_produit", indexes = {
+        @Index(name = "idx_stock_produit_tenant", columnList = "tenant_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_produit_tenant_nom", columnNames = {"tenant_id", "nom_normalise"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class StockProduitEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "tenant_id", nullable = false, foreignKey = @ForeignKey(name = "fk_stock_produit_tenant"))
+    @JsonIgnore
+    @ToString.Exclude
+    private TenantEntity tenant;
+
+    @Column(name = "nom_normalise", nullable = false, length = 100)
+    private String nomNormalise;
+
+    /** Nombre de lots d'achat. 0 = produit vendu sans achat → absent de la liste stock. */
+    @Column(name = "nb_achats", nullable = false)
+    @Builder.Default
+    private Long nbAchats = 0L;
+
+    @Column(name = "quantite_achetee", nullable = false)
+    @Builder.Default
+    private Double quantiteAchetee = 0.0;
+
+    /** SUM(prix_unitaire × quantite) des achats. */
+    @Column(name = "valeur_achats", nullable = false, precision = 19, scale = 4)
+    @Builder.Default
+    private BigDecimal valeurAchats = BigDecimal.ZERO;
+
+    @Column(name = "quantite_vendue", nullable = false)
+    @Builder.Default
+    private Double quantiteVendue = 0.0;
+
+    /** SUM(prix_unitaire × quantite) des ventes. */
+    @Column(name = "valeur_ventes", nullable = false, precision = 19, scale = 4)
+    @Builder.Default
+    private BigDecimal valeurVentes = BigDecimal.ZERO;
+
+    @Column(name = "date_dernier_achat")
+    private LocalDateTime dateDernierAchat;
+
+    /** Unité du dernier achat (tous achats confondus). */
+    @Column(name = "unite", length = 20)
+    private String unite;
+
+    @Column(name = "photo_url", length = 500)
+    private String photoUrl;
+
+    @Column(name = "date_photo")
+    private LocalDateTime datePhoto;
+
+    @Column(name = "code_barre", length = 50)
+    private String codeBarre;
+
+    @Column(name = "date_code_barre")
+    private LocalDateTime dateCodeBarre;
+
+    @Column(name = "categorie", length = 100)
+    private String categorie;
+
+    @Column(name = "date_categorie")
+    private LocalDateTime dateCategorie;
+
+    /** Prix de vente suggéré du dernier achat qui en a un — sert de prix moyen de vente tant qu'il n'y a aucune vente. */
+    @Column(name = "prix_vente_suggere", precision = 10, scale = 2)
+    private BigDecimal prixVenteSuggere;
+
+    @Column(name = "date_prix_vente_suggere")
+    private LocalDateTime datePrixVenteSuggere;
+
+    @Column(name = "date_maj", nullable = false)
+    private LocalDateTime dateMaj;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.dateMaj = LocalDateTime.now();
+    }
+
+    /** Remplace les cumuls et les attributs par ceux d'une ligne recalculée (recalcul complet du produit). */
+    public void remplacerPar(StockProduitEntity calcul) {
+        this.nbAchats = calcul.nbAchats;
+        this.quantiteAchetee = calcul.quantiteAchetee;
+        this.valeurAchats = calcul.valeurAchats;
+        this.quantiteVendue = calcul.quantiteVendue;
+        this.valeurVentes = calcul.valeurVentes;
+        this.dateDernierAchat = calcul.dateDernierAchat;
+        this.unite = calcul.unite;
+        this.photoUrl = calcul.photoUrl;
+        this.datePhoto = calcul.datePhoto;
+        this.codeBarre = calcul.codeBarre;
+        this.dateCodeBarre = calcul.dateCodeBarre;
+        this.categorie = calcul.categorie;
+        this.dateCategorie = calcul.dateCategorie;
+        this.prixVenteSuggere = calcul.prixVenteSuggere;
+        this.datePrixVenteSuggere = calcul.datePrixVenteSuggere;
+    }
+
+    /**
+     * Ajoute (signe = +1) ou retire (signe = -1) un achat des cumuls,
+     * et met à jour les attributs "du dernier achat" si cet achat est le plus récent.
+     * Le retrait ne sait pas retrouver l'attribut précédent : l'appelant recalcule le produit.
+     */
+    public void appliquerAchat(AchatEntity achat, int signe) {
+        double quantite = achat.getQuantite() != null ? achat.getQuantite() : 0.0;
+        BigDecimal valeur = achat.getPrixUnitaire() != null
+                ? achat.getPrixUnitaire().multiply(BigDecimal.valueOf(quantite))
+                : BigDecimal.ZERO;
+
+        this.nbAchats += signe;
+        this.quantiteAchetee += signe * quantite;
+        this.valeurAchats = signe > 0 ? this.valeurAchats.add(valeur) : this.valeurAchats.subtract(valeur);
+
+        if (signe < 0) return;
+
+        appliquerAttributsAchat(achat.getDateAchat(), achat.getUnite(), achat.getPhotoUrl(),
+                achat.getCodeBarre(), achat.getCategorie(), achat.getPrixVenteSuggere());
+    }
+
+    /**
+     * Met à jour les attributs "du dernier achat" avec ceux d'un achat daté.
+     * En cas d'égalité de date, le dernier achat présenté l'emporte : les achats arrivent
+     * ici dans l'ordre de leur création (id croissant), comme le départage
+     * « date_achat DESC, id DESC » de AchatRepository.findDerniersAttributsParProduit.
+     */
+    public void appliquerAttributsAchat(LocalDateTime date, String unite, String photoUrl,
+                                        String codeBarre, String categorie, BigDecimal prixVenteSuggere) {
+        if (remplace(date, dateDernierAchat)) {
+            this.dateDernierAchat = date;
+            this.unite = unite;
+        }
+        if (photoUrl != null && !photoUrl.isEmpty() && remplace(date, datePhoto)) {
+            this.photoUrl = photoUrl;
+            this.datePhoto = date;
+        }
+        if (codeBarre != null && !codeBarre.isEmpty() && remplace(date, dateCodeBarre)) {
+            this.codeBarre = codeBarre;
+            this.dateCodeBarre = date;
+        }
+        if (categorie != null && !categorie.isBlank() && remplace(date, dateCategorie)) {
+            this.categorie = categorie;
+            this.dateCategorie = date;
+        }
+        if (prixVenteSuggere != null && prixVenteSuggere.signum() > 0 && remplace(date, datePrixVenteSuggere)) {
+            this.prixVenteSuggere = prixVenteSuggere;
+            this.datePrixVenteSuggere = date;
+        }
+    }
+
+    /** Ajoute (signe = +1) ou retire (signe = -1) une vente des cumuls. */
+    public void appliquerVente(VenteEntity vente, int signe) {
+        double quantite = vente.getQuantite() != null ? vente.getQuantite() : 0.0;
+        BigDecimal valeur = vente.getPrixUnitaire() != null
+                ? vente.getPrixUnitaire().multiply(BigDecimal.valueOf(quantite))
+                : BigDecimal.ZERO;
+
+        this.quantiteVendue += signe * quantite;
+        this.valeurVentes = signe > 0 ? this.valeurVentes.add(valeur) : this.valeurVentes.subtract(valeur);
+    }
+
+    /** Stock disponible = quantité achetée − quantité vendue (peut être négatif). */
+    public double calculerStockDisponible() {
+        return quantiteAchetee - quantiteVendue;
+    }
+
+    /** Prix moyen pondéré d'achat, arrondi au centime (même calcul que StockService). */
+    public BigDecimal calculerPrixMoyenAchat() {
+        if (quantiteAchetee <= 0) return BigDecimal.ZERO;
+        return valeurAchats.divide(BigDecimal.valueOf(quantiteAchetee), 2, RoundingMode.HALF_UP);
+    }
+
+    private static boolean remplace(LocalDateTime date, LocalDateTime reference) {
+        return reference == null || (date != null && !date.isBefore(reference));
+    }
+}
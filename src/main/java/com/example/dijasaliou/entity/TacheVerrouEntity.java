@@ -0,0 +1,38 @@
+package com.example.dijasaliou.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Verrou d'une tâche planifiée (ou d'une tranche de tenants d'une tâche) : une
+ * seule instance de l'application l'exécute à chaque tick.
+ *
+ * Libre dès que {@code verrouilleJusquA} est passé — pris par un UPDATE
+ * conditionnel (TacheVerrouService), jamais par un verrou de ligne gardé
+ * pendant la tâche.
+ */
+@Entity
+@Table(name = "tache_verrou")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class TacheVerrouEntity {
+
+    @Id
+    @Column(name = "nom", length = 100)
+    private String nom;
+
+    @Column(name = "proprietaire", nullable = false, length = 150)
+    private String proprietaire;
+
+    @Column(name = "verrouille_le", nullable = false)
+    private LocalDateTime verrouilleLe;
+
+    @Column(name = "verrouille_jusqu_a", nullable = false)
+    private LocalDateTime verrouilleJusquA;
+}
@@ -16,7 +16,7 @@ import java.util.List;
     @Index(name = "idx_role", columnList = "role"),
     @Index(name = "idx_user_tenant", columnList = "tenant_id")
 })
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
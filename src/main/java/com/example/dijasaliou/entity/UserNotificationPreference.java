@@ -66,6 +66,14 @@ public class UserNotificationPreference {
     @Column(name = "config", columnDefinition = "TEXT")
     private String config;
 
+    /**
+     * Heure locale d'envoi effective d'un résumé (heure de la config, défaut du type
+     * sinon) ; null pour les autres types. Recalculée à chaque enregistrement : le cron
+     * des résumés ne lit que les préférences qui peuvent partir à l'heure courante.
+     */
+    @Column(name = "heure_envoi")
+    private Integer heureEnvoi;
+
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 }
@@ -21,10 +21,11 @@ import java.time.LocalDateTime;
                 @Index(name = "idx_vente_utilisateur", columnList = "utilisateur_id"),
                 @Index(name = "idx_vente_client", columnList = "client"),
                 @Index(name = "idx_vente_tenant", columnList = "tenant_id"),
-                @Index(name = "idx_vente_mode_paiement", columnList = "mode_paiement")
+                @Index(name = "idx_vente_mode_paiement", columnList = "mode_paiement"),
+                @Index(name = "idx_vente_fifo_lookup", columnList = "tenant_id, nom_produit, date_vente")
         }
 )
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,7 +33,7 @@ import java.math.RoundingMode;
                 @Index(name = "idx_vlc_date_vente", columnList = "date_vente_snapshot")
         }
 )
-@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = (SELECT t.id FROM tenants t WHERE t.tenant_uuid = :tenantId)")
+@org.hibernate.annotations.Filter(name = "tenantFilter", condition = "tenant_id = :tenantPk")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,5 +1,6 @@
 package com.example.dijasaliou.jwt;
 
+import com.example.dijasaliou.service.TenantCacheService;
 import com.example.dijasaliou.tenant.TenantContext;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -22,20 +23,22 @@ import java.util.List;
  *
  * Responsabilités :
  * 1. Extraire le token du cookie HttpOnly "jwt" (ou fallback vers header Authorization)
- * 2. Valider le token
- * 3. Extraire l'email ET le tenant_id du token
+ * 2. Valider le token et extraire ses claims en une seule passe (JwtService.parseAndVerify)
+ * 3. Extraire l'email ET le tenant_id des claims
  * 4. Charger l'utilisateur
  * 5. Authentifier l'utilisateur dans le contexte Spring Security
- * 6. MULTI-TENANT : Stocker le tenant_id dans TenantContext
+ * 6. MULTI-TENANT : Stocker le tenant_id et sa clé primaire (tenant_pk) dans TenantContext
  */
 @Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
+    private final TenantCacheService tenantCacheService;
 
-    public JwtAuthenticationFilter(JwtService jwtService) {
+    public JwtAuthenticationFilter(JwtService jwtService, TenantCacheService tenantCacheService) {
         this.jwtService = jwtService;
+        this.tenantCacheService = tenantCacheService;
     }
     @Override
     protected void doFilterInternal(
@@ -61,38 +64,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         try {
-            // 4. Extraire l'email du token
-            String email = jwtService.getEmailFromToken(token);
+            // 4. Vérifier le token (signature + expiration) et lire tous ses claims en une passe
+            //    (token déjà vérifié → claims servis par le cache de JwtService, sans HMAC)
+            JwtClaims claims = jwtService.parseAndVerify(token);
+            String email = claims.email();
 
             // 5. Si l'email existe ET l'utilisateur n'est pas déjà authentifié
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                // 6. Valider le token (signature + expiration)
-                if (jwtService.validateToken(token)) {
-                    // 7. MULTI-TENANT : Extraire et stocker le tenant_id depuis le token (0 requête BDD)
-                    String tenantId = jwtService.getTenantIdFromToken(token);
-                    if (tenantId != null && !tenantId.trim().isEmpty()) {
-                        TenantContext.setCurrentTenant(tenantId);
-                        log.debug("Tenant défini dans le contexte: {}", tenantId);
-                    } else {
-                        log.debug("Token sans tenant_id pour l'utilisateur: {} (SUPER_ADMIN ou token legacy)", email);
-                    }
-
-                    // 8. Construire les authorities depuis le rôle dans le token (0 requête BDD)
-                    String role = jwtService.getRoleFromToken(token);
-                    List<SimpleGrantedAuthority> authorities = role != null
-                            ? List.of(new SimpleGrantedAuthority(role))
-                            : List.of();
-
-                    // 9. Créer l'objet d'authentification avec l'email comme principal
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(email, null, authorities);
-
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    // 10. Authentifier l'utilisateur dans le contexte Spring Security
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                // 6. MULTI-TENANT : stocker le tenant_id et sa clé primaire depuis le token (0 requête BDD)
+                String tenantId = claims.tenantId();
+                if (tenantId != null && !tenantId.trim().isEmpty()) {
+                    TenantContext.setCurrentTenant(tenantId);
+                    TenantContext.setCurrentTenantPk(resoudreTenantPk(claims));
+                    log.debug("Tenant défini dans le contexte: {}", tenantId);
+                } else {
+                    log.debug("Token sans tenant_id pour l'utilisateur: {} (SUPER_ADMIN ou token legacy)", email);
                 }
+
+                // 7. Construire les authorities depuis le rôle dans le token (0 requête BDD)
+                String role = claims.role();
+                List<SimpleGrantedAuthority> authorities = role != null
+                        ? List.of(new SimpleGrantedAuthority(role))
+                        : List.of();
+
+                // 8. Créer l'objet d'authentification avec l'email comme principal
+                UsernamePasswordAuthenticationToken authToken =
+                        new UsernamePasswordAuthenticationToken(email, null, authorities);
+
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                // 9. Authentifier l'utilisateur dans le contexte Spring Security
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
             // Token invalide → Ne rien faire (l'utilisateur restera non authentifié)
@@ -101,15 +104,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         try {
-            // 11. Continuer la chaîne de filtres
+            // 10. Continuer la chaîne de filtres
             filterChain.doFilter(request, response);
         } finally {
-            // 12. CRITIQUE : Nettoyer le contexte tenant après chaque requête
+            // 11. CRITIQUE : Nettoyer le contexte tenant après chaque requête
             TenantContext.clear();
             log.debug("Contexte tenant nettoyé après la requête");
         }
     }
 
+    /**
+     * Clé primaire du tenant : claim "tenant_pk", sinon (token émis avant ce claim)
+     * résolue via le cache des tenants (le snapshot chargé sert aussi au reste de la requête).
+     * Tenant introuvable → -1 : le filtre Hibernate ne retourne alors aucune ligne,
+     * comme l'ancienne sous-requête sur un UUID inconnu.
+     */
+    private Long resoudreTenantPk(JwtClaims claims) {
+        if (claims.tenantPk() != null) {
+            return claims.tenantPk();
+        }
+        return tenantCacheService.findSnapshotByUuid(claims.tenantId())
+                .map(snapshot -> {
+                    TenantContext.setCurrentSnapshot(snapshot);
+                    return snapshot.id();
+                })
+                .orElse(-1L);
+    }
+
     /**
      * Extrait le JWT du cookie HttpOnly "jwt"
      *
@@ -0,0 +1,28 @@
+package com.example.dijasaliou.jwt;
+
+import java.time.Instant;
+
+/**
+ * Claims d'un token JWT dont la signature et l'expiration ont été vérifiées
+ *
+ * Produit par JwtService.parseAndVerify : une seule vérification HMAC par token,
+ * puis réutilisé depuis le cache jusqu'à l'expiration du token.
+ *
+ * @param email      Sujet du token (email de l'utilisateur)
+ * @param tenantId   UUID du tenant, null pour SUPER_ADMIN / token legacy
+ * @param tenantPk   Clé primaire du tenant (claim "tenant_pk"), null si absente
+ * @param role       Nom du rôle, null si absent
+ * @param expiration Date d'expiration du token
+ */
+public record JwtClaims(
+        String email,
+        String tenantId,
+        Long tenantPk,
+        String role,
+        Instant expiration
+) {
+
+    public boolean estExpire(Instant maintenant) {
+        return expiration != null && !expiration.isAfter(maintenant);
+    }
+}
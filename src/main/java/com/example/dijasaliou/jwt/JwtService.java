@@ -1,15 +1,25 @@
 package com.example.dijasaliou.jwt;
 
 import com.example.dijasaliou.entity.UserEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
 
 /**
  * Service pour gérer les tokens JWT
@@ -18,10 +28,19 @@ import java.util.Date;
  * - Générer un token JWT
  * - Valider un token JWT
  * - Extraire l'email du token
+ *
+ * PERFORMANCE :
+ * - parseAndVerify() : une seule vérification HMAC par token, claims immuables (JwtClaims)
+ * - Cache borné des tokens déjà vérifiés, clé = SHA-256 du token (jamais le token en clair),
+ *   chaque entrée expire à l'exp du token → un terminal de caisse qui renvoie le même
+ *   token ne repaie pas la vérification de signature à chaque requête
  */
 @Service
 public class JwtService {
 
+    /** Nombre maximal de tokens vérifiés gardés en mémoire. */
+    static final long TAILLE_MAX_CACHE = 10_000;
+
     // Clé secrète pour signer les tokens (à mettre dans application.properties)
     @Value("${jwt.secret}")
     private String jwtSecret;
@@ -30,6 +49,14 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long jwtExpirationMs;
 
+    // Parser construit une seule fois (immuable, thread-safe) — paresseux car jwtSecret est injecté après le constructeur
+    private volatile JwtParser parser;
+
+    private final Cache<String, JwtClaims> claimsVerifies = Caffeine.newBuilder()
+            .maximumSize(TAILLE_MAX_CACHE)
+            .expireAfter(new ExpirationDuToken())
+            .build();
+
     /**
      * Générer un token JWT pour un utilisateur (sans tenant - pour compatibilité)
      *
@@ -52,6 +79,22 @@ public class JwtService {
      * @return Token JWT
      */
     public String generateToken(String email, String tenantId, UserEntity.Role role) {
+        return generateToken(email, tenantId, null, role);
+    }
+
+    /**
+     * Générer un token JWT avec tenant_id, clé primaire du tenant et rôle
+     *
+     * La clé primaire (claim "tenant_pk") alimente directement le filtre Hibernate
+     * (tenant_id = :tenantPk) sans résoudre l'UUID en base à chaque requête.
+     *
+     * @param email    Email de l'utilisateur
+     * @param tenantId UUID du tenant (entreprise)
+     * @param tenantPk Clé primaire du tenant (tenants.id), null si inconnue
+     * @param role     Rôle de l'utilisateur (ADMIN, USER, SUPER_ADMIN)
+     * @return Token JWT
+     */
+    public String generateToken(String email, String tenantId, Long tenantPk, UserEntity.Role role) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
@@ -63,6 +106,9 @@ public class JwtService {
 
         if (tenantId != null && !tenantId.trim().isEmpty()) {
             builder.claim("tenant_id", tenantId);
+            if (tenantPk != null) {
+                builder.claim("tenant_pk", tenantPk);
+            }
         }
         if (role != null) {
             builder.claim("role", role.name());
@@ -79,6 +125,40 @@ public class JwtService {
         return generateToken(email, tenantId, null);
     }
 
+    /**
+     * Vérifier un token (signature + expiration) et extraire tous ses claims en une seule passe
+     *
+     * Token déjà vérifié et non expiré → claims servis depuis le cache, sans HMAC.
+     *
+     * @param token Token JWT
+     * @return Claims vérifiés (immuables)
+     * @throws JwtException si le token est invalide, falsifié ou expiré
+     * @throws IllegalArgumentException si le token est vide
+     */
+    public JwtClaims parseAndVerify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token JWT vide");
+        }
+
+        String cle = empreinte(token);
+        JwtClaims enCache = claimsVerifies.getIfPresent(cle);
+        if (enCache != null && !enCache.estExpire(Instant.now())) {
+            return enCache;
+        }
+
+        Claims claims = getParser().parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        JwtClaims verifies = new JwtClaims(
+                claims.getSubject(),
+                claims.get("tenant_id", String.class),
+                claims.get("tenant_pk", Long.class),
+                claims.get("role", String.class),
+                expiration != null ? expiration.toInstant() : null
+        );
+        claimsVerifies.put(cle, verifies);
+        return verifies;
+    }
+
     /**
      * Extraire l'email du token JWT
      *
@@ -86,8 +166,7 @@ public class JwtService {
      * @return Email de l'utilisateur
      */
     public String getEmailFromToken(String token) {
-        Claims claims = getClaims(token);
-        return claims.getSubject();
+        return parseAndVerify(token).email();
     }
 
     /**
@@ -97,8 +176,7 @@ public class JwtService {
      * @return Nom du rôle ou null si absent
      */
     public String getRoleFromToken(String token) {
-        Claims claims = getClaims(token);
-        return claims.get("role", String.class);
+        return parseAndVerify(token).role();
     }
 
     /**
@@ -111,22 +189,17 @@ public class JwtService {
      * @return UUID du tenant ou null si absent
      */
     public String getTenantIdFromToken(String token) {
-        Claims claims = getClaims(token);
-        return claims.get("tenant_id", String.class);
+        return parseAndVerify(token).tenantId();
     }
 
     /**
-     * Extraire tous les claims du token
+     * Extraire la clé primaire du tenant du token JWT
      *
      * @param token Token JWT
-     * @return Claims
+     * @return tenants.id ou null si absent (token émis avant l'ajout du claim)
      */
-    private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public Long getTenantPkFromToken(String token) {
+        return parseAndVerify(token).tenantPk();
     }
 
     /**
@@ -137,10 +210,7 @@ public class JwtService {
      */
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
+            parseAndVerify(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             // Token invalide ou expiré
@@ -148,6 +218,49 @@ public class JwtService {
         }
     }
 
+    private JwtParser getParser() {
+        JwtParser p = parser;
+        if (p == null) {
+            p = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build();
+            parser = p;
+        }
+        return p;
+    }
+
+    /** SHA-256 du token en hexadécimal : clé du cache (le token lui-même n'est pas conservé). */
+    private static String empreinte(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /** Chaque entrée du cache expire à l'exp de son token. */
+    private static final class ExpirationDuToken implements Expiry<String, JwtClaims> {
+
+        @Override
+        public long expireAfterCreate(String cle, JwtClaims claims, long currentTime) {
+            if (claims.expiration() == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(Instant.now(), claims.expiration()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String cle, JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(cle, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String cle, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     /**
      * Obtenir la clé de signature
      */
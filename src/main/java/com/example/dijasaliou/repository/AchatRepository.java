@@ -6,11 +6,13 @@ import com.example.dijasaliou.entity.UserEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -37,6 +39,82 @@ public interface AchatRepository extends JpaRepository<AchatEntity, String> {
     @Query("SELECT a FROM AchatEntity a WHERE LOWER(a.nomProduit) LIKE LOWER(CONCAT('%', :keyword, '%')) AND a.tenant = :tenant")
     List<AchatEntity> findByNomProduitContainingAndTenant(@Param("keyword") String keyword, @Param("tenant") TenantEntity tenant);
 
+    /**
+     * Agrégats de stock par produit NORMALISÉ (LOWER/TRIM) — même clé que StockService.
+     * Retourne List<Object[]> : [nomNormalise, nbAchats, sum(quantite), sum(prix × quantite)].
+     * nomNormalise = null → tous les produits du tenant.
+     * Aucune entité chargée : le regroupement est fait par la base.
+     */
+    @Query("""
+            SELECT LOWER(TRIM(a.nomProduit)), COUNT(a), SUM(a.quantite), SUM(a.prixUnitaire * a.quantite)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND (:nomNormalise IS NULL OR LOWER(TRIM(a.nomProduit)) = :nomNormalise)
+            GROUP BY LOWER(TRIM(a.nomProduit))
+            """)
+    List<Object[]> agregerStockParProduit(@Param("tenant") TenantEntity tenant,
+                                          @Param("nomNormalise") String nomNormalise);
+
+    /**
+     * Attributs "du dernier achat" : UNE ligne par produit (fenêtres ROW_NUMBER côté base,
+     * l'historique des achats n'est pas renvoyé à l'application).
+     * Chaque attribut vient du plus récent achat où il est renseigné, le plus grand id à date
+     * égale (même règle que StockProduitEntity.appliquerAttributsAchat) ; date et valeur à
+     * NULL s'il ne l'est jamais.
+     * Retourne List<Object[]> : [nomNormalise, dateDernierAchat, unite, datePhoto, photoUrl,
+     * dateCodeBarre, codeBarre, dateCategorie, categorie, datePrixVenteSuggere, prixVenteSuggere].
+     * nomNormalise = null → tous les produits du tenant.
+     */
+    default List<Object[]> findDerniersAttributsParProduit(Long tenantId, String nomNormalise) {
+        return nomNormalise == null
+                ? findDerniersAttributsTousProduits(tenantId)
+                : findDerniersAttributsProduit(tenantId, nomNormalise);
+    }
+
+    @Query(value = DERNIERS_ATTRIBUTS_DEBUT + DERNIERS_ATTRIBUTS_FIN, nativeQuery = true)
+    List<Object[]> findDerniersAttributsTousProduits(@Param("tenantId") Long tenantId);
+
+    @Query(value = DERNIERS_ATTRIBUTS_DEBUT
+            + " AND LOWER(TRIM(a.nom_produit)) = :nomNormalise "
+            + DERNIERS_ATTRIBUTS_FIN, nativeQuery = true)
+    List<Object[]> findDerniersAttributsProduit(@Param("tenantId") Long tenantId,
+                                                @Param("nomNormalise") String nomNormalise);
+
+    /** Début de findDerniersAttributsParProduit, jusqu'au filtre tenant de la sous-requête. */
+    String DERNIERS_ATTRIBUTS_DEBUT = """
+            SELECT t.nom,
+                   MAX(CASE WHEN t.rang_achat = 1 THEN t.date_achat END),
+                   MAX(CASE WHEN t.rang_achat = 1 THEN t.unite END),
+                   MAX(CASE WHEN t.rang_photo = 1 AND t.photo_url <> '' THEN t.date_achat END),
+                   MAX(CASE WHEN t.rang_photo = 1 AND t.photo_url <> '' THEN t.photo_url END),
+                   MAX(CASE WHEN t.rang_code = 1 AND t.code_barre <> '' THEN t.date_achat END),
+                   MAX(CASE WHEN t.rang_code = 1 AND t.code_barre <> '' THEN t.code_barre END),
+                   MAX(CASE WHEN t.rang_categorie = 1 AND TRIM(t.categorie) <> '' THEN t.date_achat END),
+                   MAX(CASE WHEN t.rang_categorie = 1 AND TRIM(t.categorie) <> '' THEN t.categorie END),
+                   MAX(CASE WHEN t.rang_prix = 1 AND t.prix_vente_suggere > 0 THEN t.date_achat END),
+                   MAX(CASE WHEN t.rang_prix = 1 AND t.prix_vente_suggere > 0 THEN t.prix_vente_suggere END)
+            FROM (
+                SELECT LOWER(TRIM(a.nom_produit)) AS nom, a.date_achat, a.unite, a.photo_url,
+                       a.code_barre, a.categorie, a.prix_vente_suggere,
+                       ROW_NUMBER() OVER (PARTITION BY LOWER(TRIM(a.nom_produit))
+                           ORDER BY a.date_achat DESC, a.id DESC) AS rang_achat,
+                       ROW_NUMBER() OVER (PARTITION BY LOWER(TRIM(a.nom_produit))
+                           ORDER BY CASE WHEN a.photo_url <> '' THEN 0 ELSE 1 END, a.date_achat DESC, a.id DESC) AS rang_photo,
+                       ROW_NUMBER() OVER (PARTITION BY LOWER(TRIM(a.nom_produit))
+                           ORDER BY CASE WHEN a.code_barre <> '' THEN 0 ELSE 1 END, a.date_achat DESC, a.id DESC) AS rang_code,
+                       ROW_NUMBER() OVER (PARTITION BY LOWER(TRIM(a.nom_produit))
+                           ORDER BY CASE WHEN TRIM(a.categorie) <> '' THEN 0 ELSE 1 END, a.date_achat DESC, a.id DESC) AS rang_categorie,
+                       ROW_NUMBER() OVER (PARTITION BY LOWER(TRIM(a.nom_produit))
+                           ORDER BY CASE WHEN a.prix_vente_suggere > 0 THEN 0 ELSE 1 END, a.date_achat DESC, a.id DESC) AS rang_prix
+                FROM achats a
+                WHERE a.tenant_id = :tenantId
+            """;
+
+    String DERNIERS_ATTRIBUTS_FIN = """
+            ) t
+            GROUP BY t.nom
+            """;
+
     /**
      * Trouver tous les achats d'un utilisateur
      */
@@ -121,10 +199,47 @@ public interface AchatRepository extends JpaRepository<AchatEntity, String> {
                                               @Param("tenant") TenantEntity tenant);
 
     /**
-     * Tous les achats d'un tenant triés par date d'achat ASC (pour le backfill FIFO).
+     * FIFO (panier) : lots disponibles de plusieurs produits en une requête,
+     * triés par date d'achat croissante. Filtre tenant EXPLICITE.
      */
-    @Query("SELECT a FROM AchatEntity a WHERE a.tenant = :tenant ORDER BY a.dateAchat ASC, a.id ASC")
-    List<AchatEntity> findAllByTenantOrderByDateAsc(@Param("tenant") TenantEntity tenant);
+    @Query("""
+            SELECT a FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.nomProduit IN :nomsProduits
+              AND a.quantiteRestante IS NOT NULL
+              AND a.quantiteRestante > 0
+            ORDER BY a.dateAchat ASC, a.id ASC
+            """)
+    List<AchatEntity> findLotsDisponiblesFifoPourProduits(@Param("nomsProduits") Collection<String> nomsProduits,
+                                                          @Param("tenant") TenantEntity tenant);
+
+    /**
+     * Backfill FIFO : lots d'un produit (nom exact, comme findLotsDisponiblesFifo) sans
+     * charger les entités, triés par date d'achat ASC.
+     * Retourne List<Object[]> : [id, prixUnitaire, quantite].
+     */
+    @Query("""
+            SELECT a.id, a.prixUnitaire, a.quantite
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.nomProduit = :nomProduit
+            ORDER BY a.dateAchat ASC, a.id ASC
+            """)
+    List<Object[]> findLotsProduitPourBackfill(@Param("tenant") TenantEntity tenant,
+                                               @Param("nomProduit") String nomProduit);
+
+    /** Backfill FIFO : nombre de lots du tenant (rapport). */
+    long countByTenant(TenantEntity tenant);
+
+    /** Backfill FIFO : remet quantite_restante = quantite sur tous les lots d'un tenant (1 UPDATE). */
+    @Modifying
+    @Query("""
+            UPDATE AchatEntity a
+            SET a.quantiteRestante = a.quantite,
+                a.version = COALESCE(a.version, 0) + 1
+            WHERE a.tenant = :tenant
+            """)
+    int reinitialiserQuantitesRestantes(@Param("tenant") TenantEntity tenant);
 
     /**
      * Somme des achats d'un tenant pour un mode de paiement, entre deux dates.
@@ -160,6 +275,143 @@ public interface AchatRepository extends JpaRepository<AchatEntity, String> {
             @Param("debut") LocalDateTime debut,
             @Param("fin") LocalDateTime fin);
 
+    /** Série de soldes de caisse : total achats GROUPÉ par (jour, mode) en une query. */
+    @Query("""
+            SELECT CAST(a.dateAchat AS LocalDate), a.modePaiement, COALESCE(SUM(a.prixTotal), 0)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat >= :debut
+              AND a.dateAchat <= :fin
+              AND a.modePaiement IS NOT NULL
+            GROUP BY CAST(a.dateAchat AS LocalDate), a.modePaiement
+            """)
+    java.util.List<Object[]> sumParJourEtModeGrouped(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /**
+     * Agrégats journaliers (rollup_jour) : nombre et montant des achats GROUPÉS par (jour, mode).
+     * Résultat : List<[LocalDate, ModePaiementCaisse, Long, BigDecimal]> — mode null possible.
+     */
+    @Query("""
+            SELECT CAST(a.dateAchat AS LocalDate), a.modePaiement, COUNT(a), COALESCE(SUM(a.prixTotal), 0)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat >= :debut
+              AND a.dateAchat <= :fin
+            GROUP BY CAST(a.dateAchat AS LocalDate), a.modePaiement
+            """)
+    java.util.List<Object[]> sumRollupParJour(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /** Date du plus ancien achat du tenant (null si aucun). */
+    @Query("SELECT MIN(a.dateAchat) FROM AchatEntity a WHERE a.tenant = :tenant")
+    LocalDateTime findPremiereDateAchat(@Param("tenant") TenantEntity tenant);
+
+    /**
+     * Rapport PDF : nombre et total des achats de la période [debut, finExclu[ et de la
+     * période précédente [debutPrev, debut[ en une seule query (agrégation conditionnelle).
+     * Résultat : une ligne [nb, total, nbPrev, totalPrev].
+     */
+    @Query("""
+            SELECT COALESCE(SUM(CASE WHEN a.dateAchat >= :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN a.dateAchat >= :debut THEN a.prixTotal ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN a.dateAchat < :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN a.dateAchat < :debut THEN a.prixTotal ELSE 0 END), 0)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat >= :debutPrev
+              AND a.dateAchat < :finExclu
+            """)
+    List<Object[]> sumComparaisonPeriodes(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debutPrev") LocalDateTime debutPrev,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu);
+
+    /**
+     * Rapport PDF : produits les plus achetés de la période, par montant décroissant
+     * (taille de la page = nombre de produits).
+     * Résultat : List<[nomProduit, quantité, montant]>.
+     */
+    @Query("""
+            SELECT a.nomProduit, COALESCE(SUM(a.quantite), 0), COALESCE(SUM(a.prixTotal), 0)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat >= :debut
+              AND a.dateAchat < :finExclu
+            GROUP BY a.nomProduit
+            ORDER BY COALESCE(SUM(a.prixTotal), 0) DESC
+            """)
+    List<Object[]> findTopProduitsPeriode(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu,
+            Pageable limite);
+
+    /**
+     * Historique de caisse paginé par clé : achats payés en caisse strictement avant
+     * le curseur, triés par (date, id) DESC.
+     * Résultat : List<[id, dateAchat, ModePaiementCaisse, prixTotal, nomProduit, utilisateurId]>.
+     */
+    @Query("""
+            SELECT a.id, a.dateAchat, a.modePaiement, a.prixTotal, a.nomProduit, a.utilisateur.id
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.modePaiement IS NOT NULL
+              AND a.dateAchat >= :debut
+              AND (a.dateAchat < :avantDate
+                   OR (a.dateAchat = :avantDate AND (:avantId IS NULL OR a.id < :avantId)))
+            ORDER BY a.dateAchat DESC, a.id DESC
+            """)
+    java.util.List<Object[]> findHistoriqueCaisseAvant(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("avantDate") LocalDateTime avantDate,
+            @Param("avantId") String avantId,
+            Pageable pageable);
+
+    /**
+     * Export des achats : tranche suivant le curseur (apresDate, apresId), triée par (date, id).
+     * apresId null → tranche commençant à apresDate incluse (première tranche : apresDate = début).
+     * Résultat : List<[id, dateAchat, nomProduit, codeBarre, categorie, quantite, unite,
+     *                  prixUnitaire, prixTotal, fournisseur, ModePaiementCaisse]>.
+     */
+    @Query("""
+            SELECT a.id, a.dateAchat, a.nomProduit, a.codeBarre, a.categorie, a.quantite, a.unite,
+                   a.prixUnitaire, a.prixTotal, a.fournisseur, a.modePaiement
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat < :finExclu
+              AND (a.dateAchat > :apresDate
+                   OR (a.dateAchat = :apresDate AND (:apresId IS NULL OR a.id > :apresId)))
+            ORDER BY a.dateAchat ASC, a.id ASC
+            """)
+    List<Object[]> findTrancheExport(@Param("tenant") TenantEntity tenant,
+                                     @Param("apresDate") LocalDateTime apresDate,
+                                     @Param("apresId") String apresId,
+                                     @Param("finExclu") LocalDateTime finExclu,
+                                     Pageable limite);
+
+    /**
+     * Quantités achetées par produit NORMALISÉ (LOWER/TRIM) sur [debut, finExclu[ — export du stock.
+     * Résultat : List<[nomNormalise, sum(quantite)]>.
+     */
+    @Query("""
+            SELECT LOWER(TRIM(a.nomProduit)), SUM(a.quantite)
+            FROM AchatEntity a
+            WHERE a.tenant = :tenant
+              AND a.dateAchat >= :debut
+              AND a.dateAchat < :finExclu
+            GROUP BY LOWER(TRIM(a.nomProduit))
+            """)
+    List<Object[]> sumQuantiteParProduitPeriode(@Param("tenant") TenantEntity tenant,
+                                                @Param("debut") LocalDateTime debut,
+                                                @Param("finExclu") LocalDateTime finExclu);
+
     /**
      * Noms de fournisseurs distincts pour un tenant, triés alphabétiquement.
      * Alimente l'autocomplétion du champ fournisseur dans le formulaire d'achat.
@@ -1,6 +1,7 @@
 package com.example.dijasaliou.repository;
 
 import com.example.dijasaliou.entity.BonLivraisonEntity;
+import com.example.dijasaliou.entity.TenantEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -36,4 +37,26 @@ public interface BonLivraisonRepository extends JpaRepository<BonLivraisonEntity
                                                @Param("dateDebut") LocalDateTime dateDebut,
                                                @Param("dateFin") LocalDateTime dateFin,
                                                Pageable pageable);
+
+    /**
+     * Rapport PDF : nombre de bons créés dans la période GROUPÉ par statut.
+     * Résultat : List<[Statut, Long]>.
+     */
+    @Query("SELECT b.statut, COUNT(b) FROM BonLivraisonEntity b " +
+           "WHERE b.tenant = :tenant AND b.createdDate >= :debut AND b.createdDate < :finExclu " +
+           "GROUP BY b.statut")
+    List<Object[]> countParStatutPeriode(@Param("tenant") TenantEntity tenant,
+                                         @Param("debut") LocalDateTime debut,
+                                         @Param("finExclu") LocalDateTime finExclu);
+
+    /**
+     * Rapport PDF : derniers bons créés dans la période (taille de la page = nombre de bons).
+     */
+    @Query("SELECT b FROM BonLivraisonEntity b " +
+           "WHERE b.tenant = :tenant AND b.createdDate >= :debut AND b.createdDate < :finExclu " +
+           "ORDER BY b.createdDate DESC")
+    List<BonLivraisonEntity> findDerniersPeriode(@Param("tenant") TenantEntity tenant,
+                                                 @Param("debut") LocalDateTime debut,
+                                                 @Param("finExclu") LocalDateTime finExclu,
+                                                 Pageable limite);
 }
@@ -0,0 +1,44 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.CaisseCompteVersionEntity;
+import com.example.dijasaliou.entity.CompteCaisse;
+import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository des versions de comptes de caisse (caisse_compte_version).
+ * Filtre tenant EXPLICITE partout.
+ */
+@Repository
+public interface CaisseCompteVersionRepository extends JpaRepository<CaisseCompteVersionEntity, Long> {
+
+    @Query("""
+            SELECT v.version FROM CaisseCompteVersionEntity v
+            WHERE v.tenant = :tenant AND v.compte = :compte
+            """)
+    Optional<Long> findVersion(@Param("tenant") TenantEntity tenant,
+                               @Param("compte") CompteCaisse compte);
+
+    /**
+     * Incrémente la version du compte si elle vaut encore {@code version}.
+     * @return 0 si une autre sortie l'a incrémentée entre-temps (conflit)
+     */
+    @Modifying
+    @Query("""
+            UPDATE CaisseCompteVersionEntity v SET v.version = v.version + 1
+            WHERE v.tenant = :tenant AND v.compte = :compte AND v.version = :version
+            """)
+    int incrementerSiVersion(@Param("tenant") TenantEntity tenant,
+                             @Param("compte") CompteCaisse compte,
+                             @Param("version") Long version);
+
+    @Modifying
+    @Query("DELETE FROM CaisseCompteVersionEntity v WHERE v.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
+}
@@ -3,8 +3,13 @@ package com.example.dijasaliou.repository;
 import com.example.dijasaliou.entity.CaisseConfigEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,21 +18,38 @@ public interface CaisseConfigRepository extends JpaRepository<CaisseConfigEntity
     /** Récupère la config de caisse du tenant (1 seule possible). */
     Optional<CaisseConfigEntity> findByTenant(TenantEntity tenant);
 
-    /**
-     * Verrou pessimiste sur la config caisse du tenant — sérialise les
-     * opérations parallèles (transferts/sorties) pour éviter le solde négatif
-     * en cas de double clic ou multi-onglet.
-     */
-    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
-    @org.springframework.data.jpa.repository.Query("SELECT c FROM CaisseConfigEntity c WHERE c.tenant = :tenant")
-    Optional<CaisseConfigEntity> findByTenantForUpdate(
-            @org.springframework.data.repository.query.Param("tenant") TenantEntity tenant);
-
     boolean existsByTenant(TenantEntity tenant);
 
+    /** Toutes les caisses activées des tenants non supprimés, tenant chargé (job de clôture). */
+    @Query("""
+            SELECT c FROM CaisseConfigEntity c JOIN FETCH c.tenant t
+            WHERE t.deleted = false OR t.deleted IS NULL
+            """)
+    List<CaisseConfigEntity> findAllAvecTenant();
+
     /** Supprime la config caisse du tenant. Utilisé par DELETE /api/caisse. */
-    @org.springframework.transaction.annotation.Transactional
-    @org.springframework.data.jpa.repository.Modifying
-    @org.springframework.data.jpa.repository.Query("DELETE FROM CaisseConfigEntity c WHERE c.tenant = :tenant")
-    int deleteAllByTenant(@org.springframework.data.repository.query.Param("tenant") TenantEntity tenant);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CaisseConfigEntity c WHERE c.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
+
+    /** Version des clôtures du tenant (vide si la caisse n'est pas activée). */
+    @Query("SELECT c.versionClotures FROM CaisseConfigEntity c WHERE c.tenant = :tenant")
+    Optional<Long> findVersionClotures(@Param("tenant") TenantEntity tenant);
+
+    /**
+     * Enregistrement d'une clôture : incrémente la version si elle vaut encore {@code version}.
+     * @return 0 si une invalidation est passée depuis sa lecture (clôture à refaire)
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE CaisseConfigEntity c SET c.versionClotures = c.versionClotures + 1
+            WHERE c.tenant = :tenant AND c.versionClotures = :version
+            """)
+    int incrementerVersionCloturesSi(@Param("tenant") TenantEntity tenant, @Param("version") Long version);
+
+    /** Invalidation : signale aux clôtures en cours de calcul que leurs lectures sont peut-être périmées. */
+    @Modifying
+    @Query("UPDATE CaisseConfigEntity c SET c.versionClotures = c.versionClotures + 1 WHERE c.tenant = :tenant")
+    int incrementerVersionClotures(@Param("tenant") TenantEntity tenant);
 }
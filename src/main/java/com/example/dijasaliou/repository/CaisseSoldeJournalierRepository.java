@@ -0,0 +1,50 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.CaisseSoldeJournalierEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository des clôtures journalières de caisse (caisse_solde_journalier).
+ * Filtre tenant EXPLICITE partout — utilisable depuis les jobs planifiés.
+ */
+@Repository
+public interface CaisseSoldeJournalierRepository extends JpaRepository<CaisseSoldeJournalierEntity, Long> {
+
+    /**
+     * Lignes (une par compte) de la dernière clôture strictement antérieure à {@code avant}.
+     * Liste vide si aucune clôture.
+     */
+    @Query("""
+            SELECT s FROM CaisseSoldeJournalierEntity s
+            WHERE s.tenant = :tenant
+              AND s.jour = (SELECT MAX(s2.jour) FROM CaisseSoldeJournalierEntity s2
+                            WHERE s2.tenant = :tenant AND s2.jour < :avant)
+            """)
+    List<CaisseSoldeJournalierEntity> findDerniereClotureAvant(@Param("tenant") TenantEntity tenant,
+                                                               @Param("avant") LocalDate avant);
+
+    /** Dernier jour clôturé par tenant : [tenantId, MAX(jour)]. */
+    @Query("SELECT s.tenant.id, MAX(s.jour) FROM CaisseSoldeJournalierEntity s GROUP BY s.tenant.id")
+    List<Object[]> findDernierJourClotureParTenant();
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CaisseSoldeJournalierEntity s WHERE s.tenant = :tenant AND s.jour = :jour")
+    int deleteJour(@Param("tenant") TenantEntity tenant, @Param("jour") LocalDate jour);
+
+    /** Supprime les clôtures à partir d'un jour (écriture antidatée). */
+    @Modifying
+    @Query("DELETE FROM CaisseSoldeJournalierEntity s WHERE s.tenant = :tenant AND s.jour >= :jour")
+    int deleteDepuis(@Param("tenant") TenantEntity tenant, @Param("jour") LocalDate jour);
+
+    @Modifying
+    @Query("DELETE FROM CaisseSoldeJournalierEntity s WHERE s.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
+}
@@ -16,7 +16,6 @@ import jakarta.persistence.LockModeType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -106,19 +105,4 @@ public interface CreditClientRepository extends JpaRepository<CreditClientEntity
     List<Object[]> countCreditsActifsByClientIds(@Param("clientIds") List<String> clientIds,
                                                   @Param("statut") StatutCredit statut,
                                                   @Param("tenantUuid") String tenantUuid);
-
-    /**
-     * Somme le montant restant dû sur les crédits non soldés dont la vente a été créée dans la période.
-     * Retourne List<Object[]> : chaque Object[] = [count, sum(montantRestant)]
-     */
-    @Query("SELECT COUNT(c), COALESCE(SUM(c.montantRestant), 0) " +
-           "FROM CreditClientEntity c " +
-           "WHERE c.vente IS NOT NULL " +
-           "AND c.vente.dateVente BETWEEN :debut AND :fin " +
-           "AND c.statut <> :statut " +
-           "AND c.tenant.tenantUuid = :tenantUuid")
-    List<Object[]> sumCreditsRestantParPeriode(@Param("debut") LocalDateTime debut,
-                                               @Param("fin") LocalDateTime fin,
-                                               @Param("statut") StatutCredit statut,
-                                               @Param("tenantUuid") String tenantUuid);
 }
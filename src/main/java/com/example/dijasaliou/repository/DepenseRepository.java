@@ -102,4 +102,100 @@ public interface DepenseRepository extends JpaRepository<DepenseEntity, String>
             @Param("tenant") TenantEntity tenant,
             @Param("debut") LocalDateTime debut,
             @Param("fin") LocalDateTime fin);
+
+    /** Série de soldes de caisse : total dépenses GROUPÉ par (jour, mode) en une query. */
+    @Query("""
+            SELECT CAST(d.dateDepense AS LocalDate), d.modePaiement, COALESCE(SUM(d.montant), 0)
+            FROM DepenseEntity d
+            WHERE d.tenant = :tenant
+              AND d.dateDepense >= :debut
+              AND d.dateDepense <= :fin
+              AND d.modePaiement IS NOT NULL
+            GROUP BY CAST(d.dateDepense AS LocalDate), d.modePaiement
+            """)
+    java.util.List<Object[]> sumParJourEtModeGrouped(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /**
+     * Agrégats journaliers (rollup_jour) : nombre et montant des dépenses GROUPÉS par (jour, mode).
+     * Résultat : List<[LocalDate, ModePaiementCaisse, Long, BigDecimal]> — mode null possible.
+     */
+    @Query("""
+            SELECT CAST(d.dateDepense AS LocalDate), d.modePaiement, COUNT(d), COALESCE(SUM(d.montant), 0)
+            FROM DepenseEntity d
+            WHERE d.tenant = :tenant
+              AND d.dateDepense >= :debut
+              AND d.dateDepense <= :fin
+            GROUP BY CAST(d.dateDepense AS LocalDate), d.modePaiement
+            """)
+    java.util.List<Object[]> sumRollupParJour(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /** Date de la plus ancienne dépense du tenant (null si aucune). */
+    @Query("SELECT MIN(d.dateDepense) FROM DepenseEntity d WHERE d.tenant = :tenant")
+    LocalDateTime findPremiereDateDepense(@Param("tenant") TenantEntity tenant);
+
+    /**
+     * Rapport PDF : nombre et total des dépenses de la période [debut, finExclu[ et de la
+     * période précédente [debutPrev, debut[ en une seule query (agrégation conditionnelle).
+     * Résultat : une ligne [nb, total, nbPrev, totalPrev].
+     */
+    @Query("""
+            SELECT COALESCE(SUM(CASE WHEN d.dateDepense >= :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN d.dateDepense >= :debut THEN d.montant ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN d.dateDepense < :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN d.dateDepense < :debut THEN d.montant ELSE 0 END), 0)
+            FROM DepenseEntity d
+            WHERE d.tenant = :tenant
+              AND d.dateDepense >= :debutPrev
+              AND d.dateDepense < :finExclu
+            """)
+    List<Object[]> sumComparaisonPeriodes(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debutPrev") LocalDateTime debutPrev,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu);
+
+    /**
+     * Rapport PDF : total des dépenses de la période GROUPÉ par catégorie.
+     * Résultat : List<[CategorieDepense, BigDecimal]> — catégorie null possible.
+     */
+    @Query("""
+            SELECT d.categorie, COALESCE(SUM(d.montant), 0)
+            FROM DepenseEntity d
+            WHERE d.tenant = :tenant
+              AND d.dateDepense >= :debut
+              AND d.dateDepense < :finExclu
+            GROUP BY d.categorie
+            """)
+    List<Object[]> sumParCategoriePeriode(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu);
+
+    /**
+     * Historique de caisse paginé par clé : dépenses payées en caisse strictement
+     * avant le curseur, triées par (date, id) DESC.
+     * Résultat : List<[id, dateDepense, ModePaiementCaisse, montant, libelle, utilisateurId]>.
+     */
+    @Query("""
+            SELECT d.id, d.dateDepense, d.modePaiement, d.montant, d.libelle, d.utilisateur.id
+            FROM DepenseEntity d
+            WHERE d.tenant = :tenant
+              AND d.modePaiement IS NOT NULL
+              AND d.dateDepense >= :debut
+              AND (d.dateDepense < :avantDate
+                   OR (d.dateDepense = :avantDate AND (:avantId IS NULL OR d.id < :avantId)))
+            ORDER BY d.dateDepense DESC, d.id DESC
+            """)
+    java.util.List<Object[]> findHistoriqueCaisseAvant(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("avantDate") LocalDateTime avantDate,
+            @Param("avantId") String avantId,
+            Pageable pageable);
 }
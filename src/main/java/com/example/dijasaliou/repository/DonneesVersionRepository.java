@@ -0,0 +1,27 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.DonneesVersionEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository des versions de données par tenant (donnees_version).
+ * Filtre tenant EXPLICITE partout.
+ */
+@Repository
+public interface DonneesVersionRepository extends JpaRepository<DonneesVersionEntity, Long> {
+
+    @Query("SELECT v.version FROM DonneesVersionEntity v WHERE v.tenant = :tenant")
+    Optional<Long> findVersion(@Param("tenant") TenantEntity tenant);
+
+    /** @return 0 si la ligne du tenant n'existe pas encore */
+    @Modifying
+    @Query("UPDATE DonneesVersionEntity v SET v.version = v.version + 1 WHERE v.tenant = :tenant")
+    int incrementer(@Param("tenant") TenantEntity tenant);
+}
@@ -0,0 +1,105 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.EmailOutboxEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository de la file d'envoi des emails (email_outbox).
+ * Données globales, pas de tenant.
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxEntity, Long> {
+
+    /**
+     * Emails à envoyer : en attente et dus, ou réservés par une instance
+     * dont la réservation a expiré. Les plus anciens d'abord.
+     */
+    @Query("SELECT e.id FROM EmailOutboxEntity e " +
+           "WHERE (e.statut = 'EN_ATTENTE' AND e.prochainEssai <= :maintenant) " +
+           "OR (e.statut = 'EN_COURS' AND e.reserveJusquA < :maintenant) " +
+           "ORDER BY e.prochainEssai, e.id")
+    List<Long> findIdsAEnvoyer(@Param("maintenant") LocalDateTime maintenant, Pageable limite);
+
+    /**
+     * Réserve les emails encore disponibles parmi {@code ids} — atomique par ligne :
+     * deux instances qui lisent les mêmes ids ne réservent jamais la même ligne.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxEntity e SET e.statut = 'EN_COURS', " +
+           "e.reservePar = :proprietaire, e.reserveJusquA = :jusquA " +
+           "WHERE e.id IN :ids AND ((e.statut = 'EN_ATTENTE' AND e.prochainEssai <= :maintenant) " +
+           "OR (e.statut = 'EN_COURS' AND e.reserveJusquA < :maintenant))")
+    int reserver(@Param("ids") Collection<Long> ids,
+                 @Param("proprietaire") String proprietaire,
+                 @Param("maintenant") LocalDateTime maintenant,
+                 @Param("jusquA") LocalDateTime jusquA);
+
+    /** Lignes effectivement réservées par {@link #reserver} (même propriétaire et même échéance). */
+    @Query("SELECT e FROM EmailOutboxEntity e WHERE e.id IN :ids " +
+           "AND e.statut = 'EN_COURS' AND e.reservePar = :proprietaire AND e.reserveJusquA = :jusquA")
+    List<EmailOutboxEntity> findReserves(@Param("ids") Collection<Long> ids,
+                                         @Param("proprietaire") String proprietaire,
+                                         @Param("jusquA") LocalDateTime jusquA);
+
+    /**
+     * Email accepté par Brevo. Comme {@link #reprogrammer}, {@link #marquerEchec} et
+     * {@link #liberer} : seulement si la ligne est encore réservée par {@code proprietaire}
+     * (réservation expirée puis reprise par une autre instance → 0 ligne modifiée).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxEntity e SET e.statut = 'ENVOYE', e.dateEnvoi = :maintenant, " +
+           "e.tentatives = e.tentatives + 1, e.reservePar = NULL, e.reserveJusquA = NULL, e.derniereErreur = NULL " +
+           "WHERE e.id = :id AND e.reservePar = :proprietaire")
+    int marquerEnvoye(@Param("id") Long id,
+                      @Param("proprietaire") String proprietaire,
+                      @Param("maintenant") LocalDateTime maintenant);
+
+    /** Échec temporaire : la ligne repasse EN_ATTENTE jusqu'à {@code prochainEssai}. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxEntity e SET e.statut = 'EN_ATTENTE', e.prochainEssai = :prochainEssai, " +
+           "e.tentatives = e.tentatives + 1, e.reservePar = NULL, e.reserveJusquA = NULL, e.derniereErreur = :erreur " +
+           "WHERE e.id = :id AND e.reservePar = :proprietaire")
+    int reprogrammer(@Param("id") Long id,
+                     @Param("proprietaire") String proprietaire,
+                     @Param("prochainEssai") LocalDateTime prochainEssai,
+                     @Param("erreur") String erreur);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxEntity e SET e.statut = 'ECHEC', e.tentatives = e.tentatives + 1, " +
+           "e.reservePar = NULL, e.reserveJusquA = NULL, e.derniereErreur = :erreur " +
+           "WHERE e.id = :id AND e.reservePar = :proprietaire")
+    int marquerEchec(@Param("id") Long id,
+                     @Param("proprietaire") String proprietaire,
+                     @Param("erreur") String erreur);
+
+    /** Ligne réservée mais non envoyée (arrêt de l'instance) : rendue sans compter de tentative. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxEntity e SET e.statut = 'EN_ATTENTE', e.reservePar = NULL, e.reserveJusquA = NULL " +
+           "WHERE e.id IN :ids AND e.statut = 'EN_COURS' AND e.reservePar = :proprietaire")
+    int liberer(@Param("ids") Collection<Long> ids, @Param("proprietaire") String proprietaire);
+
+    @Query("SELECT e.statut, COUNT(e) FROM EmailOutboxEntity e GROUP BY e.statut")
+    List<Object[]> countParStatut();
+
+    /** Purge des emails d'un statut terminé (ENVOYE, ECHEC) créés avant {@code avant}. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EmailOutboxEntity e WHERE e.statut = :statut AND e.dateCreation < :avant")
+    int deleteParStatutAvant(@Param("statut") EmailOutboxEntity.Statut statut,
+                             @Param("avant") LocalDateTime avant);
+}
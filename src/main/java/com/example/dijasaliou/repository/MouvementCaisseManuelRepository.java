@@ -4,6 +4,7 @@ import com.example.dijasaliou.entity.CompteCaisse;
 import com.example.dijasaliou.entity.MouvementCaisseManuelEntity;
 import com.example.dijasaliou.entity.MouvementCaisseManuelEntity.TypeMouvement;
 import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -28,6 +29,21 @@ public interface MouvementCaisseManuelRepository extends JpaRepository<Mouvement
                                                           @Param("debut") LocalDateTime debut,
                                                           @Param("fin") LocalDateTime fin);
 
+    /** Historique paginé par clé : mouvements strictement avant le curseur, triés par (date, id) DESC. */
+    @Query("""
+            SELECT m FROM MouvementCaisseManuelEntity m
+            WHERE m.tenant = :tenant
+              AND m.dateMouvement >= :debut
+              AND (m.dateMouvement < :avantDate
+                   OR (m.dateMouvement = :avantDate AND (:avantId IS NULL OR m.id < :avantId)))
+            ORDER BY m.dateMouvement DESC, m.id DESC
+            """)
+    List<MouvementCaisseManuelEntity> findHistoriqueAvant(@Param("tenant") TenantEntity tenant,
+                                                          @Param("debut") LocalDateTime debut,
+                                                          @Param("avantDate") LocalDateTime avantDate,
+                                                          @Param("avantId") String avantId,
+                                                          Pageable pageable);
+
     /** Somme des mouvements d'un type et d'un compte entre deux dates. */
     @Query("""
             SELECT COALESCE(SUM(m.montant), 0) FROM MouvementCaisseManuelEntity m
@@ -56,6 +72,19 @@ public interface MouvementCaisseManuelRepository extends JpaRepository<Mouvement
                                                        @Param("debut") LocalDateTime debut,
                                                        @Param("fin") LocalDateTime fin);
 
+    /** Série de soldes de caisse : mouvements GROUPÉS par (jour, compte, type) en une query. */
+    @Query("""
+            SELECT CAST(m.dateMouvement AS LocalDate), m.compte, m.typeMouvement, COALESCE(SUM(m.montant), 0)
+            FROM MouvementCaisseManuelEntity m
+            WHERE m.tenant = :tenant
+              AND m.dateMouvement >= :debut
+              AND m.dateMouvement <= :fin
+            GROUP BY CAST(m.dateMouvement AS LocalDate), m.compte, m.typeMouvement
+            """)
+    java.util.List<Object[]> sumParJourCompteEtTypeGrouped(@Param("tenant") TenantEntity tenant,
+                                                           @Param("debut") LocalDateTime debut,
+                                                           @Param("fin") LocalDateTime fin);
+
     /** Supprime tous les mouvements manuels d'un tenant. Utilisé par DELETE /api/caisse. */
     @org.springframework.transaction.annotation.Transactional
     @org.springframework.data.jpa.repository.Modifying
@@ -2,6 +2,7 @@ package com.example.dijasaliou.repository;
 
 import com.example.dijasaliou.entity.CreditClientEntity;
 import com.example.dijasaliou.entity.PaiementCreditEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,19 +20,6 @@ public interface PaiementCreditRepository extends JpaRepository<PaiementCreditEn
 
     List<PaiementCreditEntity> findByCreditOrderByCreatedDateDesc(CreditClientEntity credit);
 
-    /**
-     * Agrège les remboursements de crédits par mode de paiement sur une période.
-     * Retourne Object[] : [modePaiement, count, sum(montantPaye)]
-     */
-    @Query("SELECT p.modePaiement, COUNT(p), COALESCE(SUM(p.montantPaye), 0) " +
-           "FROM PaiementCreditEntity p " +
-           "WHERE p.datePaiement BETWEEN :debut AND :fin " +
-           "AND p.credit.tenant.tenantUuid = :tenantUuid " +
-           "GROUP BY p.modePaiement")
-    List<Object[]> sumParModeEtPeriode(@Param("debut") LocalDate debut,
-                                       @Param("fin") LocalDate fin,
-                                       @Param("tenantUuid") String tenantUuid);
-
     /**
      * Somme des remboursements de crédits pour un mode de paiement donné,
      * entre deux dates au sens {@code datePaiement} (date métier saisie par
@@ -64,6 +52,62 @@ public interface PaiementCreditRepository extends JpaRepository<PaiementCreditEn
                                               @Param("debut") LocalDate debut,
                                               @Param("fin") LocalDate fin);
 
+    /** Série de soldes de caisse : paiements crédit GROUPÉS par (jour, mode) en une query. */
+    @Query("""
+            SELECT p.datePaiement, p.modePaiement, COALESCE(SUM(p.montantPaye), 0)
+            FROM PaiementCreditEntity p
+            WHERE p.credit.tenant = :tenant
+              AND p.datePaiement >= :debut
+              AND p.datePaiement <= :fin
+            GROUP BY p.datePaiement, p.modePaiement
+            """)
+    java.util.List<Object[]> sumParJourEtModeGrouped(@Param("tenant") TenantEntity tenant,
+                                                     @Param("debut") LocalDate debut,
+                                                     @Param("fin") LocalDate fin);
+
+    /**
+     * Agrégats journaliers (rollup_jour) : nombre et montant des paiements crédit GROUPÉS par (jour, mode).
+     * Résultat : List<[LocalDate, ModePaiement, Long, BigDecimal]>.
+     */
+    @Query("""
+            SELECT p.datePaiement, p.modePaiement, COUNT(p), COALESCE(SUM(p.montantPaye), 0)
+            FROM PaiementCreditEntity p
+            WHERE p.credit.tenant = :tenant
+              AND p.datePaiement >= :debut
+              AND p.datePaiement <= :fin
+            GROUP BY p.datePaiement, p.modePaiement
+            """)
+    java.util.List<Object[]> sumRollupParJour(@Param("tenant") TenantEntity tenant,
+                                              @Param("debut") LocalDate debut,
+                                              @Param("fin") LocalDate fin);
+
+    /** Date du plus ancien paiement crédit du tenant (null si aucun). */
+    @Query("SELECT MIN(p.datePaiement) FROM PaiementCreditEntity p WHERE p.credit.tenant = :tenant")
+    LocalDate findPremiereDatePaiement(@Param("tenant") TenantEntity tenant);
+
+    /**
+     * Historique de caisse paginé par clé : paiements crédit strictement avant le
+     * curseur (jour, id), triés par (datePaiement, id) DESC.
+     * Résultat : List<[id, datePaiement, ModePaiement, montantPaye, nomClient, employeId]>.
+     */
+    @Query("""
+            SELECT p.id, p.datePaiement, p.modePaiement, p.montantPaye, cl.nom, e.id
+            FROM PaiementCreditEntity p
+            JOIN p.credit c
+            JOIN c.client cl
+            LEFT JOIN p.employe e
+            WHERE c.tenant = :tenant
+              AND p.datePaiement >= :debut
+              AND (p.datePaiement < :avantDate
+                   OR (p.datePaiement = :avantDate AND (:avantId IS NULL OR p.id < :avantId)))
+            ORDER BY p.datePaiement DESC, p.id DESC
+            """)
+    java.util.List<Object[]> findHistoriqueCaisseAvant(@Param("tenant") TenantEntity tenant,
+                                                       @Param("debut") LocalDate debut,
+                                                       @Param("avantDate") LocalDate avantDate,
+                                                       @Param("avantId") String avantId,
+                                                       Pageable pageable);
+
     /**
      * Total des paiements crédit reçus sur une période (tous modes confondus).
      * Sert au CA en comptabilité de caisse : un paiement crédit est de l'argent vraiment encaissé.
@@ -0,0 +1,65 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.RollupJourEtatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository de l'état des agrégats journaliers (rollup_jour_etat).
+ * Filtre tenant EXPLICITE partout.
+ */
+@Repository
+public interface RollupJourEtatRepository extends JpaRepository<RollupJourEtatEntity, Long> {
+
+    @Query("SELECT e FROM RollupJourEtatEntity e WHERE e.tenant = :tenant")
+    Optional<RollupJourEtatEntity> findByTenant(@Param("tenant") TenantEntity tenant);
+
+    /** Dernier jour agrégé par tenant de la tranche {@code tranche} : [tenantId, calculeJusquAu]. */
+    @Query("SELECT e.tenant.id, e.calculeJusquAu FROM RollupJourEtatEntity e " +
+           "WHERE MOD(e.tenant.id, :nbTranches) = :tranche")
+    List<Object[]> findCalculeJusquAuParTenant(@Param("nbTranches") int nbTranches,
+                                               @Param("tranche") int tranche);
+
+    /**
+     * Enregistre l'avancement du job si la version vaut encore {@code version}.
+     * @return 0 si une invalidation est passée entre-temps (avancement à refaire)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            UPDATE RollupJourEtatEntity e
+            SET e.calculeJusquAu = :jusquAu, e.version = e.version + 1
+            WHERE e.tenant = :tenant AND e.version = :version
+            """)
+    int avancerSiVersion(@Param("tenant") TenantEntity tenant,
+                         @Param("jusquAu") LocalDate jusquAu,
+                         @Param("version") Long version);
+
+    /** Invalidation : signale aux calculs en cours que leurs lectures sont peut-être périmées. */
+    @Modifying
+    @Query("UPDATE RollupJourEtatEntity e SET e.version = e.version + 1 WHERE e.tenant = :tenant")
+    int incrementerVersion(@Param("tenant") TenantEntity tenant);
+
+    /** Invalidation : ramène le dernier jour agrégé à {@code veille} s'il est au-delà. */
+    @Modifying
+    @Query("""
+            UPDATE RollupJourEtatEntity e SET e.calculeJusquAu = :veille
+            WHERE e.tenant = :tenant AND e.calculeJusquAu > :veille
+            """)
+    int reculer(@Param("tenant") TenantEntity tenant, @Param("veille") LocalDate veille);
+
+    /** Remise à zéro (backfill FIFO, reconstruction) : le job rétablira le point de départ. */
+    @Modifying
+    @Query("""
+            UPDATE RollupJourEtatEntity e SET e.calculeJusquAu = NULL, e.version = e.version + 1
+            WHERE e.tenant = :tenant
+            """)
+    int reinitialiser(@Param("tenant") TenantEntity tenant);
+}
@@ -0,0 +1,55 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.RollupJourEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository des agrégats journaliers de reporting (rollup_jour).
+ * Filtre tenant EXPLICITE partout — utilisable depuis les jobs planifiés.
+ */
+@Repository
+public interface RollupJourRepository extends JpaRepository<RollupJourEntity, Long> {
+
+    /**
+     * Totaux d'une période GROUPÉS par (mode, type de sortie) : au plus quelques
+     * dizaines de lignes, quelle que soit la longueur de la période.
+     * Résultat : List<[mode, typeSortie, nbVentes, montantVentes, coutFifo, beneficeFifo,
+     * nbVentesFifo, nbPaiementsCredit, montantPaiementsCredit, nbAchats, montantAchats,
+     * nbDepenses, montantDepenses]>.
+     */
+    @Query("""
+            SELECT r.modePaiement, r.typeSortie,
+                   SUM(r.nbVentes), SUM(r.montantVentes), SUM(r.coutFifo), SUM(r.beneficeFifo),
+                   SUM(r.nbVentesFifo), SUM(r.nbPaiementsCredit), SUM(r.montantPaiementsCredit),
+                   SUM(r.nbAchats), SUM(r.montantAchats), SUM(r.nbDepenses), SUM(r.montantDepenses)
+            FROM RollupJourEntity r
+            WHERE r.tenant = :tenant
+              AND r.jour >= :debut
+              AND r.jour <= :fin
+            GROUP BY r.modePaiement, r.typeSortie
+            """)
+    List<Object[]> sumParModeEtType(@Param("tenant") TenantEntity tenant,
+                                    @Param("debut") LocalDate debut,
+                                    @Param("fin") LocalDate fin);
+
+    /** Nombre de ventes agrégées jusqu'à un jour inclus (toutes périodes, tous modes). */
+    @Query("SELECT COALESCE(SUM(r.nbVentes), 0) FROM RollupJourEntity r WHERE r.tenant = :tenant AND r.jour <= :fin")
+    long sumNbVentesJusquAu(@Param("tenant") TenantEntity tenant, @Param("fin") LocalDate fin);
+
+    /** Supprime les agrégats à partir d'un jour (écriture antidatée, reprise du job). */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM RollupJourEntity r WHERE r.tenant = :tenant AND r.jour >= :jour")
+    int deleteDepuis(@Param("tenant") TenantEntity tenant, @Param("jour") LocalDate jour);
+
+    @Modifying
+    @Query("DELETE FROM RollupJourEntity r WHERE r.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
+}
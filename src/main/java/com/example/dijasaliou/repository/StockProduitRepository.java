@@ -0,0 +1,59 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.StockProduitEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository du ledger de stock (stock_produit).
+ * Filtre tenant EXPLICITE partout — utilisable depuis les jobs planifiés.
+ */
+@Repository
+public interface StockProduitRepository extends JpaRepository<StockProduitEntity, Long> {
+
+    /** Lignes affichables dans la liste stock (produits ayant au moins un achat). */
+    @Query("SELECT s FROM StockProduitEntity s WHERE s.tenant = :tenant AND s.nbAchats > 0")
+    List<StockProduitEntity> findAvecAchatsByTenant(@Param("tenant") TenantEntity tenant);
+
+    @Query("SELECT s FROM StockProduitEntity s WHERE s.tenant = :tenant")
+    List<StockProduitEntity> findAllByTenant(@Param("tenant") TenantEntity tenant);
+
+    @Query("SELECT s FROM StockProduitEntity s WHERE s.tenant = :tenant AND s.nomNormalise = :nom")
+    Optional<StockProduitEntity> findByTenantAndNom(@Param("tenant") TenantEntity tenant,
+                                                    @Param("nom") String nomNormalise);
+
+    /**
+     * Verrou pessimiste sur la ligne d'un produit — sérialise deux ventes
+     * simultanées du même produit (pas de mise à jour perdue sur les cumuls).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StockProduitEntity s WHERE s.tenant = :tenant AND s.nomNormalise = :nom")
+    Optional<StockProduitEntity> findForUpdate(@Param("tenant") TenantEntity tenant,
+                                               @Param("nom") String nomNormalise);
+
+    /**
+     * Verrou pessimiste sur les lignes de plusieurs produits en une requête (panier).
+     * Ordre fixe par nom : deux paniers concurrents prennent les verrous dans le même ordre.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StockProduitEntity s WHERE s.tenant = :tenant AND s.nomNormalise IN :noms ORDER BY s.nomNormalise")
+    List<StockProduitEntity> findAllForUpdate(@Param("tenant") TenantEntity tenant,
+                                              @Param("noms") Collection<String> nomsNormalises);
+
+    @Query("SELECT COUNT(s) > 0 FROM StockProduitEntity s WHERE s.tenant = :tenant")
+    boolean existsByTenant(@Param("tenant") TenantEntity tenant);
+
+    @Modifying
+    @Query("DELETE FROM StockProduitEntity s WHERE s.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
+}
@@ -2,8 +2,14 @@ package com.example.dijasaliou.repository;
 
 import com.example.dijasaliou.entity.SuperAdminPushSubscription;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +21,15 @@ public interface SuperAdminPushSubscriptionRepository extends JpaRepository<Supe
     List<SuperAdminPushSubscription> findAll();
 
     void deleteByEndpoint(String endpoint);
+
+    /** Suppression en lot des subscriptions expirées (voir PushDispatcher). */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SuperAdminPushSubscription s WHERE s.endpoint IN :endpoints")
+    int deleteByEndpointEnLot(@Param("endpoints") Collection<String> endpoints);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SuperAdminPushSubscription s SET s.derniereUtilisation = :now WHERE s.id IN :ids")
+    int updateDerniereUtilisationEnLot(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,39 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.TacheVerrouEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository des verrous de tâches planifiées (tache_verrou).
+ * Données globales, pas de tenant.
+ */
+@Repository
+public interface TacheVerrouRepository extends JpaRepository<TacheVerrouEntity, String> {
+
+    /**
+     * Prend le verrou s'il est expiré — atomique : une seule instance voit 1.
+     * @return 0 si le verrou est détenu ou si la ligne n'existe pas encore
+     */
+    @Modifying
+    @Query("UPDATE TacheVerrouEntity v SET v.proprietaire = :proprietaire, " +
+           "v.verrouilleLe = :maintenant, v.verrouilleJusquA = :jusquA " +
+           "WHERE v.nom = :nom AND v.verrouilleJusquA <= :maintenant")
+    int prendre(@Param("nom") String nom,
+                @Param("proprietaire") String proprietaire,
+                @Param("maintenant") LocalDateTime maintenant,
+                @Param("jusquA") LocalDateTime jusquA);
+
+    /** Avance l'expiration d'un verrou encore détenu par cette instance. */
+    @Modifying
+    @Query("UPDATE TacheVerrouEntity v SET v.verrouilleJusquA = :jusquA " +
+           "WHERE v.nom = :nom AND v.proprietaire = :proprietaire")
+    int relacher(@Param("nom") String nom,
+                 @Param("proprietaire") String proprietaire,
+                 @Param("jusquA") LocalDateTime jusquA);
+}
@@ -30,6 +30,14 @@ public interface TenantRepository extends JpaRepository<TenantEntity, Long> {
      */
     Optional<TenantEntity> findByTenantUuid(String tenantUuid);
 
+    /**
+     * Verrou pessimiste sur la ligne du tenant — sérialise les initialisations
+     * concurrentes d'une structure par tenant (ex : ledger stock_produit).
+     */
+    @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TenantEntity t WHERE t.id = :id")
+    Optional<TenantEntity> findByIdForUpdate(@Param("id") Long id);
+
     /**
      * Vérifier si un UUID de tenant existe
      *
@@ -85,6 +93,14 @@ public interface TenantRepository extends JpaRepository<TenantEntity, Long> {
      */
     List<TenantEntity> findByDeletedFalse();
 
+    /**
+     * Tenants non supprimés de la tranche {@code tranche} parmi {@code nbTranches}
+     * (même répartition que TacheVerrouService.tranche) — crons découpés en tranches.
+     */
+    @Query("SELECT t FROM TenantEntity t WHERE t.deleted = false AND MOD(t.id, :nbTranches) = :tranche")
+    List<TenantEntity> findByDeletedFalseDansTranche(@Param("nbTranches") int nbTranches,
+                                                     @Param("tranche") int tranche);
+
     List<TenantEntity> findByDeletedTrue();
 
     long countByEssaiUtiliseTrue();
@@ -3,6 +3,7 @@ package com.example.dijasaliou.repository;
 import com.example.dijasaliou.entity.CompteCaisse;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.TransfertCaisseEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -27,6 +28,21 @@ public interface TransfertCaisseRepository extends JpaRepository<TransfertCaisse
                                                     @Param("debut") LocalDateTime debut,
                                                     @Param("fin") LocalDateTime fin);
 
+    /** Historique paginé par clé : transferts strictement avant le curseur, triés par (date, id) DESC. */
+    @Query("""
+            SELECT t FROM TransfertCaisseEntity t
+            WHERE t.tenant = :tenant
+              AND t.dateTransfert >= :debut
+              AND (t.dateTransfert < :avantDate
+                   OR (t.dateTransfert = :avantDate AND (:avantId IS NULL OR t.id < :avantId)))
+            ORDER BY t.dateTransfert DESC, t.id DESC
+            """)
+    List<TransfertCaisseEntity> findHistoriqueAvant(@Param("tenant") TenantEntity tenant,
+                                                    @Param("debut") LocalDateTime debut,
+                                                    @Param("avantDate") LocalDateTime avantDate,
+                                                    @Param("avantId") String avantId,
+                                                    Pageable pageable);
+
     /** Somme des transferts SORTANT d'un compte entre deux dates. */
     @Query("""
             SELECT COALESCE(SUM(t.montant), 0) FROM TransfertCaisseEntity t
@@ -79,6 +95,23 @@ public interface TransfertCaisseRepository extends JpaRepository<TransfertCaisse
                                                 @Param("debut") LocalDateTime debut,
                                                 @Param("fin") LocalDateTime fin);
 
+    /**
+     * Série de soldes de caisse : transferts GROUPÉS par (jour, source, destination)
+     * en une query — chaque ligne débite la source et crédite la destination.
+     */
+    @Query("""
+            SELECT CAST(t.dateTransfert AS LocalDate), t.compteSource, t.compteDestination,
+                   COALESCE(SUM(t.montant), 0)
+            FROM TransfertCaisseEntity t
+            WHERE t.tenant = :tenant
+              AND t.dateTransfert >= :debut
+              AND t.dateTransfert <= :fin
+            GROUP BY CAST(t.dateTransfert AS LocalDate), t.compteSource, t.compteDestination
+            """)
+    java.util.List<Object[]> sumParJourEtComptesGrouped(@Param("tenant") TenantEntity tenant,
+                                                        @Param("debut") LocalDateTime debut,
+                                                        @Param("fin") LocalDateTime fin);
+
     /** Supprime tous les transferts d'un tenant. Utilisé par DELETE /api/caisse. */
     @org.springframework.transaction.annotation.Transactional
     @org.springframework.data.jpa.repository.Modifying
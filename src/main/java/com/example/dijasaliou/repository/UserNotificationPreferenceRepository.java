@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,4 +30,25 @@ public interface UserNotificationPreferenceRepository
     List<UserNotificationPreference> findEnabledByTenantAndType(
             @Param("tenant") TenantEntity tenant,
             @Param("type") UserNotificationType type);
+
+    /**
+     * Préférences d'un lot d'utilisateurs pour quelques types, en une requête
+     * (crons de résumé : une lecture par tick au lieu d'une par user et par type).
+     */
+    @Query("SELECT p FROM UserNotificationPreference p " +
+           "WHERE p.user IN :users AND p.type IN :types")
+    List<UserNotificationPreference> findByUsersAndTypes(
+            @Param("users") Collection<UserEntity> users,
+            @Param("types") Collection<UserNotificationType> types);
+
+    /**
+     * Préférences d'un lot d'utilisateurs pour quelques types, limitées à celles dont
+     * l'heure d'envoi est {@code heure} (cron des résumés).
+     */
+    @Query("SELECT p FROM UserNotificationPreference p " +
+           "WHERE p.user IN :users AND p.type IN :types AND p.heureEnvoi = :heure")
+    List<UserNotificationPreference> findByUsersAndTypesAndHeureEnvoi(
+            @Param("users") Collection<UserEntity> users,
+            @Param("types") Collection<UserNotificationType> types,
+            @Param("heure") int heure);
 }
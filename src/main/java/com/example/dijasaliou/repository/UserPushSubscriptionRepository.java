@@ -4,9 +4,14 @@ import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.UserPushSubscription;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,7 +40,36 @@ public interface UserPushSubscriptionRepository extends JpaRepository<UserPushSu
            "WHERE s.user.deleted = false AND s.user.tenant.deleted = false")
     List<UserEntity> findDistinctSubscribedUsers();
 
+    /**
+     * Utilisateurs d'un rôle ayant au moins une subscription, avec leur tenant
+     * chargé dans la même requête (regroupement par tenant sans requête par user).
+     * Mêmes exclusions que {@link #findDistinctSubscribedUsers()}.
+     * Limité aux tenants de la tranche {@code tranche} (même répartition que
+     * TacheVerrouService.tranche) : chaque tranche ne lit que ses tenants.
+     */
+    @Query("SELECT u FROM UserEntity u JOIN FETCH u.tenant t " +
+           "WHERE u.role = :role AND u.deleted = false AND t.deleted = false " +
+           "AND MOD(t.id, :nbTranches) = :tranche " +
+           "AND EXISTS (SELECT 1 FROM UserPushSubscription s WHERE s.user = u)")
+    List<UserEntity> findSubscribedUsersWithTenantByRole(@Param("role") UserEntity.Role role,
+                                                         @Param("nbTranches") int nbTranches,
+                                                         @Param("tranche") int tranche);
+
     void deleteByEndpoint(String endpoint);
 
+    /**
+     * Suppression en lot des subscriptions expirées (404/410 du service push),
+     * appliquée périodiquement par {@link com.example.dijasaliou.service.PushDispatcher}.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserPushSubscription s WHERE s.endpoint IN :endpoints")
+    int deleteByEndpointEnLot(@Param("endpoints") Collection<String> endpoints);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserPushSubscription s SET s.derniereUtilisation = :now WHERE s.id IN :ids")
+    int updateDerniereUtilisationEnLot(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
     void deleteByUser(UserEntity user);
 }
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -106,13 +107,23 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
 
     /**
      * Met à jour derniereConnexion sans charger l'entité complète.
-     * Appelé par ActivityTrackingFilter à chaque requête authentifiée (throttlé à 5 min).
      */
     @Modifying
     @Transactional
     @Query("UPDATE UserEntity u SET u.derniereConnexion = :now WHERE u.email = :email")
     void updateDerniereConnexion(@Param("email") String email, @Param("now") LocalDateTime now);
 
+    /**
+     * Met à jour derniereConnexion d'un lot d'utilisateurs en une seule requête.
+     * Appelé par ActiviteUtilisateurService (write-behind) à chaque flush.
+     *
+     * @return Nombre de lignes mises à jour
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserEntity u SET u.derniereConnexion = :now WHERE u.email IN :emails")
+    int updateDerniereConnexionEnLot(@Param("emails") Collection<String> emails, @Param("now") LocalDateTime now);
+
     /**
      * Utilisateurs non vérifiés inscrits depuis `since`, en excluant un rôle (ex. SUPER_ADMIN).
      * Utilisé pour le renvoi en masse des emails de vérification (cf. SuperAdminService).
@@ -3,12 +3,14 @@ package com.example.dijasaliou.repository;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.VenteLotConsommationEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,6 +26,25 @@ public interface VenteLotConsommationRepository
     /** Lignes de consommation d'une vente donnée (filtre tenant via Hibernate filter). */
     List<VenteLotConsommationEntity> findByVenteId(String venteId);
 
+    /** Lignes de consommation de plusieurs ventes (rejeu FIFO incrémental). */
+    List<VenteLotConsommationEntity> findByVenteIdIn(Collection<String> venteIds);
+
+    /**
+     * Quantité consommée par lot, pour une liste de lots.
+     * Retourne List<Object[]> : [achatId, sum(quantiteConsommee)].
+     */
+    @Query("""
+            SELECT c.achat.id, SUM(c.quantiteConsommee)
+            FROM VenteLotConsommationEntity c
+            WHERE c.achat.id IN :achatIds
+            GROUP BY c.achat.id
+            """)
+    List<Object[]> sumQuantiteConsommeeParAchat(@Param("achatIds") Collection<String> achatIds);
+
+    /** Date de la plus ancienne vente ayant puisé dans ce lot (null si aucune). */
+    @Query("SELECT MIN(c.dateVenteSnapshot) FROM VenteLotConsommationEntity c WHERE c.achat.id = :achatId")
+    LocalDateTime findPremiereDateVenteParAchat(@Param("achatId") String achatId);
+
     /** Lignes de consommation d'un achat (utile pour rollback ou audit). */
     List<VenteLotConsommationEntity> findByAchatId(String achatId);
 
@@ -148,6 +169,27 @@ public interface VenteLotConsommationRepository
                                             @Param("debut") LocalDateTime debut,
                                             @Param("fin")   LocalDateTime fin);
 
+    /**
+     * Agrégats journaliers (rollup_jour) : coût FIFO, bénéfice FIFO et nombre de ventes
+     * distinctes GROUPÉS par (jour, mode de la vente, type de sortie de la vente).
+     * Résultat : List<[LocalDate, ModePaiementVente, TypeSortie, coût, bénéfice, Long]>.
+     * Chaque vente tombe dans un seul groupe : les nombres de ventes s'additionnent.
+     */
+    @Query("""
+            SELECT CAST(v.dateVenteSnapshot AS LocalDate), ve.modePaiement, ve.typeSortie,
+                   COALESCE(SUM(v.prixAchatUnitaireSnapshot * v.quantiteConsommee), 0),
+                   COALESCE(SUM(v.beneficeTotalLigne), 0),
+                   COUNT(DISTINCT ve.id)
+            FROM VenteLotConsommationEntity v
+            JOIN v.vente ve
+            WHERE v.tenant = :tenant
+              AND v.dateVenteSnapshot BETWEEN :debut AND :fin
+            GROUP BY CAST(v.dateVenteSnapshot AS LocalDate), ve.modePaiement, ve.typeSortie
+            """)
+    List<Object[]> sumRollupParJour(@Param("tenant") TenantEntity tenant,
+                                    @Param("debut") LocalDateTime debut,
+                                    @Param("fin")   LocalDateTime fin);
+
     /**
      * Coût FIFO total d'une vente précise (= somme des prix_achat × quantité de toutes ses lignes).
      * Sert au calcul prorata du coût pour un paiement crédit partiel.
@@ -174,6 +216,24 @@ public interface VenteLotConsommationRepository
     BigDecimal sumBeneficeByVenteId(@Param("venteId") String venteId,
                                     @Param("tenant") TenantEntity tenant);
 
+    /**
+     * Coût d'achat FIFO et bénéfice FIFO par vente, pour une liste de ventes — une requête
+     * au lieu de deux par vente (statistiques de bénéfice : paiements crédit, crédits en perte).
+     * Retourne List<Object[]> : [venteId, sum(prixAchat × quantité), sum(benefice_total_ligne)].
+     * Les ventes sans ligne de consommation sont absentes du résultat.
+     */
+    @Query("""
+            SELECT v.vente.id,
+                   COALESCE(SUM(v.prixAchatUnitaireSnapshot * v.quantiteConsommee), 0),
+                   COALESCE(SUM(v.beneficeTotalLigne), 0)
+            FROM VenteLotConsommationEntity v
+            WHERE v.vente.id IN :venteIds
+              AND v.tenant = :tenant
+            GROUP BY v.vente.id
+            """)
+    List<Object[]> sumCoutEtBeneficeParVente(@Param("venteIds") Collection<String> venteIds,
+                                             @Param("tenant") TenantEntity tenant);
+
     /** Supprime toutes les lignes liées à une vente (utilisé lors d'une suppression de vente). */
     void deleteByVenteId(String venteId);
 
@@ -196,4 +256,9 @@ public interface VenteLotConsommationRepository
             GROUP BY v.vente.nomProduit
             """)
     List<Object[]> sumBeneficeAndQuantiteByProduit(@Param("tenant") TenantEntity tenant);
+
+    /** Supprime toutes les lignes de consommation d'un tenant en un seul DELETE (backfill FIFO). */
+    @Modifying
+    @Query("DELETE FROM VenteLotConsommationEntity c WHERE c.tenant = :tenant")
+    int deleteAllByTenant(@Param("tenant") TenantEntity tenant);
 }
@@ -1,5 +1,6 @@
 package com.example.dijasaliou.repository;
 
+import com.example.dijasaliou.entity.CreditClientEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.VenteEntity;
@@ -11,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -35,6 +37,21 @@ public interface VenteRepository extends JpaRepository<VenteEntity, String> {
     @Query("SELECT v FROM VenteEntity v WHERE LOWER(v.nomProduit) LIKE LOWER(CONCAT('%', :keyword, '%')) AND v.tenant = :tenant")
     List<VenteEntity> findByNomProduitContainingAndTenant(@Param("keyword") String keyword, @Param("tenant") TenantEntity tenant);
 
+    /**
+     * Agrégats de stock par produit NORMALISÉ (LOWER/TRIM) — même clé que StockService.
+     * Retourne List<Object[]> : [nomNormalise, sum(quantite), sum(prix × quantite)].
+     * nomNormalise = null → tous les produits du tenant.
+     */
+    @Query("""
+            SELECT LOWER(TRIM(v.nomProduit)), SUM(v.quantite), SUM(v.prixUnitaire * v.quantite)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND (:nomNormalise IS NULL OR LOWER(TRIM(v.nomProduit)) = :nomNormalise)
+            GROUP BY LOWER(TRIM(v.nomProduit))
+            """)
+    List<Object[]> agregerStockParProduit(@Param("tenant") TenantEntity tenant,
+                                          @Param("nomNormalise") String nomNormalise);
+
     // Recherche par utilisateur
     List<VenteEntity> findByUtilisateur(UserEntity utilisateur);
 
@@ -76,10 +93,100 @@ public interface VenteRepository extends JpaRepository<VenteEntity, String> {
     List<VenteEntity> findAllByTenant(@Param("tenant") TenantEntity tenant);
 
     /**
-     * Toutes les ventes d'un tenant triées par date de vente ASC (pour le backfill FIFO).
+     * Rejeu FIFO incrémental : ventes d'un produit à partir d'une date, triées
+     * comme le rejeu (date_vente, id). Filtre tenant EXPLICITE.
+     */
+    @Query("""
+            SELECT v FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.nomProduit = :nomProduit
+              AND v.dateVente >= :depuis
+            ORDER BY v.dateVente ASC, v.id ASC
+            """)
+    List<VenteEntity> findVentesProduitDepuis(@Param("nomProduit") String nomProduit,
+                                              @Param("tenant") TenantEntity tenant,
+                                              @Param("depuis") LocalDateTime depuis);
+
+    /** Backfill FIFO : noms de produit (exacts) ayant au moins une vente. */
+    @Query("SELECT DISTINCT v.nomProduit FROM VenteEntity v WHERE v.tenant = :tenant ORDER BY v.nomProduit")
+    List<String> findNomsProduitsVendus(@Param("tenant") TenantEntity tenant);
+
+    /**
+     * Backfill FIFO : première tranche des ventes d'un produit (nom exact, comme
+     * findVentesProduitDepuis), triées par (date_vente, id).
+     * Retourne List<Object[]> : [id, quantite, prixUnitaire, dateVente].
+     */
+    @Query("""
+            SELECT v.id, v.quantite, v.prixUnitaire, v.dateVente
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.nomProduit = :nomProduit
+            ORDER BY v.dateVente ASC, v.id ASC
+            """)
+    List<Object[]> findPremiereTrancheBackfill(@Param("tenant") TenantEntity tenant,
+                                               @Param("nomProduit") String nomProduit,
+                                               Pageable limite);
+
+    /**
+     * Backfill FIFO : tranche suivante (pagination par curseur sur (date_vente, id),
+     * sans OFFSET — coût constant quelle que soit la position dans l'historique).
      */
-    @Query("SELECT v FROM VenteEntity v WHERE v.tenant = :tenant ORDER BY v.dateVente ASC, v.id ASC")
-    List<VenteEntity> findAllByTenantOrderByDateAsc(@Param("tenant") TenantEntity tenant);
+    @Query("""
+            SELECT v.id, v.quantite, v.prixUnitaire, v.dateVente
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.nomProduit = :nomProduit
+              AND (v.dateVente > :apresDate OR (v.dateVente = :apresDate AND v.id > :apresId))
+            ORDER BY v.dateVente ASC, v.id ASC
+            """)
+    List<Object[]> findTrancheBackfillApres(@Param("tenant") TenantEntity tenant,
+                                            @Param("nomProduit") String nomProduit,
+                                            @Param("apresDate") LocalDateTime apresDate,
+                                            @Param("apresId") String apresId,
+                                            Pageable limite);
+
+    /**
+     * Export des ventes : tranche suivant le curseur (apresDate, apresId), triée par (date, id).
+     * apresId null → tranche commençant à apresDate incluse (première tranche : apresDate = début).
+     * Projection scalaire, sans OFFSET : mémoire et coût constants quelle que soit la taille de l'export.
+     * Résultat : List<[id, dateVente, nomProduit, codeBarre, quantite, unite, prixUnitaire, prixTotal,
+     *                  ModePaiementVente, estSoldee, client, TypeSortie]>.
+     */
+    @Query("""
+            SELECT v.id, v.dateVente, v.nomProduit, v.codeBarre, v.quantite, v.unite,
+                   v.prixUnitaire, v.prixTotal, v.modePaiement, v.estSoldee, v.client, v.typeSortie
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente < :finExclu
+              AND (v.dateVente > :apresDate
+                   OR (v.dateVente = :apresDate AND (:apresId IS NULL OR v.id > :apresId)))
+            ORDER BY v.dateVente ASC, v.id ASC
+            """)
+    List<Object[]> findTrancheExport(@Param("tenant") TenantEntity tenant,
+                                     @Param("apresDate") LocalDateTime apresDate,
+                                     @Param("apresId") String apresId,
+                                     @Param("finExclu") LocalDateTime finExclu,
+                                     Pageable limite);
+
+    /**
+     * Quantités vendues par produit NORMALISÉ (LOWER/TRIM) sur [debut, finExclu[ — export du stock.
+     * Résultat : List<[nomNormalise, sum(quantite)]>.
+     */
+    @Query("""
+            SELECT LOWER(TRIM(v.nomProduit)), SUM(v.quantite)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente < :finExclu
+            GROUP BY LOWER(TRIM(v.nomProduit))
+            """)
+    List<Object[]> sumQuantiteParProduitPeriode(@Param("tenant") TenantEntity tenant,
+                                                @Param("debut") LocalDateTime debut,
+                                                @Param("finExclu") LocalDateTime finExclu);
+
+    /** Nombre de ventes d'un tenant (progression du backfill FIFO). */
+    @Query("SELECT COUNT(v) FROM VenteEntity v WHERE v.tenant = :tenant")
+    long countByTenant(@Param("tenant") TenantEntity tenant);
 
     /**
      * Somme des ventes d'un tenant pour un mode de paiement, entre deux dates.
@@ -117,6 +224,134 @@ public interface VenteRepository extends JpaRepository<VenteEntity, String> {
             @Param("debut") LocalDateTime debut,
             @Param("fin") LocalDateTime fin);
 
+    /**
+     * Série de soldes de caisse : total des ventes GROUPÉ par (jour, mode) en une query.
+     * Résultat : List<[LocalDate, ModePaiementVente, BigDecimal]>.
+     */
+    @Query("""
+            SELECT CAST(v.dateVente AS LocalDate), v.modePaiement, COALESCE(SUM(v.prixTotal), 0)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente <= :fin
+            GROUP BY CAST(v.dateVente AS LocalDate), v.modePaiement
+            """)
+    java.util.List<Object[]> sumParJourEtModeGrouped(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /**
+     * Agrégats journaliers (rollup_jour) : nombre et montant des ventes GROUPÉS par
+     * (jour, mode, type de sortie) en une query.
+     * Résultat : List<[LocalDate, ModePaiementVente, TypeSortie, Long, BigDecimal]>.
+     */
+    @Query("""
+            SELECT CAST(v.dateVente AS LocalDate), v.modePaiement, v.typeSortie,
+                   COUNT(v), COALESCE(SUM(v.prixTotal), 0)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente <= :fin
+            GROUP BY CAST(v.dateVente AS LocalDate), v.modePaiement, v.typeSortie
+            """)
+    java.util.List<Object[]> sumRollupParJour(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin);
+
+    /** Date de la plus ancienne vente du tenant (null si aucune) — départ des agrégats journaliers. */
+    @Query("SELECT MIN(v.dateVente) FROM VenteEntity v WHERE v.tenant = :tenant")
+    LocalDateTime findPremiereDateVente(@Param("tenant") TenantEntity tenant);
+
+    /** Nombre de ventes du tenant à partir d'une date (complète rollup_jour après le dernier jour agrégé). */
+    @Query("SELECT COUNT(v) FROM VenteEntity v WHERE v.tenant = :tenant AND v.dateVente >= :depuis")
+    long countByTenantDepuis(@Param("tenant") TenantEntity tenant, @Param("depuis") LocalDateTime depuis);
+
+    /**
+     * Rapport PDF : nombre et total des ventes de la période [debut, finExclu[ et de la
+     * période précédente [debutPrev, debut[ en une seule query (agrégation conditionnelle).
+     * Résultat : une ligne [nb, total, nbPrev, totalPrev].
+     */
+    @Query("""
+            SELECT COALESCE(SUM(CASE WHEN v.dateVente >= :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN v.dateVente >= :debut THEN v.prixTotal ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN v.dateVente < :debut THEN 1 ELSE 0 END), 0),
+                   COALESCE(SUM(CASE WHEN v.dateVente < :debut THEN v.prixTotal ELSE 0 END), 0)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debutPrev
+              AND v.dateVente < :finExclu
+            """)
+    java.util.List<Object[]> sumComparaisonPeriodes(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debutPrev") LocalDateTime debutPrev,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu);
+
+    /**
+     * Rapport PDF : produits les plus vendus de la période, par CA décroissant
+     * (taille de la page = nombre de produits).
+     * Résultat : List<[nomProduit, quantité, CA]>.
+     */
+    @Query("""
+            SELECT v.nomProduit, COALESCE(SUM(v.quantite), 0), COALESCE(SUM(v.prixTotal), 0)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente < :finExclu
+            GROUP BY v.nomProduit
+            ORDER BY COALESCE(SUM(v.prixTotal), 0) DESC
+            """)
+    java.util.List<Object[]> findTopProduitsPeriode(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu,
+            Pageable limite);
+
+    /**
+     * Rapport PDF : dernières ventes de la période, de la plus récente à la plus ancienne
+     * (taille de la page = nombre de ventes).
+     * Résultat : List<[dateVente, nomProduit, quantite, prixTotal, ModePaiementVente]>.
+     */
+    @Query("""
+            SELECT v.dateVente, v.nomProduit, v.quantite, v.prixTotal, v.modePaiement
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente < :finExclu
+            ORDER BY v.dateVente DESC, v.id DESC
+            """)
+    java.util.List<Object[]> findDernieresVentesPeriode(
+            @Param("tenant") TenantEntity tenant,
+            @Param("debut") LocalDateTime debut,
+            @Param("finExclu") LocalDateTime finExclu,
+            Pageable limite);
+
+    /**
+     * Historique de caisse paginé par clé (keyset) : ventes encaissées (hors CREDIT)
+     * strictement avant le curseur (avantDate, avantId), triées par (date, id) DESC.
+     * avantId null → toute la journée avantDate incluse (première page).
+     * Résultat : List<[id, dateVente, ModePaiementVente, prixTotal, nomProduit, utilisateurId]>.
+     */
+    @Query("""
+            SELECT v.id, v.dateVente, v.modePaiement, v.prixTotal, v.nomProduit, v.utilisateur.id
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.modePaiement <> :modeHorsCaisse
+              AND v.dateVente >= :debut
+              AND (v.dateVente < :avantDate
+                   OR (v.dateVente = :avantDate AND (:avantId IS NULL OR v.id < :avantId)))
+            ORDER BY v.dateVente DESC, v.id DESC
+            """)
+    java.util.List<Object[]> findHistoriqueCaisseAvant(
+            @Param("tenant") TenantEntity tenant,
+            @Param("modeHorsCaisse") VenteEntity.ModePaiementVente modeHorsCaisse,
+            @Param("debut") LocalDateTime debut,
+            @Param("avantDate") LocalDateTime avantDate,
+            @Param("avantId") String avantId,
+            Pageable pageable);
+
     /**
      * Calcule le chiffre d'affaires d'une période directement en SQL (évite le chargement en mémoire).
      * Exclut systématiquement les sorties hors vente (typeSortie != null).
@@ -229,19 +464,44 @@ public interface VenteRepository extends JpaRepository<VenteEntity, String> {
      * Recherche paginée par utilisateur avec filtre optionnel et plage de dates
      */
     /**
-     * Agrège les ventes directes (hors CREDIT) par mode de paiement sur une période.
-     * Retourne Object[] : [modePaiement, count, sum(prixTotal)]
+     * Rapport des modes de paiement en un seul aller-retour (UNION ALL de trois agrégats) :
+     *   - 'VENTE'          : ventes directes hors CREDIT de la période, par mode ;
+     *   - 'CREDIT_RESTANT' : reste dû des crédits non soldés dont la vente est dans la période (une ligne) ;
+     *   - 'REMBOURSEMENT'  : paiements de crédits reçus dans la période, par mode.
+     * Retourne List<Object[]> : [source, mode, count, sum].
      */
-    @Query("SELECT v.modePaiement, COUNT(v), COALESCE(SUM(v.prixTotal), 0) " +
-           "FROM VenteEntity v " +
-           "WHERE v.dateVente BETWEEN :debut AND :fin " +
-           "AND v.modePaiement <> :creditMode " +
-           "AND v.tenant.tenantUuid = :tenantUuid " +
-           "GROUP BY v.modePaiement")
-    List<Object[]> sumDirectVentesParModeEtPeriode(@Param("debut") LocalDateTime debut,
-                                                   @Param("fin") LocalDateTime fin,
-                                                   @Param("creditMode") VenteEntity.ModePaiementVente creditMode,
-                                                   @Param("tenantUuid") String tenantUuid);
+    @Query("""
+            SELECT 'VENTE', CAST(v.modePaiement AS String), COUNT(v), COALESCE(SUM(v.prixTotal), 0)
+            FROM VenteEntity v
+            WHERE v.tenant = :tenant
+              AND v.dateVente >= :debut
+              AND v.dateVente < :finExclu
+              AND v.modePaiement <> :creditMode
+            GROUP BY v.modePaiement
+            UNION ALL
+            SELECT 'CREDIT_RESTANT', 'CREDIT', COUNT(c), COALESCE(SUM(c.montantRestant), 0)
+            FROM CreditClientEntity c
+            JOIN c.vente cv
+            WHERE c.tenant = :tenant
+              AND cv.dateVente >= :debut
+              AND cv.dateVente < :finExclu
+              AND c.statut <> :statutSolde
+            UNION ALL
+            SELECT 'REMBOURSEMENT', CAST(p.modePaiement AS String), COUNT(p), COALESCE(SUM(p.montantPaye), 0)
+            FROM PaiementCreditEntity p
+            JOIN p.credit pc
+            WHERE pc.tenant = :tenant
+              AND p.datePaiement >= :jourDebut
+              AND p.datePaiement <= :jourFin
+            GROUP BY p.modePaiement
+            """)
+    List<Object[]> sumRapportModePaiement(@Param("tenant") TenantEntity tenant,
+                                          @Param("debut") LocalDateTime debut,
+                                          @Param("finExclu") LocalDateTime finExclu,
+                                          @Param("jourDebut") LocalDate jourDebut,
+                                          @Param("jourFin") LocalDate jourFin,
+                                          @Param("creditMode") VenteEntity.ModePaiementVente creditMode,
+                                          @Param("statutSolde") CreditClientEntity.StatutCredit statutSolde);
 
     @Query(value = "SELECT v FROM VenteEntity v WHERE v.utilisateur = :utilisateur AND " +
            "v.tenant.tenantUuid = :tenantUuid AND " +
@@ -1,5 +1,6 @@
 package com.example.dijasaliou.service;
 
+import com.example.dijasaliou.annotation.TacheExclusive;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.UserNotificationType;
@@ -40,6 +41,7 @@ public class AbonnementExpireScheduler {
     private final UserPushNotificationService pushService;
 
     @Scheduled(cron = "0 0 * * * *")
+    @TacheExclusive(nom = "abonnement-expire", verrouMax = "PT50M", verrouMin = "PT5M")
     @Transactional(readOnly = true)
     public void envoyerRappelsExpiration() {
         List<UserEntity> users = pushSubRepository.findDistinctSubscribedUsers();
@@ -58,6 +58,9 @@ public class AchatService {
     private final UserRepository userRepository;
     private final VenteLotConsommationRepository venteLotConsommationRepository;
     private final ProductionRepository productionRepository;
+    private final StockProduitService stockProduitService;
+    private final FifoCalculService fifoCalculService;
+    private final InvalidationDonneesService invalidationDonneesService;
 
     public AchatService(AchatRepository achatRepository, TenantService tenantService,
                         StockService stockService, VenteRepository venteRepository,
@@ -67,7 +70,10 @@ public class AchatService {
                         UserNotificationPreferenceService prefService,
                         UserRepository userRepository,
                         VenteLotConsommationRepository venteLotConsommationRepository,
-                        ProductionRepository productionRepository) {
+                        ProductionRepository productionRepository,
+                        StockProduitService stockProduitService,
+                        FifoCalculService fifoCalculService,
+                        InvalidationDonneesService invalidationDonneesService) {
         this.achatRepository = achatRepository;
         this.tenantService = tenantService;
         this.stockService = stockService;
@@ -79,6 +85,9 @@ public class AchatService {
         this.userRepository = userRepository;
         this.venteLotConsommationRepository = venteLotConsommationRepository;
         this.productionRepository = productionRepository;
+        this.stockProduitService = stockProduitService;
+        this.fifoCalculService = fifoCalculService;
+        this.invalidationDonneesService = invalidationDonneesService;
     }
 
     /**
@@ -120,7 +129,9 @@ public class AchatService {
      * - Calcul du prix total
      * - Vérifications métier
      * - MULTI-TENANT : Assignation automatique du tenant
+     * - LEDGER : stock_produit mis à jour dans la même transaction
      */
+    @Transactional
     public AchatEntity creerAchat(AchatEntity achat, UserEntity utilisateur) {
 
         // 1. VALIDATION : Vérifier que les données sont correctes
@@ -150,9 +161,12 @@ public class AchatService {
             achat.calculerPrixTotal();
         }
 
-        // 7. SAUVEGARDE : Enregistrer en base
+        // 7. SAUVEGARDE : Enregistrer en base + ledger de stock
         AchatEntity saved = achatRepository.save(achat);
+        stockProduitService.enregistrerAchat(saved);
         stockService.invalidateStockCache(saved.getTenant().getTenantUuid());
+        // Caisse : achat antidaté → clôtures journalières à recalculer
+        invalidationDonneesService.invaliderDepuis(saved.getTenant(), saved.getDateAchat());
 
         // 8. DÉSARCHIVAGE : Si le produit était archivé, le désarchiver
         try {
@@ -238,6 +252,7 @@ public class AchatService {
     /**
      * Modifier un achat existant
      */
+    @Transactional
     public AchatEntity modifierAchat(String id, AchatEntity achatModifie) {
         // 1. Vérifier que l'achat existe
         AchatEntity achatExistant = obtenirAchatParId(id);
@@ -252,6 +267,8 @@ public class AchatService {
         validerAchat(achatModifie);
 
         // 4. Vérifier que la réduction de quantité ne rend pas le stock négatif
+        String ancienNomProduit = achatExistant.getNomProduit();
+        LocalDateTime ancienneDateAchat = achatExistant.getDateAchat();
         boolean memeProduit = achatExistant.getNomProduit().equalsIgnoreCase(achatModifie.getNomProduit());
         if (memeProduit && achatModifie.getQuantite() < achatExistant.getQuantite()) {
             Double reduction = achatExistant.getQuantite() - achatModifie.getQuantite();
@@ -293,9 +310,20 @@ public class AchatService {
         // 5. Recalculer le prix total
         achatExistant.calculerPrixTotal();
 
-        // 6. Sauvegarder + invalider le cache tenant
+        // 6. Sauvegarder + recalculer le ledger (ancien et nouveau produit) + invalider le cache tenant
         AchatEntity saved = achatRepository.save(achatExistant);
+        stockProduitService.recalculerProduits(saved.getTenant(), List.of(ancienNomProduit, saved.getNomProduit()));
         stockService.invalidateStockCache(saved.getTenant().getTenantUuid());
+        invalidationDonneesService.invaliderDepuis(tenantActuel, ancienneDateAchat, saved.getDateAchat());
+
+        // 7. FIFO : rejouer les ventes du produit à partir du point de modification
+        // (quantité, prix ou date du lot changés). Non bloquant, comme côté ventes.
+        try {
+            fifoCalculService.rejouerApresModificationAchat(saved, ancienNomProduit, ancienneDateAchat);
+        } catch (Exception e) {
+            log.error("FIFO : échec du rejeu après modification de l'achat {} : {}",
+                    saved.getId(), e.getMessage(), e);
+        }
         return saved;
     }
 
@@ -352,9 +380,11 @@ public class AchatService {
         productionRepository.findByAchat_IdAndTenant(id, tenantActuel)
                 .ifPresent(productionRepository::delete);
 
-        // 4. Supprimer + invalider le cache tenant
+        // 4. Supprimer + recalculer le ledger du produit + invalider le cache tenant
         achatRepository.deleteById(id);
+        stockProduitService.recalculerProduits(tenantActuel, List.of(nomProduit));
         stockService.invalidateStockCache(tenantActuel.getTenantUuid());
+        invalidationDonneesService.invaliderDepuis(tenantActuel, achatExistant.getDateAchat());
     }
 
     /**
@@ -0,0 +1,133 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suivi de la dernière activité des utilisateurs en write-behind.
+ *
+ * ActivityTrackingFilter appelle enregistrer() sur chaque requête authentifiée :
+ * aucune écriture BDD sur le thread de la requête, l'activité est mise en tampon
+ * puis écrite par flush() toutes les 30 s (app.activity.flush-interval-ms)
+ * avec un seul UPDATE ... WHERE email IN (...) par lot.
+ *
+ * THROTTLE : un email n'est remis en tampon qu'une fois toutes les 5 minutes.
+ * La map du throttle est bornée et ses entrées expirent (plus de croissance
+ * illimitée avec chaque email rencontré).
+ *
+ * PRÉCISION : un lot reçoit l'horodatage le plus récent du lot, soit un écart
+ * d'au plus un intervalle de flush — bien en dessous du throttle de 5 minutes.
+ */
+@Service
+@Slf4j
+public class ActiviteUtilisateurService {
+
+    static final long THROTTLE_MINUTES = 5;
+    static final long TAILLE_MAX_THROTTLE = 100_000;
+    /** Au-delà, les nouvelles activités attendent le prochain flush (le throttle les reprendra). */
+    static final int TAILLE_MAX_TAMPON = 50_000;
+    /** Taille maximale de la liste IN d'un UPDATE. */
+    static final int TAILLE_LOT = 1_000;
+
+    private final UserRepository userRepository;
+
+    /** email → dernière mise en tampon (expire après le throttle) */
+    private final Cache<String, LocalDateTime> derniereMiseEnTampon = Caffeine.newBuilder()
+            .expireAfterWrite(THROTTLE_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(TAILLE_MAX_THROTTLE)
+            .build();
+
+    /** email → activité en attente d'écriture */
+    private final ConcurrentHashMap<String, LocalDateTime> enAttente = new ConcurrentHashMap<>();
+
+    public ActiviteUtilisateurService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Enregistre une activité de l'utilisateur (non bloquant, aucune requête BDD).
+     *
+     * @param email Email de l'utilisateur authentifié
+     * @param now   Horodatage de l'activité
+     */
+    public void enregistrer(String email, LocalDateTime now) {
+        if (enAttente.size() >= TAILLE_MAX_TAMPON && !enAttente.containsKey(email)) {
+            return;
+        }
+        if (derniereMiseEnTampon.asMap().putIfAbsent(email, now) == null) {
+            enAttente.merge(email, now, (a, b) -> a.isAfter(b) ? a : b);
+        }
+    }
+
+    /**
+     * Écrit les activités en attente, par lots de TAILLE_LOT emails.
+     * Appelé périodiquement et à l'arrêt de l'application.
+     *
+     * @return Nombre d'utilisateurs mis à jour
+     */
+    @Scheduled(fixedDelayString = "${app.activity.flush-interval-ms:30000}")
+    public int flush() {
+        if (enAttente.isEmpty()) {
+            return 0;
+        }
+
+        // Retirer chaque entrée au moment de la lecture : une activité arrivée pendant le flush reste en attente
+        List<String> emails = new ArrayList<>();
+        LocalDateTime plusRecente = null;
+        int misAJour = 0;
+        for (Map.Entry<String, LocalDateTime> entree : enAttente.entrySet()) {
+            if (!enAttente.remove(entree.getKey(), entree.getValue())) {
+                continue;
+            }
+            emails.add(entree.getKey());
+            if (plusRecente == null || entree.getValue().isAfter(plusRecente)) {
+                plusRecente = entree.getValue();
+            }
+            if (emails.size() == TAILLE_LOT) {
+                misAJour += ecrireLot(emails, plusRecente);
+                emails = new ArrayList<>();
+                plusRecente = null;
+            }
+        }
+        if (!emails.isEmpty()) {
+            misAJour += ecrireLot(emails, plusRecente);
+        }
+
+        log.debug("[ActivityTracking] derniereConnexion mise à jour pour {} utilisateur(s)", misAJour);
+        return misAJour;
+    }
+
+    @PreDestroy
+    void flushAvantArret() {
+        flush();
+    }
+
+    int nombreEnAttente() {
+        return enAttente.size();
+    }
+
+    private int ecrireLot(List<String> emails, LocalDateTime now) {
+        try {
+            return userRepository.updateDerniereConnexionEnLot(emails, now);
+        } catch (Exception e) {
+            // Remettre le lot en attente pour le prochain flush (une activité plus récente l'emporte)
+            log.warn("[ActivityTracking] Échec de l'écriture d'un lot de {} activité(s) : {}", emails.size(), e.getMessage());
+            for (String email : emails) {
+                enAttente.merge(email, now, (a, b) -> a.isAfter(b) ? a : b);
+            }
+            return 0;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.dijasaliou.service;
 
+import com.example.dijasaliou.annotation.TacheExclusive;
 import com.example.dijasaliou.dto.StockDto;
 import com.example.dijasaliou.entity.ProduitArchiveEntity;
 import com.example.dijasaliou.entity.TenantEntity;
@@ -37,6 +38,7 @@ public class ArchiveStockService {
      * Si un produit revient en stock → supprimé de la table (via desarchiverSiNecessaire)
      */
     @Scheduled(cron = "0 0 3 * * *")
+    @TacheExclusive(nom = "archive-stock", verrouMax = "PT2H", verrouMin = "PT10M")
     @Transactional
     public void archiverProduitsEnRupture() {
         log.info("[ARCHIVE] Début du job d'archivage automatique");
@@ -39,6 +39,7 @@ public class AuthService {
     private final EmailService emailService;
     private final PushNotificationService pushService;
     private final UserPushSubscriptionRepository pushSubscriptionRepository;
+    private final TenantCacheService tenantCacheService;
 
     public AuthService(UserRepository userRepository,
                        TenantRepository tenantRepository,
@@ -47,7 +48,8 @@ public class AuthService {
                        PasswordResetTokenRepository passwordResetTokenRepository,
                        EmailService emailService,
                        PushNotificationService pushService,
-                       UserPushSubscriptionRepository pushSubscriptionRepository) {
+                       UserPushSubscriptionRepository pushSubscriptionRepository,
+                       TenantCacheService tenantCacheService) {
         this.userRepository = userRepository;
         this.tenantRepository = tenantRepository;
         this.passwordEncoder = passwordEncoder;
@@ -56,6 +58,7 @@ public class AuthService {
         this.emailService = emailService;
         this.pushService = pushService;
         this.pushSubscriptionRepository = pushSubscriptionRepository;
+        this.tenantCacheService = tenantCacheService;
     }
 
     /**
@@ -155,7 +158,7 @@ public class AuthService {
         UserEntity savedUser = userRepository.save(user);
 
         // 6. Générer le token JWT avec tenant_id et rôle (évite la requête BDD à chaque appel API)
-        String token = jwtService.generateToken(savedUser.getEmail(), savedTenant.getTenantUuid(), savedUser.getRole());
+        String token = jwtService.generateToken(savedUser.getEmail(), savedTenant.getTenantUuid(), savedTenant.getId(), savedUser.getRole());
 
         // 7. Créer et envoyer le token de vérification email (non bloquant)
         PasswordResetToken verificationToken = PasswordResetToken.builder()
@@ -343,7 +346,7 @@ public class AuthService {
         userRepository.save(user);
 
         // 5. Générer le token JWT avec tenant_id et rôle
-        String token = jwtService.generateToken(user.getEmail(), tenant.getTenantUuid(), user.getRole());
+        String token = jwtService.generateToken(user.getEmail(), tenant.getTenantUuid(), tenant.getId(), user.getRole());
 
         // 5. Vérifier si un paiement est requis
         // Un paiement est requis si :
@@ -527,5 +530,7 @@ public class AuthService {
         tenant.setDateSuppression(maintenant);
         tenant.setActif(false);
         tenantRepository.save(tenant);
+        // Sinon le tenant supprimé reste actif en cache (filtres, snapshot) jusqu'au TTL
+        tenantCacheService.evict(tenant.getTenantUuid());
     }
 }
@@ -29,13 +29,16 @@ public class BonLivraisonService {
     private final BonLivraisonRepository bonLivraisonRepository;
     private final TenantService tenantService;
     private final UserRepository userRepository;
+    private final DonneesVersionService donneesVersionService;
 
     public BonLivraisonService(BonLivraisonRepository bonLivraisonRepository,
                                 TenantService tenantService,
-                                UserRepository userRepository) {
+                                UserRepository userRepository,
+                                DonneesVersionService donneesVersionService) {
         this.bonLivraisonRepository = bonLivraisonRepository;
         this.tenantService = tenantService;
         this.userRepository = userRepository;
+        this.donneesVersionService = donneesVersionService;
     }
 
     /**
@@ -107,6 +110,8 @@ public class BonLivraisonService {
 
         bl.setLignes(lignes);
         BonLivraisonEntity saved = bonLivraisonRepository.save(bl);
+        // Les bons de livraison figurent dans le rapport PDF : le rapport en cache n'est plus à jour
+        donneesVersionService.signalerModification(tenant);
 
         log.info("[BL] Créé : {} — Client: {} — {} produits",
                 numeroBL, request.getClientNom(), request.getLignes().size());
@@ -125,6 +130,7 @@ public class BonLivraisonService {
         bl.setStatut(BonLivraisonEntity.Statut.LIVRE);
         bl.setDateLivraisonEffective(LocalDateTime.now());
         BonLivraisonEntity saved = bonLivraisonRepository.save(bl);
+        donneesVersionService.signalerModification(bl.getTenant());
 
         log.info("[BL] Marqué comme livré : {}", bl.getNumeroBL());
         return toDto(saved);
@@ -140,6 +146,7 @@ public class BonLivraisonService {
 
         bl.setStatut(BonLivraisonEntity.Statut.ANNULE);
         BonLivraisonEntity saved = bonLivraisonRepository.save(bl);
+        donneesVersionService.signalerModification(bl.getTenant());
 
         log.info("[BL] Annulé : {}", bl.getNumeroBL());
         return toDto(saved);
@@ -154,6 +161,7 @@ public class BonLivraisonService {
                 .orElseThrow(() -> new RuntimeException("Bon de livraison non trouvé : " + id));
 
         bonLivraisonRepository.delete(bl);
+        donneesVersionService.signalerModification(bl.getTenant());
         log.info("[BL] Supprimé : {}", bl.getNumeroBL());
     }
 
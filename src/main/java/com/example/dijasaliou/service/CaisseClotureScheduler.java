@@ -0,0 +1,63 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.annotation.TacheExclusive;
+import com.example.dijasaliou.entity.CaisseConfigEntity;
+import com.example.dijasaliou.repository.CaisseConfigRepository;
+import com.example.dijasaliou.repository.CaisseSoldeJournalierRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clôture journalière des caisses (table caisse_solde_journalier).
+ *
+ * Cron : chaque heure à hh:05. Les tenants n'ont pas tous le même fuseau : à
+ * chaque tick, toute caisse dont la veille (heure du tenant) n'est pas encore
+ * clôturée l'est — soit juste après minuit local, soit au tick suivant une
+ * invalidation (écriture antidatée).
+ *
+ * Chaque clôture part de la précédente : quelques jours de flux à agréger au
+ * plus. Une transaction par tenant (CaisseService.cloturerJournee) : l'échec
+ * d'un tenant n'empêche pas les autres.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CaisseClotureScheduler {
+
+    private final CaisseConfigRepository caisseConfigRepository;
+    private final CaisseSoldeJournalierRepository soldeJournalierRepository;
+    private final CaisseService caisseService;
+
+    @Scheduled(cron = "0 5 * * * *")
+    @TacheExclusive(nom = "caisse-cloture", verrouMax = "PT50M", verrouMin = "PT5M")
+    public void cloturerJourneesTerminees() {
+        List<CaisseConfigEntity> configs = caisseConfigRepository.findAllAvecTenant();
+        if (configs.isEmpty()) return;
+
+        Map<Long, LocalDate> dernierJourParTenant = new HashMap<>();
+        for (Object[] row : soldeJournalierRepository.findDernierJourClotureParTenant()) {
+            dernierJourParTenant.put((Long) row[0], (LocalDate) row[1]);
+        }
+
+        int cloturees = 0;
+        for (CaisseConfigEntity config : configs) {
+            LocalDate hier = CaisseClotureService.aujourdhui(config.getTenant()).minusDays(1);
+            LocalDate dernierJour = dernierJourParTenant.get(config.getTenant().getId());
+            if (dernierJour != null && !dernierJour.isBefore(hier)) continue;
+            try {
+                if (caisseService.cloturerJournee(config, hier)) cloturees++;
+            } catch (Exception e) {
+                log.warn("[CAISSE_CLOTURE] Échec de la clôture du {} pour tenant={} : {}",
+                        hier, config.getTenant().getTenantUuid(), e.getMessage());
+            }
+        }
+        if (cloturees > 0) log.info("[CAISSE_CLOTURE] {} caisse(s) clôturée(s) ce tick", cloturees);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.CaisseSoldeJournalierEntity;
+import com.example.dijasaliou.entity.CompteCaisse;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.CaisseConfigRepository;
+import com.example.dijasaliou.repository.CaisseSoldeJournalierRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clôtures journalières de caisse (table caisse_solde_journalier) : lecture de la
+ * dernière clôture et invalidation après une écriture antidatée.
+ *
+ * Les clôtures ne sont écrites que pour des journées TERMINÉES dans le fuseau du
+ * tenant (CaisseClotureScheduler). {@link #invaliderDepuis} est appelé par
+ * InvalidationDonneesService, qui porte la règle d'invalidation de toutes les écritures.
+ *
+ * Le calcul des soldes reste dans CaisseService (cloturerJournee). Une écriture antidatée
+ * peut être commitée entre ce calcul et l'insertion : comme pour les agrégats journaliers
+ * (RollupJourEtatEntity), chaque invalidation incrémente une version par tenant
+ * (caisse_config.version_clotures), lue avant le calcul ; la clôture n'est enregistrée
+ * que si elle n'a pas bougé.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CaisseClotureService {
+
+    private final CaisseSoldeJournalierRepository soldeJournalierRepository;
+    private final CaisseConfigRepository caisseConfigRepository;
+
+    /** Lignes (une par compte) de la dernière clôture strictement antérieure à {@code avant}. */
+    @Transactional(readOnly = true)
+    public List<CaisseSoldeJournalierEntity> derniereClotureAvant(TenantEntity tenant, LocalDate avant) {
+        return soldeJournalierRepository.findDerniereClotureAvant(tenant, avant);
+    }
+
+    /** Version des clôtures du tenant : à lire AVANT de calculer une clôture. */
+    @Transactional(readOnly = true)
+    public long versionClotures(TenantEntity tenant) {
+        return caisseConfigRepository.findVersionClotures(tenant).orElse(0L);
+    }
+
+    /**
+     * Enregistre la clôture d'une journée (une ligne par compte), calculée d'après
+     * des lectures faites à la version {@code version}. Remplace une clôture existante
+     * du même jour (relance manuelle, double exécution du job).
+     *
+     * L'UPDATE conditionnel de la version passe AVANT l'insertion : une invalidation
+     * concurrente attend la fin de cette transaction (et supprime alors la clôture),
+     * ou l'a précédée et la clôture est rejetée.
+     *
+     * @throws OptimisticLockingFailureException si une invalidation est passée depuis
+     *         la lecture de la version — clôture à refaire au tick suivant
+     */
+    @Transactional
+    public void enregistrerCloture(TenantEntity tenant, LocalDate jour, Map<CompteCaisse, BigDecimal> soldes,
+                                   long version) {
+        if (caisseConfigRepository.incrementerVersionCloturesSi(tenant, version) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "Clôture du " + jour + " invalidée pendant son calcul (tenant=" + tenant.getTenantUuid() + ")");
+        }
+        soldeJournalierRepository.deleteJour(tenant, jour);
+        soldeJournalierRepository.saveAll(soldes.entrySet().stream()
+                .map(e -> CaisseSoldeJournalierEntity.builder()
+                        .tenant(tenant)
+                        .compte(e.getKey())
+                        .jour(jour)
+                        .soldeCloture(e.getValue())
+                        .build())
+                .toList());
+    }
+
+    /**
+     * Une opération datée de {@code jour} (journée terminée) vient d'être créée, modifiée
+     * ou supprimée : les clôtures à partir de ce jour sont fausses.
+     */
+    @Transactional
+    public void invaliderDepuis(TenantEntity tenant, LocalDate jour) {
+        caisseConfigRepository.incrementerVersionClotures(tenant); // clôture en cours de calcul : rejetée
+        int supprimees = soldeJournalierRepository.deleteDepuis(tenant, jour);
+        if (supprimees > 0) {
+            log.info("[CAISSE_CLOTURE] {} clôture(s) invalidée(s) depuis le {} (tenant={})",
+                    supprimees, jour, tenant.getTenantUuid());
+        }
+    }
+
+    /** Supprime toutes les clôtures du tenant (activation / suppression de la caisse). */
+    @Transactional
+    public void invaliderTout(TenantEntity tenant) {
+        caisseConfigRepository.incrementerVersionClotures(tenant);
+        soldeJournalierRepository.deleteAllByTenant(tenant);
+    }
+
+    /** Date du jour dans le fuseau du tenant (sans passer par le TenantContext : jobs, imports). */
+    static LocalDate aujourdhui(TenantEntity tenant) {
+        return LocalDate.now(resolveZone(tenant.getTimezone()));
+    }
+
+    static ZoneId resolveZone(String tz) {
+        if (tz == null || tz.isBlank()) return ZoneId.of("Africa/Dakar");
+        try {
+            return ZoneId.of(tz);
+        } catch (DateTimeParseException | java.time.zone.ZoneRulesException e) {
+            return ZoneId.of("Africa/Dakar");
+        }
+    }
+}
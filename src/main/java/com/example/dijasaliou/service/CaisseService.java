@@ -1,7 +1,9 @@
 package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.dto.ActiverCaisseRequest;
+import com.example.dijasaliou.dto.CaisseHistoriquePageDto;
 import com.example.dijasaliou.dto.CaisseSoldeDto;
+import com.example.dijasaliou.dto.CaisseSoldeJourDto;
 import com.example.dijasaliou.dto.MouvementCaisseRequest;
 import com.example.dijasaliou.dto.MouvementHistoriqueDto;
 import com.example.dijasaliou.dto.MouvementHistoriqueDto.TypeHistorique;
@@ -9,6 +11,7 @@ import com.example.dijasaliou.dto.SeuilMontantConfig;
 import com.example.dijasaliou.dto.TransfertCaisseRequest;
 import com.example.dijasaliou.entity.*;
 import com.example.dijasaliou.entity.MouvementCaisseManuelEntity.TypeMouvement;
+import com.example.dijasaliou.exception.ConflictException;
 import com.example.dijasaliou.repository.*;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -16,15 +19,30 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service du module Caisse multi-comptes (BUSINESS).
@@ -34,10 +52,15 @@ import java.util.List;
  *   - Calcul en temps réel des soldes par compte
  *   - Création des transferts entre comptes
  *   - Création des mouvements manuels (entrée/sortie)
+ *     Sans verrou sur la caisse : une sortie (transfert, retrait) est contrôlée par
+ *     version du compte débité et rejouée en cas de conflit (caisse_compte_version).
+ *   - Clôture journalière des soldes (cloturerJournee, appelée par CaisseClotureScheduler)
+ *   - Série des soldes de fin de journée sur une période (getSoldeSerie)
+ *   - Historique de caisse paginé par clé, toutes sources fusionnées (getHistoriquePage)
  *
- * Le solde n'est JAMAIS stocké — toujours calculé à partir :
- *   solde_initial
- *   + ventes en mode = compte (depuis date_activation)
+ * Le solde est calculé à partir :
+ *   solde_initial — ou solde de la dernière clôture journalière (caisse_solde_journalier)
+ *   + ventes en mode = compte (depuis date_activation — ou depuis le lendemain de la clôture)
  *   - achats en mode = compte
  *   - dépenses en mode = compte
  *   + transferts entrants
@@ -63,6 +86,13 @@ public class CaisseService {
     private final UserRepository                      userRepository;
     private final UserPushNotificationService         userPushService;
     private final UserNotificationPreferenceService   prefService;
+    private final CaisseClotureService                clotureService;
+    private final InvalidationDonneesService          invalidationDonneesService;
+    private final CaisseCompteVersionRepository       compteVersionRepository;
+
+    /** Auto-injection différée : chaque tentative de sortie passe par le proxy transactionnel */
+    @Autowired @Lazy
+    private CaisseService self;
 
     /**
      * Borne supérieure utilisée pour la vue "temps réel" (asOfDate non fourni).
@@ -73,6 +103,22 @@ public class CaisseService {
     private static final LocalDateTime FUTUR_LOINTAIN =
             LocalDateTime.of(9999, 12, 31, 23, 59, 59);
 
+    /** Tentatives d'une sortie de caisse en conflit avec une autre sur le même compte. */
+    private static final int SORTIE_TENTATIVES_MAX = 8;
+
+    /** Longueur maximale d'une série de soldes (un an, année bissextile comprise). */
+    private static final int SERIE_JOURS_MAX = 366;
+
+    /** Taille de page de l'historique paginé (getHistoriquePage). */
+    private static final int HISTORIQUE_TAILLE_DEFAUT = 50;
+    private static final int HISTORIQUE_TAILLE_MAX    = 200;
+
+    /** Ordre de l'historique : (date, id) décroissants — l'id départage les ex æquo. */
+    private static final Comparator<MouvementHistoriqueDto> ORDRE_HISTORIQUE =
+            Comparator.comparing(MouvementHistoriqueDto::getDate)
+                    .thenComparing(MouvementHistoriqueDto::getId)
+                    .reversed();
+
     // ── SUPPRESSION COMPLÈTE ─────────────────────────────────────────────────
 
     /**
@@ -91,6 +137,8 @@ public class CaisseService {
         int mouvements = mouvementManuelRepository.deleteAllByTenant(tenant);
         int transferts = transfertRepository.deleteAllByTenant(tenant);
         int config     = caisseConfigRepository.deleteAllByTenant(tenant);
+        compteVersionRepository.deleteAllByTenant(tenant);
+        clotureService.invaliderTout(tenant);
         log.warn("Caisse supprimée pour tenant={} : config={}, transferts={}, mouvements={}",
                 tenant.getTenantUuid(), config, transferts, mouvements);
     }
@@ -120,6 +168,8 @@ public class CaisseService {
         config.setActivePar(userUuid);
 
         caisseConfigRepository.save(config);
+        // Soldes initiaux / date d'activation changés : toutes les clôtures sont fausses
+        clotureService.invaliderTout(tenant);
         log.info("Caisse activée pour tenant={} : Espèces={}, Wave={}, OM={}, Virement={}",
                 tenant.getTenantUuid(),
                 request.getSoldeInitialEspeces(),
@@ -184,14 +234,12 @@ public class CaisseService {
                     .build();
         }
 
-        // OPTIMISATION : 7 queries groupées au lieu de 28 (7 × 4 comptes avant)
-        // Chaque query GROUP BY compte/mode retourne tous les comptes d'un coup.
-        SoldesAgreges agg = chargerAgregats(tenant, debut, fin);
+        Map<CompteCaisse, BigDecimal> soldes = calculerSoldesComptes(tenant, config, fin);
 
-        BigDecimal soldeEspeces  = soldeFromAgg(CompteCaisse.ESPECES,      config.getSoldeInitialEspeces(),  agg);
-        BigDecimal soldeWave     = soldeFromAgg(CompteCaisse.WAVE,         config.getSoldeInitialWave(),     agg);
-        BigDecimal soldeOm       = soldeFromAgg(CompteCaisse.ORANGE_MONEY, config.getSoldeInitialOm(),       agg);
-        BigDecimal soldeVirement = soldeFromAgg(CompteCaisse.VIREMENT,     nz(config.getSoldeInitialVirement()), agg);
+        BigDecimal soldeEspeces  = soldes.get(CompteCaisse.ESPECES);
+        BigDecimal soldeWave     = soldes.get(CompteCaisse.WAVE);
+        BigDecimal soldeOm       = soldes.get(CompteCaisse.ORANGE_MONEY);
+        BigDecimal soldeVirement = soldes.get(CompteCaisse.VIREMENT);
 
         BigDecimal soldeTotal = soldeEspeces.add(soldeWave).add(soldeOm).add(soldeVirement);
 
@@ -210,6 +258,193 @@ public class CaisseService {
                 .build();
     }
 
+    /**
+     * Soldes des 4 comptes à {@code fin} (fin ≥ date d'activation).
+     *
+     * Point de départ : la dernière clôture journalière strictement antérieure au
+     * jour de {@code fin} si elle existe, sinon les soldes initiaux à la date
+     * d'activation. Seuls les flux postérieurs à ce point sont agrégés (7 queries
+     * groupées) : le coût dépend de l'activité depuis la clôture, pas de
+     * l'ancienneté de la caisse.
+     */
+    private Map<CompteCaisse, BigDecimal> calculerSoldesComptes(TenantEntity tenant, CaisseConfigEntity config,
+                                                                LocalDateTime fin) {
+        Map<CompteCaisse, BigDecimal> depart = new EnumMap<>(CompteCaisse.class);
+        for (CompteCaisse compte : CompteCaisse.values()) {
+            depart.put(compte, soldeInitial(config, compte));
+        }
+        LocalDateTime debut = config.getDateActivation();
+
+        List<CaisseSoldeJournalierEntity> cloture = clotureService.derniereClotureAvant(tenant, fin.toLocalDate());
+        // Une clôture antérieure au jour d'activation ne peut venir que d'une activation
+        // précédente (normalement purgée) : on l'ignore.
+        if (!cloture.isEmpty() && !cloture.get(0).getJour().isBefore(debut.toLocalDate())) {
+            cloture.forEach(c -> depart.put(c.getCompte(), c.getSoldeCloture()));
+            debut = maxDateTime(debut, cloture.get(0).getJour().plusDays(1).atStartOfDay());
+        }
+
+        // OPTIMISATION : 7 queries groupées au lieu de 28 (7 × 4 comptes avant)
+        // Chaque query GROUP BY compte/mode retourne tous les comptes d'un coup.
+        SoldesAgreges agg = chargerAgregats(tenant, debut, fin);
+
+        Map<CompteCaisse, BigDecimal> soldes = new EnumMap<>(CompteCaisse.class);
+        depart.forEach((compte, solde) -> soldes.put(compte, soldeFromAgg(compte, solde, agg)));
+        return soldes;
+    }
+
+    /**
+     * Clôture la journée {@code jour} d'un tenant : enregistre le solde de fin de
+     * journée de chaque compte. Appelée par CaisseClotureScheduler pour la veille
+     * (fuseau du tenant) ; incrémentale, elle part elle-même de la clôture précédente.
+     *
+     * @return false si la journée est antérieure à l'activation (rien à clôturer)
+     * @throws OptimisticLockingFailureException si une écriture antidatée a invalidé
+     *         la journée pendant le calcul (voir CaisseClotureService)
+     */
+    @Transactional
+    public boolean cloturerJournee(CaisseConfigEntity config, LocalDate jour) {
+        TenantEntity tenant = config.getTenant();
+        LocalDateTime finJournee = jour.atTime(LocalTime.MAX);
+        if (finJournee.isBefore(config.getDateActivation())) {
+            return false;
+        }
+
+        long version = clotureService.versionClotures(tenant); // avant toute lecture des flux
+        Map<CompteCaisse, BigDecimal> soldes = calculerSoldesComptes(tenant, config, finJournee);
+        clotureService.enregistrerCloture(tenant, jour, soldes, version);
+        log.debug("[CAISSE_CLOTURE] Journée {} clôturée (tenant={}) : {}", jour, tenant.getTenantUuid(), soldes);
+        return true;
+    }
+
+    // ── SÉRIE DE SOLDES ──────────────────────────────────────────────────────
+
+    /**
+     * Soldes de fin de journée, jour par jour, de {@code from} à {@code to} inclus
+     * (courbe de trésorerie du dashboard). Chaque point vaut getSoldeAt(jour).
+     *
+     * Nombre de queries CONSTANT quelle que soit la longueur de la période : le
+     * solde à la veille de {@code from} (dernière clôture + 7 agrégats), puis 6
+     * queries groupées par (jour, compte) sur toute la période, cumulées en mémoire.
+     * Avant : un getSoldeAt par jour, soit ~30 × 8 queries pour un mois.
+     *
+     * Les jours antérieurs à l'activation ont des soldes à 0 ; liste vide si la
+     * caisse n'est pas activée.
+     */
+    @Transactional(readOnly = true)
+    public List<CaisseSoldeJourDto> getSoldeSerie(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Période invalide : la date de début doit précéder la date de fin");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= SERIE_JOURS_MAX) {
+            throw new IllegalArgumentException(
+                    "Période trop longue : " + SERIE_JOURS_MAX + " jours maximum");
+        }
+
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        var configOpt = caisseConfigRepository.findByTenant(tenant);
+        if (configOpt.isEmpty()) {
+            return List.of();
+        }
+        CaisseConfigEntity config = configOpt.get();
+        LocalDateTime activation = config.getDateActivation();
+
+        // Point de départ : soldes à la fin de la veille de from (ou soldes initiaux
+        // si la caisse n'était pas encore activée à ce moment-là)
+        LocalDateTime finVeille = from.minusDays(1).atTime(LocalTime.MAX);
+        Map<CompteCaisse, BigDecimal> soldes;
+        LocalDateTime debut;
+        if (finVeille.isBefore(activation)) {
+            soldes = new EnumMap<>(CompteCaisse.class);
+            for (CompteCaisse compte : CompteCaisse.values()) {
+                soldes.put(compte, soldeInitial(config, compte));
+            }
+            debut = activation;
+        } else {
+            soldes = calculerSoldesComptes(tenant, config, finVeille);
+            debut = from.atStartOfDay();
+        }
+        LocalDateTime fin = to.atTime(LocalTime.MAX);
+
+        Map<LocalDate, Map<CompteCaisse, BigDecimal>> fluxParJour = fin.isBefore(debut)
+                ? Map.of()
+                : chargerFluxParJour(tenant, debut, fin);
+
+        // Somme cumulée : solde(jour) = solde(veille) + flux nets du jour
+        List<CaisseSoldeJourDto> serie = new ArrayList<>();
+        for (LocalDate jour = from; !jour.isAfter(to); jour = jour.plusDays(1)) {
+            if (jour.atTime(LocalTime.MAX).isBefore(activation)) {
+                serie.add(pointSerie(jour, null));
+                continue;
+            }
+            for (Map.Entry<CompteCaisse, BigDecimal> flux : fluxParJour.getOrDefault(jour, Map.of()).entrySet()) {
+                soldes.merge(flux.getKey(), flux.getValue(), BigDecimal::add);
+            }
+            serie.add(pointSerie(jour, soldes));
+        }
+        return serie;
+    }
+
+    /**
+     * Flux nets par jour et par compte sur [debut, fin], en 6 queries groupées
+     * par (jour, compte) — mêmes règles que {@link #chargerAgregats} (CREDIT exclu).
+     */
+    private Map<LocalDate, Map<CompteCaisse, BigDecimal>> chargerFluxParJour(TenantEntity tenant,
+                                                                            LocalDateTime debut,
+                                                                            LocalDateTime fin) {
+        Map<LocalDate, Map<CompteCaisse, BigDecimal>> flux = new HashMap<>();
+
+        for (Object[] row : venteRepository.sumParJourEtModeGrouped(tenant, debut, fin)) {
+            CompteCaisse compte = modeVenteToCompte((VenteEntity.ModePaiementVente) row[1]);
+            if (compte != null) ajouterFlux(flux, (LocalDate) row[0], compte, (BigDecimal) row[2]);
+        }
+        for (Object[] row : achatRepository.sumParJourEtModeGrouped(tenant, debut, fin)) {
+            ajouterFlux(flux, (LocalDate) row[0], ((ModePaiementCaisse) row[1]).toCompteCaisse(),
+                    ((BigDecimal) row[2]).negate());
+        }
+        for (Object[] row : depenseRepository.sumParJourEtModeGrouped(tenant, debut, fin)) {
+            ajouterFlux(flux, (LocalDate) row[0], ((ModePaiementCaisse) row[1]).toCompteCaisse(),
+                    ((BigDecimal) row[2]).negate());
+        }
+        for (Object[] row : paiementCreditRepository.sumParJourEtModeGrouped(
+                tenant, debut.toLocalDate(), fin.toLocalDate())) {
+            ajouterFlux(flux, (LocalDate) row[0], modeCreditToCompte((PaiementCreditEntity.ModePaiement) row[1]),
+                    (BigDecimal) row[2]);
+        }
+        for (Object[] row : transfertRepository.sumParJourEtComptesGrouped(tenant, debut, fin)) {
+            BigDecimal montant = (BigDecimal) row[3];
+            ajouterFlux(flux, (LocalDate) row[0], (CompteCaisse) row[1], montant.negate());
+            ajouterFlux(flux, (LocalDate) row[0], (CompteCaisse) row[2], montant);
+        }
+        for (Object[] row : mouvementManuelRepository.sumParJourCompteEtTypeGrouped(tenant, debut, fin)) {
+            BigDecimal montant = (BigDecimal) row[3];
+            ajouterFlux(flux, (LocalDate) row[0], (CompteCaisse) row[1],
+                    row[2] == TypeMouvement.ENTREE ? montant : montant.negate());
+        }
+        return flux;
+    }
+
+    private static void ajouterFlux(Map<LocalDate, Map<CompteCaisse, BigDecimal>> flux, LocalDate jour,
+                                    CompteCaisse compte, BigDecimal montant) {
+        flux.computeIfAbsent(jour, j -> new EnumMap<>(CompteCaisse.class))
+                .merge(compte, nz(montant), BigDecimal::add);
+    }
+
+    /** Point de la série ; {@code soldes} null → caisse pas encore activée ce jour-là (soldes à 0). */
+    private static CaisseSoldeJourDto pointSerie(LocalDate jour, Map<CompteCaisse, BigDecimal> soldes) {
+        BigDecimal especes  = soldes != null ? nz(soldes.get(CompteCaisse.ESPECES)) : BigDecimal.ZERO;
+        BigDecimal wave     = soldes != null ? nz(soldes.get(CompteCaisse.WAVE)) : BigDecimal.ZERO;
+        BigDecimal om       = soldes != null ? nz(soldes.get(CompteCaisse.ORANGE_MONEY)) : BigDecimal.ZERO;
+        BigDecimal virement = soldes != null ? nz(soldes.get(CompteCaisse.VIREMENT)) : BigDecimal.ZERO;
+        return CaisseSoldeJourDto.builder()
+                .jour(jour)
+                .soldeEspeces(especes)
+                .soldeWave(wave)
+                .soldeOm(om)
+                .soldeVirement(virement)
+                .soldeTotal(especes.add(wave).add(om).add(virement))
+                .build();
+    }
+
     /**
      * Agrégats SUM groupés par compte, chargés en 7 queries (1 par source de flux)
      * au lieu de 7 × 4 = 28 queries avant l'optimisation.
@@ -318,44 +553,6 @@ public class CaisseService {
         };
     }
 
-    /**
-     * Calcule le solde d'un compte précis entre la date d'activation et {@code fin}.
-     * @deprecated remplacé par {@link #chargerAgregats} + {@link #soldeFromAgg} qui font
-     *             le même calcul en 7 queries au lieu de 7 par compte.
-     *             Conservé pour {@link #soldeCompte} (verification solde, 1 compte à la fois).
-     */
-    @Deprecated
-    private BigDecimal calculerSoldeCompte(TenantEntity tenant, CompteCaisse compte,
-                                            LocalDateTime debut, LocalDateTime fin,
-                                            BigDecimal soldeInitial) {
-        ModePaiementCaisse modePaiement = compteToModePaiement(compte);
-        VenteEntity.ModePaiementVente modeVente = compteToModeVente(compte);
-        PaiementCreditEntity.ModePaiement modeCredit = compteToModeCredit(compte);
-
-        BigDecimal entreesVentes      = venteRepository.sumByModePaiementBetween(tenant, modeVente, debut, fin);
-        BigDecimal sortiesAchats      = achatRepository.sumByModePaiementBetween(tenant, modePaiement, debut, fin);
-        BigDecimal sortiesDepenses    = depenseRepository.sumByModePaiementBetween(tenant, modePaiement, debut, fin);
-        // paiements crédit filtrés sur datePaiement (date métier, pas createdDate technique)
-        BigDecimal entreesCredits     = paiementCreditRepository.sumByModeBetween(
-                tenant, modeCredit, debut.toLocalDate(), fin.toLocalDate());
-        BigDecimal transfertsEntrants = transfertRepository.sumEntreesByCompteBetween(tenant, compte, debut, fin);
-        BigDecimal transfertsSortants = transfertRepository.sumSortiesByCompteBetween(tenant, compte, debut, fin);
-        BigDecimal entreesManuelles   = mouvementManuelRepository.sumByCompteAndTypeBetween(
-                tenant, compte, TypeMouvement.ENTREE, debut, fin);
-        BigDecimal sortiesManuelles   = mouvementManuelRepository.sumByCompteAndTypeBetween(
-                tenant, compte, TypeMouvement.SORTIE, debut, fin);
-
-        return nz(soldeInitial)
-                .add(nz(entreesVentes))
-                .add(nz(entreesCredits))
-                .subtract(nz(sortiesAchats))
-                .subtract(nz(sortiesDepenses))
-                .add(nz(transfertsEntrants))
-                .subtract(nz(transfertsSortants))
-                .add(nz(entreesManuelles))
-                .subtract(nz(sortiesManuelles));
-    }
-
     /**
      * Borne supérieure :
      *  - asOfDate fourni → fin de cette journée (snapshot)
@@ -378,21 +575,27 @@ public class CaisseService {
 
     // ── TRANSFERTS ───────────────────────────────────────────────────────────
 
-    @Transactional
+    /**
+     * Transfère de l'argent d'un compte vers un autre. Sans verrou sur la caisse :
+     * seul le compte source est contrôlé (voir {@link #versionPourSortie}), et la
+     * tentative est rejouée si une sortie concurrente sur ce compte l'a invalidée.
+     */
     public CaisseSoldeDto creerTransfert(TransfertCaisseRequest request, String userUuid) {
-        TenantEntity tenant = tenantService.getCurrentTenant();
+        executerSortie(() -> self.enregistrerTransfert(request, userUuid));
+        return self.getSoldeActuel();
+    }
 
-        // Verrou pessimiste sur la config caisse : sérialise les opérations
-        // parallèles sur le même tenant (double-clic, multi-onglet, 2 appareils).
-        // Empêche le scénario "2 transferts simultanés rendent le solde négatif".
-        caisseConfigRepository.findByTenantForUpdate(tenant)
-                .orElseThrow(() -> new IllegalStateException(
-                        "La caisse n'est pas activée. Activez-la d'abord."));
+    /** Une tentative de transfert, dans sa propre transaction (appelée via le proxy). */
+    @Transactional
+    public void enregistrerTransfert(TransfertCaisseRequest request, String userUuid) {
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        verifierCaisseActive(tenant);
 
         if (request.getCompteSource().equals(request.getCompteDestination())) {
             throw new IllegalArgumentException("Le compte source et destination doivent être différents");
         }
 
+        long version = versionPourSortie(tenant, request.getCompteSource());
         verifierSoldeSuffisant(tenant, request.getCompteSource(), request.getMontant());
 
         TransfertCaisseEntity transfert = TransfertCaisseEntity.builder()
@@ -408,6 +611,8 @@ public class CaisseService {
                 .build();
 
         transfertRepository.save(transfert);
+        validerSortie(tenant, request.getCompteSource(), version);
+        invalidationDonneesService.invaliderDepuis(tenant, transfert.getDateTransfert());
         log.info("Transfert créé : {} → {} pour {} (tenant={})",
                 request.getCompteSource(), request.getCompteDestination(),
                 request.getMontant(), tenant.getTenantUuid());
@@ -421,24 +626,31 @@ public class CaisseService {
         } catch (Exception e) {
             log.warn("[CAISSE_NOTIF] Echec envoi notif transfert : {}", e.getMessage());
         }
-
-        return getSoldeActuel();
     }
 
     // ── MOUVEMENTS MANUELS ────────────────────────────────────────────────────
 
-    @Transactional
+    /**
+     * Entrée ou sortie manuelle sur un compte. Une SORTIE est contrôlée comme un
+     * transfert (solde suffisant, rejouée en cas de conflit) ; une ENTREE ne peut
+     * pas rendre un solde négatif et n'est jamais en conflit.
+     */
     public CaisseSoldeDto creerMouvementManuel(MouvementCaisseRequest request, String userUuid) {
+        executerSortie(() -> self.enregistrerMouvementManuel(request, userUuid));
+        return self.getSoldeActuel();
+    }
+
+    /** Une tentative de mouvement manuel, dans sa propre transaction (appelée via le proxy). */
+    @Transactional
+    public void enregistrerMouvementManuel(MouvementCaisseRequest request, String userUuid) {
         TenantEntity tenant = tenantService.getCurrentTenant();
+        verifierCaisseActive(tenant);
 
-        // Verrou pessimiste pour les sorties (même raison que pour les transferts)
-        if (request.getTypeMouvement() == TypeMouvement.SORTIE) {
-            caisseConfigRepository.findByTenantForUpdate(tenant)
-                    .orElseThrow(() -> new IllegalStateException(
-                            "La caisse n'est pas activée. Activez-la d'abord."));
+        boolean sortie = request.getTypeMouvement() == TypeMouvement.SORTIE;
+        long version = 0;
+        if (sortie) {
+            version = versionPourSortie(tenant, request.getCompte());
             verifierSoldeSuffisant(tenant, request.getCompte(), request.getMontant());
-        } else {
-            verifierCaisseActive(tenant);
         }
 
         MouvementCaisseManuelEntity mouvement = MouvementCaisseManuelEntity.builder()
@@ -454,6 +666,10 @@ public class CaisseService {
                 .build();
 
         mouvementManuelRepository.save(mouvement);
+        if (sortie) {
+            validerSortie(tenant, request.getCompte(), version);
+        }
+        invalidationDonneesService.invaliderDepuis(tenant, mouvement.getDateMouvement());
         log.info("Mouvement manuel {} créé sur {} pour {} (tenant={})",
                 request.getTypeMouvement(), request.getCompte(),
                 request.getMontant(), tenant.getTenantUuid());
@@ -466,15 +682,72 @@ public class CaisseService {
                     request.getMontant(),
                     request.getMotif());
 
-            if (request.getTypeMouvement() == TypeMouvement.SORTIE) {
+            if (sortie) {
                 envoyerNotifSortieCaisseImportante(tenant, request.getCompte(),
                         request.getMontant(), request.getMotif());
             }
         } catch (Exception e) {
             log.warn("[CAISSE_NOTIF] Echec envoi notif mouvement manuel : {}", e.getMessage());
         }
+    }
+
+    // ── CONCURRENCE DES SORTIES ───────────────────────────────────────────────
+
+    /**
+     * Exécute une tentative (transaction propre) et la rejoue, avec une courte pause
+     * aléatoire, tant qu'elle échoue sur un conflit de concurrence. Après
+     * {@link #SORTIE_TENTATIVES_MAX} échecs : 409.
+     */
+    private void executerSortie(Runnable tentative) {
+        for (int essai = 1; ; essai++) {
+            try {
+                tentative.run();
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (essai >= SORTIE_TENTATIVES_MAX) {
+                    log.warn("[CAISSE] Sortie abandonnée après {} conflits : {}", essai, e.getMessage());
+                    throw new ConflictException(
+                            "Trop d'opérations simultanées sur ce compte. Réessayez dans un instant.");
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20L * essai));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new ConflictException("Opération de caisse interrompue");
+                }
+            }
+        }
+    }
+
+    /**
+     * Version courante du compte débité, lue AVANT le calcul du solde : toute sortie
+     * validée ensuite sur ce compte la fera changer. Crée la ligne à la première sortie
+     * (deux premières sorties simultanées : l'une échoue sur la contrainte unique et est rejouée).
+     */
+    private long versionPourSortie(TenantEntity tenant, CompteCaisse compte) {
+        return compteVersionRepository.findVersion(tenant, compte).orElseGet(() -> {
+            try {
+                compteVersionRepository.saveAndFlush(CaisseCompteVersionEntity.builder()
+                        .tenant(tenant)
+                        .compte(compte)
+                        .version(0L)
+                        .build());
+                return 0L;
+            } catch (DataIntegrityViolationException e) {
+                throw new OptimisticLockingFailureException("Création concurrente de la version du compte " + compte);
+            }
+        });
+    }
 
-        return getSoldeActuel();
+    /**
+     * Valide la sortie : UPDATE conditionnel sur la version lue avant le contrôle du
+     * solde. 0 ligne → une autre sortie du compte a été validée entre-temps, le solde
+     * vérifié n'est plus sûr : la transaction est annulée (et rejouée par executerSortie).
+     */
+    private void validerSortie(TenantEntity tenant, CompteCaisse compte, long version) {
+        if (compteVersionRepository.incrementerSiVersion(tenant, compte, version) == 0) {
+            throw new OptimisticLockingFailureException("Sortie concurrente sur le compte " + compte);
+        }
     }
 
     /**
@@ -558,32 +831,10 @@ public class CaisseService {
 
         List<MouvementHistoriqueDto> historique = new ArrayList<>();
 
-        mouvementManuelRepository.findByTenantBetween(tenant, debut, fin).forEach(m ->
-            historique.add(MouvementHistoriqueDto.builder()
-                    .id(m.getId())
-                    .type(m.getTypeMouvement() == TypeMouvement.ENTREE
-                            ? TypeHistorique.ENTREE
-                            : TypeHistorique.SORTIE)
-                    .compte(m.getCompte())
-                    .montant(m.getMontant())
-                    .motif(m.getMotif())
-                    .date(m.getDateMouvement())
-                    .faitPar(m.getFaitPar())
-                    .build())
-        );
-
-        transfertRepository.findByTenantBetween(tenant, debut, fin).forEach(t ->
-            historique.add(MouvementHistoriqueDto.builder()
-                    .id(t.getId())
-                    .type(TypeHistorique.TRANSFERT)
-                    .compteSource(t.getCompteSource())
-                    .compteDestination(t.getCompteDestination())
-                    .montant(t.getMontant())
-                    .motif(t.getMotif())
-                    .date(t.getDateTransfert())
-                    .faitPar(t.getFaitPar())
-                    .build())
-        );
+        mouvementManuelRepository.findByTenantBetween(tenant, debut, fin)
+                .forEach(m -> historique.add(toHistorique(m)));
+        transfertRepository.findByTenantBetween(tenant, debut, fin)
+                .forEach(t -> historique.add(toHistorique(t)));
 
         historique.sort(Comparator.comparing(MouvementHistoriqueDto::getDate).reversed());
 
@@ -594,6 +845,178 @@ public class CaisseService {
         return historique;
     }
 
+    /**
+     * Historique de caisse COMPLET — ventes encaissées, achats, dépenses, paiements
+     * crédit, transferts et mouvements manuels — paginé par clé sur (date, id)
+     * décroissants. Mêmes bornes que {@link #getHistoriqueBetween}.
+     *
+     * Chaque source est lue déjà triée, strictement après le curseur et limitée à
+     * taille + 1 lignes ; les 6 flux sont ensuite fusionnés (k-way merge). Mémoire
+     * et temps restent en O(taille de page) quelle que soit la profondeur du
+     * défilement : ni OFFSET, ni tri global en mémoire.
+     *
+     * Les paiements crédit n'ont qu'un jour (datePaiement) : ils sont placés à 00:00.
+     *
+     * @param curseur curseur opaque renvoyé par la page précédente, null pour la première
+     * @param taille  taille de page (défaut 50, max 200)
+     */
+    @Transactional(readOnly = true)
+    public CaisseHistoriquePageDto getHistoriquePage(LocalDate fromDate, LocalDate toDate,
+                                                     String curseur, Integer taille) {
+        int n = taille == null
+                ? HISTORIQUE_TAILLE_DEFAUT
+                : Math.max(1, Math.min(taille, HISTORIQUE_TAILLE_MAX));
+        TenantEntity tenant = tenantService.getCurrentTenant();
+
+        var configOpt = caisseConfigRepository.findByTenant(tenant);
+        if (configOpt.isEmpty()) {
+            return CaisseHistoriquePageDto.builder().mouvements(List.of()).build();
+        }
+        LocalDateTime dateActivation = configOpt.get().getDateActivation();
+        LocalDateTime debut = fromDate != null
+                ? maxDateTime(dateActivation, fromDate.atStartOfDay())
+                : dateActivation;
+
+        // Curseur = (date, id) du dernier mouvement renvoyé ; première page : jusqu'à toDate inclus
+        LocalDateTime avantDate;
+        String avantId;
+        if (curseur != null && !curseur.isBlank()) {
+            CurseurHistorique c = decoderCurseur(curseur);
+            avantDate = c.date();
+            avantId = c.id();
+        } else {
+            avantDate = toFinJournee(toDate);
+            avantId = null;
+        }
+        if (avantDate.isBefore(debut)) {
+            return CaisseHistoriquePageDto.builder().mouvements(List.of()).build();
+        }
+
+        Pageable limite = PageRequest.of(0, n + 1);
+        // Paiements crédit (placés à 00:00) : un curseur en cours de journée les inclut
+        // tous pour ce jour-là ; un curseur à 00:00 pile les départage par id.
+        String avantIdPaiement = avantDate.toLocalTime().equals(LocalTime.MIDNIGHT) ? avantId : null;
+
+        List<List<MouvementHistoriqueDto>> sources = List.of(
+                venteRepository.findHistoriqueCaisseAvant(tenant, VenteEntity.ModePaiementVente.CREDIT,
+                                debut, avantDate, avantId, limite).stream()
+                        .map(row -> ligneHistorique(TypeHistorique.VENTE, row,
+                                modeVenteToCompte((VenteEntity.ModePaiementVente) row[2])))
+                        .toList(),
+                achatRepository.findHistoriqueCaisseAvant(tenant, debut, avantDate, avantId, limite).stream()
+                        .map(row -> ligneHistorique(TypeHistorique.ACHAT, row,
+                                ((ModePaiementCaisse) row[2]).toCompteCaisse()))
+                        .toList(),
+                depenseRepository.findHistoriqueCaisseAvant(tenant, debut, avantDate, avantId, limite).stream()
+                        .map(row -> ligneHistorique(TypeHistorique.DEPENSE, row,
+                                ((ModePaiementCaisse) row[2]).toCompteCaisse()))
+                        .toList(),
+                paiementCreditRepository.findHistoriqueCaisseAvant(tenant, debut.toLocalDate(),
+                                avantDate.toLocalDate(), avantIdPaiement, limite).stream()
+                        .map(row -> ligneHistorique(TypeHistorique.PAIEMENT_CREDIT, row,
+                                modeCreditToCompte((PaiementCreditEntity.ModePaiement) row[2])))
+                        .toList(),
+                transfertRepository.findHistoriqueAvant(tenant, debut, avantDate, avantId, limite).stream()
+                        .map(CaisseService::toHistorique)
+                        .toList(),
+                mouvementManuelRepository.findHistoriqueAvant(tenant, debut, avantDate, avantId, limite).stream()
+                        .map(CaisseService::toHistorique)
+                        .toList());
+
+        // Fusion des 6 flux déjà triés : tas des têtes de liste
+        PriorityQueue<TeteSource> tas = new PriorityQueue<>(
+                (a, b) -> ORDRE_HISTORIQUE.compare(a.courant(), b.courant()));
+        for (List<MouvementHistoriqueDto> source : sources) {
+            Iterator<MouvementHistoriqueDto> it = source.iterator();
+            if (it.hasNext()) tas.add(new TeteSource(it.next(), it));
+        }
+        List<MouvementHistoriqueDto> page = new ArrayList<>(n);
+        while (page.size() < n && !tas.isEmpty()) {
+            TeteSource tete = tas.poll();
+            page.add(tete.courant());
+            if (tete.suite().hasNext()) tas.add(new TeteSource(tete.suite().next(), tete.suite()));
+        }
+
+        // Chaque source a lu taille + 1 lignes : s'il en reste une, une page suivante existe
+        String curseurSuivant = tas.isEmpty() ? null : encoderCurseur(page.get(page.size() - 1));
+
+        Map<String, String> nomsParId = resolveNomsUtilisateurs(page);
+        page.forEach(h -> h.setFaitParNom(nomsParId.get(h.getFaitPar())));
+
+        return CaisseHistoriquePageDto.builder()
+                .mouvements(page)
+                .curseurSuivant(curseurSuivant)
+                .build();
+    }
+
+    /** Tête d'une source pendant la fusion : élément courant + reste de la source. */
+    private record TeteSource(MouvementHistoriqueDto courant, Iterator<MouvementHistoriqueDto> suite) {}
+
+    private record CurseurHistorique(LocalDateTime date, String id) {}
+
+    /** Curseur opaque : base64url("date|id") du dernier mouvement de la page. */
+    private static String encoderCurseur(MouvementHistoriqueDto dernier) {
+        String brut = dernier.getDate() + "|" + dernier.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CurseurHistorique decoderCurseur(String curseur) {
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+            int sep = brut.indexOf('|');
+            if (sep <= 0 || sep == brut.length() - 1) {
+                throw new IllegalArgumentException("Curseur d'historique invalide");
+            }
+            return new CurseurHistorique(LocalDateTime.parse(brut.substring(0, sep)), brut.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur d'historique invalide");
+        }
+    }
+
+    /**
+     * Ligne [id, date, mode, montant, libellé, utilisateurId] d'une source commerciale
+     * (vente, achat, dépense, paiement crédit) → mouvement d'historique.
+     */
+    private static MouvementHistoriqueDto ligneHistorique(TypeHistorique type, Object[] row, CompteCaisse compte) {
+        LocalDateTime date = row[1] instanceof LocalDate jour ? jour.atStartOfDay() : (LocalDateTime) row[1];
+        return MouvementHistoriqueDto.builder()
+                .id((String) row[0])
+                .type(type)
+                .compte(compte)
+                .montant((BigDecimal) row[3])
+                .motif((String) row[4])
+                .date(date)
+                .faitPar(row[5] != null ? String.valueOf(row[5]) : null)
+                .build();
+    }
+
+    private static MouvementHistoriqueDto toHistorique(MouvementCaisseManuelEntity m) {
+        return MouvementHistoriqueDto.builder()
+                .id(m.getId())
+                .type(m.getTypeMouvement() == TypeMouvement.ENTREE
+                        ? TypeHistorique.ENTREE
+                        : TypeHistorique.SORTIE)
+                .compte(m.getCompte())
+                .montant(m.getMontant())
+                .motif(m.getMotif())
+                .date(m.getDateMouvement())
+                .faitPar(m.getFaitPar())
+                .build();
+    }
+
+    private static MouvementHistoriqueDto toHistorique(TransfertCaisseEntity t) {
+        return MouvementHistoriqueDto.builder()
+                .id(t.getId())
+                .type(TypeHistorique.TRANSFERT)
+                .compteSource(t.getCompteSource())
+                .compteDestination(t.getCompteDestination())
+                .montant(t.getMontant())
+                .motif(t.getMotif())
+                .date(t.getDateTransfert())
+                .faitPar(t.getFaitPar())
+                .build();
+    }
+
     /**
      * Récupère les noms (Prénom Nom) des utilisateurs qui ont fait les opérations
      * de l'historique, en un seul appel base.
@@ -655,20 +1078,21 @@ public class CaisseService {
         return fmt.format(montant);
     }
 
-    /** Solde courant d'un compte (calculé en temps réel). */
+    /** Solde courant d'un compte (calculé en temps réel, à partir de la dernière clôture). */
     private BigDecimal soldeCompte(TenantEntity tenant, CompteCaisse compte) {
         var configOpt = caisseConfigRepository.findByTenant(tenant);
         if (configOpt.isEmpty()) return BigDecimal.ZERO;
-        CaisseConfigEntity config = configOpt.get();
-        BigDecimal soldeInitial = switch (compte) {
+        // Futur lointain : inclut tous les flux quel que soit la TZ (cf. toFinJournee)
+        return calculerSoldesComptes(tenant, configOpt.get(), FUTUR_LOINTAIN).get(compte);
+    }
+
+    private static BigDecimal soldeInitial(CaisseConfigEntity config, CompteCaisse compte) {
+        return nz(switch (compte) {
             case ESPECES      -> config.getSoldeInitialEspeces();
             case WAVE         -> config.getSoldeInitialWave();
             case ORANGE_MONEY -> config.getSoldeInitialOm();
-            case VIREMENT     -> nz(config.getSoldeInitialVirement());
-        };
-        // Futur lointain : inclut tous les flux quel que soit la TZ (cf. toFinJournee)
-        return calculerSoldeCompte(tenant, compte, config.getDateActivation(),
-                FUTUR_LOINTAIN, soldeInitial);
+            case VIREMENT     -> config.getSoldeInitialVirement();
+        });
     }
 
     private static String libelleCompte(CompteCaisse compte) {
@@ -683,34 +1107,4 @@ public class CaisseService {
     private static BigDecimal nz(BigDecimal v) {
         return v != null ? v : BigDecimal.ZERO;
     }
-
-    /** Convertit un CompteCaisse en ModePaiementCaisse correspondant (pour achats/dépenses). */
-    private static ModePaiementCaisse compteToModePaiement(CompteCaisse compte) {
-        return switch (compte) {
-            case ESPECES      -> ModePaiementCaisse.ESPECES;
-            case WAVE         -> ModePaiementCaisse.WAVE;
-            case ORANGE_MONEY -> ModePaiementCaisse.ORANGE_MONEY;
-            case VIREMENT     -> ModePaiementCaisse.VIREMENT;
-        };
-    }
-
-    /** Convertit un CompteCaisse en ModePaiementVente correspondant (pour ventes). */
-    private static VenteEntity.ModePaiementVente compteToModeVente(CompteCaisse compte) {
-        return switch (compte) {
-            case ESPECES      -> VenteEntity.ModePaiementVente.ESPECES;
-            case WAVE         -> VenteEntity.ModePaiementVente.WAVE;
-            case ORANGE_MONEY -> VenteEntity.ModePaiementVente.ORANGE_MONEY;
-            case VIREMENT     -> VenteEntity.ModePaiementVente.VIREMENT;
-        };
-    }
-
-    /** Convertit un CompteCaisse en PaiementCredit.ModePaiement (remboursements crédits). */
-    private static PaiementCreditEntity.ModePaiement compteToModeCredit(CompteCaisse compte) {
-        return switch (compte) {
-            case ESPECES      -> PaiementCreditEntity.ModePaiement.ESPECES;
-            case WAVE         -> PaiementCreditEntity.ModePaiement.WAVE;
-            case ORANGE_MONEY -> PaiementCreditEntity.ModePaiement.ORANGE_MONEY;
-            case VIREMENT     -> PaiementCreditEntity.ModePaiement.VIREMENT;
-        };
-    }
 }
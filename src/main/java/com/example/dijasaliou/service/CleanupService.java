@@ -1,6 +1,9 @@
 package com.example.dijasaliou.service;
 
+import com.example.dijasaliou.annotation.TacheExclusive;
+import com.example.dijasaliou.entity.EmailOutboxEntity;
 import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.EmailOutboxRepository;
 import com.example.dijasaliou.repository.PasswordResetTokenRepository;
 import com.example.dijasaliou.repository.TenantRepository;
 import lombok.RequiredArgsConstructor;
@@ -27,11 +30,13 @@ public class CleanupService {
     private final TenantRepository tenantRepository;
     private final TenantCacheService tenantCacheService;
     private final PushNotificationService pushService;
+    private final EmailOutboxRepository emailOutboxRepository;
 
     /**
      * Supprime les tokens de reset expirés — s'exécute toutes les nuits à 2h00.
      */
     @Scheduled(cron = "0 0 2 * * *")
+    @TacheExclusive(nom = "cleanup-tokens", verrouMax = "PT2H", verrouMin = "PT10M")
     @Transactional
     public void supprimerTokensExpires() {
         passwordResetTokenRepository.deleteExpiredTokens(LocalDateTime.now());
@@ -39,11 +44,26 @@ public class CleanupService {
         log.info("[CLEANUP] Tokens de reset expirés/utilisés supprimés");
     }
 
+    /**
+     * Purge la file d'envoi des emails : envoyés depuis plus de 7 jours,
+     * en échec depuis plus de 30 jours (gardés pour diagnostic).
+     * S'exécute toutes les nuits à 2h30.
+     */
+    @Scheduled(cron = "0 30 2 * * *")
+    @TacheExclusive(nom = "cleanup-email-outbox", verrouMax = "PT2H", verrouMin = "PT10M")
+    public void purgerEmailsEnvoyes() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        int envoyes = emailOutboxRepository.deleteParStatutAvant(EmailOutboxEntity.Statut.ENVOYE, maintenant.minusDays(7));
+        int echecs = emailOutboxRepository.deleteParStatutAvant(EmailOutboxEntity.Statut.ECHEC, maintenant.minusDays(30));
+        log.info("[CLEANUP] File d'envoi des emails purgée : {} envoyé(s), {} en échec", envoyes, echecs);
+    }
+
     /**
      * Rétrograde les essais BUSINESS expirés (durée = TenantEntity.DUREE_ESSAI_JOURS) vers GRATUIT.
      * S'exécute toutes les nuits à 3h00.
      */
     @Scheduled(cron = "0 0 3 * * *")
+    @TacheExclusive(nom = "cleanup-essais-expires", verrouMax = "PT2H", verrouMin = "PT10M")
     @Transactional
     public void retrograderEssaisExpires() {
         LocalDateTime cutoff = LocalDateTime.now().minusDays(com.example.dijasaliou.entity.TenantEntity.DUREE_ESSAI_JOURS);
@@ -68,6 +88,7 @@ public class CleanupService {
      * Tourne chaque jour à 9h du matin (heure raisonnable pour recevoir une notif).
      */
     @Scheduled(cron = "0 0 9 * * *")
+    @TacheExclusive(nom = "cleanup-abonnements-expirant", verrouMax = "PT2H", verrouMin = "PT10M")
     public void notifierAbonnementsExpirantBientot() {
         LocalDateTime debut = LocalDateTime.now().plusHours(72);
         LocalDateTime fin = LocalDateTime.now().plusHours(96);
@@ -47,6 +47,8 @@ public class CreditClientService {
     private final UserPushNotificationService userPushService;
     private final UserNotificationPreferenceService prefService;
     private final UserRepository userRepository;
+    private final InvalidationDonneesService invalidationDonneesService;
+    private final DonneesVersionService donneesVersionService;
 
     public CreditClientService(CreditClientRepository creditClientRepository,
                                 PaiementCreditRepository paiementCreditRepository,
@@ -56,7 +58,9 @@ public class CreditClientService {
                                 @org.springframework.context.annotation.Lazy VenteService venteService,
                                 UserPushNotificationService userPushService,
                                 UserNotificationPreferenceService prefService,
-                                UserRepository userRepository) {
+                                UserRepository userRepository,
+                                InvalidationDonneesService invalidationDonneesService,
+                                DonneesVersionService donneesVersionService) {
         this.creditClientRepository = creditClientRepository;
         this.paiementCreditRepository = paiementCreditRepository;
         this.clientRepository = clientRepository;
@@ -66,6 +70,8 @@ public class CreditClientService {
         this.userPushService = userPushService;
         this.prefService = prefService;
         this.userRepository = userRepository;
+        this.invalidationDonneesService = invalidationDonneesService;
+        this.donneesVersionService = donneesVersionService;
     }
 
     /**
@@ -183,6 +189,8 @@ public class CreditClientService {
         vente.setModePaiement(VenteEntity.ModePaiementVente.CREDIT);
         vente.setClientRef(client);
         venteRepository.save(vente);
+        // Caisse : la vente sort de son compte (mode CREDIT n'impacte pas la caisse)
+        invalidationDonneesService.invaliderDepuis(currentTenant, vente.getDateVente());
 
         return creerCreditDepuisVente(vente, client, employe, dateEcheance);
     }
@@ -238,6 +246,8 @@ public class CreditClientService {
                 .note(note)
                 .build();
         paiementCreditRepository.save(paiement);
+        // Caisse : paiement antidaté → clôtures journalières à recalculer
+        invalidationDonneesService.invaliderDepuis(currentTenant, dateEffective);
 
         // 6. Mettre à jour le montant restant
         BigDecimal nouveauRestant = credit.getMontantRestant().subtract(montant);
@@ -396,6 +406,8 @@ public class CreditClientService {
         credit.setStatut(StatutCredit.PERTE);
         credit.setDatePassageEnPerte(tenantService.todayInTenantTz());
         creditClientRepository.save(credit);
+        // Pas de mouvement de caisse, mais le crédit sort du reste dû des rapports mémorisés
+        donneesVersionService.signalerModification(currentTenant);
 
         return CreditClientDto.fromEntity(credit);
     }
@@ -1,5 +1,6 @@
 package com.example.dijasaliou.service;
 
+import com.example.dijasaliou.annotation.TacheExclusive;
 import com.example.dijasaliou.entity.CreditClientEntity.StatutCredit;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
@@ -41,6 +42,7 @@ public class CreditRetardScheduler {
     private final CreditClientRepository creditClientRepository;
 
     @Scheduled(cron = "0 0 * * * *")
+    @TacheExclusive(nom = "credit-retard", verrouMax = "PT50M", verrouMin = "PT5M")
     @Transactional(readOnly = true)
     public void envoyerRappelsCreditsRetard() {
         List<UserEntity> users = pushSubRepository.findDistinctSubscribedUsers();
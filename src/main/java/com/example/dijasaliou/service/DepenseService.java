@@ -32,15 +32,18 @@ public class DepenseService {
     private final TenantService tenantService;
     private final UserPushNotificationService userPushService;
     private final UserRepository userRepository;
+    private final InvalidationDonneesService invalidationDonneesService;
 
     public DepenseService(DepenseRepository depenseRepository,
                           TenantService tenantService,
                           UserPushNotificationService userPushService,
-                          UserRepository userRepository) {
+                          UserRepository userRepository,
+                          InvalidationDonneesService invalidationDonneesService) {
         this.depenseRepository = depenseRepository;
         this.tenantService = tenantService;
         this.userPushService = userPushService;
         this.userRepository = userRepository;
+        this.invalidationDonneesService = invalidationDonneesService;
     }
 
 
@@ -101,6 +104,8 @@ public class DepenseService {
         }
 
         DepenseEntity saved = depenseRepository.save(depense);
+        // Caisse : dépense antidatée → clôtures journalières à recalculer
+        invalidationDonneesService.invaliderDepuis(saved.getTenant(), saved.getDateDepense());
 
         // NOTIFICATION PUSH — DEPENSE_EMPLOYE si auteur ≠ ADMIN
         try {
@@ -152,6 +157,7 @@ public class DepenseService {
 
         validerDepense(depenseModifiee);
 
+        LocalDateTime ancienneDateDepense = depenseExistante.getDateDepense();
         depenseExistante.setLibelle(depenseModifiee.getLibelle());
         depenseExistante.setMontant(depenseModifiee.getMontant());
         depenseExistante.setCategorie(depenseModifiee.getCategorie());
@@ -166,7 +172,9 @@ public class DepenseService {
             depenseExistante.setModePaiement(depenseModifiee.getModePaiement());
         }
 
-        return depenseRepository.save(depenseExistante);
+        DepenseEntity saved = depenseRepository.save(depenseExistante);
+        invalidationDonneesService.invaliderDepuis(tenantActuel, ancienneDateDepense, saved.getDateDepense());
+        return saved;
     }
 
     /**
@@ -183,6 +191,7 @@ public class DepenseService {
         }
 
         depenseRepository.deleteById(id);
+        invalidationDonneesService.invaliderDepuis(tenantActuel, depenseExistante.getDateDepense());
     }
 
     /**
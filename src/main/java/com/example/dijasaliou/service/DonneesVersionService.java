@@ -0,0 +1,107 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.DonneesVersionEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.DonneesVersionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Version des données d'un tenant (table donnees_version) : clé des résultats gardés
+ * en cache (rapports PDF) — un résultat calculé pour une version reste valable tant
+ * qu'elle n'a pas changé.
+ *
+ * {@link #signalerModification} est appelé par InvalidationDonneesService pour les
+ * écritures de ventes, achats, dépenses, crédits et opérations de caisse, et directement
+ * par les services dont les écritures n'ont pas d'autre effet (bons de livraison,
+ * passage d'un crédit en perte). L'incrément est fait APRÈS le commit, dans sa propre
+ * transaction et une seule fois par transaction métier : la ligne du tenant n'est
+ * jamais verrouillée pendant une écriture (pas de sérialisation des ventes), et un
+ * lecteur qui voit la nouvelle version voit forcément les nouvelles données.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DonneesVersionService {
+
+    private final DonneesVersionRepository versionRepository;
+
+    /** Auto-injection différée : incrément dans une transaction séparée, après le commit */
+    @Autowired @Lazy
+    private DonneesVersionService self;
+
+    /** Version courante des données du tenant (0 tant qu'aucune écriture n'a été signalée). */
+    @Transactional(readOnly = true)
+    public long versionCourante(TenantEntity tenant) {
+        return versionRepository.findVersion(tenant).orElse(0L);
+    }
+
+    /**
+     * Les données du tenant viennent d'être modifiées dans la transaction courante :
+     * la version sera incrémentée après son commit (rien en cas de rollback).
+     * Hors transaction, l'incrément est immédiat.
+     */
+    public void signalerModification(TenantEntity tenant) {
+        if (tenant == null || tenant.getId() == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            incrementerSansEchec(tenant);
+            return;
+        }
+        // Une seule incrémentation par transaction (imports : des centaines d'écritures)
+        String cle = DonneesVersionService.class.getName() + ":" + tenant.getId();
+        if (TransactionSynchronizationManager.hasResource(cle)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(cle, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                incrementerSansEchec(tenant);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(cle);
+            }
+        });
+    }
+
+    /** Les données sont déjà commitées : un échec ici ne doit pas remonter à l'appelant. */
+    private void incrementerSansEchec(TenantEntity tenant) {
+        try {
+            if (self.incrementer(tenant) == 0) {
+                try {
+                    self.creer(tenant);
+                } catch (DataIntegrityViolationException e) {
+                    self.incrementer(tenant); // créée entre-temps par une écriture concurrente
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("[DONNEES_VERSION] Incrément impossible pour tenant={} : {}",
+                    tenant.getTenantUuid(), e.getMessage());
+        }
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int incrementer(TenantEntity tenant) {
+        return versionRepository.incrementer(tenant);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void creer(TenantEntity tenant) {
+        versionRepository.saveAndFlush(DonneesVersionEntity.builder()
+                .tenant(tenant)
+                .version(1L)
+                .build());
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.EmailOutboxEntity;
+import com.example.dijasaliou.repository.EmailOutboxRepository;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * File d'envoi des emails (table email_outbox) et appel à l'API Brevo.
+ *
+ * {@link EmailService} construit le contenu puis appelle {@link #ajouter} : l'email est
+ * inséré dans la transaction de l'appelant (rollback → pas d'email). Les envois à Brevo
+ * se font ensuite ici, hors des threads des requêtes et de l'exécuteur @Async :
+ *   - relève périodique (app.email.outbox.intervalle-ms) : réservation d'un lot de
+ *     lignes dues par UPDATE conditionnel — plusieurs instances se partagent la file
+ *     sans envoyer deux fois le même email ;
+ *   - débit limité par un token bucket (app.email.outbox.debit-par-seconde, par instance)
+ *     et au plus app.email.outbox.envois-paralleles appels Brevo simultanés : un pic
+ *     (notification à tous les tenants, renvoi des vérifications) est lissé ;
+ *   - 429 / 5xx / erreur réseau : nouvel essai avec délai croissant, au plus
+ *     app.email.outbox.tentatives-max tentatives ; autre 4xx : échec définitif.
+ *
+ * Chaque appel Brevo en échec est compté par SystemNotificationsService (alerte horaire).
+ * Brevo non configuré (brevo.api.key absente ou "disabled") → les emails restent en file.
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    private static final String BREVO_API_URL = "https://api.brevo.com/v3/smtp/email";
+    /** Délai maximal entre deux tentatives. */
+    static final Duration DELAI_MAX = Duration.ofHours(1);
+    /** Durée de réservation d'un lot : au-delà, une autre instance reprend les lignes non traitées. */
+    static final Duration DUREE_RESERVATION = Duration.ofMinutes(5);
+    private static final int TAILLE_ERREUR = 500;
+    /** Essais d'écriture du statut ENVOYE après acceptation par Brevo, et pause entre deux essais (croissante). */
+    static final int ESSAIS_STATUT_ENVOYE = 3;
+    static final Duration PAUSE_STATUT_ENVOYE = Duration.ofMillis(200);
+    /** Tailles des colonnes destinataire / reply_to et sujet. */
+    static final int TAILLE_ADRESSE = 255;
+    static final int TAILLE_SUJET = 500;
+
+    private final EmailOutboxRepository repository;
+    private final SystemNotificationsService systemNotificationsService;
+    private final TacheVerrouService verrouService;
+    private final String brevoApiKey;
+    private final String fromEmail;
+    private final String replyToEmail;
+    private final int debitParSeconde;
+    private final int envoisParalleles;
+    private final int tailleLot;
+    private final int tentativesMax;
+    private final Duration delaiInitial;
+
+    private final RestTemplate restTemplate;
+    private final AtomicInteger enCours = new AtomicInteger();
+    private final Set<Long> reservesEnCours = ConcurrentHashMap.newKeySet();
+
+    private Bucket debit;
+    private ExecutorService envois;
+    private boolean enabled;
+
+    public EmailOutboxService(EmailOutboxRepository repository,
+                              SystemNotificationsService systemNotificationsService,
+                              TacheVerrouService verrouService,
+                              @Value("${brevo.api.key:disabled}") String brevoApiKey,
+                              @Value("${app.email.from:contact@heasystock.com}") String fromEmail,
+                              @Value("${app.email.reply-to:${app.email.support:contact@heasystock.com}}") String replyToEmail,
+                              @Value("${app.email.outbox.debit-par-seconde:5}") int debitParSeconde,
+                              @Value("${app.email.outbox.envois-paralleles:4}") int envoisParalleles,
+                              @Value("${app.email.outbox.taille-lot:50}") int tailleLot,
+                              @Value("${app.email.outbox.tentatives-max:8}") int tentativesMax,
+                              @Value("${app.email.outbox.reessai-delai-s:30}") long delaiInitialSecondes) {
+        this.repository = repository;
+        this.systemNotificationsService = systemNotificationsService;
+        this.verrouService = verrouService;
+        this.brevoApiKey = brevoApiKey;
+        this.fromEmail = fromEmail;
+        this.replyToEmail = replyToEmail;
+        this.debitParSeconde = debitParSeconde;
+        this.envoisParalleles = envoisParalleles;
+        this.tailleLot = tailleLot;
+        this.tentativesMax = tentativesMax;
+        this.delaiInitial = Duration.ofSeconds(delaiInitialSecondes);
+
+        // Timeouts explicites : un Brevo lent ne retient pas un thread d'envoi indéfiniment
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) Duration.ofSeconds(5).toMillis());
+        factory.setReadTimeout((int) Duration.ofSeconds(20).toMillis());
+        this.restTemplate = new RestTemplate(factory);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (brevoApiKey == null || brevoApiKey.isBlank() || "disabled".equals(brevoApiKey)) {
+            log.warn("[EMAIL_OUTBOX] brevo.api.key non configurée → emails conservés en file, non envoyés.");
+            enabled = false;
+            return;
+        }
+        debit = Bucket.builder()
+                .addLimit(Bandwidth.classic(debitParSeconde, Refill.greedy(debitParSeconde, Duration.ofSeconds(1))))
+                .build();
+        AtomicInteger numero = new AtomicInteger();
+        envois = Executors.newFixedThreadPool(envoisParalleles, r -> {
+            Thread t = new Thread(r, "email-" + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        enabled = true;
+        log.info("[EMAIL_OUTBOX] Envoi Brevo actif ({} email(s)/s, {} envoi(s) parallèle(s))",
+                debitParSeconde, envoisParalleles);
+    }
+
+    /**
+     * Met un email en file. Rejoint la transaction de l'appelant s'il y en a une :
+     * l'email n'existe que si l'opération métier est validée.
+     *
+     * Les valeurs sont contrôlées avant l'insertion : un INSERT refusé marquerait la
+     * transaction de l'appelant rollback-only et ferait échouer l'opération métier
+     * (UnexpectedRollbackException au commit), même si l'appelant ignore l'exception.
+     *   - destinataire absent, sans « @ » ou trop long → email ignoré (warning), rien n'est inséré ;
+     *   - sujet tronqué à {@value #TAILLE_SUJET} caractères, contenu null → vide ;
+     *   - Reply-To invalide → Reply-To par défaut.
+     *
+     * @param replyTo Reply-To spécifique, ou null pour le Reply-To par défaut
+     * @return l'email mis en file, ou null s'il a été ignoré
+     */
+    @Transactional
+    public EmailOutboxEntity ajouter(String destinataire, String sujet, String contenuHtml, String replyTo) {
+        String adresse = adresseValide(destinataire);
+        if (adresse == null) {
+            log.warn("[EMAIL_OUTBOX] Destinataire invalide '{}' → email '{}' ignoré", destinataire, sujet);
+            return null;
+        }
+        String reponse = replyTo == null ? null : adresseValide(replyTo);
+        if (replyTo != null && reponse == null) {
+            log.warn("[EMAIL_OUTBOX] Reply-To invalide '{}' → Reply-To par défaut pour {}", replyTo, adresse);
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        return repository.save(EmailOutboxEntity.builder()
+                .destinataire(adresse)
+                .sujet(tronquer(sujet == null ? "" : sujet, TAILLE_SUJET))
+                .contenuHtml(contenuHtml == null ? "" : contenuHtml)
+                .replyTo(reponse)
+                .prochainEssai(maintenant)
+                .dateCreation(maintenant)
+                .build());
+    }
+
+    /** Adresse sans espaces autour, ou null si elle ne peut pas être insérée ni envoyée. */
+    static String adresseValide(String adresse) {
+        if (adresse == null) return null;
+        String nettoyee = adresse.trim();
+        if (nettoyee.isEmpty() || nettoyee.length() > TAILLE_ADRESSE || nettoyee.indexOf('@') <= 0) {
+            return null;
+        }
+        return nettoyee;
+    }
+
+    /**
+     * Réserve et lance l'envoi des emails dus, dans la limite du débit et des envois
+     * parallèles disponibles. Ne bloque pas : les appels Brevo se font sur les threads
+     * d'envoi, le résultat de chaque email est écrit par ce thread.
+     *
+     * @return Nombre d'emails dont l'envoi a été lancé
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.intervalle-ms:1000}")
+    public int relever() {
+        if (!enabled) return 0;
+        int places = (int) Math.min(Math.min(tailleLot, envoisParalleles * 2L - enCours.get()),
+                debit.getAvailableTokens());
+        if (places <= 0) return 0;
+
+        List<EmailOutboxEntity> lot;
+        try {
+            lot = reserver(places);
+        } catch (RuntimeException e) {
+            log.warn("[EMAIL_OUTBOX] Réservation impossible : {}", e.getMessage());
+            return 0;
+        }
+
+        int lances = 0;
+        for (EmailOutboxEntity email : lot) {
+            if (!debit.tryConsume(1)) {
+                // Débit épuisé entre-temps : la ligne sera reprise au prochain passage
+                repository.liberer(List.of(email.getId()), email.getReservePar());
+                continue;
+            }
+            enCours.incrementAndGet();
+            reservesEnCours.add(email.getId());
+            envois.execute(() -> {
+                try {
+                    envoyer(email);
+                } finally {
+                    reservesEnCours.remove(email.getId());
+                    enCours.decrementAndGet();
+                }
+            });
+            lances++;
+        }
+        return lances;
+    }
+
+    List<EmailOutboxEntity> reserver(int nombre) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<Long> ids = repository.findIdsAEnvoyer(maintenant, PageRequest.of(0, nombre));
+        if (ids.isEmpty()) return List.of();
+        // Tronqué à la milliseconde : relu par égalité dans findReserves (précision DATETIME(6))
+        LocalDateTime jusquA = maintenant.plus(DUREE_RESERVATION).truncatedTo(ChronoUnit.MILLIS);
+        String proprietaire = verrouService.getProprietaire();
+        if (repository.reserver(ids, proprietaire, maintenant, jusquA) == 0) return List.of();
+        return repository.findReserves(ids, proprietaire, jusquA);
+    }
+
+    void envoyer(EmailOutboxEntity email) {
+        try {
+            appelerBrevo(email);
+        } catch (RuntimeException e) {
+            systemNotificationsService.recordEmailFailure();
+            enregistrerEchec(email, e);
+            return;
+        }
+        enregistrerEnvoi(email);
+    }
+
+    /**
+     * Brevo a accepté l'email : seul le statut reste à écrire. Une erreur base ici n'est pas
+     * un échec d'envoi (ni compté, ni reprogrammé, sinon l'email partirait deux fois) :
+     * la mise à jour seule est retentée, puis la ligne est laissée à l'expiration de sa réservation.
+     */
+    private void enregistrerEnvoi(EmailOutboxEntity email) {
+        for (int essai = 1; ; essai++) {
+            try {
+                if (repository.marquerEnvoye(email.getId(), email.getReservePar(), LocalDateTime.now()) == 0) {
+                    log.warn("[EMAIL_OUTBOX] Email {} envoyé à {} après expiration de sa réservation (reprise par une autre instance)",
+                            email.getId(), email.getDestinataire());
+                } else {
+                    log.debug("[EMAIL_OUTBOX] Email {} envoyé à {}", email.getId(), email.getDestinataire());
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (essai >= ESSAIS_STATUT_ENVOYE || !pause(PAUSE_STATUT_ENVOYE.multipliedBy(essai))) {
+                    log.error("[EMAIL_OUTBOX] Email {} envoyé à {} mais statut non enregistré, "
+                                    + "il sera renvoyé à l'expiration de la réservation : {}",
+                            email.getId(), email.getDestinataire(), e.getMessage());
+                    return;
+                }
+                log.warn("[EMAIL_OUTBOX] Statut de l'email envoyé {} non enregistré (essai {}) : {}",
+                        email.getId(), essai, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean pause(Duration duree) {
+        try {
+            Thread.sleep(duree.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void enregistrerEchec(EmailOutboxEntity email, RuntimeException e) {
+        HttpStatusCodeException http = e instanceof HttpStatusCodeException h ? h : null;
+        String erreur = tronquer(http != null
+                ? http.getStatusCode().value() + " " + http.getResponseBodyAsString()
+                : e.getClass().getSimpleName() + " : " + e.getMessage());
+        int tentative = email.getTentatives() + 1;
+        // Erreur réseau, 429 ou 5xx : temporaire. Autre 4xx (adresse invalide...) : définitive
+        boolean temporaire = http == null
+                || http.getStatusCode().value() == 429
+                || http.getStatusCode().is5xxServerError();
+        try {
+            if (temporaire && tentative < tentativesMax) {
+                Duration delai = delaiAvantEssai(tentative);
+                repository.reprogrammer(email.getId(), email.getReservePar(), LocalDateTime.now().plus(delai), erreur);
+                log.warn("[EMAIL_OUTBOX] Échec de l'envoi {} à {} (tentative {}), nouvel essai dans {} s : {}",
+                        email.getId(), email.getDestinataire(), tentative, delai.toSeconds(), erreur);
+            } else {
+                repository.marquerEchec(email.getId(), email.getReservePar(), erreur);
+                log.error("[EMAIL_OUTBOX] Email {} à {} abandonné après {} tentative(s) : {}",
+                        email.getId(), email.getDestinataire(), tentative, erreur);
+            }
+        } catch (RuntimeException ex) {
+            // La réservation expirera : la ligne sera reprise par une relève ultérieure
+            log.warn("[EMAIL_OUTBOX] Résultat de l'envoi {} non enregistré : {}", email.getId(), ex.getMessage());
+        }
+    }
+
+    /** Délai exponentiel : délai initial × 2^(tentative-1), borné à DELAI_MAX. */
+    Duration delaiAvantEssai(int tentative) {
+        Duration delai = delaiInitial.multipliedBy(1L << Math.min(tentative - 1, 20));
+        return delai.compareTo(DELAI_MAX) > 0 ? DELAI_MAX : delai;
+    }
+
+    /**
+     * Appel HTTP à l'API Brevo pour l'envoi d'email
+     * Utilise HTTPS port 443 — non bloqué par Railway
+     */
+    void appelerBrevo(EmailOutboxEntity email) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("api-key", brevoApiKey);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sender", Map.of("name", "HeasyStock", "email", fromEmail));
+        body.put("to", List.of(Map.of("email", email.getDestinataire())));
+        body.put("subject", email.getSujet());
+        body.put("htmlContent", email.getContenuHtml());
+        // Reply-To : si spécifié → utiliser, sinon → email par défaut (variable d'env)
+        String effectiveReplyTo = email.getReplyTo() != null ? email.getReplyTo() : replyToEmail;
+        if (effectiveReplyTo != null && !effectiveReplyTo.isBlank()) {
+            body.put("replyTo", Map.of("email", effectiveReplyTo));
+        }
+        body.put("trackClicks", false);
+        body.put("trackOpens", false);
+
+        restTemplate.postForEntity(BREVO_API_URL, new HttpEntity<>(body, headers), String.class);
+    }
+
+    /**
+     * Nombre d'emails par statut et envois en cours sur cette instance (monitoring super admin).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> statistiques() {
+        Map<EmailOutboxEntity.Statut, Long> parStatut = new EnumMap<>(EmailOutboxEntity.Statut.class);
+        for (EmailOutboxEntity.Statut statut : EmailOutboxEntity.Statut.values()) {
+            parStatut.put(statut, 0L);
+        }
+        for (Object[] row : repository.countParStatut()) {
+            parStatut.put((EmailOutboxEntity.Statut) row[0], ((Number) row[1]).longValue());
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("actif", enabled);
+        stats.put("enAttente", parStatut.get(EmailOutboxEntity.Statut.EN_ATTENTE));
+        stats.put("enCours", parStatut.get(EmailOutboxEntity.Statut.EN_COURS));
+        stats.put("envoyes", parStatut.get(EmailOutboxEntity.Statut.ENVOYE));
+        stats.put("echecs", parStatut.get(EmailOutboxEntity.Statut.ECHEC));
+        stats.put("envoisEnCoursInstance", enCours.get());
+        return stats;
+    }
+
+    @PreDestroy
+    void arreter() {
+        if (envois == null) return;
+        envois.shutdown();
+        try {
+            if (!envois.awaitTermination(10, TimeUnit.SECONDS)) {
+                envois.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Lignes réservées non envoyées : rendues tout de suite plutôt qu'à l'expiration
+        if (!reservesEnCours.isEmpty()) {
+            try {
+                repository.liberer(List.copyOf(reservesEnCours), verrouService.getProprietaire());
+            } catch (RuntimeException e) {
+                log.warn("[EMAIL_OUTBOX] Lignes réservées non libérées : {}", e.getMessage());
+            }
+        }
+    }
+
+    private static String tronquer(String texte) {
+        return tronquer(texte, TAILLE_ERREUR);
+    }
+
+    private static String tronquer(String texte, int taille) {
+        return texte == null || texte.length() <= taille ? texte : texte.substring(0, taille);
+    }
+}
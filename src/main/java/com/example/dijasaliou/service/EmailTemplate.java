@@ -0,0 +1,219 @@
+package com.example.dijasaliou.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template d'email précompilé.
+ *
+ * Le source (parties fixes et variables {@code {{nom}}}) est découpé une seule fois
+ * en segments : les parties fixes sont gardées telles quelles, chaque variable est
+ * résolue en index. Le rendu enchaîne les segments dans un StringBuilder réutilisé
+ * par thread, dimensionné d'après la taille des parties fixes — ni analyse de format
+ * ni chaînes intermédiaires à chaque envoi.
+ *
+ * {@link #lier} fige les variables connues d'avance (URL du front, email du support,
+ * couleurs d'un niveau d'alerte…) : elles rejoignent les parties fixes, calculées une fois.
+ *
+ * Aucun échappement HTML : les valeurs sont insérées telles quelles.
+ */
+public final class EmailTemplate {
+
+    private static final String OUVRANTE = "{{";
+    private static final String FERMANTE = "}}";
+
+    /** Marque une variable non renseignée (null est une valeur valide, rendue vide). */
+    private static final Object ABSENTE = new Object();
+
+    /** Au-delà, le builder n'est pas conservé par le thread (email exceptionnellement gros). */
+    static final int CAPACITE_MAX_CONSERVEE = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER =
+            ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    private final String nom;
+    /** {@code fixes[i]} précède la variable {@code variablesSegment[i]} ; un élément de plus pour la fin. */
+    private final String[] fixes;
+    private final int[] variablesSegment;
+    /** Noms des variables, dans l'ordre de première apparition. */
+    private final List<String> variables;
+    private final Map<String, Integer> index;
+    private final int tailleFixe;
+
+    private EmailTemplate(String nom, List<String> fixes, List<String> nomsSegment) {
+        this.nom = nom;
+        this.fixes = fixes.toArray(String[]::new);
+        this.variablesSegment = new int[nomsSegment.size()];
+
+        List<String> variables = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < nomsSegment.size(); i++) {
+            String variable = nomsSegment.get(i);
+            Integer position = index.get(variable);
+            if (position == null) {
+                position = variables.size();
+                variables.add(variable);
+                index.put(variable, position);
+            }
+            variablesSegment[i] = position;
+        }
+        this.variables = List.copyOf(variables);
+        this.index = Map.copyOf(index);
+
+        int taille = 0;
+        for (String fixe : this.fixes) taille += fixe.length();
+        this.tailleFixe = taille;
+    }
+
+    /**
+     * Découpe {@code source} en segments.
+     *
+     * @throws IllegalArgumentException si un « {{ » n'est pas fermé ou si un nom de variable est invalide
+     */
+    public static EmailTemplate compiler(String nom, String source) {
+        List<String> fixes = new ArrayList<>();
+        List<String> nomsSegment = new ArrayList<>();
+
+        int debut = 0;
+        int ouvrante;
+        while ((ouvrante = source.indexOf(OUVRANTE, debut)) >= 0) {
+            int fermante = source.indexOf(FERMANTE, ouvrante + OUVRANTE.length());
+            if (fermante < 0) {
+                throw new IllegalArgumentException(
+                        "Template d'email '" + nom + "' : '{{' non fermé à la position " + ouvrante);
+            }
+            String variable = source.substring(ouvrante + OUVRANTE.length(), fermante).trim();
+            if (!estNomValide(variable)) {
+                throw new IllegalArgumentException(
+                        "Template d'email '" + nom + "' : nom de variable invalide '" + variable + "'");
+            }
+            fixes.add(source.substring(debut, ouvrante));
+            nomsSegment.add(variable);
+            debut = fermante + FERMANTE.length();
+        }
+        fixes.add(source.substring(debut));
+        return new EmailTemplate(nom, fixes, nomsSegment);
+    }
+
+    /**
+     * Nouveau template où les variables de {@code valeurs} sont remplacées une fois pour toutes ;
+     * les parties fixes adjacentes sont fusionnées.
+     *
+     * @throws IllegalArgumentException si une clé n'est pas une variable du template
+     */
+    public EmailTemplate lier(Map<String, ?> valeurs) {
+        for (String variable : valeurs.keySet()) {
+            verifierVariable(variable);
+        }
+        List<String> nouveauxFixes = new ArrayList<>();
+        List<String> nomsSegment = new ArrayList<>();
+        StringBuilder courant = new StringBuilder(fixes[0]);
+        for (int i = 0; i < variablesSegment.length; i++) {
+            String variable = variables.get(variablesSegment[i]);
+            if (valeurs.containsKey(variable)) {
+                ajouter(courant, valeurs.get(variable));
+            } else {
+                nouveauxFixes.add(courant.toString());
+                nomsSegment.add(variable);
+                courant.setLength(0);
+            }
+            courant.append(fixes[i + 1]);
+        }
+        nouveauxFixes.add(courant.toString());
+        return new EmailTemplate(nom, nouveauxFixes, nomsSegment);
+    }
+
+    /** Valeurs d'un rendu ; une instance par email. */
+    public Rendu rendu() {
+        return new Rendu();
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    /** Variables restant à renseigner, dans l'ordre de première apparition. */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /** Nombre de caractères fixes (hors variables). */
+    public int getTailleFixe() {
+        return tailleFixe;
+    }
+
+    public final class Rendu {
+
+        private final Object[] valeurs = new Object[variables.size()];
+
+        private Rendu() {
+            Arrays.fill(valeurs, ABSENTE);
+        }
+
+        /**
+         * @throws IllegalArgumentException si {@code variable} n'est pas une variable du template
+         */
+        public Rendu avec(String variable, Object valeur) {
+            valeurs[verifierVariable(variable)] = valeur;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException si une variable n'a pas été renseignée
+         */
+        public String rendre() {
+            StringBuilder sb = BUILDER.get();
+            sb.setLength(0);
+            sb.ensureCapacity(tailleFixe + 64 * variablesSegment.length);
+            try {
+                for (int i = 0; i < variablesSegment.length; i++) {
+                    sb.append(fixes[i]);
+                    Object valeur = valeurs[variablesSegment[i]];
+                    if (valeur == ABSENTE) {
+                        throw new IllegalStateException("Template d'email '" + nom
+                                + "' : variable '" + variables.get(variablesSegment[i]) + "' non renseignée");
+                    }
+                    ajouter(sb, valeur);
+                }
+                sb.append(fixes[fixes.length - 1]);
+                return sb.toString();
+            } finally {
+                if (sb.capacity() > CAPACITE_MAX_CONSERVEE) {
+                    BUILDER.remove();
+                }
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private int verifierVariable(String variable) {
+        Integer position = index.get(variable);
+        if (position == null) {
+            throw new IllegalArgumentException("Template d'email '" + nom + "' : variable inconnue '" + variable + "'");
+        }
+        return position;
+    }
+
+    private static void ajouter(StringBuilder sb, Object valeur) {
+        if (valeur instanceof CharSequence texte) {
+            sb.append(texte);
+        } else if (valeur instanceof Integer entier) {
+            sb.append(entier.intValue());
+        } else if (valeur != null) {
+            sb.append(valeur);
+        }
+    }
+
+    private static boolean estNomValide(String variable) {
+        if (variable.isEmpty()) return false;
+        for (int i = 0; i < variable.length(); i++) {
+            char c = variable.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') return false;
+        }
+        return true;
+    }
+}
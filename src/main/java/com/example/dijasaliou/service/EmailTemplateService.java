@@ -0,0 +1,57 @@
+package com.example.dijasaliou.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Templates d'email (src/main/resources/templates/email/*.html).
+ *
+ * Chargés et précompilés une seule fois au démarrage ({@link EmailTemplate}) :
+ * un template absent ou mal formé fait échouer le démarrage plutôt qu'un envoi.
+ * Le nom d'un template est celui du fichier sans l'extension.
+ */
+@Service
+@Slf4j
+public class EmailTemplateService {
+
+    static final String EMPLACEMENT = "classpath*:templates/email/*.html";
+    private static final String EXTENSION = ".html";
+
+    private final Map<String, EmailTemplate> templates = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(EMPLACEMENT)) {
+                String fichier = resource.getFilename();
+                if (fichier == null || !fichier.endsWith(EXTENSION)) continue;
+                String nom = fichier.substring(0, fichier.length() - EXTENSION.length());
+                templates.put(nom, EmailTemplate.compiler(nom, resource.getContentAsString(StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lecture des templates d'email impossible", e);
+        }
+        log.info("{} templates d'email précompilés : {}", templates.size(), new TreeSet<>(templates.keySet()));
+    }
+
+    /**
+     * @throws IllegalArgumentException si le template n'existe pas
+     */
+    public EmailTemplate get(String nom) {
+        EmailTemplate template = templates.get(nom);
+        if (template == null) {
+            throw new IllegalArgumentException("Template d'email introuvable : " + nom);
+        }
+        return template;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.dto.StockExportDto;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Export des ventes, achats et du stock en XLSX ou CSV, écrit en flux.
+ *
+ * Les lignes sont lues par tranches de {@link #TAILLE_TRANCHE} (pagination par curseur
+ * (date, id), projection scalaire) et écrites au fur et à mesure :
+ *   - CSV  : les lignes partent vers le client au fil de l'écriture ;
+ *   - XLSX : SXSSFWorkbook ne garde que {@link #FENETRE_XLSX} lignes en mémoire,
+ *            les autres sont vidées dans un fichier temporaire compressé.
+ * La mémoire reste constante, quelle que soit la taille de l'export.
+ *
+ * Appelé depuis le thread d'écriture de la réponse (StreamingResponseBody) : pas de
+ * TenantContext, le tenant est résolu par le controller et passé explicitement.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportService {
+
+    static final int TAILLE_TRANCHE = 1000;
+    static final int FENETRE_XLSX   = 100;
+
+    private static final DateTimeFormatter FORMAT_DATE_CSV = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private static final String[] ENTETES_VENTES = {
+            "Date", "Produit", "Code-barres", "Quantité", "Unité", "Prix unitaire", "Prix total",
+            "Mode de paiement", "Soldée", "Client", "Type de sortie"
+    };
+
+    private static final String[] ENTETES_ACHATS = {
+            "Date", "Produit", "Code-barres", "Catégorie", "Quantité", "Unité", "Prix unitaire",
+            "Prix total", "Fournisseur", "Mode de paiement"
+    };
+
+    private static final String[] ENTETES_STOCK = {
+            "Produit", "Code-barres", "Unité", "Quantité achetée", "Quantité vendue", "Stock disponible",
+            "Prix moyen achat", "Prix moyen vente", "Valeur du stock", "Marge unitaire", "Bénéfice total",
+            "Statut", "Achetée sur la période", "Vendue sur la période"
+    };
+
+    public enum Format {
+        XLSX("xlsx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")),
+        CSV("csv", MediaType.parseMediaType("text/csv;charset=UTF-8"));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        Format(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String getExtension() { return extension; }
+        public MediaType getMediaType() { return mediaType; }
+    }
+
+    private final VenteRepository venteRepository;
+    private final AchatRepository achatRepository;
+
+    /** Ventes du tenant sur [debut, fin] (jours inclus), de la plus ancienne à la plus récente. */
+    public void exporterVentes(TenantEntity tenant, LocalDate debut, LocalDate fin,
+                               Format format, OutputStream out) throws IOException {
+        try (Feuille feuille = ouvrir(format, "Ventes", out)) {
+            feuille.ligne((Object[]) ENTETES_VENTES);
+            int lignes = parTranches(debut, fin, feuille, (apresDate, apresId, finExclu, limite) ->
+                    venteRepository.findTrancheExport(tenant, apresDate, apresId, finExclu, limite));
+            log.info("[EXPORT] {} vente(s) exportée(s) en {} (tenant={})", lignes, format, tenant.getTenantUuid());
+        }
+    }
+
+    /** Achats du tenant sur [debut, fin] (jours inclus), du plus ancien au plus récent. */
+    public void exporterAchats(TenantEntity tenant, LocalDate debut, LocalDate fin,
+                               Format format, OutputStream out) throws IOException {
+        try (Feuille feuille = ouvrir(format, "Achats", out)) {
+            feuille.ligne((Object[]) ENTETES_ACHATS);
+            int lignes = parTranches(debut, fin, feuille, (apresDate, apresId, finExclu, limite) ->
+                    achatRepository.findTrancheExport(tenant, apresDate, apresId, finExclu, limite));
+            log.info("[EXPORT] {} achat(s) exporté(s) en {} (tenant={})", lignes, format, tenant.getTenantUuid());
+        }
+    }
+
+    /** Stock : une ligne par produit (StockService.obtenirStocksPourExport, calculé avant l'écriture). */
+    public void exporterStock(List<StockExportDto> stocks, Format format, OutputStream out) throws IOException {
+        try (Feuille feuille = ouvrir(format, "Stock", out)) {
+            feuille.ligne((Object[]) ENTETES_STOCK);
+            for (StockExportDto s : stocks) {
+                feuille.ligne(s.getNomProduit(), s.getCodeBarre(), s.getUnite(),
+                        s.getQuantiteAchetee(), s.getQuantiteVendue(), s.getStockDisponible(),
+                        s.getPrixMoyenAchat(), s.getPrixMoyenVente(), s.getValeurStock(),
+                        s.getMargeUnitaire(), s.getBeneficeTotal(), s.getStatut(),
+                        s.getQuantiteAcheteePeriode(), s.getQuantiteVenduePeriode());
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Requête de tranche : [id, date, ...colonnes exportées] après le curseur (apresDate, apresId). */
+    @FunctionalInterface
+    interface Tranche {
+        List<Object[]> lire(LocalDateTime apresDate, String apresId, LocalDateTime finExclu, Pageable limite);
+    }
+
+    /** Parcourt la période tranche par tranche ; colonnes 1.. écrites (l'id ne sert que de curseur). */
+    private static int parTranches(LocalDate debut, LocalDate fin, Feuille feuille, Tranche tranche) throws IOException {
+        LocalDateTime finExclu = fin.plusDays(1).atStartOfDay();
+        LocalDateTime apresDate = debut.atStartOfDay();
+        String apresId = null;
+        Pageable limite = PageRequest.of(0, TAILLE_TRANCHE);
+        int total = 0;
+        List<Object[]> rows;
+        do {
+            rows = tranche.lire(apresDate, apresId, finExclu, limite);
+            for (Object[] row : rows) {
+                Object[] valeurs = new Object[row.length - 1];
+                System.arraycopy(row, 1, valeurs, 0, valeurs.length);
+                feuille.ligne(valeurs);
+            }
+            if (!rows.isEmpty()) {
+                Object[] dernier = rows.get(rows.size() - 1);
+                apresId = (String) dernier[0];
+                apresDate = (LocalDateTime) dernier[1];
+                total += rows.size();
+            }
+        } while (rows.size() == TAILLE_TRANCHE);
+        return total;
+    }
+
+    private static Feuille ouvrir(Format format, String nomFeuille, OutputStream out) throws IOException {
+        return format == Format.XLSX ? new FeuilleXlsx(nomFeuille, out) : new FeuilleCsv(out);
+    }
+
+    /** Destination des lignes ; close() termine le document (sans fermer le flux de la réponse). */
+    private interface Feuille extends Closeable {
+        void ligne(Object... valeurs) throws IOException;
+    }
+
+    private static final class FeuilleXlsx implements Feuille {
+        private final SXSSFWorkbook workbook;
+        private final SXSSFSheet sheet;
+        private final CellStyle styleEntete;
+        private final CellStyle styleDate;
+        private final OutputStream out;
+        private int numeroLigne;
+
+        private FeuilleXlsx(String nomFeuille, OutputStream out) {
+            this.out = out;
+            this.workbook = new SXSSFWorkbook(FENETRE_XLSX);
+            this.workbook.setCompressTempFiles(true);
+            this.sheet = workbook.createSheet(nomFeuille);
+            Font gras = workbook.createFont();
+            gras.setBold(true);
+            this.styleEntete = workbook.createCellStyle();
+            this.styleEntete.setFont(gras);
+            this.styleDate = workbook.createCellStyle();
+            this.styleDate.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+        }
+
+        @Override
+        public void ligne(Object... valeurs) {
+            Row row = sheet.createRow(numeroLigne);
+            for (int i = 0; i < valeurs.length; i++) {
+                Object valeur = valeurs[i];
+                if (valeur == null) continue;
+                Cell cell = row.createCell(i);
+                if (numeroLigne == 0) {
+                    cell.setCellStyle(styleEntete);
+                }
+                switch (valeur) {
+                    case Number n -> cell.setCellValue(n.doubleValue());
+                    case LocalDateTime d -> {
+                        cell.setCellValue(d);
+                        cell.setCellStyle(styleDate);
+                    }
+                    case Boolean b -> cell.setCellValue(b ? "Oui" : "Non");
+                    default -> cell.setCellValue(valeur.toString());
+                }
+            }
+            numeroLigne++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                workbook.write(out);
+                out.flush();
+            } finally {
+                workbook.close();   // supprime aussi les fichiers temporaires de la fenêtre
+            }
+        }
+    }
+
+    /** CSV au séparateur « ; » avec BOM UTF-8 : ouvert tel quel par Excel en français. */
+    private static final class FeuilleCsv implements Feuille {
+        private final Writer writer;
+
+        private FeuilleCsv(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.writer.write('\uFEFF');
+        }
+
+        @Override
+        public void ligne(Object... valeurs) throws IOException {
+            for (int i = 0; i < valeurs.length; i++) {
+                if (i > 0) writer.write(';');
+                writer.write(cellule(valeurs[i]));
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private static String cellule(Object valeur) {
+            String texte = switch (valeur) {
+                case null -> "";
+                case BigDecimal b -> b.toPlainString();
+                case Double d -> BigDecimal.valueOf(d).stripTrailingZeros().toPlainString();
+                case LocalDateTime d -> d.format(FORMAT_DATE_CSV);
+                case Boolean b -> b ? "Oui" : "Non";
+                // Texte saisi commençant par = + - @ : neutralisé pour ne pas être lu comme une formule
+                case String t when !t.isEmpty() && "=+-@".indexOf(t.charAt(0)) >= 0 -> "'" + t;
+                default -> valeur.toString();
+            };
+            if (texte.indexOf(';') >= 0 || texte.indexOf('"') >= 0 || texte.indexOf('\n') >= 0 || texte.indexOf('\r') >= 0) {
+                return '"' + texte.replace("\"", "\"\"") + '"';
+            }
+            return texte;
+        }
+    }
+}
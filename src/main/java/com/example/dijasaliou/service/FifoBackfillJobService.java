@@ -0,0 +1,127 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.dto.FifoBackfillRapportDto;
+import com.example.dijasaliou.dto.FifoBackfillStatutDto;
+import com.example.dijasaliou.dto.FifoBackfillStatutDto.Statut;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.exception.ConflictException;
+import com.example.dijasaliou.repository.VenteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exécution du backfill FIFO en tâche de fond, un seul backfill à la fois par tenant.
+ *
+ * L'avancement (ventes rejouées / total) est mis à jour après chaque tranche par
+ * FifoBackfillService et consultable via GET /admin/fifo/backfill/statut.
+ * L'état est gardé en mémoire : seul le dernier backfill de chaque tenant est conservé.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FifoBackfillJobService {
+
+    private final FifoBackfillService fifoBackfillService;
+    private final VenteRepository     venteRepository;
+
+    /** tenantUuid → dernier backfill lancé */
+    private final Map<String, Suivi> suivis = new ConcurrentHashMap<>();
+
+    /** Auto-injection différée pour appeler la méthode @Async via le proxy Spring */
+    @Autowired @Lazy
+    private FifoBackfillJobService self;
+
+    /**
+     * Lance le backfill réel du tenant en arrière-plan.
+     *
+     * @throws ConflictException si un backfill est déjà en cours pour ce tenant.
+     */
+    public FifoBackfillStatutDto demarrer(TenantEntity tenant) {
+        Suivi suivi = new Suivi(tenant.getTenantUuid(), venteRepository.countByTenant(tenant));
+        Suivi precedent = suivis.compute(tenant.getTenantUuid(),
+                (uuid, existant) -> existant != null && existant.statut == Statut.EN_COURS ? existant : suivi);
+        if (precedent != suivi) {
+            throw new ConflictException("Un backfill FIFO est déjà en cours pour ce compte");
+        }
+
+        self.executer(tenant, suivi);
+        return suivi.versDto();
+    }
+
+    /** Avancement du dernier backfill du tenant (statut AUCUN s'il n'y en a jamais eu). */
+    public FifoBackfillStatutDto statut(String tenantUuid) {
+        Suivi suivi = suivis.get(tenantUuid);
+        if (suivi == null) {
+            return FifoBackfillStatutDto.builder()
+                    .statut(Statut.AUCUN)
+                    .tenantUuid(tenantUuid)
+                    .build();
+        }
+        return suivi.versDto();
+    }
+
+    @Async
+    public void executer(TenantEntity tenant, Suivi suivi) {
+        try {
+            suivi.rapport = fifoBackfillService.executerBackfill(tenant, false, suivi.nbVentesTraitees::set);
+            suivi.statut = Statut.TERMINE;
+        } catch (RuntimeException e) {
+            log.error("FIFO Backfill : échec pour tenant={} — {}", tenant.getTenantUuid(), e.getMessage(), e);
+            suivi.erreur = e.getMessage();
+            suivi.statut = Statut.ECHEC;
+        } finally {
+            suivi.termineLe = LocalDateTime.now();
+        }
+    }
+
+    /** État mutable d'un backfill, partagé entre le thread du job et les lectures du statut. */
+    static final class Suivi {
+        private final String        tenantUuid;
+        private final long          nbVentesTotal;
+        private final LocalDateTime demarreLe = LocalDateTime.now();
+        private final AtomicLong    nbVentesTraitees = new AtomicLong();
+
+        private volatile Statut                 statut = Statut.EN_COURS;
+        private volatile FifoBackfillRapportDto rapport;
+        private volatile String                 erreur;
+        private volatile LocalDateTime          termineLe;
+
+        private Suivi(String tenantUuid, long nbVentesTotal) {
+            this.tenantUuid = tenantUuid;
+            this.nbVentesTotal = nbVentesTotal;
+        }
+
+        private FifoBackfillStatutDto versDto() {
+            Statut statutActuel = statut;
+            long traitees = nbVentesTraitees.get();
+            int pourcentage;
+            if (statutActuel == Statut.TERMINE) {
+                pourcentage = 100;
+            } else if (nbVentesTotal == 0) {
+                pourcentage = 0;
+            } else {
+                pourcentage = (int) Math.min(100, traitees * 100 / nbVentesTotal);
+            }
+            return FifoBackfillStatutDto.builder()
+                    .statut(statutActuel)
+                    .tenantUuid(tenantUuid)
+                    .nbVentesTotal(nbVentesTotal)
+                    .nbVentesTraitees(traitees)
+                    .pourcentage(pourcentage)
+                    .demarreLe(demarreLe)
+                    .termineLe(termineLe)
+                    .rapport(rapport)
+                    .erreur(erreur)
+                    .build();
+        }
+    }
+}
@@ -1,47 +1,90 @@
 package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.dto.FifoBackfillRapportDto;
-import com.example.dijasaliou.entity.AchatEntity;
 import com.example.dijasaliou.entity.TenantEntity;
-import com.example.dijasaliou.entity.VenteEntity;
-import com.example.dijasaliou.entity.VenteLotConsommationEntity;
 import com.example.dijasaliou.repository.AchatRepository;
 import com.example.dijasaliou.repository.VenteLotConsommationRepository;
 import com.example.dijasaliou.repository.VenteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.LongConsumer;
 
 /**
  * Backfill rétroactif des données FIFO pour un tenant.
  *
  * Logique :
- *   1. Reset des quantite_restante (= quantite) de tous les achats du tenant.
- *   2. Suppression des anciennes lignes de consommation.
- *   3. Rejeu chronologique :
- *      - Pour chaque vente triée par date_vente ASC,
- *      - Application de la logique FIFO (lots triés par date_achat ASC),
- *      - Génération des lignes vente_lot_consommation et décrément des lots.
+ *   1. Suppression des lignes de consommation du tenant (1 DELETE ciblé).
+ *   2. Reset des quantite_restante (= quantite) des achats du tenant (1 UPDATE).
+ *   3. Rejeu produit par produit, chacun dans sa propre transaction :
+ *      - Lots du produit triés par (date_achat, id),
+ *      - Ventes du produit lues par tranches triées par (date_vente, id), pagination par curseur,
+ *      - Insertion des lignes vente_lot_consommation par batch JDBC à chaque tranche,
+ *      - Écriture des quantite_restante des lots entamés, par batch JDBC.
  *   4. Production d'un rapport détaillé.
  *
+ * Clé produit : nom_produit EXACT, comme le FIFO en ligne (findLotsDisponiblesFifo)
+ * et le rejeu incrémental (findVentesProduitDepuis) — une vente n'est jamais
+ * rattachée à des lots que le chemin en ligne ne lui donnerait pas.
+ *
+ * Mémoire : seuls les lots du produit courant (id, prix, quantité restante) et la
+ * tranche de ventes courante sont gardés ; rien ne s'accumule d'un produit à l'autre.
+ * Chaque produit est validé séparément : après un échec, le tenant est partiellement
+ * reconstruit et un nouveau backfill (idempotent) repart de zéro.
+ *
  * Mode dry-run : tout est calculé en mémoire, RIEN n'est écrit en base.
- * Mode réel    : les écritures sont effectuées dans la transaction.
+ * Mode réel    : les écritures sont validées produit par produit.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FifoBackfillService {
 
+    /** Au-delà, les anomalies sont seulement comptées (le rapport reste de taille bornée). */
+    static final int MAX_ANOMALIES_DETAILLEES = 500;
+
+    private static final String SQL_INSERT_CONSOMMATION = """
+            INSERT INTO vente_lot_consommation
+                (vente_id, achat_id, tenant_id, quantite_consommee,
+                 prix_achat_unitaire_snapshot, prix_vente_unitaire_snapshot,
+                 benefice_unitaire, benefice_total_ligne, date_vente_snapshot,
+                 created_date, last_modified_date, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+
+    private static final String SQL_UPDATE_LOT = """
+            UPDATE achats
+            SET quantite_restante = ?, version = COALESCE(version, 0) + 1
+            WHERE id = ? AND tenant_id = ?
+            """;
+
     private final AchatRepository                  achatRepository;
     private final VenteRepository                  venteRepository;
     private final VenteLotConsommationRepository   consommationRepository;
+    private final JdbcTemplate                     jdbcTemplate;
+    private final RollupJourService                rollupJourService;
+
+    /** Auto-injection différée : remise à zéro puis chaque produit dans sa propre transaction */
+    @Autowired @Lazy
+    private FifoBackfillService self;
+
+    /** Nombre de ventes lues (et de consommations insérées) par tranche. */
+    @Value("${app.fifo.backfill.taille-tranche:500}")
+    private int tailleTranche;
 
     /**
      * Lance le backfill pour un tenant donné.
@@ -50,119 +93,234 @@ public class FifoBackfillService {
      * @param dryRun true = simulation, false = écriture réelle.
      * @return Rapport d'exécution.
      */
-    @Transactional
     public FifoBackfillRapportDto executerBackfill(TenantEntity tenant, boolean dryRun) {
+        return executerBackfill(tenant, dryRun, nbVentesTraitees -> { });
+    }
+
+    /**
+     * Lance le backfill en signalant l'avancement après chaque tranche.
+     *
+     * @param progression Reçoit le nombre de ventes rejouées jusqu'ici.
+     */
+    public FifoBackfillRapportDto executerBackfill(TenantEntity tenant, boolean dryRun, LongConsumer progression) {
         long t0 = System.currentTimeMillis();
-        List<String> anomalies = new ArrayList<>();
+        Rejeu rejeu = new Rejeu(tenant);
 
         log.info("FIFO Backfill : démarrage pour tenant={} ({}), dryRun={}",
                 tenant.getTenantUuid(), tenant.getNomEntreprise(), dryRun);
 
-        // 1. Récupérer tous les achats triés par date ASC
-        List<AchatEntity> achats = achatRepository.findAllByTenantOrderByDateAsc(tenant);
+        // 1-2. Supprimer les anciennes consommations et remettre les lots à neuf (mode réel)
+        if (!dryRun) {
+            int supprimees = self.reinitialiser(tenant);
+            log.info("FIFO Backfill : suppression de {} ancienne(s) ligne(s) de consommation", supprimees);
+        }
 
-        // Reset des quantites restantes (en mémoire pour dryRun, sinon sauvegardé en fin)
-        for (AchatEntity a : achats) {
-            a.setQuantiteRestante(a.getQuantite());
+        // 3. Rejouer les ventes de chaque produit (lots du seul produit courant en mémoire)
+        long nbAchats = achatRepository.countByTenant(tenant);
+        for (String nomProduit : venteRepository.findNomsProduitsVendus(tenant)) {
+            self.rejouerProduit(rejeu, nomProduit, dryRun, progression);
         }
 
-        // 2. Supprimer les anciennes consommations (seulement en mode réel)
         if (!dryRun) {
-            // findByVenteId par vente serait trop coûteux ; on supprime via le tenant
-            List<VenteLotConsommationEntity> ancienne = consommationRepository.findAll()
-                    .stream()
-                    .filter(c -> c.getTenant() != null
-                            && c.getTenant().getId().equals(tenant.getId()))
-                    .toList();
-            if (!ancienne.isEmpty()) {
-                consommationRepository.deleteAll(ancienne);
-                log.info("FIFO Backfill : suppression de {} ancienne(s) ligne(s) de consommation",
-                        ancienne.size());
+            log.info("FIFO Backfill : {} ligne(s) de consommation créée(s), {} achat(s) mis à jour",
+                    rejeu.nbConsommations, rejeu.nbLotsEntames);
+        } else {
+            log.info("FIFO Backfill (DRY-RUN) : {} ligne(s) qui auraient été créées, {} achat(s) qui auraient été mis à jour",
+                    rejeu.nbConsommations, rejeu.nbLotsEntames);
+        }
+
+        long dureeMs = System.currentTimeMillis() - t0;
+        log.info("FIFO Backfill : terminé en {} ms — {} ventes, {} entièrement / {} partiellement / {} non tracées, bénéfice total = {}",
+                dureeMs, rejeu.nbVentes,
+                rejeu.nbEntierementTracees, rejeu.nbPartiellementTracees, rejeu.nbNonTracees,
+                rejeu.beneficeTotal);
+
+        return FifoBackfillRapportDto.builder()
+                .dryRun(dryRun)
+                .tenantUuid(tenant.getTenantUuid())
+                .tenantNom(tenant.getNomEntreprise())
+                .nbAchatsTraites(nbAchats)
+                .nbVentesTraitees(rejeu.nbVentes)
+                .nbConsommationsCreees(rejeu.nbConsommations)
+                .nbVentesEntierementTracees(rejeu.nbEntierementTracees)
+                .nbVentesPartiellementTracees(rejeu.nbPartiellementTracees)
+                .nbVentesNonTracees(rejeu.nbNonTracees)
+                .beneficeTotalReconstitue(rejeu.beneficeTotal)
+                .anomalies(rejeu.anomalies)
+                .nbAnomalies(rejeu.nbAnomalies)
+                .dureeMs(dureeMs)
+                .build();
+    }
+
+    /**
+     * Supprime les consommations du tenant et remet quantite_restante = quantite sur ses lots.
+     *
+     * @return nombre de lignes de consommation supprimées
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int reinitialiser(TenantEntity tenant) {
+        int supprimees = consommationRepository.deleteAllByTenant(tenant);
+        achatRepository.reinitialiserQuantitesRestantes(tenant);
+        rollupJourService.invaliderTout(tenant); // coûts et bénéfices FIFO de tout l'historique
+        return supprimees;
+    }
+
+    /**
+     * Rejoue les ventes d'un produit sur ses lots, tranche par tranche, puis écrit
+     * les quantités restantes des lots entamés (les autres sont déjà = quantite).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    void rejouerProduit(Rejeu rejeu, String nomProduit, boolean dryRun, LongConsumer progression) {
+        TenantEntity tenant = rejeu.tenant;
+        List<Lot> lots = new ArrayList<>();
+        for (Object[] row : achatRepository.findLotsProduitPourBackfill(tenant, nomProduit)) {
+            lots.add(new Lot((String) row[0], (BigDecimal) row[1], row[2] != null ? (Double) row[2] : 0.0));
+        }
+
+        PageRequest limite = PageRequest.of(0, tailleTranche);
+        List<Object[]> tranche = venteRepository.findPremiereTrancheBackfill(tenant, nomProduit, limite);
+        while (!tranche.isEmpty()) {
+            List<Object[]> consommations = new ArrayList<>();
+            for (Object[] vente : tranche) {
+                rejeu.rejouer(vente, nomProduit, lots, consommations);
+            }
+            if (!dryRun) {
+                insererConsommations(consommations);
             }
+            progression.accept(rejeu.nbVentes);
+
+            if (tranche.size() < tailleTranche) {
+                break;
+            }
+            Object[] derniere = tranche.get(tranche.size() - 1);
+            tranche = venteRepository.findTrancheBackfillApres(
+                    tenant, nomProduit, (LocalDateTime) derniere[3], (String) derniere[0], limite);
+        }
+
+        List<Lot> lotsEntames = lots.stream().filter(Lot::estEntame).toList();
+        rejeu.nbLotsEntames += lotsEntames.size();
+        if (!dryRun) {
+            jdbcTemplate.batchUpdate(SQL_UPDATE_LOT, lotsEntames, tailleTranche, (ps, lot) -> {
+                ps.setDouble(1, lot.quantiteRestante);
+                ps.setString(2, lot.id);
+                ps.setLong(3, tenant.getId());
+            });
+        }
+    }
+
+    /**
+     * Insère les consommations d'une tranche par batch JDBC : l'id IDENTITY de
+     * vente_lot_consommation empêche Hibernate de regrouper les INSERT.
+     * Ligne : [venteId, achatId, tenantId, quantite, prixAchat, prixVente, beneficeUnitaire, beneficeTotal, dateVente].
+     */
+    private void insererConsommations(List<Object[]> consommations) {
+        if (consommations.isEmpty()) return;
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_INSERT_CONSOMMATION, consommations, consommations.size(), (ps, c) -> {
+            ps.setString(1, (String) c[0]);
+            ps.setString(2, (String) c[1]);
+            ps.setLong(3, (Long) c[2]);
+            ps.setDouble(4, (Double) c[3]);
+            ps.setBigDecimal(5, (BigDecimal) c[4]);
+            ps.setBigDecimal(6, (BigDecimal) c[5]);
+            ps.setBigDecimal(7, (BigDecimal) c[6]);
+            ps.setBigDecimal(8, (BigDecimal) c[7]);
+            ps.setTimestamp(9, Timestamp.valueOf((LocalDateTime) c[8]));
+            ps.setTimestamp(10, maintenant);
+            ps.setTimestamp(11, maintenant);
+        });
+    }
+
+    /** État compact d'un lot d'achat pendant le rejeu. */
+    static final class Lot {
+        private final String     id;
+        private final BigDecimal prixUnitaire;
+        private final double     quantite;
+        private double           quantiteRestante;
+
+        private Lot(String id, BigDecimal prixUnitaire, double quantite) {
+            this.id = id;
+            this.prixUnitaire = prixUnitaire;
+            this.quantite = quantite;
+            this.quantiteRestante = quantite;
         }
 
-        // 3. Indexer les lots par nom de produit pour accès rapide
-        Map<String, List<AchatEntity>> lotsParProduit = new HashMap<>();
-        for (AchatEntity a : achats) {
-            lotsParProduit
-                    .computeIfAbsent(a.getNomProduit(), k -> new ArrayList<>())
-                    .add(a);
+        private boolean estEntame() {
+            return quantiteRestante != quantite;
         }
+    }
+
+    /** Compteurs du rapport, mis à jour vente par vente sur l'ensemble des produits. */
+    static final class Rejeu {
+        private final TenantEntity tenant;
+        private final List<String> anomalies = new ArrayList<>();
 
-        // 4. Rejouer toutes les ventes dans l'ordre chronologique
-        List<VenteEntity> ventes = venteRepository.findAllByTenantOrderByDateAsc(tenant);
+        private long       nbVentes;
+        private long       nbConsommations;
+        private long       nbEntierementTracees;
+        private long       nbPartiellementTracees;
+        private long       nbNonTracees;
+        private long       nbAnomalies;
+        private long       nbLotsEntames;
+        private BigDecimal beneficeTotal = BigDecimal.ZERO;
 
-        long nbConsommationsCreees       = 0;
-        long nbVentesEntierementTracees  = 0;
-        long nbVentesPartiellementTracees = 0;
-        long nbVentesNonTracees          = 0;
-        BigDecimal beneficeTotal         = BigDecimal.ZERO;
-        List<VenteLotConsommationEntity> nouvellesConsommations = new ArrayList<>();
+        private Rejeu(TenantEntity tenant) {
+            this.tenant = tenant;
+        }
 
-        for (VenteEntity vente : ventes) {
-            String nomProduit = vente.getNomProduit();
-            double quantiteAVendre = vente.getQuantite() != null ? vente.getQuantite() : 0.0;
+        /**
+         * Applique le FIFO à une vente [id, quantite, prixUnitaire, dateVente] sur les lots
+         * de son produit et ajoute ses lignes de consommation à la tranche.
+         */
+        private void rejouer(Object[] vente, String nomProduit, List<Lot> lots, List<Object[]> consommations) {
+            nbVentes++;
+            String venteId = (String) vente[0];
+            double quantiteAVendre = vente[1] != null ? (Double) vente[1] : 0.0;
+            BigDecimal prixVente = (BigDecimal) vente[2];
+            LocalDateTime dateVente = (LocalDateTime) vente[3];
             if (quantiteAVendre <= 0) {
-                continue;
+                return;
             }
 
-            List<AchatEntity> lots = lotsParProduit.getOrDefault(nomProduit, List.of());
             if (lots.isEmpty()) {
-                nbVentesNonTracees++;
-                anomalies.add(String.format("Vente %s (%s, %s) : aucun lot d'achat pour le produit '%s'",
-                        vente.getId(),
-                        vente.getDateVente() != null ? vente.getDateVente().toLocalDate() : "?",
-                        formatQuantite(quantiteAVendre),
-                        nomProduit));
-                continue;
+                nbNonTracees++;
+                anomalie(String.format("Vente %s (%s, %s) : aucun lot d'achat pour le produit '%s'",
+                        venteId, date(dateVente), formatQuantite(quantiteAVendre), nomProduit));
+                return;
             }
 
             double quantiteRestanteAVendre = quantiteAVendre;
-            List<VenteLotConsommationEntity> consoVente = new ArrayList<>();
-
-            for (AchatEntity lot : lots) {
+            int nbLignes = 0;
+            for (Lot lot : lots) {
                 if (quantiteRestanteAVendre <= 0) break;
-                if (lot.getQuantiteRestante() == null || lot.getQuantiteRestante() <= 0) continue;
-
-                double aPuiser = Math.min(lot.getQuantiteRestante(), quantiteRestanteAVendre);
-
-                VenteLotConsommationEntity c = VenteLotConsommationEntity.builder()
-                        .vente(vente)
-                        .achat(lot)
-                        .tenant(tenant)
-                        .quantiteConsommee(aPuiser)
-                        .prixAchatUnitaireSnapshot(lot.getPrixUnitaire())
-                        .prixVenteUnitaireSnapshot(vente.getPrixUnitaire())
-                        .dateVenteSnapshot(vente.getDateVente())
-                        .build();
-                c.recalculerBenefice();
-                consoVente.add(c);
-
-                lot.setQuantiteRestante(lot.getQuantiteRestante() - aPuiser);
+                if (lot.quantiteRestante <= 0) continue;
+
+                double aPuiser = Math.min(lot.quantiteRestante, quantiteRestanteAVendre);
+                // Même calcul que VenteLotConsommationEntity.recalculerBenefice
+                BigDecimal beneficeUnitaire = prixVente.subtract(lot.prixUnitaire).setScale(2, RoundingMode.HALF_UP);
+                BigDecimal beneficeLigne = beneficeUnitaire.multiply(BigDecimal.valueOf(aPuiser))
+                        .setScale(2, RoundingMode.HALF_UP);
+
+                consommations.add(new Object[]{venteId, lot.id, tenant.getId(), aPuiser,
+                        lot.prixUnitaire, prixVente, beneficeUnitaire, beneficeLigne, dateVente});
+                beneficeTotal = beneficeTotal.add(beneficeLigne);
+                nbLignes++;
+
+                lot.quantiteRestante -= aPuiser;
                 quantiteRestanteAVendre -= aPuiser;
             }
-
-            nouvellesConsommations.addAll(consoVente);
-            nbConsommationsCreees += consoVente.size();
-            beneficeTotal = beneficeTotal.add(
-                    consoVente.stream()
-                            .map(VenteLotConsommationEntity::getBeneficeTotalLigne)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add));
+            nbConsommations += nbLignes;
 
             if (quantiteRestanteAVendre <= 0) {
-                nbVentesEntierementTracees++;
-            } else if (consoVente.isEmpty()) {
-                nbVentesNonTracees++;
-                anomalies.add(String.format("Vente %s (%s) : stock épuisé pour '%s' (manque %s)",
-                        vente.getId(),
-                        vente.getDateVente() != null ? vente.getDateVente().toLocalDate() : "?",
-                        nomProduit,
-                        formatQuantite(quantiteRestanteAVendre)));
+                nbEntierementTracees++;
+            } else if (nbLignes == 0) {
+                nbNonTracees++;
+                anomalie(String.format("Vente %s (%s) : stock épuisé pour '%s' (manque %s)",
+                        venteId, date(dateVente), nomProduit, formatQuantite(quantiteRestanteAVendre)));
             } else {
-                nbVentesPartiellementTracees++;
-                anomalies.add(String.format("Vente %s (%s) : %s sur %s tracées pour '%s' (manque %s)",
-                        vente.getId(),
-                        vente.getDateVente() != null ? vente.getDateVente().toLocalDate() : "?",
+                nbPartiellementTracees++;
+                anomalie(String.format("Vente %s (%s) : %s sur %s tracées pour '%s' (manque %s)",
+                        venteId, date(dateVente),
                         formatQuantite(quantiteAVendre - quantiteRestanteAVendre),
                         formatQuantite(quantiteAVendre),
                         nomProduit,
@@ -170,37 +328,16 @@ public class FifoBackfillService {
             }
         }
 
-        // 5. Sauvegarde en mode réel
-        if (!dryRun) {
-            achatRepository.saveAll(achats);
-            consommationRepository.saveAll(nouvellesConsommations);
-            log.info("FIFO Backfill : {} ligne(s) de consommation créée(s), {} achat(s) mis à jour",
-                    nouvellesConsommations.size(), achats.size());
-        } else {
-            log.info("FIFO Backfill (DRY-RUN) : {} ligne(s) qui auraient été créées, {} achat(s) qui auraient été mis à jour",
-                    nouvellesConsommations.size(), achats.size());
+        private void anomalie(String message) {
+            nbAnomalies++;
+            if (anomalies.size() < MAX_ANOMALIES_DETAILLEES) {
+                anomalies.add(message);
+            }
         }
 
-        long dureeMs = System.currentTimeMillis() - t0;
-        log.info("FIFO Backfill : terminé en {} ms — {} ventes, {} entièrement / {} partiellement / {} non tracées, bénéfice total = {}",
-                dureeMs, ventes.size(),
-                nbVentesEntierementTracees, nbVentesPartiellementTracees, nbVentesNonTracees,
-                beneficeTotal);
-
-        return FifoBackfillRapportDto.builder()
-                .dryRun(dryRun)
-                .tenantUuid(tenant.getTenantUuid())
-                .tenantNom(tenant.getNomEntreprise())
-                .nbAchatsTraites(achats.size())
-                .nbVentesTraitees(ventes.size())
-                .nbConsommationsCreees(nbConsommationsCreees)
-                .nbVentesEntierementTracees(nbVentesEntierementTracees)
-                .nbVentesPartiellementTracees(nbVentesPartiellementTracees)
-                .nbVentesNonTracees(nbVentesNonTracees)
-                .beneficeTotalReconstitue(beneficeTotal)
-                .anomalies(anomalies)
-                .dureeMs(dureeMs)
-                .build();
+        private static Object date(LocalDateTime dateVente) {
+            return dateVente != null ? dateVente.toLocalDate() : "?";
+        }
     }
 
     private static String formatQuantite(double q) {
@@ -6,14 +6,24 @@ import com.example.dijasaliou.entity.VenteEntity;
 import com.example.dijasaliou.entity.VenteLotConsommationEntity;
 import com.example.dijasaliou.repository.AchatRepository;
 import com.example.dijasaliou.repository.VenteLotConsommationRepository;
+import com.example.dijasaliou.repository.VenteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service de calcul du bénéfice net par méthode FIFO (First In, First Out).
@@ -34,6 +44,7 @@ public class FifoCalculService {
 
     private final AchatRepository achatRepository;
     private final VenteLotConsommationRepository consommationRepository;
+    private final VenteRepository venteRepository;
 
     /**
      * Consomme le stock FIFO pour une vente et crée les lignes de consommation.
@@ -62,7 +73,6 @@ public class FifoCalculService {
 
         final TenantEntity tenant = vente.getTenant();
         final String nomProduit = vente.getNomProduit();
-        final BigDecimal prixVenteUnitaire = vente.getPrixUnitaire();
 
         // 1. Récupérer les lots disponibles, triés par date ASC (FIFO)
         List<AchatEntity> lots = achatRepository.findLotsDisponiblesFifo(nomProduit, tenant);
@@ -75,8 +85,97 @@ public class FifoCalculService {
         }
 
         // 2. Puiser dans chaque lot jusqu'à couvrir la quantité vendue
-        double quantiteRestanteAVendre = vente.getQuantite();
         List<VenteLotConsommationEntity> consommations = new ArrayList<>();
+        double quantiteRestanteAVendre = puiserDansLots(vente, lots, consommations);
+
+        // 3. Sauvegarder les consommations et les lots modifiés en un seul flush
+        consommationRepository.saveAll(consommations);
+        // achatRepository.saveAll(lots) : optionnel, les lots sont déjà gérés par le contexte JPA
+        // mais on le fait explicitement pour la clarté du flush
+        achatRepository.saveAll(lots);
+
+        if (quantiteRestanteAVendre > 0) {
+            logStockInsuffisant(vente, quantiteRestanteAVendre);
+        }
+
+        BigDecimal beneficeTotal = consommations.stream()
+                .map(VenteLotConsommationEntity::getBeneficeTotalLigne)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        log.debug("FIFO : vente {} → {} ligne(s) de consommation, bénéfice total = {}",
+                vente.getId(), consommations.size(), beneficeTotal);
+
+        return consommations;
+    }
+
+    /**
+     * Consomme le stock FIFO pour toutes les ventes d'un panier.
+     *
+     * Même logique que consommerStockFifo, mais les lots de tous les produits sont
+     * chargés en UNE requête et les consommations sauvegardées en un seul saveAll.
+     * Deux lignes du même produit puisent successivement dans les mêmes lots.
+     *
+     * @param ventes Ventes du panier (déjà sauvegardées, même tenant).
+     * @return Toutes les lignes de consommation créées.
+     */
+    @Transactional
+    public List<VenteLotConsommationEntity> consommerStockFifoPanier(List<VenteEntity> ventes) {
+        List<VenteEntity> aConsommer = ventes.stream()
+                .filter(v -> v.getQuantite() != null && v.getQuantite() > 0)
+                .toList();
+        if (aConsommer.isEmpty()) {
+            return List.of();
+        }
+        for (VenteEntity vente : aConsommer) {
+            if (vente.getId() == null) {
+                throw new IllegalArgumentException("La vente doit être sauvegardée (id non null) avant le FIFO");
+            }
+        }
+
+        final TenantEntity tenant = aConsommer.get(0).getTenant();
+        Set<String> nomsProduits = new LinkedHashSet<>();
+        aConsommer.forEach(v -> nomsProduits.add(v.getNomProduit()));
+
+        // 1. Lots de tous les produits du panier, regroupés par nom normalisé
+        //    (la comparaison de nomProduit en base est insensible à la casse sous MySQL)
+        Map<String, List<AchatEntity>> lotsParProduit = new HashMap<>();
+        for (AchatEntity lot : achatRepository.findLotsDisponiblesFifoPourProduits(nomsProduits, tenant)) {
+            lotsParProduit.computeIfAbsent(StockProduitService.normaliser(lot.getNomProduit()), k -> new ArrayList<>())
+                    .add(lot);
+        }
+
+        // 2. Puiser, ligne par ligne, dans l'ordre du panier
+        List<VenteLotConsommationEntity> consommations = new ArrayList<>();
+        // Identité : le hashCode d'AchatEntity dépend de quantiteRestante, modifiée ici
+        Set<AchatEntity> lotsModifies = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (VenteEntity vente : aConsommer) {
+            List<AchatEntity> lots = lotsParProduit.getOrDefault(
+                    StockProduitService.normaliser(vente.getNomProduit()), List.of());
+            int avant = consommations.size();
+            double reste = puiserDansLots(vente, lots, consommations);
+            consommations.subList(avant, consommations.size()).forEach(c -> lotsModifies.add(c.getAchat()));
+            if (reste > 0) {
+                logStockInsuffisant(vente, reste);
+            }
+        }
+
+        // 3. Un seul saveAll pour les consommations et les lots modifiés
+        consommationRepository.saveAll(consommations);
+        achatRepository.saveAll(lotsModifies);
+
+        log.debug("FIFO : panier de {} vente(s) → {} ligne(s) de consommation",
+                aConsommer.size(), consommations.size());
+        return consommations;
+    }
+
+    /**
+     * Puise dans les lots (déjà triés FIFO) jusqu'à couvrir la quantité de la vente.
+     * Décrémente quantite_restante des lots et ajoute les consommations créées.
+     *
+     * @return Quantité restant à couvrir (> 0 si les lots sont insuffisants).
+     */
+    private double puiserDansLots(VenteEntity vente, List<AchatEntity> lots,
+                                  List<VenteLotConsommationEntity> consommations) {
+        double quantiteRestanteAVendre = vente.getQuantite();
 
         for (AchatEntity lot : lots) {
             if (quantiteRestanteAVendre <= 0) {
@@ -93,10 +192,10 @@ public class FifoCalculService {
             VenteLotConsommationEntity consommation = VenteLotConsommationEntity.builder()
                     .vente(vente)
                     .achat(lot)
-                    .tenant(tenant)
+                    .tenant(vente.getTenant())
                     .quantiteConsommee(quantiteAPuiser)
                     .prixAchatUnitaireSnapshot(lot.getPrixUnitaire())
-                    .prixVenteUnitaireSnapshot(prixVenteUnitaire)
+                    .prixVenteUnitaireSnapshot(vente.getPrixUnitaire())
                     .dateVenteSnapshot(vente.getDateVente())
                     .build();
             consommation.recalculerBenefice();
@@ -107,26 +206,13 @@ public class FifoCalculService {
             lot.setQuantiteRestante(quantiteDispoLot - quantiteAPuiser);
             quantiteRestanteAVendre -= quantiteAPuiser;
         }
+        return quantiteRestanteAVendre;
+    }
 
-        // 3. Sauvegarder les consommations et les lots modifiés en un seul flush
-        consommationRepository.saveAll(consommations);
-        // achatRepository.saveAll(lots) : optionnel, les lots sont déjà gérés par le contexte JPA
-        // mais on le fait explicitement pour la clarté du flush
-        achatRepository.saveAll(lots);
-
-        if (quantiteRestanteAVendre > 0) {
-            log.warn("FIFO : stock insuffisant pour le produit '{}' (tenant={}). " +
-                    "Vente {} : {} unité(s) non tracée(s) (vendues sans lot d'achat correspondant).",
-                    nomProduit, tenant.getTenantUuid(), vente.getId(), quantiteRestanteAVendre);
-        }
-
-        BigDecimal beneficeTotal = consommations.stream()
-                .map(VenteLotConsommationEntity::getBeneficeTotalLigne)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        log.debug("FIFO : vente {} → {} ligne(s) de consommation, bénéfice total = {}",
-                vente.getId(), consommations.size(), beneficeTotal);
-
-        return consommations;
+    private void logStockInsuffisant(VenteEntity vente, double quantiteNonTracee) {
+        log.warn("FIFO : stock insuffisant pour le produit '{}' (tenant={}). " +
+                "Vente {} : {} unité(s) non tracée(s) (vendues sans lot d'achat correspondant).",
+                vente.getNomProduit(), vente.getTenant().getTenantUuid(), vente.getId(), quantiteNonTracee);
     }
 
     /**
@@ -163,18 +249,120 @@ public class FifoCalculService {
     }
 
     /**
-     * Refait le calcul FIFO pour une vente existante :
-     *   1. Annule la consommation actuelle (rend les unités aux lots).
-     *   2. Refait la consommation avec l'état actuel de la vente.
-     *
-     * À utiliser lors d'une modification de vente (changement de produit, quantité ou prix).
+     * Après modification d'une vente : annule sa consommation puis rejoue le FIFO
+     * de l'ancien et du nouveau produit à partir de la plus ancienne des deux dates
+     * (avant / après modification). Les ventes postérieures du produit retrouvent
+     * ainsi le vrai ordre FIFO, sans toucher à l'historique antérieur.
      *
-     * @param vente La vente à recalculer (id non null, déjà à jour en base).
-     * @return Les nouvelles lignes de consommation.
+     * @param vente            La vente déjà mise à jour en base.
+     * @param ancienNomProduit Produit avant modification.
+     * @param ancienneDate     Date de vente avant modification.
      */
     @Transactional
-    public List<VenteLotConsommationEntity> recalculerFifo(VenteEntity vente) {
+    public void rejouerApresModificationVente(VenteEntity vente, String ancienNomProduit, LocalDateTime ancienneDate) {
         annulerConsommationFifo(vente.getId());
-        return consommerStockFifo(vente);
+        LocalDateTime depuis = plusAncienne(ancienneDate, vente.getDateVente());
+        if (ancienNomProduit != null && !ancienNomProduit.equals(vente.getNomProduit())) {
+            rejouerProduitDepuis(vente.getTenant(), ancienNomProduit, depuis);
+        }
+        rejouerProduitDepuis(vente.getTenant(), vente.getNomProduit(), depuis);
+    }
+
+    /**
+     * Après modification d'un achat (quantité, prix, date ou produit) : rejoue le FIFO
+     * de l'ancien et du nouveau produit à partir de la plus ancienne date parmi
+     * l'ancienne date d'achat, la nouvelle, et la première vente ayant puisé dans ce lot.
+     *
+     * @param achat             L'achat déjà mis à jour en base.
+     * @param ancienNomProduit  Produit avant modification.
+     * @param ancienneDateAchat Date d'achat avant modification.
+     */
+    @Transactional
+    public void rejouerApresModificationAchat(AchatEntity achat, String ancienNomProduit, LocalDateTime ancienneDateAchat) {
+        LocalDateTime depuis = plusAncienne(
+                plusAncienne(ancienneDateAchat, achat.getDateAchat()),
+                consommationRepository.findPremiereDateVenteParAchat(achat.getId()));
+        if (ancienNomProduit != null && !ancienNomProduit.equals(achat.getNomProduit())) {
+            rejouerProduitDepuis(achat.getTenant(), ancienNomProduit, depuis);
+        }
+        rejouerProduitDepuis(achat.getTenant(), achat.getNomProduit(), depuis);
+    }
+
+    /**
+     * Rejeu FIFO incrémental d'un seul produit, à partir d'une date.
+     *
+     *   1. Ventes du produit datées de `depuis` ou après (la "traîne"), triées par (date, id).
+     *   2. Suppression de leurs lignes de consommation.
+     *   3. Lots concernés = lots encore ouverts + lots libérés par la traîne ;
+     *      quantite_restante recalculée = quantite − consommations restantes.
+     *   4. Rejeu de la traîne dans ces lots (même logique que consommerStockFifo).
+     *
+     * Coût proportionnel à la traîne et aux lots ouverts, pas à tout l'historique.
+     * Les ventes antérieures à `depuis` gardent leurs consommations.
+     *
+     * @return Nombre de ventes rejouées.
+     */
+    @Transactional
+    public int rejouerProduitDepuis(TenantEntity tenant, String nomProduit, LocalDateTime depuis) {
+        if (tenant == null || nomProduit == null || depuis == null) {
+            return 0;
+        }
+
+        // 1-2. Traîne et suppression de ses consommations
+        List<VenteEntity> traine = venteRepository.findVentesProduitDepuis(nomProduit, tenant, depuis);
+        // Par id : un lot peut revenir à la fois comme lot libéré et comme lot ouvert
+        Map<String, AchatEntity> lotsModifies = new LinkedHashMap<>();
+        if (!traine.isEmpty()) {
+            List<VenteLotConsommationEntity> anciennes = consommationRepository.findByVenteIdIn(
+                    traine.stream().map(VenteEntity::getId).toList());
+            anciennes.forEach(c -> lotsModifies.putIfAbsent(c.getAchat().getId(), c.getAchat()));
+            consommationRepository.deleteAll(anciennes);
+        }
+
+        // 3. Lots ouverts + lots libérés, remis à quantite − consommations restantes
+        achatRepository.findLotsDisponiblesFifo(nomProduit, tenant)
+                .forEach(lot -> lotsModifies.putIfAbsent(lot.getId(), lot));
+        if (lotsModifies.isEmpty()) {
+            return traine.size();
+        }
+        Map<String, Double> consommeParLot = new HashMap<>();
+        for (Object[] row : consommationRepository.sumQuantiteConsommeeParAchat(lotsModifies.keySet())) {
+            consommeParLot.put((String) row[0], ((Number) row[1]).doubleValue());
+        }
+        for (AchatEntity lot : lotsModifies.values()) {
+            double quantite = lot.getQuantite() != null ? lot.getQuantite() : 0.0;
+            lot.setQuantiteRestante(Math.max(0.0, quantite - consommeParLot.getOrDefault(lot.getId(), 0.0)));
+        }
+
+        // 4. Rejouer la traîne dans les lots du produit (un lot libéré peut avoir changé de produit) ;
+        //    nom exact, comme findVentesProduitDepuis et findLotsDisponiblesFifo
+        List<AchatEntity> lots = lotsModifies.values().stream()
+                .filter(lot -> nomProduit.equals(lot.getNomProduit()))
+                .sorted(Comparator.comparing(AchatEntity::getDateAchat,
+                                Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(AchatEntity::getId))
+                .toList();
+        List<VenteLotConsommationEntity> consommations = new ArrayList<>();
+        for (VenteEntity vente : traine) {
+            if (vente.getQuantite() == null || vente.getQuantite() <= 0) {
+                continue;
+            }
+            double reste = puiserDansLots(vente, lots, consommations);
+            if (reste > 0) {
+                logStockInsuffisant(vente, reste);
+            }
+        }
+        consommationRepository.saveAll(consommations);
+        achatRepository.saveAll(lotsModifies.values());
+
+        log.debug("FIFO : rejeu de '{}' depuis {} → {} vente(s), {} lot(s), {} ligne(s) de consommation",
+                nomProduit, depuis, traine.size(), lotsModifies.size(), consommations.size());
+        return traine.size();
+    }
+
+    private static LocalDateTime plusAncienne(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isBefore(b) ? a : b;
     }
 }
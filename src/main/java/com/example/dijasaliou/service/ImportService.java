@@ -24,6 +24,7 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
@@ -58,6 +59,8 @@ public class ImportService {
     private final StockService       stockService;
     private final TenantService      tenantService;
     private final FifoBackfillService fifoBackfillService;
+    private final StockProduitService stockProduitService;
+    private final InvalidationDonneesService invalidationDonneesService;
 
     /** Auto-injection différée pour appeler les méthodes @Transactional via le proxy Spring */
     @Autowired @Lazy
@@ -229,6 +232,10 @@ public class ImportService {
         int ignorees  = ignoreesParsePhase;
 
         List<Object> batch = new ArrayList<>();
+        // Produits dont la ligne stock_produit doit être recalculée après l'import
+        Set<String> produitsTouches = new HashSet<>();
+        // Plus ancienne date importée : clôtures de caisse à invalider à partir de ce jour
+        LocalDateTime premiereDate = null;
 
         for (Map<String, Object> donnees : donneesParsees) {
             Object entite = construireEntite(donnees, type, utilisateur, tenant);
@@ -247,6 +254,10 @@ public class ImportService {
             if (cle != null) cleesExistantes.add(cle);
 
             batch.add(entite);
+            if (entite instanceof AchatEntity a) produitsTouches.add(a.getNomProduit());
+            if (entite instanceof VenteEntity v) produitsTouches.add(v.getNomProduit());
+            LocalDateTime date = dateOperation(entite);
+            if (date != null && (premiereDate == null || date.isBefore(premiereDate))) premiereDate = date;
             if (batch.size() >= BATCH_SIZE) {
                 importees += sauvegarderBatch(batch, type);
                 batch.clear();
@@ -257,6 +268,12 @@ public class ImportService {
             importees += sauvegarderBatch(batch, type);
         }
 
+        // Ledger de stock : un recalcul par produit importé, dans la même transaction
+        if (!produitsTouches.isEmpty()) {
+            stockProduitService.recalculerProduits(tenant, produitsTouches);
+        }
+        invalidationDonneesService.invaliderDepuis(tenant, premiereDate);
+
         return ImportResultatDto.builder()
                 .type(type)
                 .totalTraitees(importees + ignorees)
@@ -701,6 +718,14 @@ public class ImportService {
         };
     }
 
+    /** Date métier d'une entité importée (celle sur laquelle la caisse agrège). */
+    private LocalDateTime dateOperation(Object entite) {
+        if (entite instanceof AchatEntity a) return a.getDateAchat();
+        if (entite instanceof VenteEntity v) return v.getDateVente();
+        if (entite instanceof DepenseEntity d) return d.getDateDepense();
+        return null;
+    }
+
     /** Retourne la clé composite d'un doublon pour une entité déjà construite. */
     private String cleDoublon(Object entite, String type) {
         return switch (type) {
@@ -0,0 +1,65 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Point d'entrée unique des écritures de données d'un tenant (ventes, achats, dépenses,
+ * crédits, paiements crédit, transferts et mouvements de caisse) : chaque création,
+ * modification ou suppression appelle {@link #invaliderDepuis} avec la date de l'opération.
+ *
+ * Règle, pour tous les résultats calculés à partir de ces données :
+ * - toute écriture change la version des données du tenant (DonneesVersionService,
+ *   clé des rapports en cache), même datée d'aujourd'hui ;
+ * - une écriture datée d'un jour TERMINÉ (antérieur à aujourd'hui, fuseau du tenant)
+ *   invalide en plus, à partir de ce jour, les clôtures de caisse (CaisseClotureService)
+ *   et les agrégats journaliers (RollupJourService). Ceux-ci ne couvrent que des journées
+ *   terminées : une écriture du jour ne peut pas les rendre faux, et le chemin courant
+ *   (vente, achat, dépense du jour) évite ainsi deux requêtes.
+ */
+@Service
+@RequiredArgsConstructor
+public class InvalidationDonneesService {
+
+    private final DonneesVersionService donneesVersionService;
+    private final CaisseClotureService caisseClotureService;
+    private final RollupJourService rollupJourService;
+
+    /** Opération datée de {@code dateOperation} créée, modifiée ou supprimée. */
+    @Transactional
+    public void invaliderDepuis(TenantEntity tenant, LocalDateTime dateOperation) {
+        invaliderDepuis(tenant, dateOperation != null ? dateOperation.toLocalDate() : null);
+    }
+
+    /** Modification d'une opération : invalide à partir de la plus ancienne des deux dates. */
+    @Transactional
+    public void invaliderDepuis(TenantEntity tenant, LocalDateTime ancienneDate, LocalDateTime nouvelleDate) {
+        if (ancienneDate == null || (nouvelleDate != null && nouvelleDate.isBefore(ancienneDate))) {
+            invaliderDepuis(tenant, nouvelleDate);
+        } else {
+            invaliderDepuis(tenant, ancienneDate);
+        }
+    }
+
+    /** Variante {@link LocalDate} pour les champs jour-seul (datePaiement). */
+    @Transactional
+    public void invaliderDepuis(TenantEntity tenant, LocalDate jour) {
+        if (tenant == null) {
+            return;
+        }
+        // Toujours, quelle que soit la date (y compris inconnue)
+        donneesVersionService.signalerModification(tenant);
+
+        // Seulement pour une journée terminée
+        if (jour == null || !jour.isBefore(CaisseClotureService.aujourdhui(tenant))) {
+            return;
+        }
+        caisseClotureService.invaliderDepuis(tenant, jour);
+        rollupJourService.invaliderDepuis(tenant, jour);
+    }
+}
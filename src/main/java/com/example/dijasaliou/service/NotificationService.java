@@ -12,7 +12,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -93,9 +92,9 @@ public class NotificationService {
     }
 
     /**
-     * Envoyer les emails en arrière-plan
+     * Mettre les emails en file, dans la transaction de la notification :
+     * EmailOutboxService les envoie ensuite en arrière-plan, à débit limité
      */
-    @Async
     protected void envoyerEmails(List<TenantEntity> destinataires, String objet, String message) {
         for (TenantEntity t : destinataires) {
             try {
@@ -8,6 +8,7 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -33,8 +34,11 @@ public class ProduitReferenceService {
      * Contribue un produit à la base partagée.
      * Appelé automatiquement quand un commerçant renseigne un nouveau produit avec code-barre.
      * Si le code-barre existe déjà, incrémente le compteur d'utilisations.
+     *
+     * Transaction séparée : appelée depuis creerAchat, un échec ici ne doit pas
+     * annuler l'achat (ni le ledger de stock enregistré dans la même transaction).
      */
-    @Transactional
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void contribuer(String codeBarre, String nomProduit, String photoUrl, String categorie, String tenantNom) {
         if (codeBarre == null || codeBarre.isBlank() || nomProduit == null || nomProduit.isBlank()) {
             return;
@@ -0,0 +1,454 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.SuperAdminPushSubscription;
+import com.example.dijasaliou.entity.UserPushSubscription;
+import com.example.dijasaliou.repository.SuperAdminPushSubscriptionRepository;
+import com.example.dijasaliou.repository.UserPushSubscriptionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nl.martijndwars.webpush.Encoding;
+import nl.martijndwars.webpush.Notification;
+import nl.martijndwars.webpush.PushService;
+import nl.martijndwars.webpush.Subscription;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.Security;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Pipeline d'envoi des notifications Web Push (super admins et utilisateurs).
+ *
+ * {@link PushNotificationService} et {@link UserPushNotificationService} y soumettent
+ * leurs envois au lieu de passer par l'exécuteur @Async partagé (emails, rapports...) :
+ *   - file bornée (app.push.file-max) et pool de workers dédié (app.push.workers) :
+ *     une rafale de notifications n'affame plus les autres tâches asynchrones ;
+ *     file pleine → l'envoi est abandonné et compté, jamais bloquant pour l'appelant ;
+ *   - chiffrement sur les workers, puis requêtes HTTP non bloquantes sur un client
+ *     partagé avec pool de connexions (app.push.connexions-max) : les appareils d'un
+ *     envoi partent en parallèle, sans un client HTTP créé par envoi ;
+ *   - 429 / 5xx / erreur réseau : nouvel essai avec délai exponentiel (Retry-After
+ *     respecté), au plus app.push.tentatives-max tentatives ;
+ *   - 404 / 410 (subscription expirée) et derniereUtilisation : mis en tampon et écrits
+ *     en lot toutes les app.push.flush-interval-ms (un DELETE / UPDATE ... IN par lot).
+ *
+ * Les compteurs (file, envois en cours, latences) sont exposés par {@link #statistiques()}
+ * dans les stats de monitoring du super admin.
+ *
+ * Configuration VAPID : VAPID_PUBLIC_KEY, VAPID_PRIVATE_KEY, VAPID_SUBJECT.
+ * Si non configuré → désactivé silencieusement.
+ */
+@Service
+@Slf4j
+public class PushDispatcher {
+
+    /** Taille maximale de la liste IN d'un DELETE / UPDATE. */
+    static final int TAILLE_LOT = 1_000;
+    /** Délai maximal entre deux tentatives, Retry-After compris. */
+    static final long DELAI_MAX_MS = 60_000;
+
+    public enum Origine { UTILISATEUR, SUPER_ADMIN }
+
+    /**
+     * Appareil destinataire : copie des champs de la subscription, utilisable
+     * hors transaction par les workers et les callbacks HTTP.
+     */
+    public record Destinataire(Origine origine, Long id, String endpoint, String p256dh, String auth) {
+
+        public static Destinataire de(UserPushSubscription sub) {
+            return new Destinataire(Origine.UTILISATEUR, sub.getId(), sub.getEndpoint(), sub.getP256dh(), sub.getAuthKey());
+        }
+
+        public static Destinataire de(SuperAdminPushSubscription sub) {
+            return new Destinataire(Origine.SUPER_ADMIN, sub.getId(), sub.getEndpoint(), sub.getP256dh(), sub.getAuthKey());
+        }
+    }
+
+    private final UserPushSubscriptionRepository userRepository;
+    private final SuperAdminPushSubscriptionRepository superAdminRepository;
+    private final String publicKey;
+    private final String privateKey;
+    private final String subject;
+    private final int workers;
+    private final int fileMax;
+    private final int connexionsMax;
+    private final int tentativesMax;
+    private final long delaiReessaiMs;
+
+    private PushService pushService;
+    private boolean enabled;
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService reessais;
+    private CloseableHttpAsyncClient client;
+
+    /** Résultats en attente d'écriture en lot */
+    private final ConcurrentLinkedQueue<Destinataire> expirees = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Destinataire> utilisees = new ConcurrentLinkedQueue<>();
+
+    // Compteurs depuis le démarrage
+    private final AtomicLong soumis = new AtomicLong();
+    private final AtomicLong rejetes = new AtomicLong();
+    private final AtomicLong envoyes = new AtomicLong();
+    private final AtomicLong expires = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong nouveauxEssais = new AtomicLong();
+    private final AtomicInteger enCours = new AtomicInteger();
+    private final Latence attenteFile = new Latence();
+    private final Latence latenceEnvoi = new Latence();
+
+    public PushDispatcher(
+            UserPushSubscriptionRepository userRepository,
+            SuperAdminPushSubscriptionRepository superAdminRepository,
+            @Value("${vapid.public.key:}") String publicKey,
+            @Value("${vapid.private.key:}") String privateKey,
+            @Value("${vapid.subject:mailto:contact@heasystock.com}") String subject,
+            @Value("${app.push.workers:4}") int workers,
+            @Value("${app.push.file-max:10000}") int fileMax,
+            @Value("${app.push.connexions-max:50}") int connexionsMax,
+            @Value("${app.push.tentatives-max:4}") int tentativesMax,
+            @Value("${app.push.reessai-delai-ms:1000}") long delaiReessaiMs) {
+        this.userRepository = userRepository;
+        this.superAdminRepository = superAdminRepository;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.subject = subject;
+        this.workers = workers;
+        this.fileMax = fileMax;
+        this.connexionsMax = connexionsMax;
+        this.tentativesMax = tentativesMax;
+        this.delaiReessaiMs = delaiReessaiMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (publicKey == null || publicKey.isBlank() || privateKey == null || privateKey.isBlank()) {
+            log.warn("[PUSH] VAPID keys non configurées → push notifications désactivées.");
+            enabled = false;
+            return;
+        }
+        try {
+            Security.addProvider(new BouncyCastleProvider());
+            pushService = new PushService(publicKey, privateKey, subject);
+        } catch (Exception e) {
+            log.error("[PUSH] Échec d'initialisation du PushService : {}", e.getMessage());
+            enabled = false;
+            return;
+        }
+
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(fileMax), threads("push-"));
+        executor.allowCoreThreadTimeOut(true);
+        reessais = Executors.newSingleThreadScheduledExecutor(threads("push-reessai-"));
+        client = HttpAsyncClients.custom()
+                .setMaxConnTotal(connexionsMax)
+                .setMaxConnPerRoute(connexionsMax)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(5_000)
+                        .setSocketTimeout(10_000)
+                        .setConnectionRequestTimeout(30_000)
+                        .build())
+                .build();
+        client.start();
+        enabled = true;
+        log.info("[PUSH] Service push initialisé (subject={}, workers={}, file={}, connexions={})",
+                subject, workers, fileMax, connexionsMax);
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Soumet la préparation d'un envoi (préférences, lecture des subscriptions, payload)
+     * à la file des workers. Ne bloque jamais : file pleine → envoi abandonné.
+     *
+     * @param tache préparation, terminée en général par {@link #envoyer(List, String)}
+     * @return false si le push est désactivé ou la file pleine
+     */
+    public boolean soumettre(Runnable tache) {
+        if (!enabled) return false;
+        long soumisLe = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                attenteFile.enregistrer(System.nanoTime() - soumisLe);
+                try {
+                    tache.run();
+                } catch (RuntimeException e) {
+                    log.warn("[PUSH] Échec de la préparation d'un envoi : {}", e.getMessage());
+                }
+            });
+            soumis.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejetes.incrementAndGet();
+            log.warn("[PUSH] File d'envoi pleine ({} tâches), notification abandonnée", fileMax);
+            return false;
+        }
+    }
+
+    /**
+     * Envoie {@code payload} à chaque appareil, en parallèle. Rend la main dès les
+     * requêtes émises : les réponses sont traitées par les callbacks du client HTTP.
+     */
+    public void envoyer(List<Destinataire> destinataires, String payload) {
+        if (!enabled) return;
+        for (Destinataire destinataire : destinataires) {
+            envoyer(destinataire, payload, 1, System.nanoTime());
+        }
+    }
+
+    private void envoyer(Destinataire d, String payload, int tentative, long debut) {
+        HttpPost post;
+        try {
+            Subscription subscription = new Subscription(d.endpoint(), new Subscription.Keys(d.p256dh(), d.auth()));
+            post = pushService.preparePost(new Notification(subscription, payload), Encoding.AES128GCM);
+        } catch (Exception e) {
+            echecs.incrementAndGet();
+            log.warn("[PUSH] Chiffrement impossible pour subscription {} : {}", d.id(), e.getMessage());
+            return;
+        }
+
+        enCours.incrementAndGet();
+        client.execute(post, new FutureCallback<>() {
+            @Override
+            public void completed(HttpResponse response) {
+                enCours.decrementAndGet();
+                traiterReponse(d, payload, tentative, debut, response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                enCours.decrementAndGet();
+                reessayer(d, payload, tentative, debut, null, e.getMessage());
+            }
+
+            @Override
+            public void cancelled() {
+                enCours.decrementAndGet();
+                echecs.incrementAndGet();
+            }
+        });
+    }
+
+    private void traiterReponse(Destinataire d, String payload, int tentative, long debut, HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode >= 200 && statusCode < 300) {
+            envoyes.incrementAndGet();
+            latenceEnvoi.enregistrer(System.nanoTime() - debut);
+            utilisees.add(d);
+        } else if (statusCode == 410 || statusCode == 404) {
+            expires.incrementAndGet();
+            log.info("[PUSH] Subscription expirée/invalide ({}), suppression endpoint={}",
+                    statusCode, d.endpoint().substring(0, Math.min(60, d.endpoint().length())));
+            expirees.add(d);
+        } else if (statusCode == 429 || statusCode >= 500) {
+            reessayer(d, payload, tentative, debut, response.getFirstHeader("Retry-After"), "HTTP " + statusCode);
+        } else {
+            echecs.incrementAndGet();
+            log.warn("[PUSH] Envoi échoué ({}) pour subscription {}", statusCode, d.id());
+        }
+    }
+
+    /** Nouvel essai après délai exponentiel (ou Retry-After), rechiffré par un worker. */
+    private void reessayer(Destinataire d, String payload, int tentative, long debut, Header retryAfter, String cause) {
+        if (tentative >= tentativesMax) {
+            echecs.incrementAndGet();
+            log.warn("[PUSH] Envoi abandonné après {} tentative(s) pour subscription {} : {}", tentative, d.id(), cause);
+            return;
+        }
+        long delai = delaiAvantEssai(tentative, retryAfter);
+        nouveauxEssais.incrementAndGet();
+        log.debug("[PUSH] {} pour subscription {}, nouvel essai dans {} ms", cause, d.id(), delai);
+        try {
+            reessais.schedule(() -> {
+                try {
+                    executor.execute(() -> envoyer(d, payload, tentative + 1, debut));
+                } catch (RejectedExecutionException e) {
+                    rejetes.incrementAndGet();
+                }
+            }, delai, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            rejetes.incrementAndGet(); // arrêt en cours
+        }
+    }
+
+    long delaiAvantEssai(int tentative, Header retryAfter) {
+        if (retryAfter != null) {
+            try {
+                return Math.min(Long.parseLong(retryAfter.getValue().trim()) * 1000, DELAI_MAX_MS);
+            } catch (NumberFormatException ignored) {
+                // Retry-After au format date HTTP : délai exponentiel
+            }
+        }
+        long delai = delaiReessaiMs << Math.min(tentative - 1, 20);
+        // ± 20 % : les appareils refusés ensemble ne reviennent pas ensemble
+        delai += ThreadLocalRandom.current().nextLong(-delai / 5, delai / 5 + 1);
+        return Math.min(delai, DELAI_MAX_MS);
+    }
+
+    /**
+     * Écrit les résultats en attente : suppression des subscriptions expirées et
+     * derniereUtilisation des subscriptions jointes, par lots de TAILLE_LOT.
+     * Appelé périodiquement et à l'arrêt de l'application.
+     *
+     * @return Nombre de subscriptions supprimées
+     */
+    @Scheduled(fixedDelayString = "${app.push.flush-interval-ms:5000}")
+    public int appliquerResultats() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Map<Origine, Set<Long>> idsUtilises = vider(utilisees, Destinataire::id);
+        Map<Origine, Set<String>> endpointsExpires = vider(expirees, Destinataire::endpoint);
+
+        parLots(idsUtilises.get(Origine.UTILISATEUR), lot -> userRepository.updateDerniereUtilisationEnLot(lot, maintenant));
+        parLots(idsUtilises.get(Origine.SUPER_ADMIN), lot -> superAdminRepository.updateDerniereUtilisationEnLot(lot, maintenant));
+
+        int supprimees = 0;
+        supprimees += parLots(endpointsExpires.get(Origine.UTILISATEUR), lot -> userRepository.deleteByEndpointEnLot(lot));
+        supprimees += parLots(endpointsExpires.get(Origine.SUPER_ADMIN), lot -> superAdminRepository.deleteByEndpointEnLot(lot));
+        if (supprimees > 0) {
+            log.info("[PUSH] {} subscription(s) expirée(s) supprimée(s)", supprimees);
+        }
+        return supprimees;
+    }
+
+    /**
+     * Compteurs du pipeline depuis le démarrage (monitoring super admin).
+     */
+    public Map<String, Object> statistiques() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("actif", enabled);
+        stats.put("fileAttente", executor != null ? executor.getQueue().size() : 0);
+        stats.put("fileMax", fileMax);
+        stats.put("workersActifs", executor != null ? executor.getActiveCount() : 0);
+        stats.put("requetesEnCours", enCours.get());
+        stats.put("soumis", soumis.get());
+        stats.put("rejetes", rejetes.get());
+        stats.put("envoyes", envoyes.get());
+        stats.put("expires", expires.get());
+        stats.put("echecs", echecs.get());
+        stats.put("nouveauxEssais", nouveauxEssais.get());
+        stats.put("attenteFileMoyenneMs", attenteFile.moyenneMs());
+        stats.put("attenteFileMaxMs", attenteFile.maxMs());
+        stats.put("latenceEnvoiMoyenneMs", latenceEnvoi.moyenneMs());
+        stats.put("latenceEnvoiMaxMs", latenceEnvoi.maxMs());
+        return stats;
+    }
+
+    @PreDestroy
+    void arreter() {
+        if (executor != null) {
+            executor.shutdown();
+            reessais.shutdownNow();
+            try {
+                // Laisser les envois en file et en vol se terminer (10 s max)
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+                for (int i = 0; i < 50 && enCours.get() > 0; i++) {
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                client.close();
+            } catch (Exception e) {
+                log.debug("[PUSH] Fermeture du client HTTP : {}", e.getMessage());
+            }
+        }
+        appliquerResultats();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private static <T> Map<Origine, Set<T>> vider(ConcurrentLinkedQueue<Destinataire> file,
+                                                  Function<Destinataire, T> cle) {
+        Map<Origine, Set<T>> parOrigine = new LinkedHashMap<>();
+        Destinataire d;
+        while ((d = file.poll()) != null) {
+            parOrigine.computeIfAbsent(d.origine(), o -> new LinkedHashSet<>()).add(cle.apply(d));
+        }
+        return parOrigine;
+    }
+
+    private interface Lot<T> {
+        int ecrire(List<T> lot);
+    }
+
+    private static <T> int parLots(Set<T> valeurs, Lot<T> ecriture) {
+        if (valeurs == null || valeurs.isEmpty()) return 0;
+        List<T> liste = new ArrayList<>(valeurs);
+        int total = 0;
+        for (int i = 0; i < liste.size(); i += TAILLE_LOT) {
+            List<T> lot = liste.subList(i, Math.min(i + TAILLE_LOT, liste.size()));
+            try {
+                total += ecriture.ecrire(lot);
+            } catch (Exception e) {
+                // Subscription expirée non supprimée : elle renverra 410 au prochain envoi
+                log.warn("[PUSH] Échec de l'écriture d'un lot de {} subscription(s) : {}", lot.size(), e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    private static ThreadFactory threads(String prefixe) {
+        AtomicInteger numero = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefixe + numero.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Somme, nombre et maximum de durées (nanosecondes), sans verrou. */
+    private static final class Latence {
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong nombre = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void enregistrer(long nanos) {
+            total.addAndGet(nanos);
+            nombre.incrementAndGet();
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        long moyenneMs() {
+            long n = nombre.get();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(total.get() / n);
+        }
+
+        long maxMs() {
+            return TimeUnit.NANOSECONDS.toMillis(max.get());
+        }
+    }
+}
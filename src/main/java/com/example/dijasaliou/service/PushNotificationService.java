@@ -4,19 +4,9 @@ import com.example.dijasaliou.entity.NotificationType;
 import com.example.dijasaliou.entity.SuperAdminPushSubscription;
 import com.example.dijasaliou.repository.SuperAdminPushSubscriptionRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import nl.martijndwars.webpush.Notification;
-import nl.martijndwars.webpush.PushService;
-import nl.martijndwars.webpush.Subscription;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.security.Security;
-import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,8 +14,8 @@ import java.util.Map;
 /**
  * Envoi de notifications Web Push aux super admins.
  *
- * Configuration : nécessite VAPID_PUBLIC_KEY, VAPID_PRIVATE_KEY, VAPID_SUBJECT
- * dans les variables d'environnement. Si non configuré → désactivé silencieusement.
+ * Les envois passent par {@link PushDispatcher} (file et workers dédiés, VAPID).
+ * Si VAPID non configuré → désactivé silencieusement.
  */
 @Service
 @Slf4j
@@ -34,77 +24,49 @@ public class PushNotificationService {
     private final SuperAdminPushSubscriptionRepository repository;
     private final NotificationPreferenceService preferenceService;
     private final ObjectMapper objectMapper;
-    private final String publicKey;
-    private final String privateKey;
-    private final String subject;
-
-    private PushService pushService;
-    private boolean enabled;
+    private final PushDispatcher dispatcher;
 
     public PushNotificationService(
             SuperAdminPushSubscriptionRepository repository,
             NotificationPreferenceService preferenceService,
             ObjectMapper objectMapper,
-            @Value("${vapid.public.key:}") String publicKey,
-            @Value("${vapid.private.key:}") String privateKey,
-            @Value("${vapid.subject:mailto:contact@heasystock.com}") String subject) {
+            PushDispatcher dispatcher) {
         this.repository = repository;
         this.preferenceService = preferenceService;
         this.objectMapper = objectMapper;
-        this.publicKey = publicKey;
-        this.privateKey = privateKey;
-        this.subject = subject;
-    }
-
-    @PostConstruct
-    public void init() {
-        if (publicKey == null || publicKey.isBlank() || privateKey == null || privateKey.isBlank()) {
-            log.warn("[PUSH] VAPID keys non configurées → push notifications désactivées.");
-            enabled = false;
-            return;
-        }
-        try {
-            Security.addProvider(new BouncyCastleProvider());
-            pushService = new PushService(publicKey, privateKey, subject);
-            enabled = true;
-            log.info("[PUSH] Service push initialisé (subject={})", subject);
-        } catch (Exception e) {
-            log.error("[PUSH] Échec d'initialisation du PushService : {}", e.getMessage());
-            enabled = false;
-        }
+        this.dispatcher = dispatcher;
     }
 
     /**
      * Retourne la clé publique VAPID pour le frontend (nécessaire pour s'abonner).
      */
     public String getPublicKey() {
-        return publicKey;
+        return dispatcher.getPublicKey();
     }
 
     public boolean isEnabled() {
-        return enabled;
+        return dispatcher.isEnabled();
+    }
+
+    /** Compteurs du pipeline d'envoi (super admins et utilisateurs), pour le monitoring. */
+    public Map<String, Object> statistiquesEnvoi() {
+        return dispatcher.statistiques();
     }
 
     /**
      * Envoie une notification typée à tous les super admins abonnés
      * qui ont activé ce type dans leurs préférences.
-     * Non bloquant : @Async ne ralentit pas la requête appelante.
+     * Non bloquant : traité par la file de {@link PushDispatcher}.
      */
-    @Async
     public void notify(NotificationType type, String title, String body, String url) {
-        if (!enabled) return;
-        if (!preferenceService.isAnyoneSubscribedTo(type)) {
-            log.debug("[PUSH] Type {} désactivé pour tous les super admins, skip", type);
-            return;
-        }
-
-        List<SuperAdminPushSubscription> subs = repository.findAll();
-        if (subs.isEmpty()) return;
-
-        String payload = buildPayload(title, body, url);
-        for (SuperAdminPushSubscription sub : subs) {
-            sendOne(sub, payload);
-        }
+        if (!isEnabled()) return;
+        dispatcher.soumettre(() -> {
+            if (!preferenceService.isAnyoneSubscribedTo(type)) {
+                log.debug("[PUSH] Type {} désactivé pour tous les super admins, skip", type);
+                return;
+            }
+            envoyerATous(title, body, url);
+        });
     }
 
     /**
@@ -112,15 +74,16 @@ public class PushNotificationService {
      * Conservée pour le test endpoint et pour ne pas casser d'éventuels appels existants.
      */
     @Deprecated
-    @Async
     public void notifyAllSuperAdmins(String title, String body, String url) {
-        if (!enabled) return;
+        if (!isEnabled()) return;
+        dispatcher.soumettre(() -> envoyerATous(title, body, url));
+    }
+
+    private void envoyerATous(String title, String body, String url) {
         List<SuperAdminPushSubscription> subs = repository.findAll();
         if (subs.isEmpty()) return;
-        String payload = buildPayload(title, body, url);
-        for (SuperAdminPushSubscription sub : subs) {
-            sendOne(sub, payload);
-        }
+        dispatcher.envoyer(subs.stream().map(PushDispatcher.Destinataire::de).toList(),
+                buildPayload(title, body, url));
     }
 
     private String buildPayload(String title, String body, String url) {
@@ -167,29 +130,4 @@ public class PushNotificationService {
             return "{\"notification\":{\"title\":\"" + title + "\",\"body\":\"" + body + "\"}}";
         }
     }
-
-    @Transactional
-    protected void sendOne(SuperAdminPushSubscription sub, String payload) {
-        try {
-            Subscription.Keys keys = new Subscription.Keys(sub.getP256dh(), sub.getAuthKey());
-            Subscription subscription = new Subscription(sub.getEndpoint(), keys);
-            Notification notification = new Notification(subscription, payload);
-
-            var response = pushService.send(notification);
-            int statusCode = response.getStatusLine().getStatusCode();
-
-            if (statusCode == 410 || statusCode == 404) {
-                log.info("[PUSH] Subscription expirée/invalide ({}), suppression endpoint={}",
-                        statusCode, sub.getEndpoint().substring(0, Math.min(60, sub.getEndpoint().length())));
-                repository.delete(sub);
-            } else if (statusCode >= 200 && statusCode < 300) {
-                sub.setDerniereUtilisation(LocalDateTime.now());
-                repository.save(sub);
-            } else {
-                log.warn("[PUSH] Envoi échoué ({}) pour subscription {}", statusCode, sub.getId());
-            }
-        } catch (Exception e) {
-            log.warn("[PUSH] Erreur d'envoi pour subscription {} : {}", sub.getId(), e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,304 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.dto.RapportJobDto;
+import com.example.dijasaliou.dto.RapportJobDto.Statut;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.tenant.TenantContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Génération des rapports PDF en arrière-plan, avec cache sur disque.
+ *
+ * Un rapport est identifié par une clé SHA-256 de (tenant, période, version des données,
+ * jour courant du tenant, nom et logo de l'entreprise) : tant qu'aucune vente, achat,
+ * dépense, crédit ou opération de caisse n'a été enregistré (DonneesVersionService), la
+ * même demande retombe sur le même fichier. Le jour courant fait partie de la clé car le
+ * rapport montre aussi l'état du moment (stock, crédits en retard, date de génération) :
+ * un fichier sert au plus une journée. Le nom et le logo, imprimés dans le PDF mais hors
+ * de la version des données, y sont aussi : les modifier donne un nouveau rapport.
+ *
+ * Deux demandes identiques simultanées partagent la même génération. Les fichiers sont
+ * écrits dans {@code app.rapports.cache-dir/<tenant>/<clé>.pdf} ; au-delà de
+ * {@code app.rapports.cache-max-mo}, les moins récemment servis sont supprimés.
+ *
+ * Le suivi des générations en cours est gardé en mémoire : chaque instance a son cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RapportJobService {
+
+    private static final Pattern FORMAT_CLE = Pattern.compile("[0-9a-f]{64}");
+
+    /** Un échec reste consultable une heure ; une nouvelle demande relance la génération. */
+    private static final Duration CONSERVATION_ECHEC = Duration.ofHours(1);
+
+    private final RapportService        rapportService;
+    private final DonneesVersionService donneesVersionService;
+
+    @Value("${app.rapports.cache-dir:${java.io.tmpdir}/heasystock-rapports}")
+    private String cacheDir;
+
+    @Value("${app.rapports.cache-max-mo:512}")
+    private long cacheMaxMo;
+
+    /** clé → génération en cours ou échouée (les générations réussies sont sur disque) */
+    private final Map<String, Suivi> suivis = new ConcurrentHashMap<>();
+
+    /** Auto-injection différée pour appeler la méthode @Async via le proxy Spring */
+    @Autowired @Lazy
+    private RapportJobService self;
+
+    /**
+     * Demande le rapport de la période pour le tenant : déjà en cache → TERMINE tout de
+     * suite ; déjà en cours → la génération existante ; sinon lancée en arrière-plan.
+     */
+    public RapportJobDto soumettre(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        String cle = cle(tenant, debut, fin);
+        Path fichier = fichier(tenant, cle);
+        if (Files.exists(fichier)) {
+            return dtoTermine(cle, debut, fin);
+        }
+
+        purgerEchecs();
+        Suivi nouveau = new Suivi(tenant.getTenantUuid(), cle, debut, fin);
+        Suivi suivi = suivis.compute(cle,
+                (k, existant) -> existant != null && existant.statut != Statut.ECHEC ? existant : nouveau);
+        if (suivi == nouveau) {
+            self.generer(tenant, nouveau, fichier);
+        }
+        return suivi.versDto();
+    }
+
+    /** Statut d'une génération du tenant ; vide si la clé est inconnue (ou d'un autre tenant). */
+    public Optional<RapportJobDto> statut(TenantEntity tenant, String id) {
+        if (!FORMAT_CLE.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Suivi suivi = suivis.get(id);
+        if (suivi != null && suivi.tenantUuid.equals(tenant.getTenantUuid())) {
+            return Optional.of(suivi.versDto());
+        }
+        return Files.exists(fichier(tenant, id)) ? Optional.of(dtoTermine(id, null, null)) : Optional.empty();
+    }
+
+    /**
+     * Fichier du rapport s'il est prêt. Le marque comme récemment servi : il sera parmi
+     * les derniers supprimés quand le cache dépasse sa taille maximale.
+     */
+    public Optional<Path> fichierPret(TenantEntity tenant, String id) {
+        if (!FORMAT_CLE.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        Path fichier = fichier(tenant, id);
+        try {
+            Files.setLastModifiedTime(fichier, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(fichier);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("[RAPPORT] Accès impossible au rapport {} : {}", fichier, e.getMessage());
+            return Files.exists(fichier) ? Optional.of(fichier) : Optional.empty();
+        }
+    }
+
+    /** Attend la fin de la génération {@code id} au plus {@code delai} ; vide si échec ou délai dépassé. */
+    public Optional<Path> attendre(TenantEntity tenant, String id, Duration delai) {
+        Suivi suivi = suivis.get(id);
+        if (suivi != null && suivi.tenantUuid.equals(tenant.getTenantUuid())) {
+            try {
+                suivi.termine.get(delai.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                return Optional.empty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+        return fichierPret(tenant, id);
+    }
+
+    @Async
+    public void generer(TenantEntity tenant, Suivi suivi, Path fichier) {
+        // Thread du pool @Async : pas de requête HTTP, le contexte tenant est posé ici
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        Path temporaire = null;
+        try {
+            Files.createDirectories(fichier.getParent());
+            temporaire = Files.createTempFile(fichier.getParent(), suivi.cle, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporaire))) {
+                rapportService.genererRapportPdf(suivi.debut, suivi.fin, out);
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            suivi.statut = Statut.TERMINE;
+            log.info("[RAPPORT] Rapport {} → {} généré (tenant={}, {} octets)",
+                    suivi.debut, suivi.fin, tenant.getTenantUuid(), Files.size(fichier));
+        } catch (IOException | RuntimeException e) {
+            log.error("[RAPPORT] Échec de la génération pour tenant={} — {}", tenant.getTenantUuid(), e.getMessage(), e);
+            suivi.erreur = "La génération du rapport a échoué, veuillez réessayer";
+            suivi.statut = Statut.ECHEC;
+            supprimer(temporaire);
+        } finally {
+            TenantContext.clear();
+            suivi.termineLe = LocalDateTime.now();
+            if (suivi.statut == Statut.TERMINE) {
+                suivis.remove(suivi.cle, suivi); // le fichier fait foi désormais
+            }
+            suivi.termine.complete(null);
+        }
+        limiterCache();
+    }
+
+    /** Supprime les rapports les moins récemment servis tant que le cache dépasse sa taille maximale. */
+    synchronized void limiterCache() {
+        Path racine = Path.of(cacheDir);
+        if (!Files.isDirectory(racine)) {
+            return;
+        }
+        record Entree(Path chemin, long taille, FileTime servi) {}
+        List<Entree> entrees = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> chemins = Files.walk(racine)) {
+            for (Path chemin : chemins.filter(p -> p.toString().endsWith(".pdf")).toList()) {
+                try {
+                    BasicFileAttributes attributs = Files.readAttributes(chemin, BasicFileAttributes.class);
+                    entrees.add(new Entree(chemin, attributs.size(), attributs.lastModifiedTime()));
+                    total += attributs.size();
+                } catch (NoSuchFileException e) {
+                    // supprimé entre-temps
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[RAPPORT] Parcours du cache impossible : {}", e.getMessage());
+            return;
+        }
+
+        long max = cacheMaxMo * 1024 * 1024;
+        entrees.sort(Comparator.comparing(Entree::servi));
+        for (Entree entree : entrees) {
+            if (total <= max) break;
+            supprimer(entree.chemin());
+            total -= entree.taille();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private String cle(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        String source = String.join("|",
+                tenant.getTenantUuid(),
+                debut.toString(),
+                fin.toString(),
+                Long.toString(donneesVersionService.versionCourante(tenant)),
+                CaisseClotureService.aujourdhui(tenant).toString(),
+                Objects.toString(tenant.getNomEntreprise(), ""),
+                Objects.toString(tenant.getLogoUrl(), ""));
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /** Un répertoire par tenant : une clé ne donne jamais accès au rapport d'un autre tenant. */
+    private Path fichier(TenantEntity tenant, String cle) {
+        return Path.of(cacheDir, tenant.getTenantUuid(), cle + ".pdf");
+    }
+
+    private void purgerEchecs() {
+        LocalDateTime limite = LocalDateTime.now().minus(CONSERVATION_ECHEC);
+        suivis.values().removeIf(s -> s.statut == Statut.ECHEC && s.termineLe != null && s.termineLe.isBefore(limite));
+    }
+
+    private void supprimer(Path chemin) {
+        if (chemin == null) return;
+        try {
+            Files.deleteIfExists(chemin);
+        } catch (IOException e) {
+            log.warn("[RAPPORT] Suppression impossible de {} : {}", chemin, e.getMessage());
+        }
+    }
+
+    private static RapportJobDto dtoTermine(String cle, LocalDate debut, LocalDate fin) {
+        return RapportJobDto.builder()
+                .id(cle)
+                .statut(Statut.TERMINE)
+                .debut(debut)
+                .fin(fin)
+                .telechargement("/rapports/pdf/" + cle)
+                .build();
+    }
+
+    /** État mutable d'une génération, partagé entre le thread du job et les lectures du statut. */
+    static final class Suivi {
+        private final String        tenantUuid;
+        private final String        cle;
+        private final LocalDate     debut;
+        private final LocalDate     fin;
+        private final LocalDateTime demarreLe = LocalDateTime.now();
+        private final CompletableFuture<Void> termine = new CompletableFuture<>();
+
+        private volatile Statut        statut = Statut.EN_COURS;
+        private volatile String        erreur;
+        private volatile LocalDateTime termineLe;
+
+        private Suivi(String tenantUuid, String cle, LocalDate debut, LocalDate fin) {
+            this.tenantUuid = tenantUuid;
+            this.cle = cle;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        private RapportJobDto versDto() {
+            Statut statutActuel = statut;
+            return RapportJobDto.builder()
+                    .id(cle)
+                    .statut(statutActuel)
+                    .debut(debut)
+                    .fin(fin)
+                    .demarreLe(demarreLe)
+                    .termineLe(termineLe)
+                    .telechargement(statutActuel == Statut.TERMINE ? "/rapports/pdf/" + cle : null)
+                    .erreur(erreur)
+                    .build();
+        }
+    }
+}
@@ -25,11 +25,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -41,7 +43,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RapportService {
 
-    private final VenteService venteService;
+    private final VenteRepository venteRepository;
     private final AchatRepository achatRepository;
     private final DepenseRepository depenseRepository;
     private final StockService stockService;
@@ -74,43 +76,63 @@ public class RapportService {
     // POINT D'ENTRÉE
     // ─────────────────────────────────────────────────────────────────────────
     public byte[] genererRapportPdf(LocalDate debut, LocalDate fin) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        genererRapportPdf(debut, fin, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Écrit le rapport du tenant courant dans {@code out} au fil de la génération
+     * (RapportJobService : directement dans le fichier du cache).
+     */
+    public void genererRapportPdf(LocalDate debut, LocalDate fin, OutputStream out) {
 
         TenantEntity tenant    = tenantService.getCurrentTenant();
         String tenantUuid      = tenant.getTenantUuid();
         LocalDateTime debutDt  = debut.atStartOfDay();
-        LocalDateTime finDt    = fin.atTime(23, 59, 59);
+        LocalDateTime finExclu = fin.plusDays(1).atStartOfDay();
+
+        // ── Période précédente : même durée, juste avant ──────────────────────
+        long      nbJours     = ChronoUnit.DAYS.between(debut, fin) + 1;
+        LocalDate debutPrev   = debut.minusDays(nbJours);
+        LocalDate finPrev     = debut.minusDays(1);
 
         // ── Collecte des données ──────────────────────────────────────────────
-        List<VenteEntity>   ventes   = venteService.obtenirVentesParPeriode(debut, fin);
-        List<AchatEntity>   achats   = achatRepository.findByDateAchatBetween(debutDt, finDt);
-        List<DepenseEntity> depenses = depenseRepository.findByDateDepenseBetween(debutDt, finDt);
-        List<StockDto>      stocks   = stockService.obtenirTousLesStocks();
+        // Une requête agrégée (ou limitée) par section, filtre tenant explicite :
+        // aucune vente / aucun achat / aucune dépense n'est chargé ligne à ligne.
+        // Période actuelle et précédente reviennent ensemble (agrégation conditionnelle).
+        Comparaison ventes   = comparaison(venteRepository.sumComparaisonPeriodes(
+                tenant, debutPrev.atStartOfDay(), debutDt, finExclu));
+        Comparaison achats   = comparaison(achatRepository.sumComparaisonPeriodes(
+                tenant, debutPrev.atStartOfDay(), debutDt, finExclu));
+        Comparaison depenses = comparaison(depenseRepository.sumComparaisonPeriodes(
+                tenant, debutPrev.atStartOfDay(), debutDt, finExclu));
+
+        List<Object[]> topVendus    = venteRepository.findTopProduitsPeriode(tenant, debutDt, finExclu, PageRequest.of(0, 5));
+        List<Object[]> parMode      = venteRepository.sumByModePaiementGrouped(tenant, debutDt, fin.atTime(LocalTime.MAX));
+        List<Object[]> releve       = venteRepository.findDernieresVentesPeriode(tenant, debutDt, finExclu, PageRequest.of(0, 30));
+        List<Object[]> topAchetes   = achatRepository.findTopProduitsPeriode(tenant, debutDt, finExclu, PageRequest.of(0, 5));
+        List<Object[]> parCategorie = depenseRepository.sumParCategoriePeriode(tenant, debutDt, finExclu);
+        List<StockDto> stocks       = stockService.obtenirTousLesStocks();
 
         BigDecimal montantDuCredits      = creditClientRepository.sumMontantRestantActif(StatutCredit.SOLDE, tenantUuid);
         BigDecimal montantInitialCredits = creditClientRepository.sumMontantInitialActif(StatutCredit.SOLDE, tenantUuid);
         long nbCreditsActifs  = creditClientRepository.countCreditsActifs(StatutCredit.SOLDE, tenantUuid);
         long nbCreditsRetard  = creditClientRepository.countCreditsEnRetard(StatutCredit.SOLDE, LocalDate.now(), tenantUuid);
 
+        List<Object[]> blsParStatut = bonLivraisonRepository.countParStatutPeriode(tenant, debutDt, finExclu);
         List<BonLivraisonEntity> bls = bonLivraisonRepository
-                .findAllWithSearch(null, null, debutDt, finDt, PageRequest.of(0, 1000))
-                .getContent();
+                .findDerniersPeriode(tenant, debutDt, finExclu, PageRequest.of(0, 15));
 
         // ── Agrégats ──────────────────────────────────────────────────────────
-        BigDecimal ca            = somme(ventes.stream().map(VenteEntity::getPrixTotal).collect(Collectors.toList()));
-        BigDecimal totalAchats   = somme(achats.stream().map(AchatEntity::getPrixTotal).collect(Collectors.toList()));
-        BigDecimal totalDepenses = somme(depenses.stream().map(DepenseEntity::getMontant).collect(Collectors.toList()));
+        BigDecimal ca            = ventes.total();
+        BigDecimal totalAchats   = achats.total();
+        BigDecimal totalDepenses = depenses.total();
         BigDecimal benefice      = ca.subtract(totalAchats).subtract(totalDepenses);
 
-        // ── Période précédente ────────────────────────────────────────────────
-        long      nbJours     = ChronoUnit.DAYS.between(debut, fin) + 1;
-        LocalDate debutPrev   = debut.minusDays(nbJours);
-        LocalDate finPrev     = debut.minusDays(1);
-        List<VenteEntity>   ventesPrev   = venteService.obtenirVentesParPeriode(debutPrev, finPrev);
-        List<AchatEntity>   achatsPrev   = achatRepository.findByDateAchatBetween(debutPrev.atStartOfDay(), finPrev.atTime(23, 59, 59));
-        List<DepenseEntity> depensesPrev = depenseRepository.findByDateDepenseBetween(debutPrev.atStartOfDay(), finPrev.atTime(23, 59, 59));
-        BigDecimal caPrev            = somme(ventesPrev.stream().map(VenteEntity::getPrixTotal).collect(Collectors.toList()));
-        BigDecimal totalAchatsPrev   = somme(achatsPrev.stream().map(AchatEntity::getPrixTotal).collect(Collectors.toList()));
-        BigDecimal totalDepensesPrev = somme(depensesPrev.stream().map(DepenseEntity::getMontant).collect(Collectors.toList()));
+        BigDecimal caPrev            = ventes.totalPrev();
+        BigDecimal totalAchatsPrev   = achats.totalPrev();
+        BigDecimal totalDepensesPrev = depenses.totalPrev();
         BigDecimal beneficePrev      = caPrev.subtract(totalAchatsPrev).subtract(totalDepensesPrev);
 
         // ── Numéro de rapport ─────────────────────────────────────────────────
@@ -119,11 +141,10 @@ public class RapportService {
                 (int)(System.currentTimeMillis() % 9000) + 1000);
 
         // ── Génération PDF ────────────────────────────────────────────────────
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
         Document doc = new Document(PageSize.A4, 40, 40, 70, 50);
 
         try {
-            PdfWriter writer = PdfWriter.getInstance(doc, baos);
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
             writer.setPageEvent(new PiedDePageEvent(tenant.getNomEntreprise(), numRapport));
             doc.open();
 
@@ -132,15 +153,15 @@ public class RapportService {
 
             titreSection(doc, "1. RÉSUMÉ EXÉCUTIF", C_PRIMAIRE);
             ajouterResumeExecutif(doc, ca, totalAchats, totalDepenses, benefice,
-                    ventes.size(), achats.size(), depenses.size());
+                    ventes.nb(), achats.nb(), depenses.nb());
             espace(doc);
 
             titreSection(doc, "2. TOP 5 PRODUITS LES PLUS VENDUS", C_PRIMAIRE);
-            ajouterTop5ProduitsVendus(doc, ventes, ca);
+            ajouterTop5ProduitsVendus(doc, topVendus, ca);
             espace(doc);
 
             titreSection(doc, "3. RÉPARTITION PAR MODE DE PAIEMENT", C_PRIMAIRE);
-            ajouterRepartitionModesPaiement(doc, ventes, ca);
+            ajouterRepartitionModesPaiement(doc, parMode, ca);
             espace(doc);
 
             titreSection(doc, "4. ÉTAT DU STOCK", C_PRIMAIRE);
@@ -152,29 +173,30 @@ public class RapportService {
             espace(doc);
 
             titreSection(doc, "6. INDICATEURS OPÉRATIONNELS", C_PRIMAIRE);
-            ajouterIndicateursOperationnels(doc, ventes, achats, depenses, benefice, ca);
+            ajouterIndicateursOperationnels(doc, ventes.nb(), achats.nb(), depenses.nb(),
+                    totalAchats, benefice, ca);
             espace(doc);
 
             titreSection(doc, "7. COMPARAISON AVEC LA PÉRIODE PRÉCÉDENTE", C_PRIMAIRE);
             ajouterComparaisonPeriode(doc, ca, caPrev, totalAchats, totalAchatsPrev,
                     totalDepenses, totalDepensesPrev, benefice, beneficePrev,
-                    ventes.size(), ventesPrev.size(), debutPrev, finPrev);
+                    ventes.nb(), ventes.nbPrev(), debutPrev, finPrev);
             espace(doc);
 
             titreSection(doc, "8. TOP 5 PRODUITS LES PLUS ACHETÉS", C_PRIMAIRE);
-            ajouterTop5ProduitsAchetes(doc, achats, totalAchats);
+            ajouterTop5ProduitsAchetes(doc, topAchetes, totalAchats);
             espace(doc);
 
             titreSection(doc, "9. DÉPENSES PAR CATÉGORIE", C_PRIMAIRE);
-            ajouterDepensesParCategorie(doc, depenses, totalDepenses);
+            ajouterDepensesParCategorie(doc, parCategorie, totalDepenses);
             espace(doc);
 
             titreSection(doc, "10. BONS DE LIVRAISON", C_PRIMAIRE);
-            ajouterBonsLivraison(doc, bls);
+            ajouterBonsLivraison(doc, blsParStatut, bls);
             espace(doc);
 
             titreSection(doc, "11. RELEVÉ CHRONOLOGIQUE DES VENTES", C_PRIMAIRE);
-            ajouterReleve(doc, ventes);
+            ajouterReleve(doc, releve);
             espace(doc);
 
             doc.newPage();
@@ -185,8 +207,6 @@ public class RapportService {
         } catch (DocumentException e) {
             throw new RuntimeException("Erreur lors de la génération du rapport PDF", e);
         }
-
-        return baos.toByteArray();
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -254,7 +274,7 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     private void ajouterResumeExecutif(Document doc, BigDecimal ca, BigDecimal totalAchats,
             BigDecimal totalDepenses, BigDecimal benefice,
-            int nbVentes, int nbAchats, int nbDepenses) throws DocumentException {
+            long nbVentes, long nbAchats, long nbDepenses) throws DocumentException {
 
         PdfPTable t1 = new PdfPTable(4);
         t1.setWidthPercentage(100);
@@ -278,29 +298,17 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // TOP 5 PRODUITS VENDUS
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterTop5ProduitsVendus(Document doc, List<VenteEntity> ventes, BigDecimal caTotal)
+    private void ajouterTop5ProduitsVendus(Document doc, List<Object[]> top5, BigDecimal caTotal)
             throws DocumentException {
 
-        Map<String, BigDecimal[]> stats = new LinkedHashMap<>();
-        for (VenteEntity v : ventes) {
-            stats.computeIfAbsent(v.getNomProduit(), k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
-            stats.get(v.getNomProduit())[0] = stats.get(v.getNomProduit())[0].add(BigDecimal.valueOf(v.getQuantite()));
-            stats.get(v.getNomProduit())[1] = stats.get(v.getNomProduit())[1]
-                    .add(v.getPrixTotal() != null ? v.getPrixTotal() : BigDecimal.ZERO);
-        }
-
-        List<Map.Entry<String, BigDecimal[]>> top5 = stats.entrySet().stream()
-                .sorted((a, b) -> b.getValue()[1].compareTo(a.getValue()[1]))
-                .limit(5).collect(Collectors.toList());
-
         PdfPTable table = tableau(new float[]{8, 42, 18, 22, 15},
                 "Rang", "Produit", "Qté vendue", "CA généré", "% CA");
 
         for (int i = 0; i < top5.size(); i++) {
-            Map.Entry<String, BigDecimal[]> e = top5.get(i);
-            BigDecimal pct = pourcent(e.getValue()[1], caTotal);
-            ligne(table, i % 2 == 0, "#" + (i + 1), e.getKey(),
-                    fmt0(e.getValue()[0]), formaterMontant(e.getValue()[1]), pct + "%");
+            Object[] row = top5.get(i);
+            BigDecimal montant = decimal(row[2]);
+            ligne(table, i % 2 == 0, "#" + (i + 1), (String) row[0],
+                    fmt0(decimal(row[1])), formaterMontant(montant), pourcent(montant, caTotal) + "%");
         }
         if (top5.isEmpty()) ligneVide(table, 5, "Aucune vente sur cette période");
         doc.add(table);
@@ -309,7 +317,7 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // RÉPARTITION MODES PAIEMENT
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterRepartitionModesPaiement(Document doc, List<VenteEntity> ventes, BigDecimal caTotal)
+    private void ajouterRepartitionModesPaiement(Document doc, List<Object[]> parMode, BigDecimal caTotal)
             throws DocumentException {
 
         Map<String, BigDecimal> totaux = new LinkedHashMap<>();
@@ -318,9 +326,9 @@ public class RapportService {
         totaux.put("ORANGE_MONEY", BigDecimal.ZERO);
         totaux.put("CREDIT", BigDecimal.ZERO);
 
-        for (VenteEntity v : ventes) {
-            String mode = v.getModePaiement() != null ? v.getModePaiement().name() : "ESPECES";
-            totaux.merge(mode, v.getPrixTotal() != null ? v.getPrixTotal() : BigDecimal.ZERO, BigDecimal::add);
+        for (Object[] row : parMode) {
+            String mode = row[0] != null ? ((VenteEntity.ModePaiementVente) row[0]).name() : "ESPECES";
+            totaux.merge(mode, decimal(row[1]), BigDecimal::add);
         }
 
         PdfPTable table = tableau(new float[]{40, 35, 25}, "Mode de paiement", "Montant", "Pourcentage");
@@ -397,13 +405,11 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // INDICATEURS OPÉRATIONNELS
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterIndicateursOperationnels(Document doc, List<VenteEntity> ventes,
-            List<AchatEntity> achats, List<DepenseEntity> depenses,
-            BigDecimal benefice, BigDecimal ca) throws DocumentException {
+    private void ajouterIndicateursOperationnels(Document doc, long nbVentes, long nbAchats,
+            long nbDepenses, BigDecimal totalAchats, BigDecimal benefice, BigDecimal ca) throws DocumentException {
 
-        BigDecimal panierMoyen = ventes.isEmpty() ? BigDecimal.ZERO
-                : ca.divide(BigDecimal.valueOf(ventes.size()), 0, RoundingMode.HALF_UP);
-        BigDecimal totalAchats   = somme(achats.stream().map(AchatEntity::getPrixTotal).collect(Collectors.toList()));
+        BigDecimal panierMoyen = nbVentes == 0 ? BigDecimal.ZERO
+                : ca.divide(BigDecimal.valueOf(nbVentes), 0, RoundingMode.HALF_UP);
         BigDecimal margeBrute    = ca.subtract(totalAchats);
         BigDecimal tauxMarge     = ca.compareTo(BigDecimal.ZERO) > 0
                 ? margeBrute.multiply(new BigDecimal("100")).divide(ca, 1, RoundingMode.HALF_UP)
@@ -411,10 +417,10 @@ public class RapportService {
 
         PdfPTable table = tableau(new float[]{55, 45}, "Indicateur", "Valeur");
         String[][] lignes = {
-            {"Nombre de ventes",            String.valueOf(ventes.size())},
+            {"Nombre de ventes",            String.valueOf(nbVentes)},
             {"Panier moyen par vente",      formaterMontant(panierMoyen)},
-            {"Nombre d'achats enregistrés", String.valueOf(achats.size())},
-            {"Nombre de dépenses",          String.valueOf(depenses.size())},
+            {"Nombre d'achats enregistrés", String.valueOf(nbAchats)},
+            {"Nombre de dépenses",          String.valueOf(nbDepenses)},
             {"Marge brute (CA – Achats)",   formaterMontant(margeBrute)},
             {"Taux de marge brute",         tauxMarge + "%"},
             {"Bénéfice net",                formaterMontant(benefice)},
@@ -433,7 +439,7 @@ public class RapportService {
             BigDecimal achats, BigDecimal achatsPrev,
             BigDecimal depenses, BigDecimal depensesPrev,
             BigDecimal benefice, BigDecimal beneficePrev,
-            int nbVentes, int nbVentesPrev,
+            long nbVentes, long nbVentesPrev,
             LocalDate debutPrev, LocalDate finPrev) throws DocumentException {
 
         Paragraph pPrev = new Paragraph(
@@ -491,29 +497,17 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // TOP 5 PRODUITS ACHETÉS
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterTop5ProduitsAchetes(Document doc, List<AchatEntity> achats, BigDecimal totalAchats)
+    private void ajouterTop5ProduitsAchetes(Document doc, List<Object[]> top5, BigDecimal totalAchats)
             throws DocumentException {
 
-        Map<String, BigDecimal[]> stats = new LinkedHashMap<>();
-        for (AchatEntity a : achats) {
-            stats.computeIfAbsent(a.getNomProduit(), k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
-            stats.get(a.getNomProduit())[0] = stats.get(a.getNomProduit())[0].add(BigDecimal.valueOf(a.getQuantite()));
-            stats.get(a.getNomProduit())[1] = stats.get(a.getNomProduit())[1]
-                    .add(a.getPrixTotal() != null ? a.getPrixTotal() : BigDecimal.ZERO);
-        }
-
-        List<Map.Entry<String, BigDecimal[]>> top5 = stats.entrySet().stream()
-                .sorted((a, b) -> b.getValue()[1].compareTo(a.getValue()[1]))
-                .limit(5).collect(Collectors.toList());
-
         PdfPTable table = tableau(new float[]{8, 42, 18, 22, 15},
                 "Rang", "Produit", "Qté achetée", "Montant total", "% achats");
 
         for (int i = 0; i < top5.size(); i++) {
-            Map.Entry<String, BigDecimal[]> e = top5.get(i);
-            BigDecimal pct = pourcent(e.getValue()[1], totalAchats);
-            ligne(table, i % 2 == 0, "#" + (i + 1), e.getKey(),
-                    fmt0(e.getValue()[0]), formaterMontant(e.getValue()[1]), pct + "%");
+            Object[] row = top5.get(i);
+            BigDecimal montant = decimal(row[2]);
+            ligne(table, i % 2 == 0, "#" + (i + 1), (String) row[0],
+                    fmt0(decimal(row[1])), formaterMontant(montant), pourcent(montant, totalAchats) + "%");
         }
         if (top5.isEmpty()) ligneVide(table, 5, "Aucun achat sur cette période");
         doc.add(table);
@@ -522,13 +516,13 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // DÉPENSES PAR CATÉGORIE
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterDepensesParCategorie(Document doc, List<DepenseEntity> depenses,
+    private void ajouterDepensesParCategorie(Document doc, List<Object[]> parCategorie,
             BigDecimal totalDepenses) throws DocumentException {
 
         Map<String, BigDecimal> parCat = new LinkedHashMap<>();
-        for (DepenseEntity d : depenses) {
-            String cat = d.getCategorie() != null ? d.getCategorie().getLibelle() : "Autre";
-            parCat.merge(cat, d.getMontant() != null ? d.getMontant() : BigDecimal.ZERO, BigDecimal::add);
+        for (Object[] row : parCategorie) {
+            String cat = row[0] != null ? ((DepenseEntity.CategorieDepense) row[0]).getLibelle() : "Autre";
+            parCat.merge(cat, decimal(row[1]), BigDecimal::add);
         }
 
         List<Map.Entry<String, BigDecimal>> sorted = parCat.entrySet().stream()
@@ -549,12 +543,17 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // BONS DE LIVRAISON
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterBonsLivraison(Document doc, List<BonLivraisonEntity> bls) throws DocumentException {
+    private void ajouterBonsLivraison(Document doc, List<Object[]> parStatut, List<BonLivraisonEntity> bls)
+            throws DocumentException {
 
-        long nbLivres  = bls.stream().filter(b -> b.getStatut() == BonLivraisonEntity.Statut.LIVRE).count();
-        long nbAttente = bls.stream().filter(b -> b.getStatut() == BonLivraisonEntity.Statut.EN_ATTENTE
-                || b.getStatut() == BonLivraisonEntity.Statut.EN_COURS).count();
-        long nbAnnules = bls.stream().filter(b -> b.getStatut() == BonLivraisonEntity.Statut.ANNULE).count();
+        Map<BonLivraisonEntity.Statut, Long> nbParStatut = new EnumMap<>(BonLivraisonEntity.Statut.class);
+        for (Object[] row : parStatut) {
+            if (row[0] != null) nbParStatut.put((BonLivraisonEntity.Statut) row[0], ((Number) row[1]).longValue());
+        }
+        long nbLivres  = nbParStatut.getOrDefault(BonLivraisonEntity.Statut.LIVRE, 0L);
+        long nbAttente = nbParStatut.getOrDefault(BonLivraisonEntity.Statut.EN_ATTENTE, 0L)
+                + nbParStatut.getOrDefault(BonLivraisonEntity.Statut.EN_COURS, 0L);
+        long nbAnnules = nbParStatut.getOrDefault(BonLivraisonEntity.Statut.ANNULE, 0L);
 
         PdfPTable resume = new PdfPTable(3);
         resume.setWidthPercentage(100);
@@ -566,9 +565,8 @@ public class RapportService {
 
         if (!bls.isEmpty()) {
             PdfPTable table = tableau(new float[]{20, 35, 25, 20}, "N° BL", "Client", "Date", "Statut");
-            List<BonLivraisonEntity> limites = bls.stream().limit(15).collect(Collectors.toList());
-            for (int i = 0; i < limites.size(); i++) {
-                BonLivraisonEntity bl = limites.get(i);
+            for (int i = 0; i < bls.size(); i++) {
+                BonLivraisonEntity bl = bls.get(i);
                 String dateStr = bl.getCreatedDate() != null ? bl.getCreatedDate().format(FMT_DATE) : "-";
                 ligne(table, i % 2 == 0, bl.getNumeroBL(), bl.getClientNom(), dateStr, libelleStatutBL(bl.getStatut()));
             }
@@ -579,7 +577,7 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // RELEVÉ CHRONOLOGIQUE
     // ─────────────────────────────────────────────────────────────────────────
-    private void ajouterReleve(Document doc, List<VenteEntity> ventes) throws DocumentException {
+    private void ajouterReleve(Document doc, List<Object[]> dernieres) throws DocumentException {
         Paragraph pInfo = new Paragraph("(Limité aux 30 dernières ventes)", F_SMALL);
         pInfo.setSpacingAfter(4);
         doc.add(pInfo);
@@ -587,21 +585,17 @@ public class RapportService {
         PdfPTable table = tableau(new float[]{22, 30, 10, 23, 20},
                 "Date", "Produit", "Qté", "Montant", "Mode paiement");
 
-        List<VenteEntity> dernieres = ventes.stream()
-                .filter(v -> v.getDateVente() != null)
-                .sorted(Comparator.comparing(VenteEntity::getDateVente).reversed())
-                .limit(30).collect(Collectors.toList());
-
         for (int i = 0; i < dernieres.size(); i++) {
-            VenteEntity v = dernieres.get(i);
+            Object[] v = dernieres.get(i);
+            VenteEntity.ModePaiementVente mode = (VenteEntity.ModePaiementVente) v[4];
             ligne(table, i % 2 == 0,
-                    v.getDateVente().format(FMT_DATETIME),
-                    v.getNomProduit(),
-                    fmt0(BigDecimal.valueOf(v.getQuantite())),
-                    formaterMontant(v.getPrixTotal()),
-                    libellePaiement(v.getModePaiement() != null ? v.getModePaiement().name() : "ESPECES"));
+                    ((LocalDateTime) v[0]).format(FMT_DATETIME),
+                    (String) v[1],
+                    fmt0(decimal(v[2])),
+                    formaterMontant(decimal(v[3])),
+                    libellePaiement(mode != null ? mode.name() : "ESPECES"));
         }
-        if (ventes.isEmpty()) ligneVide(table, 5, "Aucune vente sur cette période");
+        if (dernieres.isEmpty()) ligneVide(table, 5, "Aucune vente sur cette période");
         doc.add(table);
     }
 
@@ -736,8 +730,23 @@ public class RapportService {
     // ─────────────────────────────────────────────────────────────────────────
     // UTILITAIRES CALCUL
     // ─────────────────────────────────────────────────────────────────────────
-    private BigDecimal somme(List<BigDecimal> valeurs) {
-        return valeurs.stream().filter(Objects::nonNull).reduce(BigDecimal.ZERO, BigDecimal::add);
+    /** Totaux d'une table sur la période et sur la période précédente. */
+    private record Comparaison(long nb, BigDecimal total, long nbPrev, BigDecimal totalPrev) {}
+
+    /** Ligne [nb, total, nbPrev, totalPrev] des requêtes sumComparaisonPeriodes. */
+    private Comparaison comparaison(List<Object[]> resultat) {
+        Object[] row = resultat.isEmpty() ? new Object[4] : resultat.get(0);
+        return new Comparaison(nombre(row[0]), decimal(row[1]), nombre(row[2]), decimal(row[3]));
+    }
+
+    private long nombre(Object valeur) {
+        return valeur instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private BigDecimal decimal(Object valeur) {
+        if (valeur instanceof BigDecimal b) return b;
+        if (valeur instanceof Number n)     return new BigDecimal(n.toString());
+        return BigDecimal.ZERO;
     }
 
     private BigDecimal pourcent(BigDecimal valeur, BigDecimal total) {
@@ -5,24 +5,31 @@ import com.example.dijasaliou.dto.ResumeMensuelConfig;
 import com.example.dijasaliou.dto.ResumeQuotidienConfig;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.UserNotificationPreference;
 import com.example.dijasaliou.entity.UserNotificationType;
-import com.example.dijasaliou.repository.PaiementCreditRepository;
 import com.example.dijasaliou.repository.UserPushSubscriptionRepository;
-import com.example.dijasaliou.repository.VenteRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Envoi automatique des résumés d'activité par push :
@@ -30,10 +37,19 @@ import java.util.List;
  *   - RESUME_HEBDO      : chaque semaine au jour + heure choisis (défaut lundi 8h)
  *   - RESUME_MENSUEL    : chaque mois au jour du mois + heure choisis (défaut 1er à 8h)
  *
- * Le cron tourne toutes les heures pile. Pour chaque user abonné on vérifie
- * les 3 types dans l'ordre — un même tick peut donc envoyer plusieurs résumés
- * si un cas particulier tombe (par ex. le 1er du mois qui est aussi un lundi
- * à l'heure du quotidien).
+ * Le cron tourne toutes les heures pile. Déroulement d'un tick, par tranche de tenants :
+ *   1. admins abonnés chargés avec leur tenant (une requête), regroupés par tenant,
+ *      heure locale calculée par tenant ;
+ *   2. préférences chargées par heure locale, limitées à celles qui peuvent partir à
+ *      cette heure (colonne heure_envoi, voir
+ *      UserNotificationPreferenceService.chargerPreferencesResumes) ; chaque config
+ *      JSON lue une seule fois ;
+ *   3. par tenant : résumés dus par admin. Un tenant sans aucun résumé dû à cette
+ *      heure ne coûte aucune requête de plus ;
+ *   4. stats calculées une fois par (tenant, période) puis envoyées à tous les admins
+ *      concernés — deux admins d'une même boutique ne doublent plus les calculs.
+ * Un même tick peut envoyer plusieurs résumés à un admin si un cas particulier tombe
+ * (par ex. le 1er du mois qui est aussi un lundi à l'heure du quotidien).
  *
  * Timezone : chaque calcul (période couverte, heure/jour de déclenchement)
  * utilise le fuseau du tenant. Fallback Africa/Dakar si absent.
@@ -48,107 +64,168 @@ import java.util.List;
 @Slf4j
 public class ResumeQuotidienScheduler {
 
+    private static final Set<UserNotificationType> TYPES_RESUME = EnumSet.of(
+            UserNotificationType.RESUME_QUOTIDIEN,
+            UserNotificationType.RESUME_HEBDO,
+            UserNotificationType.RESUME_MENSUEL);
+
     private final UserPushSubscriptionRepository pushSubRepository;
     private final UserNotificationPreferenceService preferenceService;
     private final UserPushNotificationService pushService;
-    private final VenteRepository venteRepository;
-    private final PaiementCreditRepository paiementCreditRepository;
+    private final RollupJourService rollupJourService;
+    private final TacheVerrouService verrouService;
+
+    @Value("${app.scheduler.tranches:4}")
+    private int nbTranches = 1;
 
-    /** Toutes les heures pile (0 s, 0 min). */
+    /**
+     * Toutes les heures pile (0 s, 0 min). Tenants répartis en tranches
+     * (TacheVerrouService) : avec plusieurs instances, chacune traite les tranches
+     * dont elle prend le verrou — chaque résumé n'est envoyé qu'une fois.
+     */
     @Scheduled(cron = "0 0 * * * *")
     @Transactional(readOnly = true)
     public void envoyerResumes() {
-        List<UserEntity> users = pushSubRepository.findDistinctSubscribedUsers();
-        if (users.isEmpty()) return;
+        Instant maintenant = Instant.now();
+        verrouService.executerParTranches("resume-quotidien", nbTranches,
+                Duration.ofMinutes(50), Duration.ofMinutes(5),
+                tranche -> envoyerResumes(maintenant, tranche, nbTranches));
+    }
 
-        int envoyes = 0;
-        for (UserEntity user : users) {
-            try {
-                if (user.getRole() != UserEntity.Role.ADMIN) continue;
-                TenantEntity tenant = user.getTenant();
-                if (tenant == null) continue;
+    /** Tick à un instant donné, tous tenants — retourne le nombre de résumés envoyés. */
+    int envoyerResumes(Instant maintenant) {
+        return envoyerResumes(maintenant, 0, 1);
+    }
 
-                ZoneId zone = resolveZone(tenant.getTimezone());
-                ZonedDateTime nowLocal = ZonedDateTime.now(zone);
+    /** Tick à un instant donné pour les tenants de la tranche {@code tranche}. */
+    int envoyerResumes(Instant maintenant, int tranche, int nbTranches) {
+        List<UserEntity> admins = pushSubRepository.findSubscribedUsersWithTenantByRole(
+                UserEntity.Role.ADMIN, nbTranches, tranche);
+        if (admins.isEmpty()) return 0;
+
+        Map<Long, List<UserEntity>> parTenant = admins.stream()
+                .collect(Collectors.groupingBy(u -> u.getTenant().getId(), LinkedHashMap::new, Collectors.toList()));
+
+        // Heure locale de chaque tenant (calculée une fois par fuseau), admins regroupés par heure
+        Map<ZoneId, ZonedDateTime> heureParZone = new HashMap<>();
+        Map<Long, ZonedDateTime> heureParTenant = new HashMap<>();
+        Map<Integer, List<UserEntity>> adminsParHeure = new HashMap<>();
+        for (List<UserEntity> destinataires : parTenant.values()) {
+            TenantEntity tenant = destinataires.get(0).getTenant();
+            ZonedDateTime nowLocal = heureParZone.computeIfAbsent(
+                    resolveZone(tenant.getTimezone()), maintenant::atZone);
+            heureParTenant.put(tenant.getId(), nowLocal);
+            adminsParHeure.computeIfAbsent(nowLocal.getHour(), h -> new ArrayList<>()).addAll(destinataires);
+        }
+        Map<Long, Map<UserNotificationType, UserNotificationPreference>> preferences = new HashMap<>();
+        adminsParHeure.forEach((heure, users) ->
+                preferences.putAll(preferenceService.chargerPreferencesResumes(users, TYPES_RESUME, heure)));
 
-                if (tryEnvoyerQuotidien(user, tenant, zone, nowLocal)) envoyes++;
-                if (tryEnvoyerHebdo(user, tenant, zone, nowLocal))     envoyes++;
-                if (tryEnvoyerMensuel(user, tenant, zone, nowLocal))   envoyes++;
+        int envoyes = 0;
+        for (List<UserEntity> destinataires : parTenant.values()) {
+            TenantEntity tenant = destinataires.get(0).getTenant();
+            try {
+                envoyes += envoyerPourTenant(tenant, destinataires, preferences, heureParTenant.get(tenant.getId()));
             } catch (Exception e) {
-                log.warn("[RESUME] Erreur pour user={} : {}", user.getEmail(), e.getMessage());
+                log.warn("[RESUME] Erreur pour tenant={} : {}", tenant.getTenantUuid(), e.getMessage());
             }
         }
         if (envoyes > 0) log.info("[RESUME] {} résumé(s) envoyé(s) ce tick horaire", envoyes);
+        return envoyes;
     }
 
-    private boolean tryEnvoyerQuotidien(UserEntity user, TenantEntity tenant, ZoneId zone, ZonedDateTime nowLocal) {
-        if (!preferenceService.isEnabled(user, UserNotificationType.RESUME_QUOTIDIEN)) return false;
-        ResumeQuotidienConfig cfg = preferenceService.getResumeQuotidienConfig(user);
-        if (cfg.heure() != nowLocal.getHour()) return false;
+    private int envoyerPourTenant(TenantEntity tenant, List<UserEntity> destinataires,
+                                  Map<Long, Map<UserNotificationType, UserNotificationPreference>> preferences,
+                                  ZonedDateTime nowLocal) {
+        // Résumés dus à cette heure locale → admins destinataires
+        Map<Resume, List<UserEntity>> dus = new LinkedHashMap<>();
+        for (UserEntity user : destinataires) {
+            Map<UserNotificationType, UserNotificationPreference> prefs =
+                    preferences.getOrDefault(user.getId(), Map.of());
+            for (UserNotificationType type : TYPES_RESUME) {
+                Resume resume = resumeDu(user, type, prefs.get(type), nowLocal);
+                if (resume != null) {
+                    dus.computeIfAbsent(resume, r -> new ArrayList<>()).add(user);
+                }
+            }
+        }
+        if (dus.isEmpty()) return 0;
 
-        LocalDate today = nowLocal.toLocalDate();
-        Stats s = computeStats(tenant, today.atStartOfDay(), today.atTime(LocalTime.MAX), today, today);
-        String title = "Résumé du jour — " + tenant.getNomEntreprise();
-        pushService.notifyUser(user, UserNotificationType.RESUME_QUOTIDIEN, title,
-                buildBody(s.nbVentes, s.ca), "/dashboard");
-        return true;
+        int envoyes = 0;
+        Map<Periode, Stats> statsParPeriode = new HashMap<>();
+        for (Map.Entry<Resume, List<UserEntity>> du : dus.entrySet()) {
+            Resume resume = du.getKey();
+            Stats s = statsParPeriode.computeIfAbsent(resume.periode(), p -> computeStats(tenant, p.debut(), p.fin()));
+            String title = titre(resume.type()) + " — " + tenant.getNomEntreprise();
+            String body = buildBody(s.nbVentes, s.ca);
+            String url = resume.type() == UserNotificationType.RESUME_QUOTIDIEN ? "/dashboard" : "/rapports";
+            for (UserEntity user : du.getValue()) {
+                try {
+                    pushService.notifyUser(user, resume.type(), title, body, url);
+                    envoyes++;
+                } catch (Exception e) {
+                    log.warn("[RESUME] Erreur pour user={} : {}", user.getEmail(), e.getMessage());
+                }
+            }
+        }
+        return envoyes;
     }
 
-    private boolean tryEnvoyerHebdo(UserEntity user, TenantEntity tenant, ZoneId zone, ZonedDateTime nowLocal) {
-        if (!preferenceService.isEnabled(user, UserNotificationType.RESUME_HEBDO)) return false;
-        ResumeHebdoConfig cfg = preferenceService.getResumeHebdoConfig(user);
-        if (cfg.jour() != nowLocal.getDayOfWeek()) return false;
-        if (cfg.heure() != nowLocal.getHour()) return false;
-
-        // Résumé sur les 7 jours précédents (semaine glissante), du J-7 à J-1 inclus.
+    /**
+     * Résumé de ce type dû à l'admin à l'heure locale {@code nowLocal}, ou {@code null}.
+     *   - quotidien : la journée en cours ;
+     *   - hebdo     : les 7 jours précédents (semaine glissante), du J-7 à J-1 inclus ;
+     *   - mensuel   : le mois calendaire précédent (du 1er au dernier jour du mois M-1).
+     */
+    private Resume resumeDu(UserEntity user, UserNotificationType type, UserNotificationPreference pref,
+                            ZonedDateTime nowLocal) {
+        if (!UserNotificationPreferenceService.estActive(pref, type)) return null;
         LocalDate today = nowLocal.toLocalDate();
-        LocalDate debut = today.minusDays(7);
-        LocalDate fin = today.minusDays(1);
-        Stats s = computeStats(tenant, debut.atStartOfDay(), fin.atTime(LocalTime.MAX), debut, fin);
-        String title = "Résumé de la semaine — " + tenant.getNomEntreprise();
-        pushService.notifyUser(user, UserNotificationType.RESUME_HEBDO, title,
-                buildBody(s.nbVentes, s.ca), "/rapports");
-        return true;
+        int heure = nowLocal.getHour();
+        switch (type) {
+            case RESUME_QUOTIDIEN -> {
+                ResumeQuotidienConfig cfg = preferenceService.lireConfig(user, type, pref,
+                        ResumeQuotidienConfig.class, ResumeQuotidienConfig.defaults());
+                if (cfg.heure() != heure) return null;
+                return new Resume(type, new Periode(today, today));
+            }
+            case RESUME_HEBDO -> {
+                ResumeHebdoConfig cfg = preferenceService.lireConfig(user, type, pref,
+                        ResumeHebdoConfig.class, ResumeHebdoConfig.defaults());
+                if (cfg.jour() != nowLocal.getDayOfWeek() || cfg.heure() != heure) return null;
+                return new Resume(type, new Periode(today.minusDays(7), today.minusDays(1)));
+            }
+            case RESUME_MENSUEL -> {
+                ResumeMensuelConfig cfg = preferenceService.lireConfig(user, type, pref,
+                        ResumeMensuelConfig.class, ResumeMensuelConfig.defaults());
+                if (cfg.jourDuMois() != nowLocal.getDayOfMonth() || cfg.heure() != heure) return null;
+                LocalDate premierJourMoisPrecedent = today.minusMonths(1).withDayOfMonth(1);
+                return new Resume(type, new Periode(premierJourMoisPrecedent,
+                        premierJourMoisPrecedent.withDayOfMonth(premierJourMoisPrecedent.lengthOfMonth())));
+            }
+            default -> {
+                return null;
+            }
+        }
     }
 
-    private boolean tryEnvoyerMensuel(UserEntity user, TenantEntity tenant, ZoneId zone, ZonedDateTime nowLocal) {
-        if (!preferenceService.isEnabled(user, UserNotificationType.RESUME_MENSUEL)) return false;
-        ResumeMensuelConfig cfg = preferenceService.getResumeMensuelConfig(user);
-        if (cfg.jourDuMois() != nowLocal.getDayOfMonth()) return false;
-        if (cfg.heure() != nowLocal.getHour()) return false;
-
-        // Résumé sur le mois calendaire précédent (du 1er au dernier jour du mois M-1).
-        LocalDate today = nowLocal.toLocalDate();
-        LocalDate premierJourMoisPrecedent = today.minusMonths(1).withDayOfMonth(1);
-        LocalDate dernierJourMoisPrecedent = premierJourMoisPrecedent
-                .withDayOfMonth(premierJourMoisPrecedent.lengthOfMonth());
-        Stats s = computeStats(tenant,
-                premierJourMoisPrecedent.atStartOfDay(),
-                dernierJourMoisPrecedent.atTime(LocalTime.MAX),
-                premierJourMoisPrecedent, dernierJourMoisPrecedent);
-        String title = "Bilan mensuel — " + tenant.getNomEntreprise();
-        pushService.notifyUser(user, UserNotificationType.RESUME_MENSUEL, title,
-                buildBody(s.nbVentes, s.ca), "/rapports");
-        return true;
+    private static String titre(UserNotificationType type) {
+        return switch (type) {
+            case RESUME_HEBDO -> "Résumé de la semaine";
+            case RESUME_MENSUEL -> "Bilan mensuel";
+            default -> "Résumé du jour";
+        };
     }
 
     /**
-     * Calcule CA cash-basis + nombre de ventes sur une période.
-     * Les paramètres LocalDateTime et LocalDate sont fournis séparément car
-     * les deux repos utilisent des types différents (LocalDateTime pour ventes,
-     * LocalDate pour paiements crédit).
+     * Calcule CA cash-basis + nombre de ventes sur une période (jours inclus).
+     * Hebdo et mensuel : lus dans les agrégats journaliers (rollup_jour) ;
+     * quotidien : le jour même n'est pas encore agrégé, lu dans les tables brutes.
      */
-    private Stats computeStats(TenantEntity tenant, LocalDateTime debutDt, LocalDateTime finDt,
-                                LocalDate debutD, LocalDate finD) {
-        String tenantUuid = tenant.getTenantUuid();
-
-        BigDecimal caNonCredit = venteRepository.sumChiffreAffairesNonCreditPeriode(debutDt, finDt, tenantUuid);
-        if (caNonCredit == null) caNonCredit = BigDecimal.ZERO;
-        BigDecimal caPaiementsCredit = paiementCreditRepository.sumMontantPayeBetweenAndTenant(debutD, finD, tenantUuid);
-        if (caPaiementsCredit == null) caPaiementsCredit = BigDecimal.ZERO;
-
-        long nbVentes = venteRepository.countVentesNonCreditPeriode(debutDt, finDt, tenantUuid);
-        return new Stats(nbVentes, caNonCredit.add(caPaiementsCredit));
+    private Stats computeStats(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        RollupJourTotaux totaux = rollupJourService.totaux(tenant, debut, fin);
+        BigDecimal ca = totaux.caEncaisse().add(totaux.montantPaiementsCredit());
+        return new Stats(totaux.nbVentesEncaissees(), ca);
     }
 
     private ZoneId resolveZone(String tz) {
@@ -168,4 +245,9 @@ public class ResumeQuotidienScheduler {
     }
 
     private record Stats(long nbVentes, BigDecimal ca) {}
+
+    /** Période couverte, jours inclus. */
+    private record Periode(LocalDate debut, LocalDate fin) {}
+
+    private record Resume(UserNotificationType type, Periode periode) {}
 }
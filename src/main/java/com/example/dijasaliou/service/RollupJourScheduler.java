@@ -0,0 +1,76 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.RollupJourEtatRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Avancement des agrégats journaliers de reporting (table rollup_jour).
+ *
+ * Cron : chaque heure à hh:20. Comme pour les clôtures de caisse, les tenants n'ont
+ * pas tous le même fuseau : à chaque tick, tout tenant dont la veille (heure du
+ * tenant) n'est pas encore agrégée l'est — juste après minuit local, ou au tick
+ * suivant une invalidation (écriture antidatée), depuis le jour invalidé.
+ *
+ * Une transaction par tranche de jours (RollupJourService.agregerTranche) : l'échec
+ * d'un tenant n'empêche pas les autres. Tenants répartis en tranches (TacheVerrouService) :
+ * avec plusieurs instances, chacune agrège les tranches dont elle prend le verrou.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollupJourScheduler {
+
+    private final TenantRepository tenantRepository;
+    private final RollupJourEtatRepository etatRepository;
+    private final RollupJourService rollupJourService;
+    private final TacheVerrouService verrouService;
+
+    @Value("${app.scheduler.tranches:4}")
+    private int nbTranches = 1;
+
+    @Scheduled(cron = "0 20 * * * *")
+    public void agregerJourneesTerminees() {
+        verrouService.executerParTranches("rollup-jour", nbTranches,
+                Duration.ofMinutes(50), Duration.ofMinutes(5),
+                tranche -> agregerJourneesTerminees(tranche, nbTranches));
+    }
+
+    void agregerJourneesTerminees(int tranche, int nbTranches) {
+        List<TenantEntity> tenants = tenantRepository.findByDeletedFalseDansTranche(nbTranches, tranche);
+        if (tenants.isEmpty()) return;
+
+        Map<Long, LocalDate> calculeJusquAuParTenant = new HashMap<>();
+        for (Object[] row : etatRepository.findCalculeJusquAuParTenant(nbTranches, tranche)) {
+            calculeJusquAuParTenant.put((Long) row[0], (LocalDate) row[1]);
+        }
+
+        int jours = 0;
+        for (TenantEntity tenant : tenants) {
+            LocalDate hier = CaisseClotureService.aujourdhui(tenant).minusDays(1);
+            LocalDate calculeJusquAu = calculeJusquAuParTenant.get(tenant.getId());
+            if (calculeJusquAu != null && !calculeJusquAu.isBefore(hier)) continue;
+            try {
+                jours += rollupJourService.rattraper(tenant);
+            } catch (OptimisticLockingFailureException e) {
+                log.info("[ROLLUP] {} — repris au prochain tick", e.getMessage());
+            } catch (Exception e) {
+                log.warn("[ROLLUP] Échec de l'agrégation pour tenant={} : {}",
+                        tenant.getTenantUuid(), e.getMessage());
+            }
+        }
+        if (jours > 0) log.info("[ROLLUP] {} journée(s) agrégée(s) ce tick", jours);
+    }
+}
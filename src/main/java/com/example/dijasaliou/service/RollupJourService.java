@@ -0,0 +1,356 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.RollupJourEntity;
+import com.example.dijasaliou.entity.RollupJourEtatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.DepenseRepository;
+import com.example.dijasaliou.repository.PaiementCreditRepository;
+import com.example.dijasaliou.repository.RollupJourEtatRepository;
+import com.example.dijasaliou.repository.RollupJourRepository;
+import com.example.dijasaliou.repository.VenteLotConsommationRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.RollupJourTotaux.Cumul;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Agrégats journaliers de reporting (table rollup_jour) : lecture des totaux d'une
+ * période, avancement du job, invalidation et reconstruction.
+ *
+ * Une période se lit en deux morceaux : les agrégats jusqu'au dernier jour agrégé
+ * (rollup_jour_etat), puis les tables brutes pour les jours suivants — en pratique
+ * aujourd'hui, plus les jours invalidés que le job n'a pas encore recalculés. Les
+ * deux morceaux utilisent les mêmes regroupements (jour, mode, type de sortie) :
+ * {@link #calculerBrut} sert aussi au job.
+ *
+ * Comme les clôtures de caisse, les agrégats ne couvrent que des journées terminées ;
+ * {@link #invaliderDepuis} est appelé par InvalidationDonneesService pour une écriture
+ * antidatée. Le rejeu FIFO d'un produit part de la date de l'écriture : les bénéfices
+ * qu'il modifie sont tous dans la plage invalidée.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollupJourService {
+
+    /** Jours agrégés par transaction lors du rattrapage (premier passage, reconstruction). */
+    static final int JOURS_PAR_LOT = 31;
+
+    private final RollupJourRepository           rollupRepository;
+    private final RollupJourEtatRepository       etatRepository;
+    private final VenteRepository                venteRepository;
+    private final VenteLotConsommationRepository consommationRepository;
+    private final PaiementCreditRepository       paiementCreditRepository;
+    private final AchatRepository                achatRepository;
+    private final DepenseRepository              depenseRepository;
+
+    /** Auto-injection différée : chaque tranche du rattrapage a sa propre transaction */
+    @Autowired @Lazy
+    private RollupJourService self;
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // LECTURE
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Totaux de la période [debut, fin] (jours inclus) par mode et type de sortie. */
+    @Transactional(readOnly = true)
+    public RollupJourTotaux totaux(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        RollupJourTotaux totaux = new RollupJourTotaux();
+        LocalDate calculeJusquAu = calculeJusquAu(tenant);
+
+        LocalDate debutBrut = debut;
+        if (calculeJusquAu != null && !debut.isAfter(calculeJusquAu)) {
+            LocalDate finRollup = fin.isBefore(calculeJusquAu) ? fin : calculeJusquAu;
+            for (Object[] row : rollupRepository.sumParModeEtType(tenant, debut, finRollup)) {
+                totaux.ajouter((String) row[0], (String) row[1], cumulDepuisRollup(row));
+            }
+            debutBrut = finRollup.plusDays(1);
+        }
+        if (!debutBrut.isAfter(fin)) {
+            calculerBrut(tenant, debutBrut, fin)
+                    .forEach((cle, cumul) -> totaux.ajouter(cle.mode(), cle.typeSortie(), cumul));
+        }
+        return totaux;
+    }
+
+    /** Nombre total de ventes du tenant (toutes dates, sorties comprises). */
+    @Transactional(readOnly = true)
+    public long compterVentes(TenantEntity tenant) {
+        LocalDate calculeJusquAu = calculeJusquAu(tenant);
+        if (calculeJusquAu == null) {
+            return venteRepository.countByTenantId(tenant.getId());
+        }
+        return rollupRepository.sumNbVentesJusquAu(tenant, calculeJusquAu)
+                + venteRepository.countByTenantDepuis(tenant, calculeJusquAu.plusDays(1).atStartOfDay());
+    }
+
+    private LocalDate calculeJusquAu(TenantEntity tenant) {
+        return etatRepository.findByTenant(tenant).map(RollupJourEtatEntity::getCalculeJusquAu).orElse(null);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // AVANCEMENT (RollupJourScheduler) ET RECONSTRUCTION
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Agrège les journées terminées du tenant qui ne le sont pas encore, par tranches
+     * de {@link #JOURS_PAR_LOT} jours.
+     *
+     * Premier passage : crée seulement l'état (point de départ à établir) et s'arrête.
+     * Une écriture en cours à cet instant a pu faire son invalidation avant que l'état
+     * n'existe ; au tick suivant elle est validée et le point de départ, établi d'après
+     * le plus ancien mouvement, la prend en compte.
+     *
+     * @return nombre de journées agrégées
+     * @throws OptimisticLockingFailureException si une écriture antidatée a invalidé la
+     *         tranche en cours — à reprendre au tick suivant
+     */
+    public int rattraper(TenantEntity tenant) {
+        if (etatRepository.findByTenant(tenant).isEmpty()) {
+            try {
+                self.creerEtat(tenant);
+            } catch (DataIntegrityViolationException e) {
+                log.debug("[ROLLUP] État déjà créé par un autre passage (tenant={})", tenant.getTenantUuid());
+            }
+            return 0;
+        }
+        LocalDate hier = CaisseClotureService.aujourdhui(tenant).minusDays(1);
+        int jours = 0;
+        int tranche;
+        while ((tranche = self.agregerTranche(tenant, hier)) > 0) {
+            jours += tranche;
+        }
+        return jours;
+    }
+
+    /**
+     * Vide les agrégats du tenant puis les recalcule entièrement (tenant déjà suivi ;
+     * sinon l'état est seulement créé et le job fait le calcul au tick suivant).
+     */
+    public int reconstruire(TenantEntity tenant) {
+        self.invaliderTout(tenant);
+        int jours = rattraper(tenant);
+        log.info("[ROLLUP] Agrégats reconstruits : {} jour(s) (tenant={})", jours, tenant.getTenantUuid());
+        return jours;
+    }
+
+    @Transactional
+    public void creerEtat(TenantEntity tenant) {
+        etatRepository.saveAndFlush(RollupJourEtatEntity.builder()
+                .tenant(tenant)
+                .version(0L)
+                .build());
+    }
+
+    /**
+     * Agrège la tranche suivant le dernier jour agrégé (au plus {@link #JOURS_PAR_LOT}
+     * jours, jusqu'à {@code hier}) et avance l'état — seulement si aucune invalidation
+     * n'est passée depuis sa lecture.
+     *
+     * @return nombre de journées agrégées, 0 si le tenant est à jour
+     */
+    @Transactional
+    public int agregerTranche(TenantEntity tenant, LocalDate hier) {
+        RollupJourEtatEntity etat = etatRepository.findByTenant(tenant).orElse(null);
+        if (etat == null) {
+            return 0;
+        }
+        LocalDate calculeJusquAu = etat.getCalculeJusquAu() != null
+                ? etat.getCalculeJusquAu()
+                : veilleDuPremierMouvement(tenant, hier);
+        if (!calculeJusquAu.isBefore(hier)) {
+            if (etat.getCalculeJusquAu() == null) {
+                avancer(tenant, calculeJusquAu, etat.getVersion());
+            }
+            return 0;
+        }
+        LocalDate debut = calculeJusquAu.plusDays(1);
+        LocalDate fin = debut.plusDays(JOURS_PAR_LOT - 1L);
+        if (fin.isAfter(hier)) fin = hier;
+
+        Map<Cle, Cumul> cumuls = calculerBrut(tenant, debut, fin);
+        rollupRepository.deleteDepuis(tenant, debut);
+        rollupRepository.saveAll(cumuls.entrySet().stream()
+                .map(e -> versEntite(tenant, e.getKey(), e.getValue()))
+                .toList());
+        avancer(tenant, fin, etat.getVersion());
+        return (int) ChronoUnit.DAYS.between(debut, fin) + 1;
+    }
+
+    private void avancer(TenantEntity tenant, LocalDate jusquAu, Long version) {
+        if (etatRepository.avancerSiVersion(tenant, jusquAu, version) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "Agrégats jusqu'au " + jusquAu + " invalidés pendant leur calcul (tenant="
+                            + tenant.getTenantUuid() + ")");
+        }
+    }
+
+    /** Rien n'est à agréger avant le plus ancien mouvement du tenant (ni après hier). */
+    private LocalDate veilleDuPremierMouvement(TenantEntity tenant, LocalDate hier) {
+        LocalDate premierJour = Stream.of(
+                        jour(venteRepository.findPremiereDateVente(tenant)),
+                        jour(achatRepository.findPremiereDateAchat(tenant)),
+                        jour(depenseRepository.findPremiereDateDepense(tenant)),
+                        paiementCreditRepository.findPremiereDatePaiement(tenant))
+                .filter(Objects::nonNull)
+                .min(LocalDate::compareTo)
+                .orElse(null);
+        return premierJour == null || premierJour.isAfter(hier) ? hier : premierJour.minusDays(1);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // INVALIDATION
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Une vente, un achat, une dépense ou un paiement crédit daté de {@code jour} (journée
+     * terminée) vient d'être créé, modifié ou supprimé : les agrégats à partir de ce jour
+     * sont faux.
+     *
+     * La version est incrémentée même sans agrégat à supprimer : une tranche en cours
+     * de calcul sur ce jour (lue avant cette écriture) sera rejetée par le job.
+     */
+    @Transactional
+    public void invaliderDepuis(TenantEntity tenant, LocalDate jour) {
+        if (etatRepository.incrementerVersion(tenant) == 0) {
+            return; // aucun agrégat pour ce tenant
+        }
+        etatRepository.reculer(tenant, jour.minusDays(1));
+        int supprimes = rollupRepository.deleteDepuis(tenant, jour);
+        if (supprimes > 0) {
+            log.info("[ROLLUP] {} agrégat(s) invalidé(s) depuis le {} (tenant={})",
+                    supprimes, jour, tenant.getTenantUuid());
+        }
+    }
+
+    /**
+     * Supprime les agrégats du tenant et remet son état à zéro (backfill FIFO,
+     * reconstruction) : les lectures repartent des tables brutes jusqu'au recalcul.
+     */
+    @Transactional
+    public void invaliderTout(TenantEntity tenant) {
+        etatRepository.reinitialiser(tenant);
+        rollupRepository.deleteAllByTenant(tenant);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // CALCUL BRUT
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Clé d'une ligne rollup_jour ; mode / type absents = AUCUN. */
+    record Cle(LocalDate jour, String mode, String typeSortie) {}
+
+    /**
+     * Agrège les tables brutes sur [debut, fin] par (jour, mode, type de sortie) :
+     * 5 requêtes GROUP BY, quel que soit le nombre de jours.
+     */
+    Map<Cle, Cumul> calculerBrut(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        LocalDateTime debutDt = debut.atStartOfDay();
+        LocalDateTime finDt   = fin.atTime(LocalTime.MAX);
+        Map<Cle, Cumul> cumuls = new HashMap<>();
+
+        for (Object[] row : venteRepository.sumRollupParJour(tenant, debutDt, finDt)) {
+            Cumul c = cumul(cumuls, row[0], row[1], row[2]);
+            c.nbVentes += nombre(row[3]);
+            c.montantVentes = c.montantVentes.add(decimal(row[4]));
+        }
+        for (Object[] row : consommationRepository.sumRollupParJour(tenant, debutDt, finDt)) {
+            Cumul c = cumul(cumuls, row[0], row[1], row[2]);
+            c.coutFifo = c.coutFifo.add(decimal(row[3]));
+            c.beneficeFifo = c.beneficeFifo.add(decimal(row[4]));
+            c.nbVentesFifo += nombre(row[5]);
+        }
+        for (Object[] row : paiementCreditRepository.sumRollupParJour(tenant, debut, fin)) {
+            Cumul c = cumul(cumuls, row[0], row[1], null);
+            c.nbPaiementsCredit += nombre(row[2]);
+            c.montantPaiementsCredit = c.montantPaiementsCredit.add(decimal(row[3]));
+        }
+        for (Object[] row : achatRepository.sumRollupParJour(tenant, debutDt, finDt)) {
+            Cumul c = cumul(cumuls, row[0], row[1], null);
+            c.nbAchats += nombre(row[2]);
+            c.montantAchats = c.montantAchats.add(decimal(row[3]));
+        }
+        for (Object[] row : depenseRepository.sumRollupParJour(tenant, debutDt, finDt)) {
+            Cumul c = cumul(cumuls, row[0], row[1], null);
+            c.nbDepenses += nombre(row[2]);
+            c.montantDepenses = c.montantDepenses.add(decimal(row[3]));
+        }
+        return cumuls;
+    }
+
+    private static Cumul cumul(Map<Cle, Cumul> cumuls, Object jour, Object mode, Object typeSortie) {
+        return cumuls.computeIfAbsent(new Cle((LocalDate) jour, nom(mode), nom(typeSortie)), k -> new Cumul());
+    }
+
+    private static Cumul cumulDepuisRollup(Object[] row) {
+        Cumul c = new Cumul();
+        c.nbVentes               = nombre(row[2]);
+        c.montantVentes          = decimal(row[3]);
+        c.coutFifo               = decimal(row[4]);
+        c.beneficeFifo           = decimal(row[5]);
+        c.nbVentesFifo           = nombre(row[6]);
+        c.nbPaiementsCredit      = nombre(row[7]);
+        c.montantPaiementsCredit = decimal(row[8]);
+        c.nbAchats               = nombre(row[9]);
+        c.montantAchats          = decimal(row[10]);
+        c.nbDepenses             = nombre(row[11]);
+        c.montantDepenses        = decimal(row[12]);
+        return c;
+    }
+
+    private static RollupJourEntity versEntite(TenantEntity tenant, Cle cle, Cumul c) {
+        return RollupJourEntity.builder()
+                .tenant(tenant)
+                .jour(cle.jour())
+                .modePaiement(cle.mode())
+                .typeSortie(cle.typeSortie())
+                .nbVentes(c.nbVentes)
+                .montantVentes(c.montantVentes)
+                .coutFifo(c.coutFifo)
+                .beneficeFifo(c.beneficeFifo)
+                .nbVentesFifo(c.nbVentesFifo)
+                .nbPaiementsCredit(c.nbPaiementsCredit)
+                .montantPaiementsCredit(c.montantPaiementsCredit)
+                .nbAchats(c.nbAchats)
+                .montantAchats(c.montantAchats)
+                .nbDepenses(c.nbDepenses)
+                .montantDepenses(c.montantDepenses)
+                .build();
+    }
+
+    private static String nom(Object valeur) {
+        if (valeur == null) return RollupJourEntity.AUCUN;
+        return valeur instanceof Enum<?> e ? e.name() : valeur.toString();
+    }
+
+    private static long nombre(Object valeur) {
+        return valeur instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static BigDecimal decimal(Object valeur) {
+        if (valeur instanceof BigDecimal d) return d;
+        if (valeur instanceof Number n) return new BigDecimal(n.toString());
+        return BigDecimal.ZERO;
+    }
+
+    private static LocalDate jour(LocalDateTime date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.RollupJourEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Totaux d'une période par (mode de paiement, type de sortie), retournés par
+ * {@link RollupJourService#totaux}. Les accesseurs reprennent exactement les filtres
+ * des anciennes requêtes brutes (ex. "non crédit" = mode renseigné et ≠ CREDIT,
+ * "vente" = pas de type de sortie).
+ */
+public class RollupJourTotaux {
+
+    private static final String CREDIT = VenteEntity.ModePaiementVente.CREDIT.name();
+
+    /** Cumul d'une case (mode, type de sortie) — ou d'une journée dans RollupJourService. */
+    static final class Cumul {
+        long nbVentes;
+        BigDecimal montantVentes = BigDecimal.ZERO;
+        BigDecimal coutFifo = BigDecimal.ZERO;
+        BigDecimal beneficeFifo = BigDecimal.ZERO;
+        long nbVentesFifo;
+        long nbPaiementsCredit;
+        BigDecimal montantPaiementsCredit = BigDecimal.ZERO;
+        long nbAchats;
+        BigDecimal montantAchats = BigDecimal.ZERO;
+        long nbDepenses;
+        BigDecimal montantDepenses = BigDecimal.ZERO;
+
+        void ajouter(Cumul autre) {
+            nbVentes += autre.nbVentes;
+            montantVentes = montantVentes.add(autre.montantVentes);
+            coutFifo = coutFifo.add(autre.coutFifo);
+            beneficeFifo = beneficeFifo.add(autre.beneficeFifo);
+            nbVentesFifo += autre.nbVentesFifo;
+            nbPaiementsCredit += autre.nbPaiementsCredit;
+            montantPaiementsCredit = montantPaiementsCredit.add(autre.montantPaiementsCredit);
+            nbAchats += autre.nbAchats;
+            montantAchats = montantAchats.add(autre.montantAchats);
+            nbDepenses += autre.nbDepenses;
+            montantDepenses = montantDepenses.add(autre.montantDepenses);
+        }
+    }
+
+    private record Case(String mode, String typeSortie) {
+        boolean estVente()      { return RollupJourEntity.AUCUN.equals(typeSortie); }
+        boolean estEncaissee()  { return estVente() && !CREDIT.equals(mode) && !RollupJourEntity.AUCUN.equals(mode); }
+    }
+
+    private final Map<Case, Cumul> cases = new HashMap<>();
+
+    void ajouter(String mode, String typeSortie, Cumul cumul) {
+        cases.computeIfAbsent(new Case(mode, typeSortie), k -> new Cumul()).ajouter(cumul);
+    }
+
+    // ── Ventes payées immédiatement (mode ≠ CREDIT, hors sorties) ────────────
+
+    public BigDecimal caEncaisse()           { return somme(Case::estEncaissee, c -> c.montantVentes); }
+    public long nbVentesEncaissees()         { return compte(Case::estEncaissee, c -> c.nbVentes); }
+    public BigDecimal coutFifoEncaisse()     { return somme(Case::estEncaissee, c -> c.coutFifo); }
+    public BigDecimal beneficeFifoEncaisse() { return somme(Case::estEncaissee, c -> c.beneficeFifo); }
+
+    /** Ventes (tous modes, crédit compris, hors sorties) ayant au moins une ligne FIFO. */
+    public long nbVentesAvecBenefice()       { return compte(Case::estVente, c -> c.nbVentesFifo); }
+
+    // ── Toutes les lignes de ventes (sorties comprises) ──────────────────────
+
+    public BigDecimal montantVentes()        { return somme(k -> true, c -> c.montantVentes); }
+    public long nbVentes()                   { return compte(k -> true, c -> c.nbVentes); }
+
+    // ── Sorties hors vente ───────────────────────────────────────────────────
+
+    public long nbSorties()                  { return compte(k -> !k.estVente(), c -> c.nbVentes); }
+
+    /** Coût FIFO des sorties par type (types ayant au moins une ligne FIFO), triés par type. */
+    public Map<String, BigDecimal> pertesFifoParType() {
+        Map<String, BigDecimal> parType = new TreeMap<>();
+        cases.forEach((k, c) -> {
+            if (!k.estVente() && c.nbVentesFifo > 0) {
+                parType.merge(k.typeSortie(), c.coutFifo, BigDecimal::add);
+            }
+        });
+        return new LinkedHashMap<>(parType);
+    }
+
+    // ── Paiements crédit, achats, dépenses ───────────────────────────────────
+
+    public BigDecimal montantPaiementsCredit() { return somme(k -> true, c -> c.montantPaiementsCredit); }
+    public long nbPaiementsCredit()            { return compte(k -> true, c -> c.nbPaiementsCredit); }
+    public BigDecimal montantAchats()          { return somme(k -> true, c -> c.montantAchats); }
+    public long nbAchats()                     { return compte(k -> true, c -> c.nbAchats); }
+    public BigDecimal montantDepenses()        { return somme(k -> true, c -> c.montantDepenses); }
+    public long nbDepenses()                   { return compte(k -> true, c -> c.nbDepenses); }
+
+    private BigDecimal somme(Predicate<Case> filtre, Function<Cumul, BigDecimal> valeur) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Case, Cumul> e : cases.entrySet()) {
+            if (filtre.test(e.getKey())) total = total.add(valeur.apply(e.getValue()));
+        }
+        return total;
+    }
+
+    private long compte(Predicate<Case> filtre, ToLongFunction<Cumul> valeur) {
+        long total = 0L;
+        for (Map.Entry<Case, Cumul> e : cases.entrySet()) {
+            if (filtre.test(e.getKey())) total += valeur.applyAsLong(e.getValue());
+        }
+        return total;
+    }
+}
@@ -14,6 +14,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Service pour gérer les alertes de stock
@@ -84,6 +86,39 @@ public class StockAlertService {
         // 1. Calculer le stock actuel du produit
         double stockActuel = calculerStockActuel(nomProduit, tenant);
 
+        alerterSiSeuilAtteint(tenant, nomProduit, stockActuel,
+                () -> userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN).orElse(null));
+    }
+
+    /**
+     * Variante panier : le stock après vente de chaque produit est déjà connu
+     * (ledger verrouillé par l'appelant) et l'admin déjà chargé. Plan vérifié
+     * une seule fois, aucune requête SUM.
+     *
+     * @param stockParProduit Nom du produit → stock actuel après le panier
+     * @param admin           Admin du tenant (destinataire), null si aucun
+     */
+    @Transactional
+    public void verifierEtEnvoyerAlertes(Map<String, Double> stockParProduit, UserEntity admin) {
+        if (stockParProduit.isEmpty()) return;
+        TenantEntity tenant = tenantService.getCurrentTenant();
+
+        if (tenant.getPlan() != TenantEntity.Plan.PRO && tenant.getPlan() != TenantEntity.Plan.BUSINESS) {
+            log.debug("Alertes de stock désactivées pour le plan {} (entreprise: {})",
+                    tenant.getPlan(), tenant.getNomEntreprise());
+            return;
+        }
+
+        stockParProduit.forEach((nomProduit, stockActuel) ->
+                alerterSiSeuilAtteint(tenant, nomProduit, stockActuel, () -> admin));
+    }
+
+    /**
+     * Envoie l'alerte si le stock est EXACTEMENT sur un seuil et qu'aucune alerte
+     * n'a été envoyée pour ce seuil dans les dernières 24h.
+     */
+    private void alerterSiSeuilAtteint(TenantEntity tenant, String nomProduit, double stockActuel,
+                                       Supplier<UserEntity> adminSupplier) {
         log.debug("Stock actuel pour {} : {} unités (tenant: {})",
                 nomProduit, stockActuel, tenant.getNomEntreprise());
 
@@ -123,8 +158,7 @@ public class StockAlertService {
                 nomProduit, stockActuel);
 
         // 3. Récupérer l'admin du tenant pour l'email
-        UserEntity admin = userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN)
-                .orElse(null);
+        UserEntity admin = adminSupplier.get();
 
         if (admin == null) {
             log.error("Aucun admin trouvé pour le tenant {} - impossible d'envoyer l'alerte",
@@ -0,0 +1,285 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.StockProduitEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.StockProduitRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Maintenance du ledger de stock (table stock_produit).
+ *
+ * Principe :
+ *   - Création d'un achat / d'une vente → delta appliqué sur la ligne du produit
+ *     (verrou pessimiste sur cette seule ligne).
+ *   - Modification / suppression / import → la ligne des produits touchés est
+ *     recalculée depuis les agrégats SQL de leurs achats et ventes.
+ *   - Reconstruction complète à la demande (POST /admin/stock-ledger/rebuild)
+ *     ou automatiquement la première fois qu'un tenant n'a encore aucune ligne.
+ *
+ * Toutes les méthodes d'écriture rejoignent la transaction de l'appelant :
+ * le ledger est commité (ou annulé) en même temps que l'achat / la vente.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockProduitService {
+
+    private final StockProduitRepository stockProduitRepository;
+    private final AchatRepository achatRepository;
+    private final VenteRepository venteRepository;
+    private final TenantRepository tenantRepository;
+
+    /** Clé de regroupement des produits — identique à celle de StockService. */
+    public static String normaliser(String nomProduit) {
+        return nomProduit == null ? "" : nomProduit.toLowerCase().trim();
+    }
+
+    /** Lignes du ledger affichables (au moins un achat) pour un tenant. */
+    @Transactional(readOnly = true)
+    public List<StockProduitEntity> listerAvecAchats(TenantEntity tenant) {
+        return stockProduitRepository.findAvecAchatsByTenant(tenant);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean estInitialise(TenantEntity tenant) {
+        return stockProduitRepository.existsByTenant(tenant);
+    }
+
+    /**
+     * Construit le ledger d'un tenant qui n'en a pas encore (premier accès après déploiement).
+     * Transaction séparée : appelable depuis un chemin de lecture (readOnly).
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void initialiserLedger(TenantEntity tenant) {
+        initialiserSiNecessaire(tenant);
+    }
+
+    /**
+     * Applique un achat qui vient d'être sauvegardé.
+     */
+    @Transactional
+    public void enregistrerAchat(AchatEntity achat) {
+        TenantEntity tenant = achat.getTenant();
+        if (initialiserSiNecessaire(tenant)) return; // la reconstruction inclut déjà cet achat
+
+        StockProduitEntity ligne = verrouillerOuCreer(tenant, normaliser(achat.getNomProduit()));
+        ligne.appliquerAchat(achat, 1);
+        stockProduitRepository.save(ligne);
+    }
+
+    /**
+     * Applique une vente qui vient d'être sauvegardée.
+     */
+    @Transactional
+    public void enregistrerVente(VenteEntity vente) {
+        TenantEntity tenant = vente.getTenant();
+        if (initialiserSiNecessaire(tenant)) return;
+
+        StockProduitEntity ligne = verrouillerOuCreer(tenant, normaliser(vente.getNomProduit()));
+        ligne.appliquerVente(vente, 1);
+        stockProduitRepository.save(ligne);
+    }
+
+    /**
+     * Verrouille (ou crée pour un produit inconnu) les lignes de plusieurs produits
+     * en une requête — utilisé par l'encaissement d'un panier AVANT la sauvegarde
+     * de ses ventes (contrôle de stock puis enregistrerVentes).
+     *
+     * @return nomNormalise → ligne verrouillée ; produits jamais achetés ni vendus absents.
+     */
+    @Transactional
+    public Map<String, StockProduitEntity> verrouillerProduits(TenantEntity tenant, Collection<String> nomsProduits) {
+        initialiserSiNecessaire(tenant);
+
+        Set<String> noms = new LinkedHashSet<>();
+        nomsProduits.stream().filter(Objects::nonNull).map(StockProduitService::normaliser).forEach(noms::add);
+
+        Map<String, StockProduitEntity> lignes = new LinkedHashMap<>();
+        if (noms.isEmpty()) return lignes;
+        for (StockProduitEntity ligne : stockProduitRepository.findAllForUpdate(tenant, noms)) {
+            lignes.put(ligne.getNomNormalise(), ligne);
+        }
+        return lignes;
+    }
+
+    /**
+     * Applique les ventes d'un panier qui viennent d'être sauvegardées, sur les
+     * lignes verrouillées par verrouillerProduits (complétées si un produit manque).
+     */
+    @Transactional
+    public void enregistrerVentes(List<VenteEntity> ventes, Map<String, StockProduitEntity> lignes) {
+        for (VenteEntity vente : ventes) {
+            String nom = normaliser(vente.getNomProduit());
+            StockProduitEntity ligne = lignes.computeIfAbsent(nom, n -> verrouillerOuCreer(vente.getTenant(), n));
+            ligne.appliquerVente(vente, 1);
+        }
+        stockProduitRepository.saveAll(lignes.values());
+    }
+
+    /**
+     * Recalcule entièrement les lignes des produits donnés (après modification,
+     * suppression ou import). Les noms sont normalisés et dédoublonnés ; null ignoré.
+     */
+    @Transactional
+    public void recalculerProduits(TenantEntity tenant, Collection<String> nomsProduits) {
+        if (initialiserSiNecessaire(tenant)) return;
+
+        Set<String> noms = new LinkedHashSet<>();
+        nomsProduits.stream().filter(Objects::nonNull).map(StockProduitService::normaliser).forEach(noms::add);
+        for (String nom : noms) {
+            recalculerProduit(tenant, nom);
+        }
+    }
+
+    /**
+     * Reconstruit tout le ledger d'un tenant à partir des achats et ventes.
+     *
+     * @return Nombre de lignes produit écrites.
+     */
+    @Transactional
+    public int reconstruire(TenantEntity tenant) {
+        long debut = System.currentTimeMillis();
+        stockProduitRepository.deleteAllByTenant(tenant);
+        stockProduitRepository.flush();
+
+        Map<String, StockProduitEntity> lignes = calculerDepuisHistorique(tenant, null);
+        stockProduitRepository.saveAll(lignes.values());
+
+        log.info("[STOCK_LEDGER] Reconstruction tenant {} : {} produit(s) en {} ms",
+                tenant.getTenantUuid(), lignes.size(), System.currentTimeMillis() - debut);
+        return lignes.size();
+    }
+
+    /**
+     * Calcule les lignes du ledger depuis l'historique, par agrégats SQL
+     * (aucune entité achat / vente chargée). Lignes NON persistées.
+     *
+     * @param nomNormalise null → tous les produits du tenant ; sinon ce seul produit.
+     * @return nomNormalise → ligne calculée (produits vendus sans achat inclus, nbAchats = 0).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, StockProduitEntity> calculerDepuisHistorique(TenantEntity tenant, String nomNormalise) {
+        Map<String, StockProduitEntity> lignes = new LinkedHashMap<>();
+
+        // [nom, nbAchats, sum(quantite), sum(prix × quantite)]
+        for (Object[] row : achatRepository.agregerStockParProduit(tenant, nomNormalise)) {
+            StockProduitEntity ligne = lignes.computeIfAbsent((String) row[0], nom -> nouvelleLigne(tenant, nom));
+            ligne.setNbAchats(((Number) row[1]).longValue());
+            ligne.setQuantiteAchetee(enDouble(row[2]));
+            ligne.setValeurAchats(enBigDecimal(row[3]));
+        }
+
+        // Une ligne par produit : [nom, dateDernierAchat, unite, datePhoto, photoUrl, dateCodeBarre,
+        // codeBarre, dateCategorie, categorie, datePrix, prixVenteSuggere]. Chaque attribut
+        // arrive déjà départagé par la requête, avec la date de son propre achat : recopié tel quel.
+        for (Object[] row : achatRepository.findDerniersAttributsParProduit(tenant.getId(), nomNormalise)) {
+            StockProduitEntity ligne = lignes.get((String) row[0]);
+            if (ligne == null) continue;
+            ligne.setDateDernierAchat(enDate(row[1]));
+            ligne.setUnite((String) row[2]);
+            ligne.setDatePhoto(enDate(row[3]));
+            ligne.setPhotoUrl((String) row[4]);
+            ligne.setDateCodeBarre(enDate(row[5]));
+            ligne.setCodeBarre((String) row[6]);
+            ligne.setDateCategorie(enDate(row[7]));
+            ligne.setCategorie((String) row[8]);
+            ligne.setDatePrixVenteSuggere(enDate(row[9]));
+            ligne.setPrixVenteSuggere(row[10] != null ? enBigDecimal(row[10]) : null);
+        }
+
+        // [nom, sum(quantite), sum(prix × quantite)]
+        for (Object[] row : venteRepository.agregerStockParProduit(tenant, nomNormalise)) {
+            StockProduitEntity ligne = lignes.computeIfAbsent((String) row[0], nom -> nouvelleLigne(tenant, nom));
+            ligne.setQuantiteVendue(enDouble(row[1]));
+            ligne.setValeurVentes(enBigDecimal(row[2]));
+        }
+        return lignes;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Si le tenant n'a encore aucune ligne, reconstruit son ledger sous verrou
+     * du tenant (deux premières ventes simultanées ne reconstruisent pas deux fois).
+     *
+     * @return true si une reconstruction a eu lieu.
+     */
+    private boolean initialiserSiNecessaire(TenantEntity tenant) {
+        if (stockProduitRepository.existsByTenant(tenant)) return false;
+
+        tenantRepository.findByIdForUpdate(tenant.getId());
+        if (stockProduitRepository.existsByTenant(tenant)) return false;
+
+        reconstruire(tenant);
+        return true;
+    }
+
+    private void recalculerProduit(TenantEntity tenant, String nom) {
+        StockProduitEntity calcul = calculerDepuisHistorique(tenant, nom).get(nom);
+
+        if (calcul == null) {
+            stockProduitRepository.findForUpdate(tenant, nom).ifPresent(stockProduitRepository::delete);
+            return;
+        }
+
+        StockProduitEntity ligne = verrouillerOuCreer(tenant, nom);
+        ligne.remplacerPar(calcul);
+        stockProduitRepository.save(ligne);
+    }
+
+    /**
+     * Verrouille la ligne du produit, ou la crée. La création d'un NOUVEAU produit
+     * passe par le verrou du tenant pour éviter deux INSERT concurrents
+     * (contrainte uk_stock_produit_tenant_nom).
+     */
+    private StockProduitEntity verrouillerOuCreer(TenantEntity tenant, String nom) {
+        return stockProduitRepository.findForUpdate(tenant, nom).orElseGet(() -> {
+            tenantRepository.findByIdForUpdate(tenant.getId());
+            return stockProduitRepository.findForUpdate(tenant, nom)
+                    .orElseGet(() -> stockProduitRepository.saveAndFlush(nouvelleLigne(tenant, nom)));
+        });
+    }
+
+    private static double enDouble(Object valeur) {
+        return valeur != null ? ((Number) valeur).doubleValue() : 0.0;
+    }
+
+    /** SUM(prix × quantite) : BigDecimal ou Double selon le dialecte (DECIMAL × DOUBLE). */
+    private static BigDecimal enBigDecimal(Object valeur) {
+        if (valeur instanceof BigDecimal bd) return bd;
+        return valeur instanceof Number ? new BigDecimal(valeur.toString()) : BigDecimal.ZERO;
+    }
+
+    /** Date d'une requête native : Timestamp ou LocalDateTime selon le pilote. */
+    private static LocalDateTime enDate(Object valeur) {
+        if (valeur instanceof Timestamp ts) return ts.toLocalDateTime();
+        return (LocalDateTime) valeur;
+    }
+
+    private static StockProduitEntity nouvelleLigne(TenantEntity tenant, String nom) {
+        return StockProduitEntity.builder()
+                .tenant(tenant)
+                .nomNormalise(nom)
+                .build();
+    }
+}
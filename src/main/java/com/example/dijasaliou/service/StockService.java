@@ -2,7 +2,9 @@ package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.dto.StockDto;
 import com.example.dijasaliou.dto.StockExportDto;
+import com.example.dijasaliou.dto.StockLedgerRapportDto;
 import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.StockProduitEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.VenteEntity;
 import com.example.dijasaliou.repository.AchatRepository;
@@ -18,11 +20,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -38,15 +41,20 @@ public class StockService {
     private final TenantService tenantService;
     private final ProduitArchiveRepository produitArchiveRepository;
     private final VenteLotConsommationRepository venteLotConsommationRepository;
+    private final StockProduitService stockProduitService;
+
+    private static final BigDecimal TOLERANCE_PRIX = new BigDecimal("0.01");
 
     public StockService(AchatRepository achatRepository, VenteRepository venteRepository,
                         TenantService tenantService, ProduitArchiveRepository produitArchiveRepository,
-                        VenteLotConsommationRepository venteLotConsommationRepository) {
+                        VenteLotConsommationRepository venteLotConsommationRepository,
+                        StockProduitService stockProduitService) {
         this.achatRepository = achatRepository;
         this.venteRepository = venteRepository;
         this.tenantService = tenantService;
         this.produitArchiveRepository = produitArchiveRepository;
         this.venteLotConsommationRepository = venteLotConsommationRepository;
+        this.stockProduitService = stockProduitService;
     }
 
     /**
@@ -89,28 +97,14 @@ public class StockService {
                     .collect(Collectors.toList());
         }
 
-        LocalDateTime debutDt = (debut != null ? debut.atStartOfDay() : LocalDateTime.of(1970, 1, 1, 0, 0));
-        LocalDateTime finDt   = (fin   != null ? fin.atTime(LocalTime.MAX) : LocalDateTime.of(2099, 12, 31, 23, 59));
-
-        // Charger les achats et ventes de la période, grouper par nom_produit (lowercase trim)
-        List<AchatEntity> achatsPeriode = achatRepository.findByDateAchatBetween(debutDt, finDt)
-                .stream()
-                .filter(a -> a.getTenant() != null && a.getTenant().getId().equals(tenant.getId()))
-                .collect(Collectors.toList());
-        List<VenteEntity> ventesPeriode = venteRepository.findByDateVenteBetween(debutDt, finDt)
-                .stream()
-                .filter(v -> v.getTenant() != null && v.getTenant().getId().equals(tenant.getId()))
-                .collect(Collectors.toList());
+        LocalDateTime debutDt  = (debut != null ? debut.atStartOfDay() : LocalDateTime.of(1970, 1, 1, 0, 0));
+        LocalDateTime finExclu = (fin   != null ? fin.plusDays(1).atStartOfDay() : LocalDateTime.of(2100, 1, 1, 0, 0));
 
-        Map<String, Double> qteAcheteeParProduit = achatsPeriode.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getNomProduit().toLowerCase().trim(),
-                        Collectors.summingDouble(AchatEntity::getQuantite)));
-
-        Map<String, Double> qteVendueParProduit = ventesPeriode.stream()
-                .collect(Collectors.groupingBy(
-                        v -> v.getNomProduit().toLowerCase().trim(),
-                        Collectors.summingDouble(VenteEntity::getQuantite)));
+        // Quantités de la période groupées par nom_produit (lowercase trim) directement en base
+        Map<String, Double> qteAcheteeParProduit = quantitesParProduit(
+                achatRepository.sumQuantiteParProduitPeriode(tenant, debutDt, finExclu));
+        Map<String, Double> qteVendueParProduit = quantitesParProduit(
+                venteRepository.sumQuantiteParProduitPeriode(tenant, debutDt, finExclu));
 
         // Inclure seulement les produits avec activité sur la période
         return stocks.stream()
@@ -125,6 +119,14 @@ public class StockService {
                 .collect(Collectors.toList());
     }
 
+    private static Map<String, Double> quantitesParProduit(List<Object[]> rows) {
+        Map<String, Double> resultat = new HashMap<>();
+        for (Object[] row : rows) {
+            resultat.put((String) row[0], row[1] != null ? ((Number) row[1]).doubleValue() : 0.0);
+        }
+        return resultat;
+    }
+
     private StockExportDto toExportDto(StockDto s, Double acheteePeriode, Double venduePeriode) {
         return StockExportDto.builder()
                 .nomProduit(s.getNomProduit())
@@ -163,56 +165,134 @@ public class StockService {
      * Obtenir le stock de tous les produits — mis en cache 2 min par tenant.
      * Le cache est invalidé après chaque achat ou vente (voir invalidateStockCache).
      *
+     * Lit le ledger stock_produit (une ligne par produit) au lieu de recharger
+     * tout l'historique des achats et des ventes.
+     *
      * @return Liste des stocks par produit
      */
     @Cacheable(value = "stocks", key = "#root.target.getCurrentTenantKey()")
     @Transactional(readOnly = true)
     public List<StockDto> obtenirTousLesStocks() {
-        // 1. Récupérer les achats et ventes du tenant courant uniquement
+        // 1. Lire le ledger du tenant courant (une ligne par produit acheté)
         TenantEntity tenant = tenantService.getCurrentTenant();
-        List<AchatEntity> achats = achatRepository.findAllByTenant(tenant);
-        List<VenteEntity> ventes = venteRepository.findAllByTenant(tenant);
         // Pré-charger les bénéfices FIFO par produit (1 seule requête)
         Map<String, BigDecimal[]> beneficesParProduit = chargerBeneficesParProduit(tenant);
 
-        // 2. Grouper les achats par nom de produit et calculer les totaux
-        Map<String, List<AchatEntity>> achatsParProduit = achats.stream()
-                .collect(Collectors.groupingBy(
-                        achat -> achat.getNomProduit().toLowerCase().trim()
-                ));
-
-        // 3. Grouper les ventes par nom de produit et calculer les totaux
-        Map<String, List<VenteEntity>> ventesParProduit = ventes.stream()
-                .collect(Collectors.groupingBy(
-                        vente -> vente.getNomProduit().toLowerCase().trim()
-                ));
-
-        // 4. Créer la liste des stocks
-        List<StockDto> stocks = new ArrayList<>();
-
-        // 5. Pour chaque produit acheté, calculer son stock
-        for (Map.Entry<String, List<AchatEntity>> entry : achatsParProduit.entrySet()) {
-            String nomProduit = entry.getKey();
-            List<AchatEntity> achatsProduitsListe = entry.getValue();
-            List<VenteEntity> ventesProduitsListe = ventesParProduit.getOrDefault(nomProduit, new ArrayList<>());
-
-            StockDto stock = calculerStock(nomProduit, achatsProduitsListe, ventesProduitsListe);
-            enrichirAvecBenefice(stock, beneficesParProduit);
-            stocks.add(stock);
+        List<StockDto> stocks;
+        if (stockProduitService.estInitialise(tenant)) {
+            boolean canViewPhotos = peutVoirPhotos();
+            stocks = new ArrayList<>();
+            for (StockProduitEntity ligne : stockProduitService.listerAvecAchats(tenant)) {
+                stocks.add(versStockDto(ligne, canViewPhotos));
+            }
+        } else {
+            // 2. Premier accès : le ledger est construit dans sa propre transaction.
+            // Cet appel-ci utilise les agrégats SQL (le snapshot de lecture est déjà ouvert).
+            stockProduitService.initialiserLedger(tenant);
+            stocks = calculerStocksParAgregats(tenant);
         }
+        stocks.forEach(stock -> enrichirAvecBenefice(stock, beneficesParProduit));
 
-        // 6. Filtrer les produits archivés
+        // 3. Filtrer les produits archivés
         java.util.Set<String> archives = produitArchiveRepository.findNomsArchivesParTenant(tenant);
         if (!archives.isEmpty()) {
             stocks.removeIf(s -> archives.contains(s.getNomProduit().toLowerCase().trim()));
         }
 
-        // 7. Trier par stock disponible (du plus faible au plus élevé pour voir les alertes)
+        // 4. Trier par stock disponible (du plus faible au plus élevé pour voir les alertes)
         stocks.sort((s1, s2) -> Double.compare(s1.getStockDisponible(), s2.getStockDisponible()));
 
         return stocks;
     }
 
+    /**
+     * Vérifie le ledger stock_produit du tenant (maintenu en incrémental) contre le
+     * calcul complet par agrégats SQL. Avec reparer = true, reconstruit le ledger si
+     * un écart est détecté.
+     */
+    @Transactional
+    public StockLedgerRapportDto verifierLedger(TenantEntity tenant, boolean reparer) {
+        long debut = System.currentTimeMillis();
+        boolean canViewPhotos = peutVoirPhotos();
+
+        Map<String, StockDto> scan = calculerStocksParAgregats(tenant).stream()
+                .collect(Collectors.toMap(StockDto::getNomProduit, s -> s));
+        Map<String, StockDto> ledger = stockProduitService.listerAvecAchats(tenant).stream()
+                .map(l -> versStockDto(l, canViewPhotos))
+                .collect(Collectors.toMap(StockDto::getNomProduit, s -> s));
+
+        List<String> ecarts = new ArrayList<>();
+        for (StockDto attendu : scan.values()) {
+            StockDto obtenu = ledger.get(attendu.getNomProduit());
+            if (obtenu == null) {
+                ecarts.add("Produit absent du ledger : " + attendu.getNomProduit());
+            } else {
+                comparerStock(attendu, obtenu, ecarts);
+            }
+        }
+        ledger.keySet().stream()
+                .filter(nom -> !scan.containsKey(nom))
+                .forEach(nom -> ecarts.add("Produit en trop dans le ledger : " + nom));
+
+        boolean reconstruit = false;
+        if (reparer && !ecarts.isEmpty()) {
+            stockProduitService.reconstruire(tenant);
+            invalidateStockCache(tenant.getTenantUuid());
+            reconstruit = true;
+        }
+
+        return StockLedgerRapportDto.builder()
+                .tenantUuid(tenant.getTenantUuid())
+                .coherent(ecarts.isEmpty())
+                .reconstruit(reconstruit)
+                .nbProduitsLedger(ledger.size())
+                .nbProduitsScan(scan.size())
+                .ecarts(ecarts)
+                .dureeMs(System.currentTimeMillis() - debut)
+                .build();
+    }
+
+    private void comparerStock(StockDto attendu, StockDto obtenu, List<String> ecarts) {
+        String nom = attendu.getNomProduit();
+        if (Math.abs(attendu.getQuantiteAchetee() - obtenu.getQuantiteAchetee()) > 1e-6) {
+            ecarts.add(nom + " : quantité achetée " + obtenu.getQuantiteAchetee() + " ≠ " + attendu.getQuantiteAchetee());
+        }
+        if (Math.abs(attendu.getQuantiteVendue() - obtenu.getQuantiteVendue()) > 1e-6) {
+            ecarts.add(nom + " : quantité vendue " + obtenu.getQuantiteVendue() + " ≠ " + attendu.getQuantiteVendue());
+        }
+        // Prix moyens : tolérance d'un centime (SUM(prix × quantite) calculé en DOUBLE par la base)
+        if (attendu.getPrixMoyenAchat().subtract(obtenu.getPrixMoyenAchat()).abs().compareTo(TOLERANCE_PRIX) > 0) {
+            ecarts.add(nom + " : prix moyen d'achat " + obtenu.getPrixMoyenAchat() + " ≠ " + attendu.getPrixMoyenAchat());
+        }
+        if (attendu.getPrixMoyenVente().subtract(obtenu.getPrixMoyenVente()).abs().compareTo(TOLERANCE_PRIX) > 0) {
+            ecarts.add(nom + " : prix moyen de vente " + obtenu.getPrixMoyenVente() + " ≠ " + attendu.getPrixMoyenVente());
+        }
+        if (!Objects.equals(attendu.getUnite(), obtenu.getUnite())) {
+            ecarts.add(nom + " : unité " + obtenu.getUnite() + " ≠ " + attendu.getUnite());
+        }
+        if (!Objects.equals(attendu.getCodeBarre(), obtenu.getCodeBarre())) {
+            ecarts.add(nom + " : code-barre " + obtenu.getCodeBarre() + " ≠ " + attendu.getCodeBarre());
+        }
+        if (!Objects.equals(attendu.getCategorie(), obtenu.getCategorie())) {
+            ecarts.add(nom + " : catégorie " + obtenu.getCategorie() + " ≠ " + attendu.getCategorie());
+        }
+        if (!Objects.equals(attendu.getPhotoUrl(), obtenu.getPhotoUrl())) {
+            ecarts.add(nom + " : photo " + obtenu.getPhotoUrl() + " ≠ " + attendu.getPhotoUrl());
+        }
+    }
+
+    /**
+     * Calcul complet du stock par agrégats SQL (une ligne par produit, aucune entité
+     * achat / vente chargée). Produits archivés inclus, non triés, sans bénéfice.
+     */
+    private List<StockDto> calculerStocksParAgregats(TenantEntity tenant) {
+        boolean canViewPhotos = peutVoirPhotos();
+        return stockProduitService.calculerDepuisHistorique(tenant, null).values().stream()
+                .filter(ligne -> ligne.getNbAchats() > 0)
+                .map(ligne -> versStockDto(ligne, canViewPhotos))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
     /**
      * Obtenir les stocks des produits archivés du tenant courant.
      */
@@ -223,25 +303,10 @@ public class StockService {
 
         if (archives.isEmpty()) return new ArrayList<>();
 
-        List<AchatEntity> achats = achatRepository.findAllByTenant(tenant);
-        List<VenteEntity> ventes = venteRepository.findAllByTenant(tenant);
         Map<String, BigDecimal[]> beneficesParProduit = chargerBeneficesParProduit(tenant);
-
-        Map<String, List<AchatEntity>> achatsParProduit = achats.stream()
-                .collect(Collectors.groupingBy(a -> a.getNomProduit().toLowerCase().trim()));
-        Map<String, List<VenteEntity>> ventesParProduit = ventes.stream()
-                .collect(Collectors.groupingBy(v -> v.getNomProduit().toLowerCase().trim()));
-
-        List<StockDto> stocksArchives = new ArrayList<>();
-        for (String nomArchive : archives) {
-            List<AchatEntity> achatsP = achatsParProduit.getOrDefault(nomArchive, new ArrayList<>());
-            List<VenteEntity> ventesP = ventesParProduit.getOrDefault(nomArchive, new ArrayList<>());
-            if (!achatsP.isEmpty()) {
-                StockDto stock = calculerStock(nomArchive, achatsP, ventesP);
-                enrichirAvecBenefice(stock, beneficesParProduit);
-                stocksArchives.add(stock);
-            }
-        }
+        List<StockDto> stocksArchives = calculerStocksParAgregats(tenant);
+        stocksArchives.removeIf(stock -> !archives.contains(stock.getNomProduit()));
+        stocksArchives.forEach(stock -> enrichirAvecBenefice(stock, beneficesParProduit));
 
         return stocksArchives;
     }
@@ -252,22 +317,9 @@ public class StockService {
      */
     @Transactional(readOnly = true)
     public List<StockDto> obtenirTousLesStocksParTenant(TenantEntity tenant) {
-        List<AchatEntity> achats = achatRepository.findAllByTenant(tenant);
-        List<VenteEntity> ventes = venteRepository.findAllByTenant(tenant);
         Map<String, BigDecimal[]> beneficesParProduit = chargerBeneficesParProduit(tenant);
-
-        Map<String, List<AchatEntity>> achatsParProduit = achats.stream()
-                .collect(Collectors.groupingBy(a -> a.getNomProduit().toLowerCase().trim()));
-        Map<String, List<VenteEntity>> ventesParProduit = ventes.stream()
-                .collect(Collectors.groupingBy(v -> v.getNomProduit().toLowerCase().trim()));
-
-        List<StockDto> stocks = new ArrayList<>();
-        for (Map.Entry<String, List<AchatEntity>> entry : achatsParProduit.entrySet()) {
-            StockDto stock = calculerStock(entry.getKey(), entry.getValue(),
-                    ventesParProduit.getOrDefault(entry.getKey(), new ArrayList<>()));
-            enrichirAvecBenefice(stock, beneficesParProduit);
-            stocks.add(stock);
-        }
+        List<StockDto> stocks = calculerStocksParAgregats(tenant);
+        stocks.forEach(stock -> enrichirAvecBenefice(stock, beneficesParProduit));
         return stocks;
     }
 
@@ -388,26 +440,89 @@ public class StockService {
      * @return StockDto calculé
      */
     private StockDto calculerStock(String nomProduit, List<AchatEntity> achats, List<VenteEntity> ventes) {
-        // Calculer la quantité totale achetée
+        // Calculer les quantités totales achetées et vendues
         Double quantiteAchetee = achats.stream()
                 .mapToDouble(AchatEntity::getQuantite)
                 .sum();
-
-        // Calculer la quantité totale vendue
         Double quantiteVendue = ventes.stream()
                 .mapToDouble(VenteEntity::getQuantite)
                 .sum();
 
+        // Valeurs totales (somme(prix × qté)) — base des prix moyens pondérés
+        BigDecimal totalValeurAchats = achats.stream()
+                .map(a -> a.getPrixUnitaire().multiply(BigDecimal.valueOf(a.getQuantite())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalValeurVentes = ventes.stream()
+                .map(v -> v.getPrixUnitaire().multiply(BigDecimal.valueOf(v.getQuantite())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        // prixVenteSuggere du dernier achat qui en a un (référence tant qu'il n'y a aucune vente)
+        BigDecimal prixVenteSuggere = achats.stream()
+                .filter(a -> a.getPrixVenteSuggere() != null && a.getPrixVenteSuggere().compareTo(BigDecimal.ZERO) > 0)
+                .max(Comparator.comparing(AchatEntity::getDateAchat))
+                .map(AchatEntity::getPrixVenteSuggere)
+                .orElse(null);
+
+        // Récupérer le dernier achat (le plus récent) pour l'unité
+        AchatEntity dernierAchat = achats.stream()
+                .sorted(Comparator.comparing(AchatEntity::getDateAchat).reversed())
+                .findFirst()
+                .orElse(null);
+
+        // Récupérer la photo du dernier achat (le plus récent avec une photo)
+        String photoUrl = achats.stream()
+                .filter(achat -> achat.getPhotoUrl() != null && !achat.getPhotoUrl().isEmpty())
+                .sorted(Comparator.comparing(AchatEntity::getDateAchat).reversed())
+                .findFirst()
+                .map(AchatEntity::getPhotoUrl)
+                .orElse(null);
+
+        // Récupérer le code-barre depuis le dernier achat qui en a un
+        String codeBarre = achats.stream()
+                .filter(a -> a.getCodeBarre() != null && !a.getCodeBarre().isEmpty())
+                .max(Comparator.comparing(AchatEntity::getDateAchat))
+                .map(AchatEntity::getCodeBarre)
+                .orElse(null);
+
+        // Récupérer la catégorie depuis le dernier achat qui en a une non-vide.
+        // Sert au pré-remplissage automatique en multi-achat côté front.
+        String categorie = achats.stream()
+                .filter(a -> a.getCategorie() != null && !a.getCategorie().isBlank())
+                .max(Comparator.comparing(AchatEntity::getDateAchat))
+                .map(AchatEntity::getCategorie)
+                .orElse(null);
+
+        return construireStockDto(nomProduit, quantiteAchetee, quantiteVendue,
+                totalValeurAchats, totalValeurVentes, prixVenteSuggere, photoUrl,
+                dernierAchat != null ? dernierAchat.getUnite() : "pièce",
+                codeBarre, categorie, peutVoirPhotos());
+    }
+
+    /** StockDto d'une ligne du ledger (persistée ou calculée par agrégats). */
+    private StockDto versStockDto(StockProduitEntity ligne, boolean canViewPhotos) {
+        return construireStockDto(ligne.getNomNormalise(),
+                ligne.getQuantiteAchetee(), ligne.getQuantiteVendue(),
+                ligne.getValeurAchats(), ligne.getValeurVentes(),
+                ligne.getPrixVenteSuggere(), ligne.getPhotoUrl(),
+                ligne.getUnite(), ligne.getCodeBarre(), ligne.getCategorie(), canViewPhotos);
+    }
+
+    /**
+     * Construit le StockDto d'un produit à partir de ses cumuls.
+     * Partagé par le calcul complet (calculerStock) et la lecture du ledger stock_produit,
+     * pour que les deux donnent exactement le même résultat.
+     */
+    private StockDto construireStockDto(String nomProduit, Double quantiteAchetee, Double quantiteVendue,
+                                        BigDecimal valeurAchats, BigDecimal valeurVentes,
+                                        BigDecimal prixVenteSuggere, String photoUrl, String unite,
+                                        String codeBarre, String categorie, boolean canViewPhotos) {
         // Calculer le stock disponible
         Double stockDisponible = quantiteAchetee - quantiteVendue;
 
         // Calculer le prix moyen pondéré d'achat (somme(prix × qté) / totalQté)
         BigDecimal prixMoyenAchat = BigDecimal.ZERO;
         if (quantiteAchetee > 0) {
-            BigDecimal totalValeurAchats = achats.stream()
-                    .map(a -> a.getPrixUnitaire().multiply(BigDecimal.valueOf(a.getQuantite())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            prixMoyenAchat = totalValeurAchats.divide(
+            prixMoyenAchat = valeurAchats.divide(
                     BigDecimal.valueOf(quantiteAchetee),
                     2,
                     RoundingMode.HALF_UP
@@ -415,23 +530,16 @@ public class StockService {
         }
 
         // Calculer le prix moyen pondéré de vente (somme(prix × qté) / totalQté)
-        BigDecimal prixMoyenVente = BigDecimal.ZERO;
+        BigDecimal prixMoyenVente;
         if (quantiteVendue > 0) {
-            BigDecimal totalValeurVentes = ventes.stream()
-                    .map(v -> v.getPrixUnitaire().multiply(BigDecimal.valueOf(v.getQuantite())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            prixMoyenVente = totalValeurVentes.divide(
+            prixMoyenVente = valeurVentes.divide(
                     BigDecimal.valueOf(quantiteVendue),
                     2,
                     RoundingMode.HALF_UP
             );
         } else {
             // Aucune vente : utiliser le prixVenteSuggere du dernier achat comme référence
-            prixMoyenVente = achats.stream()
-                    .filter(a -> a.getPrixVenteSuggere() != null && a.getPrixVenteSuggere().compareTo(BigDecimal.ZERO) > 0)
-                    .max(Comparator.comparing(AchatEntity::getDateAchat))
-                    .map(AchatEntity::getPrixVenteSuggere)
-                    .orElse(BigDecimal.ZERO);
+            prixMoyenVente = prixVenteSuggere != null ? prixVenteSuggere : BigDecimal.ZERO;
         }
 
         // Calculer la valeur du stock
@@ -443,50 +551,10 @@ public class StockService {
         // Déterminer le statut
         StockDto.StatutStock statut = StockDto.determinerStatut(stockDisponible);
 
-        // Vérifier si le plan ENTERPRISE est actif pour afficher les photos
-        TenantEntity currentTenant = tenantService.isTenantDefined() ? tenantService.getCurrentTenant() : null;
-        boolean canViewPhotos = currentTenant != null &&
-                                currentTenant.getPlan() == TenantEntity.Plan.BUSINESS;
-
-        // Récupérer le dernier achat (le plus récent) pour la photo et l'unité
-        AchatEntity dernierAchat = achats.stream()
-                .sorted(Comparator.comparing(AchatEntity::getDateAchat).reversed())
-                .findFirst()
-                .orElse(null);
-
-        // Récupérer la photo du dernier achat (le plus récent avec une photo)
-        // RESTRICTION : null si le plan n'est pas ENTERPRISE
-        String photoUrl = null;
-        if (canViewPhotos) {
-            photoUrl = achats.stream()
-                    .filter(achat -> achat.getPhotoUrl() != null && !achat.getPhotoUrl().isEmpty())
-                    .sorted(Comparator.comparing(AchatEntity::getDateAchat).reversed())
-                    .findFirst()
-                    .map(AchatEntity::getPhotoUrl)
-                    .orElse(null);
-        }
-
-        // Récupérer l'unité depuis le dernier achat
-        String unite = dernierAchat != null ? dernierAchat.getUnite() : "pièce";
-
-        // Récupérer le code-barre depuis le dernier achat qui en a un
-        String codeBarre = achats.stream()
-                .filter(a -> a.getCodeBarre() != null && !a.getCodeBarre().isEmpty())
-                .max(Comparator.comparing(AchatEntity::getDateAchat))
-                .map(AchatEntity::getCodeBarre)
-                .orElse(null);
-
-        // Récupérer la catégorie depuis le dernier achat qui en a une non-vide.
-        // Sert au pré-remplissage automatique en multi-achat côté front.
-        String categorie = achats.stream()
-                .filter(a -> a.getCategorie() != null && !a.getCategorie().isBlank())
-                .max(Comparator.comparing(AchatEntity::getDateAchat))
-                .map(AchatEntity::getCategorie)
-                .orElse(null);
-
         return StockDto.builder()
                 .nomProduit(nomProduit)
-                .photoUrl(photoUrl)
+                // RESTRICTION : photo null si le plan n'est pas BUSINESS
+                .photoUrl(canViewPhotos ? photoUrl : null)
                 .codeBarre(codeBarre)
                 .unite(unite)
                 .categorie(categorie)
@@ -500,4 +568,10 @@ public class StockService {
                 .statut(statut)
                 .build();
     }
+
+    /** Vérifier si le plan BUSINESS est actif pour afficher les photos. */
+    private boolean peutVoirPhotos() {
+        TenantEntity currentTenant = tenantService.isTenantDefined() ? tenantService.getCurrentTenant() : null;
+        return currentTenant != null && currentTenant.getPlan() == TenantEntity.Plan.BUSINESS;
+    }
 }
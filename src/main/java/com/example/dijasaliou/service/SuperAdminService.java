@@ -68,6 +68,8 @@ public class SuperAdminService {
     private final PaiementSuperAdminRepository paiementSuperAdminRepository;
     private final AuthService authService;
     private final PushNotificationService pushService;
+    private final RollupJourService rollupJourService;
+    private final EmailOutboxService emailOutboxService;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -82,7 +84,9 @@ public class SuperAdminService {
                              TenantCacheService tenantCacheService,
                              PaiementSuperAdminRepository paiementSuperAdminRepository,
                              @Lazy AuthService authService,
-                             PushNotificationService pushService) {
+                             PushNotificationService pushService,
+                             RollupJourService rollupJourService,
+                             EmailOutboxService emailOutboxService) {
         this.tenantRepository = tenantRepository;
         this.userRepository = userRepository;
         this.venteRepository = venteRepository;
@@ -94,6 +98,8 @@ public class SuperAdminService {
         this.paiementSuperAdminRepository = paiementSuperAdminRepository;
         this.authService = authService;
         this.pushService = pushService;
+        this.rollupJourService = rollupJourService;
+        this.emailOutboxService = emailOutboxService;
     }
 
     /**
@@ -623,7 +629,13 @@ public class SuperAdminService {
             stats.put("connexionsMessage", "Impossible de récupérer les connexions");
         }
 
-        // 6. Alertes globales
+        // 6. Pipeline d'envoi des notifications push (file, envois, latences)
+        stats.put("push", pushService.statistiquesEnvoi());
+
+        // 7. File d'envoi des emails (en attente, en échec)
+        stats.put("emails", emailOutboxService.statistiques());
+
+        // 8. Alertes globales
         List<Map<String, String>> alertes = new ArrayList<>();
         Object bddStatut = stats.get("bddStatut");
         if ("ATTENTION".equals(bddStatut) || "CRITIQUE".equals(bddStatut)) {
@@ -730,6 +742,7 @@ public class SuperAdminService {
                 .orElseThrow(() -> new RuntimeException("Tenant non trouvé : " + tenantId));
         tenant.setSourceAcquisition(sourceAcquisition);
         tenantRepository.save(tenant);
+        tenantCacheService.evict(tenant.getTenantUuid());
         return toDto(tenant);
     }
 
@@ -1063,7 +1076,7 @@ public class SuperAdminService {
 
     private TenantAdminDto toDto(TenantEntity tenant) {
         long nbUsers = userRepository.countByTenantAndDeletedFalse(tenant);
-        long nbVentes = venteRepository.countByTenantId(tenant.getId());
+        long nbVentes = rollupJourService.compterVentes(tenant);
         UserEntity admin = userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN).orElse(null);
         LocalDateTime derniereActivite = userRepository.findDerniereActiviteByTenantId(tenant.getId()).orElse(null);
         return TenantAdminDto.fromEntity(tenant, nbUsers, nbVentes, admin, derniereActivite);
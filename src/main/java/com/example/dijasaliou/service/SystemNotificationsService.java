@@ -1,5 +1,6 @@
 package com.example.dijasaliou.service;
 
+import com.example.dijasaliou.annotation.TacheExclusive;
 import com.example.dijasaliou.entity.NotificationType;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -54,6 +55,7 @@ public class SystemNotificationsService {
      * Tous les jours à 6h : vérifie si la BDD dépasse le seuil de remplissage.
      */
     @Scheduled(cron = "0 0 6 * * *")
+    @TacheExclusive(nom = "system-stockage-bdd", verrouMax = "PT2H", verrouMin = "PT10M")
     @Transactional(readOnly = true)
     public void verifierStockageBdd() {
         try {
@@ -87,6 +89,7 @@ public class SystemNotificationsService {
     /**
      * Toutes les heures pile : si plus de N erreurs dans l'heure écoulée → notif.
      * Le compteur est ensuite remis à zéro pour la fenêtre suivante.
+     * Pas de @TacheExclusive : le compteur est propre à chaque instance, chacune vérifie le sien.
      */
     @Scheduled(cron = "0 0 * * * *")
     public void verifierPicErreurs() {
@@ -105,6 +108,7 @@ public class SystemNotificationsService {
     /**
      * Toutes les heures pile : si plus de N échecs d'envoi email dans l'heure écoulée → notif.
      * Envoyée en push (pas email) : si Brevo est cassé, un email d'alerte n'arriverait jamais.
+     * Compteur propre à chaque instance, comme pour verifierPicErreurs.
      */
     @Scheduled(cron = "0 0 * * * *")
     public void verifierEchecsEmail() {
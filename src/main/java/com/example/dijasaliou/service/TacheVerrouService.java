@@ -0,0 +1,161 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TacheVerrouEntity;
+import com.example.dijasaliou.repository.TacheVerrouRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Verrous des tâches planifiées (table tache_verrou) : avec plusieurs instances de
+ * l'application, chaque tick n'est exécuté que par une seule.
+ *
+ * Deux usages :
+ *   - tâche entière : annotation {@link com.example.dijasaliou.annotation.TacheExclusive} ;
+ *   - tâche découpée en tranches de tenants ({@link #executerParTranches}) : chaque
+ *     tranche a son verrou, les instances se les partagent et travaillent en parallèle.
+ *
+ * Le verrou est pris par un UPDATE conditionnel dans sa propre transaction (aucun verrou
+ * de ligne gardé pendant la tâche) et expire de lui-même après la durée max : une instance
+ * arrêtée en pleine tâche ne bloque pas les ticks suivants. Les horloges des instances
+ * sont supposées synchronisées (NTP) — les durées min/max absorbent les petits écarts.
+ */
+@Service
+@Slf4j
+public class TacheVerrouService {
+
+    private final TacheVerrouRepository verrouRepository;
+    private final String proprietaire;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Auto-injection différée : prise et libération dans des transactions séparées */
+    @Autowired @Lazy
+    private TacheVerrouService self;
+
+    public TacheVerrouService(TacheVerrouRepository verrouRepository,
+                              @Value("${app.scheduler.instance:}") String instance) {
+        this.verrouRepository = verrouRepository;
+        // pid@hôte + suffixe aléatoire : deux conteneurs peuvent avoir le même hôte/pid
+        this.proprietaire = instance != null && !instance.isBlank()
+                ? instance
+                : ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getProprietaire() {
+        return proprietaire;
+    }
+
+    /**
+     * Prend le verrou {@code nom} pour au plus {@code dureeMax}.
+     * @return la date de prise, ou {@code null} si une autre instance le détient
+     */
+    public LocalDateTime acquerir(String nom, Duration dureeMax) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        try {
+            if (self.prendre(nom, maintenant, dureeMax) == 1) {
+                return maintenant;
+            }
+            try {
+                self.creer(nom, maintenant, dureeMax);
+                return maintenant;
+            } catch (DataIntegrityViolationException | PersistenceException e) {
+                return null; // ligne existante, verrou détenu par une autre instance
+            }
+        } catch (RuntimeException e) {
+            log.warn("[TACHE_VERROU] Verrou {} indisponible : {}", nom, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fin de la tâche : le verrou reste détenu jusqu'à {@code priseLe + dureeMin}
+     * au moins, puis se libère.
+     */
+    public void liberer(String nom, LocalDateTime priseLe, Duration dureeMin) {
+        LocalDateTime jusquA = priseLe.plus(dureeMin);
+        LocalDateTime maintenant = LocalDateTime.now();
+        try {
+            self.relacher(nom, jusquA.isAfter(maintenant) ? jusquA : maintenant);
+        } catch (RuntimeException e) {
+            // Le verrou expirera de lui-même après la durée max
+            log.warn("[TACHE_VERROU] Libération de {} impossible : {}", nom, e.getMessage());
+        }
+    }
+
+    /**
+     * Exécute {@code traitement} pour chaque tranche de la tâche {@code nom} dont cette
+     * instance obtient le verrou ({@code nom#i/nbTranches}). Les tranches sont parcourues
+     * à partir d'un rang aléatoire : deux instances qui démarrent ensemble commencent par
+     * des tranches différentes. L'échec d'une tranche n'empêche pas les autres.
+     *
+     * @return le nombre de tranches traitées par cette instance
+     */
+    public int executerParTranches(String nom, int nbTranches, Duration dureeMax, Duration dureeMin,
+                                   IntConsumer traitement) {
+        int traitees = 0;
+        int depart = ThreadLocalRandom.current().nextInt(nbTranches);
+        for (int i = 0; i < nbTranches; i++) {
+            int tranche = (depart + i) % nbTranches;
+            String nomTranche = nom + "#" + tranche + "/" + nbTranches;
+            LocalDateTime priseLe = acquerir(nomTranche, dureeMax);
+            if (priseLe == null) continue;
+            try {
+                traitement.accept(tranche);
+                traitees++;
+            } catch (RuntimeException e) {
+                log.warn("[TACHE_VERROU] Échec de {} : {}", nomTranche, e.getMessage());
+            } finally {
+                liberer(nomTranche, priseLe, dureeMin);
+            }
+        }
+        return traitees;
+    }
+
+    /**
+     * Tranche d'un tenant parmi {@code nbTranches} (stable d'un tick à l'autre).
+     * Les requêtes des crons appliquent la même règle en base : {@code MOD(t.id, :nbTranches) = :tranche}.
+     */
+    public static int tranche(Long tenantId, int nbTranches) {
+        return (int) Math.floorMod(tenantId, (long) nbTranches);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int prendre(String nom, LocalDateTime maintenant, Duration dureeMax) {
+        return verrouRepository.prendre(nom, proprietaire, maintenant, maintenant.plus(dureeMax));
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void creer(String nom, LocalDateTime maintenant, Duration dureeMax) {
+        // persist et non save : l'id est fourni, save ferait un merge qui écraserait
+        // une ligne créée entre-temps par une autre instance au lieu d'échouer
+        entityManager.persist(TacheVerrouEntity.builder()
+                .nom(nom)
+                .proprietaire(proprietaire)
+                .verrouilleLe(maintenant)
+                .verrouilleJusquA(maintenant.plus(dureeMax))
+                .build());
+        entityManager.flush();
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void relacher(String nom, LocalDateTime jusquA) {
+        verrouRepository.relacher(nom, proprietaire, jusquA);
+    }
+}
@@ -2,9 +2,11 @@ package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.tenant.TenantSnapshot;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -12,7 +14,8 @@ import java.util.Optional;
 /**
  * Service de cache pour les tenants.
  *
- * Évite une requête BDD à chaque appel API dans SubscriptionExpirationFilter.
+ * Évite une requête BDD à chaque appel API dans SubscriptionExpirationFilter
+ * et dans TenantService.getCurrentTenantSnapshot (snapshot immuable, clé "snapshot:uuid").
  * TTL : 5 minutes (configuré dans AppConfig.cacheManager).
  *
  * Invalider le cache après tout changement de plan/abonnement.
@@ -33,10 +36,22 @@ public class TenantCacheService {
     }
 
     /**
-     * Invalide le cache pour un tenant donné.
+     * Snapshot immuable d'un tenant par UUID — résultat mis en cache 5 min.
+     * Clé de cache = "snapshot:" + tenantUuid (la valeur n'est jamais une entité managée).
+     */
+    @Cacheable(value = "tenants", key = "'snapshot:' + #tenantUuid")
+    public Optional<TenantSnapshot> findSnapshotByUuid(String tenantUuid) {
+        return tenantRepository.findByTenantUuid(tenantUuid).map(TenantSnapshot::from);
+    }
+
+    /**
+     * Invalide le cache pour un tenant donné (entité et snapshot).
      * À appeler après tout changement de plan ou d'abonnement.
      */
-    @CacheEvict(value = "tenants", key = "#tenantUuid")
+    @Caching(evict = {
+            @CacheEvict(value = "tenants", key = "#tenantUuid"),
+            @CacheEvict(value = "tenants", key = "'snapshot:' + #tenantUuid")
+    })
     public void evict(String tenantUuid) {
         // méthode vide — l'annotation fait le travail
     }
@@ -6,6 +6,7 @@ import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.repository.TenantRepository;
 import com.example.dijasaliou.repository.UserRepository;
 import com.example.dijasaliou.tenant.TenantContext;
+import com.example.dijasaliou.tenant.TenantSnapshot;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,19 +28,35 @@ public class TenantService {
 
     private final TenantRepository tenantRepository;
     private final UserRepository userRepository;
+    private final TenantCacheService tenantCacheService;
 
-    public TenantService(TenantRepository tenantRepository, UserRepository userRepository) {
+    public TenantService(TenantRepository tenantRepository, UserRepository userRepository,
+                         TenantCacheService tenantCacheService) {
         this.tenantRepository = tenantRepository;
         this.userRepository = userRepository;
+        this.tenantCacheService = tenantCacheService;
     }
 
     /**
      * Récupère le tenant actuel depuis le contexte
      *
+     * Copie détachée du snapshot de la requête : aucune requête BDD après le premier
+     * appel de la requête. Ne pas la sauvegarder — recharger avec findById pour modifier.
+     *
      * @return TenantEntity du tenant actuel
      * @throws IllegalStateException si aucun tenant n'est défini
      */
     public TenantEntity getCurrentTenant() {
+        return getCurrentTenantSnapshot().versEntite();
+    }
+
+    /**
+     * Snapshot immuable du tenant actuel, chargé une seule fois par requête
+     * (cache "tenants" via TenantCacheService) puis attaché au TenantContext.
+     *
+     * @throws IllegalStateException si aucun tenant n'est défini
+     */
+    public TenantSnapshot getCurrentTenantSnapshot() {
         String tenantId = TenantContext.getCurrentTenant();
 
         if (tenantId == null || tenantId.trim().isEmpty()) {
@@ -50,10 +67,29 @@ public class TenantService {
             );
         }
 
-        return tenantRepository.findByTenantUuid(tenantId)
+        TenantSnapshot snapshot = TenantContext.getCurrentSnapshot();
+        if (snapshot != null && tenantId.equals(snapshot.tenantUuid())) {
+            return snapshot;
+        }
+
+        snapshot = tenantCacheService.findSnapshotByUuid(tenantId)
                 .orElseThrow(() -> new IllegalStateException(
                     "Tenant introuvable pour l'UUID: " + tenantId
                 ));
+        TenantContext.setCurrentSnapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Rafraîchit le tenant après modification (plan, devise, fuseau, infos entreprise) :
+     * invalide le cache "tenants" et, si c'est le tenant de la requête, son snapshot.
+     */
+    public void rafraichirTenant(String tenantUuid) {
+        tenantCacheService.evict(tenantUuid);
+        TenantSnapshot snapshot = TenantContext.getCurrentSnapshot();
+        if (snapshot != null && snapshot.tenantUuid().equals(tenantUuid)) {
+            TenantContext.setCurrentSnapshot(null);
+        }
     }
 
     /**
@@ -97,9 +133,11 @@ public class TenantService {
             throw new IllegalArgumentException(
                 "Fuseau horaire invalide : " + newTimezone + " (ex: Africa/Dakar)");
         }
-        TenantEntity tenant = getCurrentTenant();
+        TenantEntity tenant = tenantRepository.findById(getCurrentTenantSnapshot().id())
+                .orElseThrow(() -> new IllegalStateException("Tenant introuvable"));
         tenant.setTimezone(newTimezone);
         TenantEntity saved = tenantRepository.save(tenant);
+        rafraichirTenant(tenant.getTenantUuid());
         log.info("Fuseau horaire mis à jour pour tenant {} : {}",
                 tenant.getTenantUuid(), newTimezone);
         return saved;
@@ -137,10 +175,10 @@ public class TenantService {
     @Transactional
     public TenantEntity updateTenant(UpdateTenantRequest request) {
         // Récupérer le tenant actuel
-        TenantEntity tenantActuel = getCurrentTenant();
+        TenantSnapshot tenantActuel = getCurrentTenantSnapshot();
 
         // Recharger depuis la base de données avec son ID pour éviter les problèmes de session
-        TenantEntity tenant = tenantRepository.findById(tenantActuel.getId())
+        TenantEntity tenant = tenantRepository.findById(tenantActuel.id())
                 .orElseThrow(() -> new IllegalStateException("Tenant introuvable"));
 
         boolean nomEntrepriseChange = false;
@@ -196,6 +234,7 @@ public class TenantService {
 
         // Forcer la sauvegarde du tenant
         TenantEntity tenantSauvegarde = tenantRepository.saveAndFlush(tenant);
+        rafraichirTenant(tenantSauvegarde.getTenantUuid());
         log.info("Tenant mis à jour : {} (uuid={})", tenantSauvegarde.getNomEntreprise(), tenantSauvegarde.getTenantUuid());
 
         // Si le nom de l'entreprise a changé, mettre à jour tous les utilisateurs de ce tenant
@@ -216,18 +255,19 @@ public class TenantService {
                 .orElseThrow(() -> new IllegalStateException("Tenant introuvable"));
         t.setLogoUrl(null);
         tenantRepository.save(t);
+        rafraichirTenant(t.getTenantUuid());
     }
 
     /**
      * Récupère l'administrateur (propriétaire) qui a créé le tenant
      *
+     * Requête directe (le tenant courant est une copie détachée sans la liste des utilisateurs).
+     *
      * @param tenant Le tenant dont on veut récupérer l'admin
      * @return UserEntity de l'admin ou null si non trouvé
      */
     public UserEntity getAdminProprietaire(TenantEntity tenant) {
-        return tenant.getUtilisateurs().stream()
-                .filter(user -> user.getRole() == UserEntity.Role.ADMIN)
-                .findFirst()
+        return userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN)
                 .orElse(null);
     }
 }
@@ -19,9 +19,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +42,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UserNotificationPreferenceService {
 
+    private static final int TAILLE_LOT_IN = 1000;
+
     private final UserNotificationPreferenceRepository repository;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
@@ -94,6 +100,7 @@ public class UserNotificationPreferenceService {
         if (configJson != null) {
             pref.setConfig(configJson);
         }
+        pref.setHeureEnvoi(heureEnvoi(user, type, pref));
         pref.setUpdatedAt(LocalDateTime.now());
         repository.save(pref);
         log.info("[USER_NOTIF_PREF] {} : {} -> enabled={} config={}",
@@ -166,8 +173,16 @@ public class UserNotificationPreferenceService {
     }
 
     private <T> T readConfigOrDefault(UserEntity user, UserNotificationType type, Class<T> clazz, T defaults) {
-        Optional<UserNotificationPreference> pref = repository.findByUserAndType(user, type);
-        String json = pref.map(UserNotificationPreference::getConfig).orElse(null);
+        return lireConfig(user, type, repository.findByUserAndType(user, type).orElse(null), clazz, defaults);
+    }
+
+    /**
+     * Config typée d'une préférence déjà chargée ({@code null} = absente en base),
+     * ou les valeurs par défaut si absente / illisible.
+     */
+    public <T> T lireConfig(UserEntity user, UserNotificationType type, UserNotificationPreference pref,
+                            Class<T> clazz, T defaults) {
+        String json = pref != null ? pref.getConfig() : null;
         if (json == null || json.isBlank()) return defaults;
         try {
             return objectMapper.readValue(json, clazz);
@@ -178,6 +193,93 @@ public class UserNotificationPreferenceService {
         }
     }
 
+    /**
+     * Préférences d'un lot d'utilisateurs pour les types demandés : userId → (type → préférence).
+     * Un (user, type) absent de la map applique le défaut ({@link #estActive}).
+     * Lecture par paquets de {@value #TAILLE_LOT_IN} utilisateurs (limite des listes IN).
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Map<UserNotificationType, UserNotificationPreference>> chargerPreferences(
+            List<UserEntity> users, Set<UserNotificationType> types) {
+        Map<Long, Map<UserNotificationType, UserNotificationPreference>> parUser = new HashMap<>();
+        for (int i = 0; i < users.size(); i += TAILLE_LOT_IN) {
+            List<UserEntity> lot = users.subList(i, Math.min(i + TAILLE_LOT_IN, users.size()));
+            ajouter(parUser, repository.findByUsersAndTypes(lot, types));
+        }
+        return parUser;
+    }
+
+    /**
+     * Comme {@link #chargerPreferences}, pour des résumés à l'heure locale {@code heure} :
+     * seules les préférences qui peuvent partir à cette heure sont lues (colonne heure_envoi).
+     *
+     * Exception : un type actif par défaut dont l'heure par défaut est {@code heure}
+     * (résumé quotidien à 20h) part aussi pour les utilisateurs SANS préférence — ses
+     * préférences sont alors toutes lues, pour écarter celles réglées sur une autre heure
+     * ou désactivées. Un (user, type) absent du résultat ne part pas à cette heure.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Map<UserNotificationType, UserNotificationPreference>> chargerPreferencesResumes(
+            List<UserEntity> users, Set<UserNotificationType> types, int heure) {
+        Set<UserNotificationType> touteLaTable = EnumSet.noneOf(UserNotificationType.class);
+        Set<UserNotificationType> aLHeure = EnumSet.noneOf(UserNotificationType.class);
+        for (UserNotificationType type : types) {
+            boolean partSansPreference = type.isDefautActif() && Objects.equals(heureParDefaut(type), heure);
+            (partSansPreference ? touteLaTable : aLHeure).add(type);
+        }
+        Map<Long, Map<UserNotificationType, UserNotificationPreference>> parUser = new HashMap<>();
+        for (int i = 0; i < users.size(); i += TAILLE_LOT_IN) {
+            List<UserEntity> lot = users.subList(i, Math.min(i + TAILLE_LOT_IN, users.size()));
+            if (!touteLaTable.isEmpty()) {
+                ajouter(parUser, repository.findByUsersAndTypes(lot, touteLaTable));
+            }
+            if (!aLHeure.isEmpty()) {
+                ajouter(parUser, repository.findByUsersAndTypesAndHeureEnvoi(lot, aLHeure, heure));
+            }
+        }
+        return parUser;
+    }
+
+    private static void ajouter(Map<Long, Map<UserNotificationType, UserNotificationPreference>> parUser,
+                                List<UserNotificationPreference> preferences) {
+        for (UserNotificationPreference p : preferences) {
+            if (p.getType() == null) continue; // valeur orpheline (UserNotificationTypeConverter)
+            parUser.computeIfAbsent(p.getUser().getId(), id -> new EnumMap<>(UserNotificationType.class))
+                    .put(p.getType(), p);
+        }
+    }
+
+    /**
+     * Heure d'envoi effective d'une préférence de résumé — config lue comme par
+     * {@link #lireConfig}, défauts compris — ou null pour les autres types.
+     */
+    Integer heureEnvoi(UserEntity user, UserNotificationType type, UserNotificationPreference pref) {
+        return switch (type) {
+            case RESUME_QUOTIDIEN -> lireConfig(user, type, pref,
+                    ResumeQuotidienConfig.class, ResumeQuotidienConfig.defaults()).heure();
+            case RESUME_HEBDO -> lireConfig(user, type, pref,
+                    ResumeHebdoConfig.class, ResumeHebdoConfig.defaults()).heure();
+            case RESUME_MENSUEL -> lireConfig(user, type, pref,
+                    ResumeMensuelConfig.class, ResumeMensuelConfig.defaults()).heure();
+            default -> null;
+        };
+    }
+
+    /** Heure d'envoi d'un résumé sans config, ou null pour les autres types. */
+    static Integer heureParDefaut(UserNotificationType type) {
+        return switch (type) {
+            case RESUME_QUOTIDIEN -> ResumeQuotidienConfig.defaults().heure();
+            case RESUME_HEBDO -> ResumeHebdoConfig.defaults().heure();
+            case RESUME_MENSUEL -> ResumeMensuelConfig.defaults().heure();
+            default -> null;
+        };
+    }
+
+    /** Équivalent de {@link #isEnabled} pour une préférence déjà chargée ({@code null} = absente). */
+    public static boolean estActive(UserNotificationPreference pref, UserNotificationType type) {
+        return pref != null ? pref.isEnabled() : type.isDefautActif();
+    }
+
     /**
      * Retourne la config typée pour RESUME_QUOTIDIEN pour un user donné,
      * ou les valeurs par défaut si absente / illisible.
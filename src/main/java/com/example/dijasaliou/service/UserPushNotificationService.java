@@ -2,35 +2,27 @@ package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.UserNotificationPreference;
 import com.example.dijasaliou.entity.UserNotificationType;
 import com.example.dijasaliou.entity.UserPushSubscription;
 import com.example.dijasaliou.repository.UserPushSubscriptionRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import nl.martijndwars.webpush.Notification;
-import nl.martijndwars.webpush.PushService;
-import nl.martijndwars.webpush.Subscription;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.security.Security;
-import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Envoi de notifications Web Push aux utilisateurs (admins) d'un tenant.
  *
- * Miroir de {@link PushNotificationService} (super admins) — même VAPID,
- * mais ciblage tenant/user et filtre via {@link UserNotificationPreferenceService}.
+ * Miroir de {@link PushNotificationService} (super admins) — mêmes VAPID et
+ * pipeline d'envoi ({@link PushDispatcher}), mais ciblage tenant/user et filtre
+ * via {@link UserNotificationPreferenceService}.
  *
- * Configuration : réutilise VAPID_PUBLIC_KEY, VAPID_PRIVATE_KEY, VAPID_SUBJECT.
- * Si non configuré → désactivé silencieusement.
+ * Si VAPID non configuré → désactivé silencieusement.
  */
 @Service
 @Slf4j
@@ -39,59 +31,33 @@ public class UserPushNotificationService {
     private final UserPushSubscriptionRepository repository;
     private final UserNotificationPreferenceService preferenceService;
     private final ObjectMapper objectMapper;
-    private final String publicKey;
-    private final String privateKey;
-    private final String subject;
-
-    private PushService pushService;
-    private boolean enabled;
+    private final PushDispatcher dispatcher;
 
     public UserPushNotificationService(
             UserPushSubscriptionRepository repository,
             UserNotificationPreferenceService preferenceService,
             ObjectMapper objectMapper,
-            @Value("${vapid.public.key:}") String publicKey,
-            @Value("${vapid.private.key:}") String privateKey,
-            @Value("${vapid.subject:mailto:contact@heasystock.com}") String subject) {
+            PushDispatcher dispatcher) {
         this.repository = repository;
         this.preferenceService = preferenceService;
         this.objectMapper = objectMapper;
-        this.publicKey = publicKey;
-        this.privateKey = privateKey;
-        this.subject = subject;
-    }
-
-    @PostConstruct
-    public void init() {
-        if (publicKey == null || publicKey.isBlank() || privateKey == null || privateKey.isBlank()) {
-            log.warn("[USER_PUSH] VAPID keys non configurées → push notifications utilisateur désactivées.");
-            enabled = false;
-            return;
-        }
-        try {
-            Security.addProvider(new BouncyCastleProvider());
-            pushService = new PushService(publicKey, privateKey, subject);
-            enabled = true;
-            log.info("[USER_PUSH] Service push utilisateur initialisé (subject={})", subject);
-        } catch (Exception e) {
-            log.error("[USER_PUSH] Échec d'initialisation du PushService : {}", e.getMessage());
-            enabled = false;
-        }
+        this.dispatcher = dispatcher;
     }
 
     public String getPublicKey() {
-        return publicKey;
+        return dispatcher.getPublicKey();
     }
 
     public boolean isEnabled() {
-        return enabled;
+        return dispatcher.isEnabled();
     }
 
     /**
      * Envoie une notification typée à un utilisateur donné, sur tous ses appareils,
      * uniquement s'il a activé (ou laissé par défaut activé) ce type.
      *
-     * Non bloquant : @Async ne ralentit pas la requête appelante.
+     * Non bloquant : préférences, subscriptions et envois sont traités par la file
+     * de {@link PushDispatcher}, la requête appelante n'est pas ralentie.
      *
      * @param user utilisateur destinataire (souvent l'admin d'un tenant)
      * @param type type de notification (utilisé pour filtrer selon les préférences)
@@ -99,26 +65,24 @@ public class UserPushNotificationService {
      * @param body corps du message
      * @param url URL vers laquelle rediriger au clic (route Angular, sans domaine)
      */
-    @Async
     public void notifyUser(UserEntity user, UserNotificationType type,
                            String title, String body, String url) {
-        if (!enabled) return;
+        if (!isEnabled()) return;
         if (user == null) return;
-        if (!preferenceService.isEnabled(user, type)) {
-            log.debug("[USER_PUSH] Type {} désactivé pour user {}, skip", type, user.getEmail());
-            return;
-        }
+        dispatcher.soumettre(() -> {
+            if (!preferenceService.isEnabled(user, type)) {
+                log.debug("[USER_PUSH] Type {} désactivé pour user {}, skip", type, user.getEmail());
+                return;
+            }
 
-        List<UserPushSubscription> subs = repository.findByUser(user);
-        if (subs.isEmpty()) {
-            log.debug("[USER_PUSH] Aucune subscription pour user {}", user.getEmail());
-            return;
-        }
+            List<UserPushSubscription> subs = repository.findByUser(user);
+            if (subs.isEmpty()) {
+                log.debug("[USER_PUSH] Aucune subscription pour user {}", user.getEmail());
+                return;
+            }
 
-        String payload = buildPayload(title, body, url);
-        for (UserPushSubscription sub : subs) {
-            sendOne(sub, payload);
-        }
+            dispatcher.envoyer(destinataires(subs), buildPayload(title, body, url));
+        });
     }
 
     /**
@@ -129,43 +93,55 @@ public class UserPushNotificationService {
      * l'infra Web Push même si l'utilisateur a désactivé tous les types dans
      * ses préférences. Ne PAS utiliser pour les notifs métier réelles.
      */
-    @Async
     public void notifyUserRaw(UserEntity user, String title, String body, String url) {
-        if (!enabled || user == null) return;
-        List<UserPushSubscription> subs = repository.findByUser(user);
-        if (subs.isEmpty()) {
-            log.warn("[USER_PUSH] Aucune subscription pour {} — l'envoi de test ne partira nulle part",
-                    user.getEmail());
-            return;
-        }
-        String payload = buildPayload(title, body, url);
-        for (UserPushSubscription sub : subs) {
-            sendOne(sub, payload);
-        }
-        log.info("[USER_PUSH] Test envoyé à {} subscription(s) pour user={}",
-                subs.size(), user.getEmail());
+        if (!isEnabled() || user == null) return;
+        dispatcher.soumettre(() -> {
+            List<UserPushSubscription> subs = repository.findByUser(user);
+            if (subs.isEmpty()) {
+                log.warn("[USER_PUSH] Aucune subscription pour {} — l'envoi de test ne partira nulle part",
+                        user.getEmail());
+                return;
+            }
+            dispatcher.envoyer(destinataires(subs), buildPayload(title, body, url));
+            log.info("[USER_PUSH] Test envoyé à {} subscription(s) pour user={}",
+                    subs.size(), user.getEmail());
+        });
     }
 
     /**
      * Envoie à tous les admins d'un tenant qui ont activé ce type.
      * Utilisé quand l'événement n'est pas rattaché à un user précis
      * (par ex. cron de résumé quotidien).
+     *
+     * Préférences de tous les propriétaires des subscriptions lues en une requête.
      */
-    @Async
     public void notifyTenantAdmins(TenantEntity tenant, UserNotificationType type,
                                    String title, String body, String url) {
-        if (!enabled) return;
+        if (!isEnabled()) return;
         if (tenant == null) return;
+        dispatcher.soumettre(() -> {
+            List<UserPushSubscription> subs = repository.findByTenant(tenant);
+            if (subs.isEmpty()) return;
 
-        List<UserPushSubscription> subs = repository.findByTenant(tenant);
-        if (subs.isEmpty()) return;
+            Map<Long, UserEntity> users = new LinkedHashMap<>();
+            for (UserPushSubscription sub : subs) {
+                users.putIfAbsent(sub.getUser().getId(), sub.getUser());
+            }
+            Map<Long, Map<UserNotificationType, UserNotificationPreference>> preferences =
+                    preferenceService.chargerPreferences(List.copyOf(users.values()), Set.of(type));
 
-        String payload = buildPayload(title, body, url);
-        for (UserPushSubscription sub : subs) {
             // Filtrer par préférence de chaque user propriétaire de la subscription
-            if (!preferenceService.isEnabled(sub.getUser(), type)) continue;
-            sendOne(sub, payload);
-        }
+            List<UserPushSubscription> actives = subs.stream()
+                    .filter(sub -> UserNotificationPreferenceService.estActive(
+                            preferences.getOrDefault(sub.getUser().getId(), Map.of()).get(type), type))
+                    .toList();
+            if (actives.isEmpty()) return;
+            dispatcher.envoyer(destinataires(actives), buildPayload(title, body, url));
+        });
+    }
+
+    private static List<PushDispatcher.Destinataire> destinataires(List<UserPushSubscription> subs) {
+        return subs.stream().map(PushDispatcher.Destinataire::de).toList();
     }
 
     private String buildPayload(String title, String body, String url) {
@@ -201,29 +177,4 @@ public class UserPushNotificationService {
             return "{\"notification\":{\"title\":\"" + title + "\",\"body\":\"" + body + "\"}}";
         }
     }
-
-    @Transactional
-    protected void sendOne(UserPushSubscription sub, String payload) {
-        try {
-            Subscription.Keys keys = new Subscription.Keys(sub.getP256dh(), sub.getAuthKey());
-            Subscription subscription = new Subscription(sub.getEndpoint(), keys);
-            Notification notification = new Notification(subscription, payload);
-
-            var response = pushService.send(notification);
-            int statusCode = response.getStatusLine().getStatusCode();
-
-            if (statusCode == 410 || statusCode == 404) {
-                log.info("[USER_PUSH] Subscription expirée/invalide ({}), suppression endpoint={}",
-                        statusCode, sub.getEndpoint().substring(0, Math.min(60, sub.getEndpoint().length())));
-                repository.delete(sub);
-            } else if (statusCode >= 200 && statusCode < 300) {
-                sub.setDerniereUtilisation(LocalDateTime.now());
-                repository.save(sub);
-            } else {
-                log.warn("[USER_PUSH] Envoi échoué ({}) pour subscription {}", statusCode, sub.getId());
-            }
-        } catch (Exception e) {
-            log.warn("[USER_PUSH] Erreur d'envoi pour subscription {} : {}", sub.getId(), e.getMessage());
-        }
-    }
 }
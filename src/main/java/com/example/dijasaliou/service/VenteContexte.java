@@ -0,0 +1,58 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.StockProduitEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+
+import java.math.BigDecimal;
+
+/**
+ * Contexte d'une vente, chargé UNE fois par VenteService.creerVente puis transmis
+ * au contrôle de stock, au FIFO, aux alertes et aux notifications.
+ *
+ * Remplace les trois appels à StockService.obtenirStockParNomProduit (contrôle,
+ * photo, vente à perte), les deux SUM de StockAlertService et la recherche de
+ * l'admin : une ligne du ledger verrouillée + une requête admin.
+ *
+ * @param tenant          Tenant courant
+ * @param ligneStock      Ligne du ledger verrouillée, null si produit jamais acheté ni vendu
+ * @param stockDisponible Stock avant la vente, null si produit inconnu
+ * @param prixMoyenAchat  Prix moyen pondéré d'achat, null si produit inconnu
+ * @param photoUrl        Photo du dernier achat (plan BUSINESS uniquement), sinon null
+ * @param unite           Unité du dernier achat, null si inconnue
+ * @param admin           Admin du tenant, null si aucun
+ */
+public record VenteContexte(
+        TenantEntity tenant,
+        StockProduitEntity ligneStock,
+        Double stockDisponible,
+        BigDecimal prixMoyenAchat,
+        String photoUrl,
+        String unite,
+        UserEntity admin
+) {
+
+    static VenteContexte de(TenantEntity tenant, StockProduitEntity ligneStock, UserEntity admin) {
+        if (ligneStock == null) {
+            return new VenteContexte(tenant, null, null, null, null, null, admin);
+        }
+        // Photos réservées au plan BUSINESS (même règle que la liste stock)
+        String photo = tenant.getPlan() == TenantEntity.Plan.BUSINESS ? ligneStock.getPhotoUrl() : null;
+        return new VenteContexte(tenant, ligneStock,
+                ligneStock.calculerStockDisponible(),
+                ligneStock.calculerPrixMoyenAchat(),
+                photo,
+                ligneStock.getUnite(),
+                admin);
+    }
+
+    /** Le produit a au moins un achat (donc des lots FIFO possibles). */
+    boolean produitAchete() {
+        return ligneStock != null && ligneStock.getNbAchats() > 0;
+    }
+
+    /** Stock après la vente de la quantité donnée (produit inconnu : part de 0). */
+    double stockApres(double quantiteVendue) {
+        return (stockDisponible != null ? stockDisponible : 0.0) - quantiteVendue;
+    }
+}
@@ -9,6 +9,7 @@ import com.example.dijasaliou.entity.ClientEntity;
 import com.example.dijasaliou.entity.CreditClientEntity;
 import com.example.dijasaliou.entity.CreditClientEntity.StatutCredit;
 import com.example.dijasaliou.entity.PaiementCreditEntity;
+import com.example.dijasaliou.entity.StockProduitEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.UserNotificationType;
@@ -20,6 +21,8 @@ import com.example.dijasaliou.repository.UserRepository;
 import com.example.dijasaliou.repository.VenteLotConsommationRepository;
 import com.example.dijasaliou.repository.VenteRepository;
 import com.example.dijasaliou.dto.SeuilMontantConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -30,8 +33,11 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
@@ -55,6 +61,19 @@ public class VenteService {
     private final UserPushNotificationService userPushService;
     private final UserNotificationPreferenceService prefService;
     private final UserRepository userRepository;
+    private final StockProduitService stockProduitService;
+    private final InvalidationDonneesService invalidationDonneesService;
+    private final RollupJourService rollupJourService;
+    private final DonneesVersionService donneesVersionService;
+
+    /**
+     * Rapport par mode de paiement, clé tenant|début|fin|version des données : une écriture
+     * change la version, les anciennes entrées ne sont plus lues et expirent d'elles-mêmes.
+     */
+    private final Cache<String, Map<String, Object>> rapportModePaiementCache = Caffeine.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .maximumSize(2_000)
+            .build();
 
     public VenteService(VenteRepository venteRepository,
                         @Lazy StockService stockService,
@@ -68,7 +87,11 @@ public class VenteService {
                         VenteLotConsommationRepository consommationRepository,
                         UserPushNotificationService userPushService,
                         UserNotificationPreferenceService prefService,
-                        UserRepository userRepository) {
+                        UserRepository userRepository,
+                        StockProduitService stockProduitService,
+                        InvalidationDonneesService invalidationDonneesService,
+                        RollupJourService rollupJourService,
+                        DonneesVersionService donneesVersionService) {
         this.venteRepository = venteRepository;
         this.stockService = stockService;
         this.tenantService = tenantService;
@@ -82,6 +105,10 @@ public class VenteService {
         this.userPushService = userPushService;
         this.prefService = prefService;
         this.userRepository = userRepository;
+        this.stockProduitService = stockProduitService;
+        this.invalidationDonneesService = invalidationDonneesService;
+        this.rollupJourService = rollupJourService;
+        this.donneesVersionService = donneesVersionService;
     }
 
     /**
@@ -176,14 +203,27 @@ public class VenteService {
 
     /**
      * Créer une nouvelle vente
+     *
+     * Le contexte (ligne du ledger verrouillée + admin du tenant) est chargé une
+     * seule fois puis sert au contrôle de stock, à la photo, au FIFO, à l'alerte
+     * et aux notifications.
      */
     @Transactional
     public VenteEntity creerVente(VenteEntity vente, UserEntity utilisateur) {
         // Validation
         validerVente(vente);
 
+        // MULTI-TENANT : tenant actuel (CRUCIAL!) + contexte de la vente
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        Map<String, StockProduitEntity> lignesStock = stockProduitService.verrouillerProduits(
+                tenant, List.of(vente.getNomProduit()));
+        VenteContexte contexte = VenteContexte.de(
+                tenant,
+                lignesStock.get(StockProduitService.normaliser(vente.getNomProduit())),
+                userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN).orElse(null));
+
         // Vérifier le stock disponible
-        verifierStockAvantVente(vente.getNomProduit(), vente.getQuantite());
+        verifierStockAvantVente(vente, contexte);
 
         // Associer l'utilisateur
         vente.setUtilisateur(utilisateur);
@@ -195,18 +235,12 @@ public class VenteService {
             vente.setDateVente(LocalDateTime.now());
         }
 
-        // MULTI-TENANT : Assigner le tenant actuel (CRUCIAL!)
-        vente.setTenant(tenantService.getCurrentTenant());
+        vente.setTenant(tenant);
 
         // Récupérer automatiquement la photo du produit depuis le stock si non fournie
+        // (null si le produit n'existe pas dans le stock : la vente est créée sans photo)
         if (vente.getPhotoUrl() == null || vente.getPhotoUrl().trim().isEmpty()) {
-            try {
-                StockDto stock = stockService.obtenirStockParNomProduit(vente.getNomProduit());
-                vente.setPhotoUrl(stock.getPhotoUrl());
-            } catch (RuntimeException e) {
-                // Si le produit n'existe pas dans le stock, laisser photoUrl null
-                // La vente peut quand même être créée sans photo
-            }
+            vente.setPhotoUrl(contexte.photoUrl());
         }
 
         // Calculer le prix total
@@ -214,24 +248,34 @@ public class VenteService {
             vente.calculerPrixTotal();
         }
 
-        // Sauvegarder la vente
+        // Sauvegarder la vente + ledger de stock (même transaction, ligne déjà verrouillée)
         VenteEntity venteSauvegardee = venteRepository.save(vente);
-        stockService.invalidateStockCache(venteSauvegardee.getTenant().getTenantUuid());
+        stockProduitService.enregistrerVentes(List.of(venteSauvegardee), lignesStock);
+        stockService.invalidateStockCache(tenant.getTenantUuid());
+        // Caisse : vente antidatée → clôtures journalières à recalculer (sans effet pour une vente du jour)
+        invalidationDonneesService.invaliderDepuis(tenant, venteSauvegardee.getDateVente());
 
         // FIFO : consommer le stock dans les lots d'achat (du plus ancien au plus récent)
         // et calculer le bénéfice net de la vente.
         // Ne JAMAIS bloquer la vente si le FIFO échoue (logique non critique).
-        try {
-            fifoCalculService.consommerStockFifo(venteSauvegardee);
-        } catch (Exception e) {
-            log.error("FIFO : échec du calcul de bénéfice pour la vente {} : {}",
-                    venteSauvegardee.getId(), e.getMessage(), e);
+        if (contexte.produitAchete()) {
+            try {
+                fifoCalculService.consommerStockFifo(venteSauvegardee);
+            } catch (Exception e) {
+                log.error("FIFO : échec du calcul de bénéfice pour la vente {} : {}",
+                        venteSauvegardee.getId(), e.getMessage(), e);
+            }
+        } else {
+            log.debug("FIFO : produit '{}' jamais acheté, vente {} créée sans calcul de bénéfice",
+                    vente.getNomProduit(), venteSauvegardee.getId());
         }
 
-        // ALERTE DE STOCK : Vérifier le stock après la vente et envoyer une alerte si nécessaire
-        // (uniquement pour les plans PREMIUM et ENTREPRISE)
+        // ALERTE DE STOCK : stock après la vente déduit du contexte, alerte si nécessaire
+        // (uniquement pour les plans PRO et BUSINESS)
         try {
-            stockAlertService.verifierEtEnvoyerAlerte(vente.getNomProduit());
+            stockAlertService.verifierEtEnvoyerAlertes(
+                    Map.of(vente.getNomProduit(), contexte.stockApres(vente.getQuantite())),
+                    contexte.admin());
         } catch (Exception e) {
             // Ne pas bloquer la vente si l'envoi d'alerte échoue
         }
@@ -239,29 +283,12 @@ public class VenteService {
         // CRÉDIT CLIENT : Si mode_paiement = CREDIT, créer automatiquement un crédit
         // (uniquement pour le plan ENTREPRISE)
         if (vente.getModePaiement() == VenteEntity.ModePaiementVente.CREDIT) {
-            // Résoudre clientId → ClientEntity si clientRef pas déjà défini
-            ClientEntity clientPourCredit = vente.getClientRef();
-            if (clientPourCredit == null && vente.getClientId() != null) {
-                clientPourCredit = clientRepository.findById(vente.getClientId())
-                        .orElse(null);
-            }
-            if (clientPourCredit == null) {
-                throw new IllegalArgumentException(
-                        "Un client enregistré est obligatoire pour une vente à crédit");
-            }
-            venteSauvegardee.setEstSoldee(false);
-            venteSauvegardee.setClientRef(clientPourCredit);
-            venteRepository.save(venteSauvegardee);
-            creditClientService.creerCreditDepuisVente(
-                    venteSauvegardee,
-                    clientPourCredit,
-                    utilisateur,
-                    vente.getDateEcheance());
+            creerCreditPourVente(venteSauvegardee, vente, utilisateur);
         }
 
         // NOTIFICATIONS PUSH — non bloquantes, sans jamais faire échouer la vente.
         try {
-            envoyerNotificationsVente(venteSauvegardee, utilisateur);
+            envoyerNotificationsVente(venteSauvegardee, utilisateur, contexte);
         } catch (Exception e) {
             log.warn("[VENTE_NOTIF] Echec envoi notifs pour vente {} : {}",
                     venteSauvegardee.getId(), e.getMessage());
@@ -270,63 +297,239 @@ public class VenteService {
         return venteSauvegardee;
     }
 
+    /**
+     * Encaisser un panier (POST /ventes/panier) : N lignes en une seule transaction.
+     *
+     * Par rapport à N appels de creerVente :
+     *   - stock de toutes les lignes contrôlé sur le ledger (1 requête, lignes verrouillées)
+     *   - ventes insérées par un seul saveAll (batch JDBC, ids UUID)
+     *   - lots FIFO de tous les produits chargés en 1 requête, consommations en 1 saveAll
+     *   - cache stock invalidé, admin chargé, alertes et notifications évaluées une fois par panier
+     *
+     * Atomique : une ligne refusée (validation, stock insuffisant) annule tout le panier.
+     */
+    @Transactional
+    public List<VenteEntity> creerPanier(List<VenteEntity> lignes, UserEntity utilisateur) {
+        if (lignes == null || lignes.isEmpty()) {
+            throw new IllegalArgumentException("Le panier doit contenir au moins une ligne");
+        }
+        lignes.forEach(this::validerVente);
+
+        TenantEntity tenant = tenantService.getCurrentTenant();
+
+        // 1. Verrouiller le ledger de tous les produits du panier et contrôler le stock
+        Map<String, StockProduitEntity> stocks = stockProduitService.verrouillerProduits(
+                tenant, lignes.stream().map(VenteEntity::getNomProduit).toList());
+        verifierStockPanier(lignes, stocks);
+
+        // 2. Compléter et insérer toutes les ventes
+        LocalDateTime maintenant = LocalDateTime.now();
+        // Photos réservées au plan BUSINESS (même règle que la liste stock)
+        boolean photosVisibles = tenant.getPlan() == TenantEntity.Plan.BUSINESS;
+        for (VenteEntity vente : lignes) {
+            vente.setUtilisateur(utilisateur);
+            if (vente.getDateVente() == null) {
+                vente.setDateVente(maintenant);
+            }
+            vente.setTenant(tenant);
+            if (photosVisibles && (vente.getPhotoUrl() == null || vente.getPhotoUrl().trim().isEmpty())) {
+                StockProduitEntity stock = stocks.get(StockProduitService.normaliser(vente.getNomProduit()));
+                if (stock != null) {
+                    vente.setPhotoUrl(stock.getPhotoUrl());
+                }
+            }
+            if (vente.getPrixTotal() == null) {
+                vente.calculerPrixTotal();
+            }
+        }
+        List<VenteEntity> ventes = venteRepository.saveAll(lignes);
+        stockProduitService.enregistrerVentes(ventes, stocks);
+        stockService.invalidateStockCache(tenant.getTenantUuid());
+        ventes.stream().map(VenteEntity::getDateVente).filter(java.util.Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .ifPresent(date -> invalidationDonneesService.invaliderDepuis(tenant, date));
+
+        // 3. FIFO — ne JAMAIS bloquer le panier si le FIFO échoue (logique non critique)
+        try {
+            fifoCalculService.consommerStockFifoPanier(ventes);
+        } catch (Exception e) {
+            log.error("FIFO : échec du calcul de bénéfice pour un panier de {} vente(s) : {}",
+                    ventes.size(), e.getMessage(), e);
+        }
+
+        // 4. Crédit client, ligne par ligne (chaque vente à crédit a son propre crédit)
+        for (int i = 0; i < ventes.size(); i++) {
+            if (ventes.get(i).getModePaiement() == VenteEntity.ModePaiementVente.CREDIT) {
+                creerCreditPourVente(ventes.get(i), lignes.get(i), utilisateur);
+            }
+        }
+
+        // 5. Alertes de stock et notifications, une fois pour tout le panier
+        UserEntity admin = userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN).orElse(null);
+        try {
+            Map<String, Double> stockApresVente = new LinkedHashMap<>();
+            for (VenteEntity vente : ventes) {
+                StockProduitEntity stock = stocks.get(StockProduitService.normaliser(vente.getNomProduit()));
+                stockApresVente.putIfAbsent(vente.getNomProduit(), stock.calculerStockDisponible());
+            }
+            stockAlertService.verifierEtEnvoyerAlertes(stockApresVente, admin);
+        } catch (Exception e) {
+            // Ne pas bloquer le panier si l'envoi d'alerte échoue
+        }
+        try {
+            envoyerNotificationsPanier(ventes, stocks, utilisateur, admin);
+        } catch (Exception e) {
+            log.warn("[VENTE_NOTIF] Echec envoi notifs pour un panier de {} vente(s) : {}",
+                    ventes.size(), e.getMessage());
+        }
+
+        return ventes;
+    }
+
+    /**
+     * Contrôle le stock de toutes les lignes du panier, quantités cumulées par produit.
+     * Produit absent du ledger (jamais acheté ni vendu) → vente autorisée, comme creerVente.
+     */
+    private void verifierStockPanier(List<VenteEntity> lignes, Map<String, StockProduitEntity> stocks) {
+        Map<String, Double> demandeParProduit = new LinkedHashMap<>();
+        Map<String, String> libelleParProduit = new LinkedHashMap<>();
+        for (VenteEntity vente : lignes) {
+            String nom = StockProduitService.normaliser(vente.getNomProduit());
+            demandeParProduit.merge(nom, vente.getQuantite(), Double::sum);
+            libelleParProduit.putIfAbsent(nom, vente.getNomProduit());
+        }
+
+        demandeParProduit.forEach((nom, quantite) -> {
+            StockProduitEntity stock = stocks.get(nom);
+            if (stock != null && stock.calculerStockDisponible() < quantite) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "Stock insuffisant pour '%s' ! Disponible : %.2f, Demandé : %.2f",
+                                libelleParProduit.get(nom),
+                                stock.calculerStockDisponible(),
+                                quantite
+                        )
+                );
+            }
+        });
+    }
+
+    /**
+     * Notifications d'un panier : VENTE_A_PERTE ligne par ligne (prix moyen lu sur le
+     * ledger déjà chargé), VENTE_EMPLOYE une seule fois sur le total du panier.
+     */
+    private void envoyerNotificationsPanier(List<VenteEntity> ventes, Map<String, StockProduitEntity> stocks,
+                                            UserEntity auteur, UserEntity admin) {
+        if (auteur == null) return;
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (VenteEntity vente : ventes) {
+            StockProduitEntity stock = stocks.get(StockProduitService.normaliser(vente.getNomProduit()));
+            if (stock != null) {
+                notifierSiVenteAPerte(vente, auteur, admin, stock.calculerPrixMoyenAchat());
+            }
+            if (vente.getPrixTotal() != null) {
+                total = total.add(vente.getPrixTotal());
+            }
+        }
+
+        String libelle = ventes.size() == 1
+                ? ventes.get(0).getNomProduit()
+                : "un panier de " + ventes.size() + " articles";
+        notifierSiVenteEmploye(admin, auteur, libelle, total);
+    }
+
     /**
      * Détecte deux cas et envoie les push correspondants :
      *   - VENTE_A_PERTE : prix vente unitaire < prix d'achat moyen (perte réelle)
      *   - VENTE_EMPLOYE : la vente est saisie par un non-ADMIN et le montant
      *     dépasse le seuil configuré par l'admin (0 = toutes les ventes)
+     *
+     * Admin et prix d'achat moyen viennent du contexte (aucune requête ici).
      */
-    private void envoyerNotificationsVente(VenteEntity vente, UserEntity auteur) {
+    private void envoyerNotificationsVente(VenteEntity vente, UserEntity auteur, VenteContexte contexte) {
         if (vente == null || auteur == null) return;
-        TenantEntity tenant = vente.getTenant();
-        if (tenant == null) return;
-
-        // On récupère l'admin du tenant une seule fois (utile pour les deux notifs)
-        UserEntity admin = userRepository.findFirstByTenantAndRole(tenant, UserEntity.Role.ADMIN).orElse(null);
 
         // ─── VENTE_A_PERTE ─────────────────────────────────────────────
         // Cas : vente au comptant OU crédit, dès que PV < prix achat moyen.
-        // On récupère le prix d'achat moyen depuis le stock (peut être null si
-        // le produit est en stock négatif ou n'existe pas encore côté stock).
-        try {
-            StockDto stock = stockService.obtenirStockParNomProduit(vente.getNomProduit());
-            BigDecimal prixMoyen = stock != null ? stock.getPrixMoyenAchat() : null;
-            if (prixMoyen != null && prixMoyen.signum() > 0
-                    && vente.getPrixUnitaire() != null
-                    && vente.getPrixUnitaire().compareTo(prixMoyen) < 0) {
-
-                BigDecimal perteParUnite = prixMoyen.subtract(vente.getPrixUnitaire());
-                BigDecimal perteTotale = perteParUnite.multiply(BigDecimal.valueOf(vente.getQuantite()));
-
-                String title = "Vente à perte détectée";
-                String body = vente.getNomProduit() + " vendu à " + fmt(vente.getPrixUnitaire())
-                        + " CFA (achat moyen : " + fmt(prixMoyen)
-                        + " CFA). Perte estimée : " + fmt(perteTotale) + " CFA.";
-                String url = "/ventes";
-
-                // On notifie l'auteur (peut réagir tout de suite s'il s'agit d'une erreur de saisie)
-                userPushService.notifyUser(auteur, UserNotificationType.VENTE_A_PERTE, title, body, url);
-                // Et l'admin s'il est distinct
-                if (admin != null && !admin.getId().equals(auteur.getId())) {
-                    userPushService.notifyUser(admin, UserNotificationType.VENTE_A_PERTE, title, body, url);
-                }
-            }
-        } catch (RuntimeException ignored) {
-            // stock introuvable → on ne peut pas comparer, on skip
-        }
+        // Prix moyen null si le produit n'existe pas encore côté stock → on skip.
+        notifierSiVenteAPerte(vente, auteur, contexte.admin(), contexte.prixMoyenAchat());
 
         // ─── VENTE_EMPLOYE ─────────────────────────────────────────────
-        // Cas : auteur ≠ ADMIN + montant total > seuil de l'admin
-        if (admin != null && auteur.getRole() != UserEntity.Role.ADMIN) {
-            SeuilMontantConfig cfg = prefService.getSeuilMontantConfig(admin, UserNotificationType.VENTE_EMPLOYE);
-            BigDecimal total = vente.getPrixTotal() != null ? vente.getPrixTotal() : BigDecimal.ZERO;
-            if (total.compareTo(cfg.seuilMontant()) >= 0) {
-                String title = "Vente par " + auteur.getPrenom();
-                String body = auteur.getPrenom() + " " + auteur.getNom() + " vient d'enregistrer "
-                        + vente.getNomProduit() + " pour " + fmt(total) + " CFA.";
-                userPushService.notifyUser(admin, UserNotificationType.VENTE_EMPLOYE, title, body, "/ventes");
-            }
+        BigDecimal total = vente.getPrixTotal() != null ? vente.getPrixTotal() : BigDecimal.ZERO;
+        notifierSiVenteEmploye(contexte.admin(), auteur, vente.getNomProduit(), total);
+    }
+
+    /**
+     * VENTE_A_PERTE : notifie l'auteur (et l'admin s'il est distinct) si le prix
+     * de vente unitaire est inférieur au prix d'achat moyen.
+     */
+    private void notifierSiVenteAPerte(VenteEntity vente, UserEntity auteur, UserEntity admin, BigDecimal prixMoyen) {
+        if (prixMoyen == null || prixMoyen.signum() <= 0
+                || vente.getPrixUnitaire() == null
+                || vente.getPrixUnitaire().compareTo(prixMoyen) >= 0) {
+            return;
+        }
+
+        BigDecimal perteParUnite = prixMoyen.subtract(vente.getPrixUnitaire());
+        BigDecimal perteTotale = perteParUnite.multiply(BigDecimal.valueOf(vente.getQuantite()));
+
+        String title = "Vente à perte détectée";
+        String body = vente.getNomProduit() + " vendu à " + fmt(vente.getPrixUnitaire())
+                + " CFA (achat moyen : " + fmt(prixMoyen)
+                + " CFA). Perte estimée : " + fmt(perteTotale) + " CFA.";
+        String url = "/ventes";
+
+        // On notifie l'auteur (peut réagir tout de suite s'il s'agit d'une erreur de saisie)
+        userPushService.notifyUser(auteur, UserNotificationType.VENTE_A_PERTE, title, body, url);
+        // Et l'admin s'il est distinct
+        if (admin != null && !admin.getId().equals(auteur.getId())) {
+            userPushService.notifyUser(admin, UserNotificationType.VENTE_A_PERTE, title, body, url);
+        }
+    }
+
+    /**
+     * VENTE_EMPLOYE : auteur ≠ ADMIN + montant total ≥ seuil de l'admin.
+     *
+     * @param libelle Ce qui a été vendu (nom du produit, ou résumé du panier)
+     */
+    private void notifierSiVenteEmploye(UserEntity admin, UserEntity auteur, String libelle, BigDecimal total) {
+        if (admin == null || auteur.getRole() == UserEntity.Role.ADMIN) return;
+
+        SeuilMontantConfig cfg = prefService.getSeuilMontantConfig(admin, UserNotificationType.VENTE_EMPLOYE);
+        if (total.compareTo(cfg.seuilMontant()) >= 0) {
+            String title = "Vente par " + auteur.getPrenom();
+            String body = auteur.getPrenom() + " " + auteur.getNom() + " vient d'enregistrer "
+                    + libelle + " pour " + fmt(total) + " CFA.";
+            userPushService.notifyUser(admin, UserNotificationType.VENTE_EMPLOYE, title, body, "/ventes");
+        }
+    }
+
+    /**
+     * Rattache la vente à son client et crée le crédit correspondant.
+     *
+     * @param venteSauvegardee Vente déjà sauvegardée
+     * @param saisie           Vente telle que reçue (champs transients clientId / dateEcheance)
+     */
+    private void creerCreditPourVente(VenteEntity venteSauvegardee, VenteEntity saisie, UserEntity utilisateur) {
+        // Résoudre clientId → ClientEntity si clientRef pas déjà défini
+        ClientEntity clientPourCredit = saisie.getClientRef();
+        if (clientPourCredit == null && saisie.getClientId() != null) {
+            clientPourCredit = clientRepository.findById(saisie.getClientId())
+                    .orElse(null);
+        }
+        if (clientPourCredit == null) {
+            throw new IllegalArgumentException(
+                    "Un client enregistré est obligatoire pour une vente à crédit");
         }
+        venteSauvegardee.setEstSoldee(false);
+        venteSauvegardee.setClientRef(clientPourCredit);
+        venteRepository.save(venteSauvegardee);
+        creditClientService.creerCreditDepuisVente(
+                venteSauvegardee,
+                clientPourCredit,
+                utilisateur,
+                saisie.getDateEcheance());
     }
 
     private static String fmt(BigDecimal montant) {
@@ -355,8 +558,13 @@ public class VenteService {
                 id, List.of(StatutCredit.EN_ATTENTE, StatutCredit.PARTIEL));
 
         // Validation stock avant modification
-        boolean produitChange = !venteExistante.getNomProduit().equalsIgnoreCase(venteModifiee.getNomProduit());
-        if (produitChange) {
+        String ancienNomProduit = venteExistante.getNomProduit();
+        LocalDateTime ancienneDateVente = venteExistante.getDateVente();
+        // Nom exact, comme le rejeu FIFO ; le stock, lui, regroupe les noms normalisés
+        boolean produitChange = !venteExistante.getNomProduit().equals(venteModifiee.getNomProduit());
+        boolean memeLigneStock = StockProduitService.normaliser(venteExistante.getNomProduit())
+                .equals(StockProduitService.normaliser(venteModifiee.getNomProduit()));
+        if (!memeLigneStock) {
             // Nouveau produit : vérifier que le stock du nouveau produit est suffisant
             verifierStockAvantVente(venteModifiee.getNomProduit(), venteModifiee.getQuantite());
         } else if (venteModifiee.getQuantite() > venteExistante.getQuantite()) {
@@ -400,6 +608,9 @@ public class VenteService {
         // Recalculer le prix AVANT la logique crédit (le montant est nécessaire pour créer/màj le crédit)
         venteExistante.calculerPrixTotal();
 
+        // Caisse : montant, mode ou date changés → clôtures à recalculer depuis la plus ancienne date
+        invalidationDonneesService.invaliderDepuis(tenantActuel, ancienneDateVente, venteExistante.getDateVente());
+
         // === LOGIQUE CRÉDIT — 4 cas ===
 
         if (aUnCreditActif && !devientCredit) {
@@ -418,15 +629,12 @@ public class VenteService {
                     : venteExistante.getUtilisateur();
             creditClientService.creerCreditDepuisVente(
                     venteSauvegardee, client, employe, venteModifiee.getDateEcheance());
+            stockProduitService.recalculerProduits(venteSauvegardee.getTenant(),
+                    List.of(ancienNomProduit, venteSauvegardee.getNomProduit()));
             stockService.invalidateStockCache(venteSauvegardee.getTenant().getTenantUuid());
 
-            // FIFO : recalculer après modification
-            try {
-                fifoCalculService.recalculerFifo(venteSauvegardee);
-            } catch (Exception e) {
-                log.error("FIFO : échec du recalcul de bénéfice pour la vente {} : {}",
-                        venteSauvegardee.getId(), e.getMessage(), e);
-            }
+            // FIFO : rejouer le produit à partir du point de modification
+            rejouerFifoApresModification(venteSauvegardee, ancienNomProduit, ancienneDateVente);
 
             return venteSauvegardee;
 
@@ -440,18 +648,40 @@ public class VenteService {
         // Cas 4 : ESPÈCES/WAVE/OM → ESPÈCES/WAVE/OM — rien à faire sur le crédit
 
         VenteEntity saved = venteRepository.save(venteExistante);
+        stockProduitService.recalculerProduits(saved.getTenant(), List.of(ancienNomProduit, saved.getNomProduit()));
         stockService.invalidateStockCache(saved.getTenant().getTenantUuid());
 
-        // FIFO : recalculer les lignes de consommation
-        // (rend les unités aux lots puis refait le calcul avec les nouvelles valeurs)
+        // FIFO : rejouer les lignes de consommation du produit à partir du point de modification
+        // (cette vente et les ventes postérieures, qui peuvent puiser dans d'autres lots)
+        rejouerFifoApresModification(saved, ancienNomProduit, ancienneDateVente);
+
+        return saved;
+    }
+
+    /**
+     * FIFO après modification d'une vente — ne JAMAIS bloquer la modification si le
+     * rejeu échoue (logique non critique).
+     */
+    private void rejouerFifoApresModification(VenteEntity vente, String ancienNomProduit, LocalDateTime ancienneDate) {
         try {
-            fifoCalculService.recalculerFifo(saved);
+            fifoCalculService.rejouerApresModificationVente(vente, ancienNomProduit, ancienneDate);
         } catch (Exception e) {
             log.error("FIFO : échec du recalcul de bénéfice pour la vente {} : {}",
-                    saved.getId(), e.getMessage(), e);
+                    vente.getId(), e.getMessage(), e);
         }
+    }
 
-        return saved;
+    /**
+     * FIFO après suppression d'une vente : les ventes postérieures du produit peuvent
+     * maintenant puiser dans les unités rendues aux lots.
+     */
+    private void rejouerFifoApresSuppression(TenantEntity tenant, VenteEntity venteSupprimee) {
+        try {
+            fifoCalculService.rejouerProduitDepuis(tenant, venteSupprimee.getNomProduit(), venteSupprimee.getDateVente());
+        } catch (Exception e) {
+            log.error("FIFO : échec du rejeu après suppression de la vente {} : {}",
+                    venteSupprimee.getId(), e.getMessage(), e);
+        }
     }
 
     /**
@@ -612,7 +842,16 @@ public class VenteService {
 
         // 1. Supprimer en bloc les crédits + paiements (cascade JPA grâce à @OneToMany orphanRemoval=true)
         List<CreditClientEntity> credits = creditClientRepository.findByVenteIdWithPaiements(id);
+        LocalDate premierJourCaisse = vente.getDateVente() != null ? vente.getDateVente().toLocalDate() : null;
         for (CreditClientEntity credit : credits) {
+            if (credit.getPaiements() != null) {
+                for (PaiementCreditEntity p : credit.getPaiements()) {
+                    if (p.getDatePaiement() != null
+                            && (premierJourCaisse == null || p.getDatePaiement().isBefore(premierJourCaisse))) {
+                        premierJourCaisse = p.getDatePaiement();
+                    }
+                }
+            }
             log.info("[CASCADE] Suppression du crédit {} (statut {}, {} paiements) lié à la vente {}",
                     credit.getId(), credit.getStatut(),
                     credit.getPaiements() != null ? credit.getPaiements().size() : 0, id);
@@ -626,9 +865,13 @@ public class VenteService {
             log.error("[CASCADE] Échec annulation FIFO pour vente {} : {}", id, e.getMessage(), e);
         }
 
-        // 3. Supprimer la vente
+        // 3. Supprimer la vente + recalculer le ledger du produit
         venteRepository.deleteById(id);
+        stockProduitService.recalculerProduits(tenant, List.of(vente.getNomProduit()));
         stockService.invalidateStockCache(tenant.getTenantUuid());
+        rejouerFifoApresSuppression(tenant, vente);
+        // Caisse : vente et paiements disparus → clôtures à recalculer depuis le plus ancien
+        invalidationDonneesService.invaliderDepuis(tenant, premierJourCaisse);
 
         log.info("[CASCADE] Vente {} supprimée avec succès (cascade complète)", id);
     }
@@ -670,7 +913,10 @@ public class VenteService {
         }
 
         venteRepository.deleteById(id);
+        stockProduitService.recalculerProduits(tenantActuel, List.of(venteExistante.getNomProduit()));
         stockService.invalidateStockCache(tenantActuel.getTenantUuid());
+        rejouerFifoApresSuppression(tenantActuel, venteExistante);
+        invalidationDonneesService.invaliderDepuis(tenantActuel, venteExistante.getDateVente());
     }
 
     /**
@@ -787,18 +1033,27 @@ public class VenteService {
         String tenantUuid = tenant.getTenantUuid();
 
         // 1. Partie NON-CRÉDIT : ventes payées immédiatement → on prend tout (CA + coût + bénéfice complets)
-        BigDecimal caNonCredit = venteRepository.sumChiffreAffairesNonCreditPeriode(debutDt, finDt, tenantUuid);
-        if (caNonCredit == null) caNonCredit = BigDecimal.ZERO;
-
-        BigDecimal coutAchat = consommationRepository.sumCoutAchatNonCreditBetween(tenant, debutDt, finDt);
-        if (coutAchat == null) coutAchat = BigDecimal.ZERO;
-
-        BigDecimal benefice  = consommationRepository.sumBeneficeNonCreditBetween(tenant, debutDt, finDt);
-        if (benefice == null) benefice = BigDecimal.ZERO;
+        //    Lue dans les agrégats journaliers (rollup_jour), avec comptages et sorties (points 4 et 5)
+        RollupJourTotaux totaux = rollupJourService.totaux(tenant, debut, fin);
+        BigDecimal caNonCredit = totaux.caEncaisse();
+        BigDecimal coutAchat   = totaux.coutFifoEncaisse();
+        BigDecimal benefice    = totaux.beneficeFifoEncaisse();
 
         // 2. Partie CRÉDIT : pour chaque paiement reçu dans la période, attribution prorata du coût/bénéfice
         List<PaiementCreditEntity> paiements = paiementCreditRepository.findPaiementsAvecVenteBetween(
                 debut, fin, tenantUuid);
+        List<CreditClientEntity> creditsEnPerte = creditClientRepository.findCreditsPassesEnPerteBetween(
+                debut, fin, tenantUuid);
+
+        // Coût et bénéfice FIFO de toutes les ventes concernées (paiements + pertes), en une fois
+        java.util.Set<String> venteIds = new java.util.HashSet<>();
+        for (PaiementCreditEntity p : paiements) {
+            if (p.getCredit() != null && p.getCredit().getVente() != null) venteIds.add(p.getCredit().getVente().getId());
+        }
+        for (CreditClientEntity credit : creditsEnPerte) {
+            if (credit.getVente() != null) venteIds.add(credit.getVente().getId());
+        }
+        Map<String, BigDecimal[]> fifoParVente = chargerCoutEtBeneficeParVente(venteIds, tenant);
 
         BigDecimal caPaiementsCredit  = BigDecimal.ZERO;
         BigDecimal coutPaiementsCredit = BigDecimal.ZERO;
@@ -819,14 +1074,11 @@ public class VenteService {
             // Prorata = montant payé / prix total de la vente
             BigDecimal prorata = montantPaye.divide(vente.getPrixTotal(), 6, java.math.RoundingMode.HALF_UP);
 
-            BigDecimal coutVente     = consommationRepository.sumCoutAchatByVenteId(vente.getId(), tenant);
-            if (coutVente == null) coutVente = BigDecimal.ZERO;
-            BigDecimal beneficeVente = consommationRepository.sumBeneficeByVenteId(vente.getId(), tenant);
-            if (beneficeVente == null) beneficeVente = BigDecimal.ZERO;
+            BigDecimal[] fifo = fifoParVente.getOrDefault(vente.getId(), FIFO_VIDE);
 
             caPaiementsCredit       = caPaiementsCredit.add(montantPaye);
-            coutPaiementsCredit     = coutPaiementsCredit.add(coutVente.multiply(prorata));
-            beneficePaiementsCredit = beneficePaiementsCredit.add(beneficeVente.multiply(prorata));
+            coutPaiementsCredit     = coutPaiementsCredit.add(fifo[0].multiply(prorata));
+            beneficePaiementsCredit = beneficePaiementsCredit.add(fifo[1].multiply(prorata));
         }
 
         // 3. Agrégation finale
@@ -835,33 +1087,27 @@ public class VenteService {
         BigDecimal beneficeTotal = benefice.add(beneficePaiementsCredit).setScale(2, java.math.RoundingMode.HALF_UP);
 
         // 4. Comptages
-        long nbVentesNonCredit  = venteRepository.countVentesNonCreditPeriode(debutDt, finDt, tenantUuid);
-        long nbPaiementsCredit  = paiementCreditRepository.countByPeriodeAndTenant(debut, fin, tenantUuid);
+        long nbVentesNonCredit  = totaux.nbVentesEncaissees();
+        long nbPaiementsCredit  = totaux.nbPaiementsCredit();
         long nbVentes           = nbVentesNonCredit + nbPaiementsCredit;
-        long nbVentesAvecBenefice = consommationRepository.countVentesAvecBeneficeBetween(tenant, debutDt, finDt);
+        long nbVentesAvecBenefice = totaux.nbVentesAvecBenefice();
         long nbVentesSansBenefice = Math.max(0L, nbVentes - nbVentesAvecBenefice);
 
         // 5. Sorties hors vente (pertes, vols, dons) — comptabilisées séparément
         java.util.Map<String, BigDecimal> pertesParType = new java.util.LinkedHashMap<>();
         BigDecimal totalPertes = BigDecimal.ZERO;
-        long nbSorties = 0L;
-        for (Object[] row : consommationRepository.sumPertesFifoParTypeBetween(tenant, debutDt, finDt)) {
-            String type = row[0] != null ? row[0].toString() : "AUTRE";
-            BigDecimal cout = row[1] instanceof BigDecimal ? (BigDecimal) row[1]
-                    : (row[1] instanceof Number ? new BigDecimal(row[1].toString()) : BigDecimal.ZERO);
-            pertesParType.put(type, cout.setScale(2, java.math.RoundingMode.HALF_UP));
-            totalPertes = totalPertes.add(cout);
-        }
-        // Compte les sorties via la query sumSortiesParTypeEtPeriode (compte les ventes, pas les lignes FIFO)
-        for (Object[] row : venteRepository.sumSortiesParTypeEtPeriode(debutDt, finDt, tenantUuid)) {
-            nbSorties += row[1] instanceof Number ? ((Number) row[1]).longValue() : 0L;
+        for (Map.Entry<String, BigDecimal> perte : totaux.pertesFifoParType().entrySet()) {
+            pertesParType.put(perte.getKey(), perte.getValue().setScale(2, java.math.RoundingMode.HALF_UP));
+            totalPertes = totalPertes.add(perte.getValue());
         }
+        // Nombre de sorties = nombre de ventes-sorties (pas de lignes FIFO)
+        long nbSorties = totaux.nbSorties();
 
         // 5bis. Crédits impayés passés en perte sur la période
         // Pour chaque crédit en perte : perte FIFO = coût total vente × (montant restant / prix total vente)
         BigDecimal pertesCreditImpaye = BigDecimal.ZERO;
         long nbCreditsEnPerte = 0L;
-        for (CreditClientEntity credit : creditClientRepository.findCreditsPassesEnPerteBetween(debut, fin, tenantUuid)) {
+        for (CreditClientEntity credit : creditsEnPerte) {
             BigDecimal montantRestant = credit.getMontantRestant();
             if (montantRestant == null || montantRestant.compareTo(BigDecimal.ZERO) <= 0) continue;
 
@@ -876,8 +1122,7 @@ public class VenteService {
 
             // Prorata FIFO : part non payée × coût total de la vente
             BigDecimal proratNonPaye = montantRestant.divide(vente.getPrixTotal(), 6, java.math.RoundingMode.HALF_UP);
-            BigDecimal coutVente = consommationRepository.sumCoutAchatByVenteId(vente.getId(), tenant);
-            if (coutVente == null) coutVente = BigDecimal.ZERO;
+            BigDecimal coutVente = fifoParVente.getOrDefault(vente.getId(), FIFO_VIDE)[0];
             pertesCreditImpaye = pertesCreditImpaye.add(coutVente.multiply(proratNonPaye));
             nbCreditsEnPerte++;
         }
@@ -911,6 +1156,34 @@ public class VenteService {
                 .build();
     }
 
+    /** Coût et bénéfice FIFO nuls : vente sans ligne de consommation. */
+    private static final BigDecimal[] FIFO_VIDE = {BigDecimal.ZERO, BigDecimal.ZERO};
+
+    /** Taille max d'une liste IN (…) : au-delà, la requête est découpée en lots. */
+    private static final int TAILLE_LOT_IN = 1000;
+
+    /**
+     * venteId → [coût d'achat FIFO, bénéfice FIFO], par lots de {@link #TAILLE_LOT_IN} ventes :
+     * quelques requêtes groupées au lieu de deux requêtes par paiement ou crédit.
+     */
+    private Map<String, BigDecimal[]> chargerCoutEtBeneficeParVente(java.util.Collection<String> venteIds,
+                                                                    TenantEntity tenant) {
+        Map<String, BigDecimal[]> resultat = new java.util.HashMap<>();
+        List<String> ids = new java.util.ArrayList<>(venteIds);
+        for (int i = 0; i < ids.size(); i += TAILLE_LOT_IN) {
+            List<String> lot = ids.subList(i, Math.min(i + TAILLE_LOT_IN, ids.size()));
+            for (Object[] row : consommationRepository.sumCoutEtBeneficeParVente(lot, tenant)) {
+                resultat.put((String) row[0], new BigDecimal[]{enDecimal(row[1]), enDecimal(row[2])});
+            }
+        }
+        return resultat;
+    }
+
+    private static BigDecimal enDecimal(Object valeur) {
+        if (valeur == null) return BigDecimal.ZERO;
+        return valeur instanceof BigDecimal b ? b : new BigDecimal(valeur.toString());
+    }
+
     /**
      * Calcule la répartition du CA par mode de paiement pour une période.
      *
@@ -918,73 +1191,49 @@ public class VenteService {
      * - ESPECES / WAVE / ORANGE_MONEY = ventes directes + remboursements de crédits du même mode
      * - CREDIT = somme des montants restants dus sur les crédits non soldés (créés dans la période)
      *
+     * Une seule requête (VenteRepository.sumRapportModePaiement). Le résultat est mémorisé
+     * par (tenant, période, version des données) : ouvert à chaque chargement du tableau de
+     * bord, il n'est recalculé qu'après une écriture (DonneesVersionService).
+     *
      * Retourne une map : mode → {total, nombre}
      */
     @Transactional(readOnly = true)
     public Map<String, Object> calculerRapportModePaiement(LocalDate debut, LocalDate fin) {
-        String tenantUuid = tenantService.getCurrentTenant().getTenantUuid();
+        TenantEntity tenant = tenantService.getCurrentTenant();
+        String cle = tenant.getId() + "|" + debut + "|" + fin + "|" + donneesVersionService.versionCourante(tenant);
+        return rapportModePaiementCache.get(cle, k -> construireRapportModePaiement(tenant, debut, fin));
+    }
 
-        Map<String, java.math.BigDecimal> totaux = new java.util.LinkedHashMap<>();
-        Map<String, Long> nombres = new java.util.LinkedHashMap<>();
+    private Map<String, Object> construireRapportModePaiement(TenantEntity tenant, LocalDate debut, LocalDate fin) {
+        Map<String, BigDecimal> totaux = new LinkedHashMap<>();
+        Map<String, Long> nombres = new LinkedHashMap<>();
         for (String mode : List.of("ESPECES", "WAVE", "ORANGE_MONEY", "VIREMENT", "CREDIT")) {
-            totaux.put(mode, java.math.BigDecimal.ZERO);
+            totaux.put(mode, BigDecimal.ZERO);
             nombres.put(mode, 0L);
         }
 
-        // 1. Ventes directes non-CREDIT groupées par mode
-        List<Object[]> directVentes = venteRepository.sumDirectVentesParModeEtPeriode(
-                debut.atStartOfDay(), fin.atTime(LocalTime.MAX), VenteEntity.ModePaiementVente.CREDIT, tenantUuid);
-        for (Object[] row : directVentes) {
-            String mode = ((VenteEntity.ModePaiementVente) row[0]).name();
-            Long count = row[1] instanceof Number ? ((Number) row[1]).longValue() : 0L;
-            java.math.BigDecimal total = row[2] instanceof java.math.BigDecimal
-                    ? (java.math.BigDecimal) row[2]
-                    : (row[2] instanceof Number ? new java.math.BigDecimal(row[2].toString()) : java.math.BigDecimal.ZERO);
-            totaux.put(mode, total);
-            nombres.put(mode, count);
-        }
-
-        // 2. Montant restant dû sur les crédits non soldés créés dans la période
-        List<Object[]> creditRows = creditClientRepository.sumCreditsRestantParPeriode(
-                debut.atStartOfDay(), fin.atTime(LocalTime.MAX), StatutCredit.SOLDE, tenantUuid);
-        if (creditRows != null && !creditRows.isEmpty()) {
-            Object[] creditRow = creditRows.get(0);
-            if (creditRow != null && creditRow.length >= 2 && creditRow[1] != null) {
-                java.math.BigDecimal creditTotal = creditRow[1] instanceof java.math.BigDecimal
-                        ? (java.math.BigDecimal) creditRow[1]
-                        : new java.math.BigDecimal(creditRow[1].toString());
-                Long creditCount = creditRow[0] instanceof Number ? ((Number) creditRow[0]).longValue() : 0L;
-                totaux.put("CREDIT", creditTotal);
-                nombres.put("CREDIT", creditCount);
-            }
-        }
-
-        // 3. Remboursements de crédits par mode, additionnés aux totaux correspondants
-        List<Object[]> paiementsCredit = paiementCreditRepository.sumParModeEtPeriode(
-                debut, fin, tenantUuid);
-        for (Object[] row : paiementsCredit) {
-            String mode = ((PaiementCreditEntity.ModePaiement) row[0]).name();
-            Long count = row[1] instanceof Number ? ((Number) row[1]).longValue() : 0L;
-            java.math.BigDecimal total = row[2] instanceof java.math.BigDecimal
-                    ? (java.math.BigDecimal) row[2]
-                    : (row[2] instanceof Number ? new java.math.BigDecimal(row[2].toString()) : null);
-            if (total != null) {
-                totaux.merge(mode, total, java.math.BigDecimal::add);
-            }
-            if (count > 0) {
-                nombres.merge(mode, count, Long::sum);
-            }
+        // Ventes directes, reste dû des crédits et remboursements : additionnés par mode
+        List<Object[]> rows = venteRepository.sumRapportModePaiement(
+                tenant, debut.atStartOfDay(), fin.plusDays(1).atStartOfDay(), debut, fin,
+                VenteEntity.ModePaiementVente.CREDIT, StatutCredit.SOLDE);
+        for (Object[] row : rows) {
+            String mode = (String) row[1];
+            if (mode == null) continue;
+            long count = row[2] instanceof Number n ? n.longValue() : 0L;
+            totaux.merge(mode, enDecimal(row[3]), BigDecimal::add);
+            nombres.merge(mode, count, Long::sum);
         }
 
         // Construire la réponse : {ESPECES: {total, nombre}, WAVE: {...}, ...}
-        Map<String, Object> result = new java.util.LinkedHashMap<>();
+        Map<String, Object> result = new LinkedHashMap<>();
         for (String mode : totaux.keySet()) {
-            Map<String, Object> entry = new java.util.LinkedHashMap<>();
+            Map<String, Object> entry = new LinkedHashMap<>();
             entry.put("total", totaux.get(mode));
             entry.put("nombre", nombres.get(mode));
-            result.put(mode, entry);
+            result.put(mode, Collections.unmodifiableMap(entry));
         }
-        return result;
+        // Partagée entre les requêtes tant que la version ne change pas : non modifiable
+        return Collections.unmodifiableMap(result);
     }
 
     /**
@@ -1035,6 +1284,23 @@ public class VenteService {
         }
     }
 
+    /**
+     * Contrôle de stock de creerVente, sur la ligne du ledger déjà chargée dans le contexte.
+     * Produit jamais acheté ni vendu → vente autorisée.
+     */
+    private void verifierStockAvantVente(VenteEntity vente, VenteContexte contexte) {
+        if (contexte.ligneStock() != null && contexte.stockDisponible() < vente.getQuantite()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Stock insuffisant pour '%s' ! Disponible : %.2f, Demandé : %.2f",
+                            vente.getNomProduit(),
+                            contexte.stockDisponible(),
+                            vente.getQuantite()
+                    )
+            );
+        }
+    }
+
     /**
      * Vérifier le stock avant une vente
      * Lance une exception si le stock est insuffisant
@@ -25,6 +25,12 @@ public class TenantContext {
 
     private static final ThreadLocal<String> currentTenant = new ThreadLocal<>();
 
+    /** Clé primaire (tenants.id) du tenant courant — paramètre :tenantPk du filtre Hibernate. */
+    private static final ThreadLocal<Long> currentTenantPk = new ThreadLocal<>();
+
+    /** Snapshot du tenant chargé pour la requête (voir TenantService.getCurrentTenantSnapshot). */
+    private static final ThreadLocal<TenantSnapshot> currentSnapshot = new ThreadLocal<>();
+
     /**
      * Définit le tenant actuel pour le thread courant
      *
@@ -36,6 +42,10 @@ public class TenantContext {
             throw new IllegalArgumentException("Tenant ID ne peut pas être null ou vide");
         }
         log.debug("Définition du tenant actuel: {}", tenantId);
+        if (!tenantId.equals(currentTenant.get())) {
+            currentTenantPk.remove();
+            currentSnapshot.remove();
+        }
         currentTenant.set(tenantId);
     }
 
@@ -65,6 +75,54 @@ public class TenantContext {
         return currentTenant.get() != null;
     }
 
+    /**
+     * Définit la clé primaire du tenant actuel (claim "tenant_pk" du JWT)
+     *
+     * @param tenantPk tenants.id du tenant défini par setCurrentTenant
+     */
+    public static void setCurrentTenantPk(Long tenantPk) {
+        if (tenantPk == null) {
+            currentTenantPk.remove();
+        } else {
+            currentTenantPk.set(tenantPk);
+        }
+    }
+
+    /**
+     * Récupère la clé primaire du tenant actuel
+     *
+     * @return tenants.id, ou l'id du snapshot chargé, ou null si inconnu
+     */
+    public static Long getCurrentTenantPk() {
+        Long tenantPk = currentTenantPk.get();
+        if (tenantPk == null && currentSnapshot.get() != null) {
+            return currentSnapshot.get().id();
+        }
+        return tenantPk;
+    }
+
+    /**
+     * Récupère le snapshot du tenant courant, s'il a déjà été chargé pendant cette requête
+     *
+     * @return TenantSnapshot ou null
+     */
+    public static TenantSnapshot getCurrentSnapshot() {
+        return currentSnapshot.get();
+    }
+
+    /**
+     * Attache le snapshot du tenant courant à la requête
+     *
+     * @param snapshot null pour forcer un rechargement au prochain accès
+     */
+    public static void setCurrentSnapshot(TenantSnapshot snapshot) {
+        if (snapshot == null) {
+            currentSnapshot.remove();
+        } else {
+            currentSnapshot.set(snapshot);
+        }
+    }
+
     /**
      * Nettoie le contexte tenant
      *
@@ -77,6 +135,8 @@ public class TenantContext {
             log.debug("Nettoyage du contexte tenant: {}", tenantId);
         }
         currentTenant.remove();
+        currentTenantPk.remove();
+        currentSnapshot.remove();
     }
 
     /**
@@ -84,8 +144,9 @@ public class TenantContext {
      */
     public static String getDebugInfo() {
         String tenantId = currentTenant.get();
-        return String.format("TenantContext[thread=%s, tenant=%s]",
+        return String.format("TenantContext[thread=%s, tenant=%s, pk=%s]",
             Thread.currentThread().getName(),
-            tenantId != null ? tenantId : "NON_DEFINI");
+            tenantId != null ? tenantId : "NON_DEFINI",
+            getCurrentTenantPk());
     }
 }
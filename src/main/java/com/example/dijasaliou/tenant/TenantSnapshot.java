@@ -0,0 +1,104 @@
+package com.example.dijasaliou.tenant;
+
+import com.example.dijasaliou.entity.TenantEntity;
+
+import java.time.LocalDateTime;
+
+/**
+ * TenantSnapshot - Copie immuable des champs scalaires d'un tenant
+ *
+ * PRINCIPE :
+ * - Chargée UNE fois par requête (TenantService.getCurrentTenantSnapshot),
+ *   depuis le cache "tenants" (TenantCacheService), puis attachée au TenantContext
+ * - Aucune collection (utilisateurs, notes) : rien de lazy, partageable entre threads
+ *
+ * RAFRAÎCHISSEMENT :
+ * - Tout changement de plan / paramétrage du tenant doit appeler
+ *   TenantService.rafraichirTenant(uuid) (cache + snapshot de la requête)
+ */
+public record TenantSnapshot(
+        Long id,
+        String tenantUuid,
+        String nomEntreprise,
+        String numeroTelephone,
+        String adresse,
+        String ville,
+        String pays,
+        String nineaSiret,
+        String logoUrl,
+        String conditionsGaranties,
+        String mentionsLegales,
+        String devisePreferee,
+        String timezone,
+        Boolean actif,
+        Boolean deleted,
+        LocalDateTime dateSuppression,
+        LocalDateTime dateCreation,
+        LocalDateTime dateDebutEssai,
+        Boolean essaiUtilise,
+        LocalDateTime dateExpiration,
+        TenantEntity.Plan plan,
+        String sourceAcquisition
+) {
+
+    public static TenantSnapshot from(TenantEntity tenant) {
+        return new TenantSnapshot(
+                tenant.getId(),
+                tenant.getTenantUuid(),
+                tenant.getNomEntreprise(),
+                tenant.getNumeroTelephone(),
+                tenant.getAdresse(),
+                tenant.getVille(),
+                tenant.getPays(),
+                tenant.getNineaSiret(),
+                tenant.getLogoUrl(),
+                tenant.getConditionsGaranties(),
+                tenant.getMentionsLegales(),
+                tenant.getDevisePreferee(),
+                tenant.getTimezone(),
+                tenant.getActif(),
+                tenant.getDeleted(),
+                tenant.getDateSuppression(),
+                tenant.getDateCreation(),
+                tenant.getDateDebutEssai(),
+                tenant.getEssaiUtilise(),
+                tenant.getDateExpiration(),
+                tenant.getPlan(),
+                tenant.getSourceAcquisition()
+        );
+    }
+
+    /**
+     * Nouvelle TenantEntity détachée, à chaque appel (l'appelant peut la modifier sans
+     * toucher au snapshot). Utilisable comme référence de clé étrangère (tenant_id).
+     *
+     * ATTENTION : collections vides — ne jamais faire tenantRepository.save() sur cette
+     * copie (orphanRemoval sur utilisateurs). Recharger avec findById pour modifier le tenant.
+     */
+    public TenantEntity versEntite() {
+        TenantEntity tenant = new TenantEntity();
+        tenant.setId(id);
+        tenant.setTenantUuid(tenantUuid);
+        tenant.setNomEntreprise(nomEntreprise);
+        tenant.setNumeroTelephone(numeroTelephone);
+        tenant.setAdresse(adresse);
+        tenant.setVille(ville);
+        tenant.setPays(pays);
+        tenant.setNineaSiret(nineaSiret);
+        tenant.setLogoUrl(logoUrl);
+        tenant.setConditionsGaranties(conditionsGaranties);
+        tenant.setMentionsLegales(mentionsLegales);
+        tenant.setDevisePreferee(devisePreferee);
+        tenant.setTimezone(timezone);
+        tenant.setActif(actif);
+        tenant.setDeleted(deleted);
+        tenant.setDateSuppression(dateSuppression);
+        tenant.setDateCreation(dateCreation);
+        tenant.setDateDebutEssai(dateDebutEssai);
+        tenant.setEssaiUtilise(essaiUtilise);
+        tenant.setDateExpiration(dateExpiration);
+        tenant.setPlan(plan);
+        tenant.setSourceAcquisition(sourceAcquisition);
+        return tenant;
+    }
+}
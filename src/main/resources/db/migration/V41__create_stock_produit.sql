@@ -0,0 +1,56 @@
+-- ============================================================
+-- MIGRATION V41 : Ledger de stock par produit (stock_produit)
+-- ============================================================
+-- GET /stock rechargeait TOUS les achats et TOUTES les ventes du
+-- tenant à chaque miss du cache "stocks" (évincé à chaque vente),
+-- puis regroupait en Java. Sur les boutiques à plusieurs dizaines de
+-- milliers de lignes, le premier affichage après une vente prenait
+-- plusieurs secondes.
+--
+-- Cette table garde une ligne de synthèse par produit (nom normalisé
+-- = LOWER(TRIM(nom_produit))), mise à jour dans la MÊME transaction que
+-- l'achat / la vente / la modification / la suppression / l'import.
+--
+-- Migration ADDITIVE : la table est vide au départ. Elle est remplie
+-- par POST /api/admin/stock-ledger/rebuild (ou paresseusement au
+-- premier accès au stock d'un tenant dont le ledger est vide).
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS stock_produit (
+    id                          BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id                   BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    nom_normalise               VARCHAR(100) NOT NULL
+        COMMENT 'LOWER(TRIM(nom_produit)) — clé de regroupement, identique à celle de StockService',
+
+    nb_achats                   BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Nombre de lots d''achat — 0 = produit vendu sans achat (masqué de la liste stock)',
+    quantite_achetee            DOUBLE NOT NULL DEFAULT 0,
+    valeur_achats               DECIMAL(19,4) NOT NULL DEFAULT 0
+        COMMENT 'SUM(prix_unitaire × quantite) des achats — base du prix moyen pondéré',
+    quantite_vendue             DOUBLE NOT NULL DEFAULT 0,
+    valeur_ventes               DECIMAL(19,4) NOT NULL DEFAULT 0
+        COMMENT 'SUM(prix_unitaire × quantite) des ventes',
+
+    -- Attributs "du dernier achat" + la date qui a servi à les choisir
+    date_dernier_achat          DATETIME NULL,
+    unite                       VARCHAR(20) NULL,
+    photo_url                   VARCHAR(500) NULL,
+    date_photo                  DATETIME NULL,
+    code_barre                  VARCHAR(50) NULL,
+    date_code_barre             DATETIME NULL,
+    categorie                   VARCHAR(100) NULL,
+    date_categorie              DATETIME NULL,
+    prix_vente_suggere          DECIMAL(10,2) NULL,
+    date_prix_vente_suggere     DATETIME NULL,
+
+    date_maj                    DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_stock_produit_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_stock_produit_tenant_nom
+        UNIQUE (tenant_id, nom_normalise)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Synthèse de stock par produit, maintenue en incrémental à chaque achat/vente.';
@@ -0,0 +1,39 @@
+-- ============================================================
+-- MIGRATION V42 : Clôtures journalières de caisse (caisse_solde_journalier)
+-- ============================================================
+-- GET /caisse recalculait chaque solde avec 7 agrégats GROUP BY
+-- (ventes, achats, dépenses, paiements crédit, transferts entrants /
+-- sortants, mouvements manuels) sur TOUTE la période depuis la date
+-- d'activation : un coût qui grandit avec l'ancienneté de la caisse.
+--
+-- Cette table garde le solde de clôture de chaque compte, écrit chaque
+-- nuit (heure du tenant) pour la veille. Le solde devient :
+--   dernière clôture + flux depuis le lendemain de cette clôture.
+--
+-- Cache pur : une écriture antidatée supprime les clôtures à partir de
+-- son jour ; l'activation et la suppression de la caisse les vident.
+--
+-- Migration ADDITIVE : la table est vide au départ, le calcul retombe
+-- sur le solde initial tant qu'aucune clôture n'existe.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS caisse_solde_journalier (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id       BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    compte          VARCHAR(20) NOT NULL
+        COMMENT 'ESPECES / WAVE / ORANGE_MONEY / VIREMENT',
+    jour            DATE NOT NULL
+        COMMENT 'Journée clôturée (fuseau du tenant) — le solde inclut tous les flux jusqu''à sa fin',
+    solde_cloture   DECIMAL(15,2) NOT NULL,
+    date_calcul     DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_caisse_solde_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_caisse_solde_tenant_compte_jour
+        UNIQUE (tenant_id, compte, jour),
+    INDEX idx_caisse_solde_tenant_jour (tenant_id, jour)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Solde de clôture journalier par compte de caisse (cache du calcul de solde).';
@@ -0,0 +1,35 @@
+-- ============================================================
+-- MIGRATION V43 : Versions des comptes de caisse (caisse_compte_version)
+-- ============================================================
+-- Les transferts et les sorties manuelles prenaient un verrou
+-- SELECT ... FOR UPDATE sur la ligne caisse_config du tenant : toutes
+-- les opérations de caisse d'une boutique passaient une par une, même
+-- sur des comptes différents (plusieurs caissiers en fin de journée).
+--
+-- Contrôle OPTIMISTE par compte à la place : chaque sortie lit la
+-- version du compte débité, vérifie le solde, insère l'opération puis
+--   UPDATE caisse_compte_version SET version = version + 1
+--   WHERE tenant_id = ? AND compte = ? AND version = <lue>
+-- 0 ligne → sortie concurrente sur le même compte : rejouée.
+--
+-- Migration ADDITIVE : les lignes sont créées à la première sortie
+-- de chaque compte.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS caisse_compte_version (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id   BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    compte      VARCHAR(20) NOT NULL
+        COMMENT 'ESPECES / WAVE / ORANGE_MONEY / VIREMENT',
+    version     BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Incrémentée à chaque sortie validée sur le compte',
+
+    CONSTRAINT fk_caisse_version_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_caisse_version_tenant_compte
+        UNIQUE (tenant_id, compte)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Version par compte de caisse (contrôle optimiste des sorties).';
@@ -0,0 +1,79 @@
+-- ============================================================
+-- MIGRATION V44 : Agrégats journaliers de reporting (rollup_jour)
+-- ============================================================
+-- Les rapports (statistiques de bénéfice, résumés hebdo / mensuels,
+-- comparaison du rapport PDF, nombre de ventes du super admin)
+-- ré-agrégeaient à chaque appel toutes les lignes ventes, achats,
+-- dépenses, paiements_credit et vente_lot_consommation de la période :
+-- un rapport annuel parcourait chaque transaction de l'année.
+--
+-- rollup_jour garde, par (tenant, jour, mode de paiement, type de
+-- sortie), les nombres et montants de ventes, le coût et le bénéfice
+-- FIFO, les paiements crédit, achats et dépenses. Un rapport annuel lit
+-- au plus quelques centaines de lignes.
+--
+-- Seules les journées TERMINÉES (fuseau du tenant) sont agrégées, par
+-- RollupJourScheduler ; rollup_jour_etat garde le dernier jour agrégé.
+-- Les lectures complètent avec les tables brutes après ce jour.
+--
+-- Cache pur : une écriture antidatée supprime les agrégats à partir de
+-- son jour et recule le dernier jour agrégé ; le job les recalcule au
+-- tick suivant. Le backfill FIFO vide les agrégats du tenant.
+--
+-- Mode ou type de sortie absent : 'AUCUN' (la clé reste NOT NULL).
+--
+-- Migration ADDITIVE : tables vides au départ. Le job crée l'état de
+-- chaque tenant puis, au tick suivant, agrège son historique depuis son
+-- plus ancien mouvement, par tranches d'un mois.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS rollup_jour (
+    id                          BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id                   BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    jour                        DATE NOT NULL
+        COMMENT 'Journée agrégée (date de la vente / de l''achat / de la dépense / du paiement)',
+    mode_paiement               VARCHAR(20) NOT NULL
+        COMMENT 'ESPECES / WAVE / ORANGE_MONEY / VIREMENT / CREDIT / AUCUN',
+    type_sortie                 VARCHAR(20) NOT NULL
+        COMMENT 'Type de sortie hors vente (PERTE_CASSE, VOL, ...) ou AUCUN pour une vente',
+
+    nb_ventes                   BIGINT NOT NULL DEFAULT 0,
+    montant_ventes              DECIMAL(19,4) NOT NULL DEFAULT 0,
+    cout_fifo                   DECIMAL(19,4) NOT NULL DEFAULT 0,
+    benefice_fifo               DECIMAL(19,4) NOT NULL DEFAULT 0,
+    nb_ventes_fifo              BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Ventes ayant au moins une ligne de consommation FIFO',
+    nb_paiements_credit         BIGINT NOT NULL DEFAULT 0,
+    montant_paiements_credit    DECIMAL(19,4) NOT NULL DEFAULT 0,
+    nb_achats                   BIGINT NOT NULL DEFAULT 0,
+    montant_achats              DECIMAL(19,4) NOT NULL DEFAULT 0,
+    nb_depenses                 BIGINT NOT NULL DEFAULT 0,
+    montant_depenses            DECIMAL(19,4) NOT NULL DEFAULT 0,
+
+    CONSTRAINT fk_rollup_jour_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_rollup_jour_tenant_jour_mode_type
+        UNIQUE (tenant_id, jour, mode_paiement, type_sortie)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Agrégats journaliers de reporting par mode de paiement et type de sortie.';
+
+CREATE TABLE IF NOT EXISTS rollup_jour_etat (
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id           BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    calcule_jusqu_au    DATE NULL
+        COMMENT 'Dernier jour agrégé (rollup_jour exact jusqu''à ce jour inclus) ; NULL = point de départ à établir',
+    version             BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Incrémentée à chaque invalidation et à chaque avancement du job',
+
+    CONSTRAINT fk_rollup_etat_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_rollup_etat_tenant
+        UNIQUE (tenant_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Dernier jour agrégé dans rollup_jour, par tenant.';
@@ -0,0 +1,32 @@
+-- ============================================================
+-- MIGRATION V45 : Version des données d'un tenant (donnees_version)
+-- ============================================================
+-- Les rapports PDF sont générés en tâche de fond et gardés sur disque,
+-- identifiés par (tenant, période, version des données). Il faut donc
+-- savoir, sans relire les ventes, si les données ont changé depuis la
+-- génération d'un rapport.
+--
+-- Une ligne par tenant, incrémentée APRÈS le commit de chaque écriture
+-- de vente, achat, dépense, crédit ou opération de caisse (une fois par
+-- transaction) : aucune transaction métier ne garde le verrou de cette
+-- ligne, les écritures d'une boutique ne se sérialisent pas dessus.
+--
+-- Migration ADDITIVE : la ligne est créée à la première écriture ;
+-- absente = version 0.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS donnees_version (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+
+    tenant_id   BIGINT NOT NULL
+        COMMENT 'FK vers le tenant (multi-tenant)',
+    version     BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Incrémentée après chaque transaction modifiant les données du tenant',
+
+    CONSTRAINT fk_donnees_version_tenant
+        FOREIGN KEY (tenant_id) REFERENCES tenants(id)
+        ON DELETE RESTRICT ON UPDATE CASCADE,
+    CONSTRAINT uk_donnees_version_tenant
+        UNIQUE (tenant_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Version des données par tenant (clé des rapports en cache).';
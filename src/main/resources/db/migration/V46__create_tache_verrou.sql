@@ -0,0 +1,27 @@
+-- ============================================================
+-- MIGRATION V46 : Verrous des tâches planifiées (tache_verrou)
+-- ============================================================
+-- Avec plusieurs instances de l'application, chaque @Scheduled se
+-- déclenche sur chaque instance : résumés push en double, double
+-- charge en base. Une tâche (ou une tranche de tenants d'une tâche)
+-- n'est exécutée que par l'instance qui en a pris le verrou.
+--
+-- Une ligne par tâche ou par tranche ('resume-quotidien#2/4') :
+-- prise par un UPDATE conditionnel (verrou expiré), créée au premier
+-- passage. Le verrou expire de lui-même si l'instance s'arrête en
+-- cours de tâche.
+--
+-- Migration ADDITIVE : la table est remplie au premier tick.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS tache_verrou (
+    nom                 VARCHAR(100) NOT NULL PRIMARY KEY
+        COMMENT 'Nom de la tâche, suffixé de la tranche pour les tâches découpées',
+    proprietaire        VARCHAR(150) NOT NULL
+        COMMENT 'Instance qui détient ou a détenu le verrou',
+    verrouille_le       DATETIME(6) NOT NULL
+        COMMENT 'Début de la dernière exécution',
+    verrouille_jusqu_a  DATETIME(6) NOT NULL
+        COMMENT 'Le verrou est libre à partir de cette date'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='Verrous des tâches planifiées (une exécution par tick sur plusieurs instances).';
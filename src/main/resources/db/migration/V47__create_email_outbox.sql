@@ -0,0 +1,43 @@
+-- ============================================================
+-- MIGRATION V47 : File d'envoi des emails (email_outbox)
+-- ============================================================
+-- Les emails étaient envoyés à Brevo depuis des méthodes @Async :
+-- un ralentissement de Brevo bloquait les threads asynchrones et un
+-- email en échec était perdu.
+--
+-- Chaque email est désormais inséré dans cette table, dans la
+-- transaction de l'opération métier qui le déclenche (inscription,
+-- facture...). EmailOutboxService réserve les lignes dues par lots
+-- (UPDATE conditionnel, sûr avec plusieurs instances), les envoie
+-- avec un débit limité et reprogramme les échecs avec un délai
+-- croissant.
+--
+-- Statuts : EN_ATTENTE → EN_COURS → ENVOYE | ECHEC.
+-- Une ligne EN_COURS dont la réservation a expiré (instance arrêtée
+-- pendant l'envoi) est de nouveau réservable.
+--
+-- Migration ADDITIVE : table vide au départ.
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id                BIGINT AUTO_INCREMENT PRIMARY KEY,
+    destinataire      VARCHAR(255) NOT NULL,
+    sujet             VARCHAR(500) NOT NULL,
+    contenu_html      MEDIUMTEXT   NOT NULL,
+    reply_to          VARCHAR(255) NULL
+        COMMENT 'Reply-To spécifique (formulaire de contact), sinon celui par défaut',
+    statut            VARCHAR(20)  NOT NULL,
+    tentatives        INT          NOT NULL DEFAULT 0,
+    prochain_essai    DATETIME(6)  NOT NULL
+        COMMENT 'Date à partir de laquelle la ligne peut être envoyée',
+    reserve_par       VARCHAR(150) NULL
+        COMMENT 'Instance qui a réservé la ligne pour l''envoyer',
+    reserve_jusqu_a   DATETIME(6)  NULL
+        COMMENT 'Fin de la réservation : au-delà, une autre instance peut reprendre la ligne',
+    derniere_erreur   VARCHAR(500) NULL,
+    date_creation     DATETIME(6)  NOT NULL,
+    date_envoi        DATETIME(6)  NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+COMMENT='File d''envoi des emails transactionnels (Brevo).';
+
+CREATE INDEX idx_email_outbox_statut_essai ON email_outbox(statut, prochain_essai);
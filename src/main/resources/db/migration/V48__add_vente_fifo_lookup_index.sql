@@ -0,0 +1,9 @@
+-- ============================================================
+-- MIGRATION V48 : Index FIFO sur les ventes (tenant, produit, date)
+-- ============================================================
+-- Le backfill FIFO rejoue les ventes produit par produit et le rejeu
+-- incrémental lit les ventes d'un produit depuis une date : les deux
+-- filtrent sur (tenant_id, nom_produit) et trient par date_vente.
+-- Pendant de idx_achat_fifo_lookup (V21) côté achats.
+CREATE INDEX idx_vente_fifo_lookup
+ON ventes(tenant_id, nom_produit, date_vente);
@@ -0,0 +1,21 @@
+-- ============================================================
+-- MIGRATION V49 : Heure d'envoi des résumés (user_notification_preferences)
+-- ============================================================
+-- Copie de l'heure de la config JSON des résumés (quotidien, hebdo, mensuel),
+-- défaut du type si absente : le cron horaire ne lit plus que les préférences
+-- qui peuvent partir à l'heure locale de leur tenant. Recalculée ensuite par
+-- UserNotificationPreferenceService à chaque enregistrement.
+ALTER TABLE user_notification_preferences ADD COLUMN heure_envoi INT NULL;
+
+-- Défauts : quotidien 20h, hebdo et mensuel 8h
+UPDATE user_notification_preferences
+SET heure_envoi = CASE type_notification WHEN 'RESUME_QUOTIDIEN' THEN 20 ELSE 8 END
+WHERE type_notification IN ('RESUME_QUOTIDIEN', 'RESUME_HEBDO', 'RESUME_MENSUEL');
+
+-- Heure configurée (configs validées à l'enregistrement : 0 à 23)
+UPDATE user_notification_preferences
+SET heure_envoi = CAST(JSON_EXTRACT(config, '$.heure') AS UNSIGNED)
+WHERE type_notification IN ('RESUME_QUOTIDIEN', 'RESUME_HEBDO', 'RESUME_MENSUEL')
+  AND config IS NOT NULL
+  AND JSON_VALID(config)
+  AND JSON_EXTRACT(config, '$.heure') BETWEEN 0 AND 23;
@@ -0,0 +1,16 @@
+-- ============================================================
+-- MIGRATION V50 : Version des clôtures de caisse (caisse_config)
+-- ============================================================
+-- Une clôture journalière calcule les soldes puis les insère : une
+-- écriture antidatée commitée entre les deux invalidait (DELETE) avant
+-- l'insertion, et la clôture périmée survivait.
+--
+-- Même contrôle que rollup_jour_etat.version : chaque invalidation
+-- incrémente la version ; la clôture lit la version avant son calcul et
+-- n'est enregistrée que par
+--   UPDATE caisse_config SET version_clotures = version_clotures + 1
+--   WHERE tenant_id = ? AND version_clotures = <lue>
+-- 0 ligne → clôture abandonnée, refaite au tick suivant du job.
+ALTER TABLE caisse_config
+    ADD COLUMN version_clotures BIGINT NOT NULL DEFAULT 0
+        COMMENT 'Incrémentée à chaque invalidation et à chaque clôture enregistrée';
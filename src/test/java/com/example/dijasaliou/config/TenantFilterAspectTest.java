@@ -0,0 +1,180 @@
+package com.example.dijasaliou.config;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Filtre Hibernate "tenantFilter" : prédicat tenant_id = :tenantPk, activé une fois par session.
+ *
+ * Le test EXPLAIN (H2) porte sur le SQL réellement généré par Hibernate avec le filtre,
+ * capturé par {@link SqlCapture} : accès direct par un index sur tenant_id
+ * (idx_vente_tenant ; idx_vente_tenant_date côté MySQL, V11), sans sous-requête sur tenants.
+ */
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.dijasaliou.config.TenantFilterAspectTest$SqlCapture")
+@DisplayName("Tests — TenantFilterAspect : filtre tenant_id = :tenantPk")
+class TenantFilterAspectTest {
+
+    /** Commentaire de plan H2 d'un accès par index dont la condition d'entrée est tenant_id. */
+    private static final Pattern ACCES_INDEX_TENANT =
+            Pattern.compile("/\\* PUBLIC\\.\\w+: TENANT_ID = ", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    private TenantEntity tenantA;
+    private TenantEntity tenantB;
+
+    @BeforeEach
+    void setUp() {
+        tenantA = em.persistAndFlush(TenantEntity.builder()
+                .tenantUuid("tenant-filtre-A")
+                .nomEntreprise("Boutique Alpha")
+                .numeroTelephone("+221771111111")
+                .build());
+        tenantB = em.persistAndFlush(TenantEntity.builder()
+                .tenantUuid("tenant-filtre-B")
+                .nomEntreprise("Boutique Beta")
+                .numeroTelephone("+221772222222")
+                .build());
+        UserEntity user = em.persistAndFlush(UserEntity.builder()
+                .nom("Alpha").prenom("User")
+                .email("user@filtre.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Alpha")
+                .numeroTelephone("+221771111111")
+                .build());
+
+        for (int i = 0; i < 20; i++) {
+            em.persist(vente("Produit A" + i, user, tenantA));
+            em.persist(vente("Produit B" + i, user, tenantB));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManager.unwrap(Session.class).disableFilter(TenantFilterAspect.FILTER_NAME);
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("activerFiltre() — activé une seule fois par session, avec la clé primaire du contexte")
+    void activerFiltre_uneSeuleFoisParSession() {
+        TenantContext.setCurrentTenant("tenant-filtre-A");
+        TenantContext.setCurrentTenantPk(tenantA.getId());
+        Session session = entityManager.unwrap(Session.class);
+
+        assertThat(TenantFilterAspect.activerFiltre(session)).isTrue();
+        assertThat(TenantFilterAspect.activerFiltre(session)).isFalse();
+        assertThat(TenantFilterAspect.activerFiltre(session)).isFalse();
+
+        List<VenteEntity> ventes = venteRepository.findAll();
+        assertThat(ventes).hasSize(20);
+        assertThat(ventes).allMatch(v -> v.getNomProduit().startsWith("Produit A"));
+    }
+
+    @Test
+    @DisplayName("activerFiltre() — tenant sans clé primaire connue : aucune ligne visible")
+    void activerFiltre_sansTenantPk_aucuneDonnee() {
+        TenantContext.setCurrentTenant("tenant-filtre-A");
+
+        TenantFilterAspect.activerFiltre(entityManager.unwrap(Session.class));
+
+        assertThat(venteRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("EXPLAIN du SQL généré — tenant_id = :tenantPk passe par un index tenant, sans sous-requête")
+    void explain_sqlGenereUtiliseIndexTenant() {
+        TenantContext.setCurrentTenant("tenant-filtre-A");
+        TenantContext.setCurrentTenantPk(tenantA.getId());
+        TenantFilterAspect.activerFiltre(entityManager.unwrap(Session.class));
+
+        SqlCapture.vider();
+        assertThat(venteRepository.findAll()).hasSize(20);
+        String sql = SqlCapture.requetes().stream()
+                .map(r -> r.replaceAll("\\s+", " ").trim())
+                .filter(r -> r.toLowerCase().startsWith("select") && r.toLowerCase().contains(" from ventes "))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Aucun SELECT sur ventes capturé : " + SqlCapture.requetes()));
+
+        // Seul paramètre de la requête : la clé primaire du tenant posée par le filtre
+        assertThat(sql).containsPattern("(?i)tenant_id\\s*=\\s*\\?").doesNotContainIgnoringCase("tenants");
+        assertThat(sql.chars().filter(c -> c == '?').count()).isEqualTo(1);
+
+        String plan = expliquer(sql.replace("?", String.valueOf(tenantA.getId())));
+
+        assertThat(plan)
+                .containsPattern(ACCES_INDEX_TENANT)
+                .doesNotContainIgnoringCase("tableScan");
+    }
+
+    // ==================== Helpers ====================
+
+    /** Requêtes SQL préparées par Hibernate (inspecteur déclaré dans les propriétés du test). */
+    public static class SqlCapture implements StatementInspector {
+
+        private static final List<String> REQUETES = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            REQUETES.add(sql);
+            return sql;
+        }
+
+        static void vider() {
+            REQUETES.clear();
+        }
+
+        static List<String> requetes() {
+            return List.copyOf(REQUETES);
+        }
+    }
+
+    private String expliquer(String sql) {
+        Object plan = entityManager.createNativeQuery("EXPLAIN " + sql).getSingleResult();
+        return String.valueOf(plan).replaceAll("\\s+", " ");
+    }
+
+    private static VenteEntity vente(String nomProduit, UserEntity user, TenantEntity tenant) {
+        return VenteEntity.builder()
+                .nomProduit(nomProduit)
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000"))
+                .prixTotal(new BigDecimal("1000"))
+                .dateVente(LocalDateTime.of(2024, 6, 1, 10, 0))
+                .utilisateur(user)
+                .tenant(tenant)
+                .build();
+    }
+}
@@ -5,6 +5,8 @@ import com.example.dijasaliou.dto.PagedResponse;
 import com.example.dijasaliou.entity.AchatEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.service.AchatService;
+import com.example.dijasaliou.service.ExportService;
+import com.example.dijasaliou.service.TenantService;
 import com.example.dijasaliou.service.UserService;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -64,6 +66,12 @@ class AchatControllerTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private TenantService tenantService;
+
+    @MockitoBean
+    private ExportService exportService;
+
     // Mocker les beans de sécurité pour éviter les problèmes de dépendances
     @MockitoBean(name = "jwtAuthenticationFilter")
     private com.example.dijasaliou.jwt.JwtAuthenticationFilter jwtAuthenticationFilter;
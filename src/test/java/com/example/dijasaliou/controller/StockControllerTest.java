@@ -1,6 +1,7 @@
 package com.example.dijasaliou.controller;
 
 import com.example.dijasaliou.dto.StockDto;
+import com.example.dijasaliou.service.ExportService;
 import com.example.dijasaliou.service.StockService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,6 +52,9 @@ class StockControllerTest {
     @MockitoBean
     private StockService stockService;
 
+    @MockitoBean
+    private ExportService exportService;
+
     // Mocker les beans de sécurité pour éviter les problèmes de dépendances
     @MockitoBean(name = "jwtAuthenticationFilter")
     private com.example.dijasaliou.jwt.JwtAuthenticationFilter jwtAuthenticationFilter;
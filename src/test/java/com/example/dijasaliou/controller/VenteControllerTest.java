@@ -4,6 +4,7 @@ import com.example.dijasaliou.dto.PagedResponse;
 import com.example.dijasaliou.dto.VenteDto;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.service.ExportService;
 import com.example.dijasaliou.service.UserService;
 import com.example.dijasaliou.service.VenteService;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -63,6 +64,9 @@ class VenteControllerTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private ExportService exportService;
+
     // Mocker les beans de sécurité pour éviter les problèmes de dépendances
     @MockitoBean(name = "jwtAuthenticationFilter")
     private com.example.dijasaliou.jwt.JwtAuthenticationFilter jwtAuthenticationFilter;
@@ -0,0 +1,253 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.BeneficeStatistiquesDto;
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.ClientEntity;
+import com.example.dijasaliou.entity.CreditClientEntity;
+import com.example.dijasaliou.entity.PaiementCreditEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.entity.VenteLotConsommationEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.ClientRepository;
+import com.example.dijasaliou.repository.CreditClientRepository;
+import com.example.dijasaliou.repository.PaiementCreditRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteLotConsommationRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.service.VenteService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — VenteService.calculerStatistiquesBenefice : nombre de requêtes SQL.
+ *
+ * Chaque vente crédit vaut 1 000 (coût FIFO 600, bénéfice 400). Les crédits payés reçoivent
+ * un paiement de 500 dans la période ; les crédits passés en perte ont 500 restants.
+ * Le coût et le bénéfice FIFO des ventes sont lus par requêtes groupées : le nombre de
+ * requêtes ne doit pas dépendre du nombre de paiements ni de crédits en perte.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-benefice-sql;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.dijasaliou.integration.BeneficeRequetesSqlIntegrationTest$CompteurRequetes"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Bénéfice : requêtes SQL par calcul")
+class BeneficeRequetesSqlIntegrationTest {
+
+    /** Agrégats journaliers, paiements crédit, crédits en perte, coûts FIFO groupés. */
+    private static final int REQUETES_MAX = 20;
+
+    @Autowired
+    private VenteService venteService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private CreditClientRepository creditClientRepository;
+
+    @Autowired
+    private PaiementCreditRepository paiementCreditRepository;
+
+    @Autowired
+    private VenteLotConsommationRepository consommationRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private ClientEntity client;
+    private AchatEntity lot;
+    private LocalDate aujourdhui;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-benefice-sql")
+                .nomEntreprise("Boutique Bénéfice")
+                .numeroTelephone("+221773333333")
+                .plan(TenantEntity.Plan.PRO)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Benefice").prenom("Admin")
+                .email("admin@benefice-sql.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Bénéfice")
+                .numeroTelephone("+221773333333")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        // Snapshot chargé avant la mesure, comme dans une requête HTTP (filtre JWT)
+        tenantService.getCurrentTenantSnapshot();
+
+        aujourdhui = LocalDate.now();
+        client = clientRepository.save(ClientEntity.builder()
+                .nom("Mr Diop")
+                .tenant(tenant)
+                .build());
+        lot = achatRepository.save(AchatEntity.builder()
+                .nomProduit("Riz")
+                .quantite(1000.0)
+                .prixUnitaire(new BigDecimal("600"))
+                .prixTotal(new BigDecimal("600000"))
+                .dateAchat(aujourdhui.minusDays(20).atStartOfDay())
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("calculerStatistiquesBenefice — requêtes constantes quel que soit le nombre de crédits")
+    void statistiquesBenefice_requetesIndependantesDuNombreDeCredits() {
+        ajouterCredits(3, 2);
+        int requetesPeuDeCredits = requetesPourStatistiques();
+
+        BeneficeStatistiquesDto stats = venteService.calculerStatistiquesBenefice(aujourdhui.minusDays(10), aujourdhui);
+        assertThat(stats.getChiffreAffaires()).isEqualByComparingTo("1500");
+        assertThat(stats.getTotalCoutAchat()).isEqualByComparingTo("900");
+        assertThat(stats.getBeneficeNet()).isEqualByComparingTo("600");
+        assertThat(stats.getPertesParType().get("CREDIT_IMPAYE")).isEqualByComparingTo("600");
+
+        ajouterCredits(40, 20);
+        int requetesBeaucoupDeCredits = requetesPourStatistiques();
+
+        assertThat(requetesBeaucoupDeCredits).isEqualTo(requetesPeuDeCredits);
+        assertThat(requetesBeaucoupDeCredits).isLessThanOrEqualTo(REQUETES_MAX);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private int requetesPourStatistiques() {
+        entityManager.flush();
+        entityManager.clear();
+        CompteurRequetes.reinitialiser();
+
+        venteService.calculerStatistiquesBenefice(aujourdhui.minusDays(10), aujourdhui);
+
+        int requetes = CompteurRequetes.requetes();
+        entityManager.clear();
+        return requetes;
+    }
+
+    /** nbPayes crédits avec un paiement de 500 hier, nbPerdus crédits passés en perte hier avec 500 restants. */
+    private void ajouterCredits(int nbPayes, int nbPerdus) {
+        for (int i = 0; i < nbPayes + nbPerdus; i++) {
+            boolean perdu = i >= nbPayes;
+            VenteEntity vente = venteRepository.save(VenteEntity.builder()
+                    .nomProduit("Riz")
+                    .quantite(1.0)
+                    .prixUnitaire(new BigDecimal("1000"))
+                    .prixTotal(new BigDecimal("1000"))
+                    .modePaiement(VenteEntity.ModePaiementVente.CREDIT)
+                    .estSoldee(false)
+                    .dateVente(aujourdhui.minusDays(5).atTime(10, 0))
+                    .utilisateur(admin)
+                    .tenant(tenant)
+                    .build());
+            consommationRepository.save(VenteLotConsommationEntity.builder()
+                    .vente(vente)
+                    .achat(lot)
+                    .quantiteConsommee(1.0)
+                    .prixAchatUnitaireSnapshot(new BigDecimal("600"))
+                    .prixVenteUnitaireSnapshot(new BigDecimal("1000"))
+                    .beneficeUnitaire(new BigDecimal("400"))
+                    .beneficeTotalLigne(new BigDecimal("400"))
+                    .dateVenteSnapshot(vente.getDateVente())
+                    .tenant(tenant)
+                    .build());
+            CreditClientEntity credit = creditClientRepository.save(CreditClientEntity.builder()
+                    .client(client)
+                    .vente(vente)
+                    .montantInitial(new BigDecimal("1000"))
+                    .montantRestant(new BigDecimal("500"))
+                    .statut(perdu ? CreditClientEntity.StatutCredit.PERTE : CreditClientEntity.StatutCredit.PARTIEL)
+                    .datePassageEnPerte(perdu ? aujourdhui.minusDays(1) : null)
+                    .tenant(tenant)
+                    .build());
+            if (!perdu) {
+                paiementCreditRepository.save(PaiementCreditEntity.builder()
+                        .credit(credit)
+                        .montantPaye(new BigDecimal("500"))
+                        .modePaiement(PaiementCreditEntity.ModePaiement.ESPECES)
+                        .datePaiement(aujourdhui.minusDays(1))
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Compte toutes les requêtes SQL préparées par Hibernate.
+     * Instancié par Hibernate (propriété hibernate.session_factory.statement_inspector).
+     */
+    public static class CompteurRequetes implements StatementInspector {
+
+        private static final AtomicInteger REQUETES = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            REQUETES.incrementAndGet();
+            return sql;
+        }
+
+        static void reinitialiser() {
+            REQUETES.set(0);
+        }
+
+        static int requetes() {
+            return REQUETES.get();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.ActiverCaisseRequest;
+import com.example.dijasaliou.dto.CaisseSoldeDto;
+import com.example.dijasaliou.dto.CaisseSoldeJourDto;
+import com.example.dijasaliou.entity.CaisseConfigEntity;
+import com.example.dijasaliou.entity.CaisseSoldeJournalierEntity;
+import com.example.dijasaliou.entity.CompteCaisse;
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.MouvementCaisseManuelEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.CaisseConfigRepository;
+import com.example.dijasaliou.repository.CaisseSoldeJournalierRepository;
+import com.example.dijasaliou.repository.DepenseRepository;
+import com.example.dijasaliou.repository.MouvementCaisseManuelRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.CaisseService;
+import com.example.dijasaliou.service.DepenseService;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — clôtures journalières de caisse (caisse_solde_journalier)
+ * et série de soldes (getSoldeSerie).
+ *
+ * Caisse activée à J-10 (Espèces 10 000, Wave 5 000) ; vente Espèces 1 500 à J-5,
+ * dépense Espèces 500 à J-3, dépôt Wave 2 000 à J-2. J = aujourd'hui, fuseau du tenant.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-caisse-cloture;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Clôtures journalières de caisse")
+class CaisseClotureIntegrationTest {
+
+    @Autowired
+    private CaisseService caisseService;
+
+    @Autowired
+    private DepenseService depenseService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private DepenseRepository depenseRepository;
+
+    @Autowired
+    private MouvementCaisseManuelRepository mouvementRepository;
+
+    @Autowired
+    private CaisseConfigRepository caisseConfigRepository;
+
+    @Autowired
+    private CaisseSoldeJournalierRepository soldeJournalierRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private LocalDate aujourdhui;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-caisse-cloture")
+                .nomEntreprise("Boutique Caisse")
+                .numeroTelephone("+221777777777")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Caisse").prenom("Admin")
+                .email("admin@caisse-cloture.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Caisse")
+                .numeroTelephone("+221777777777")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+
+        aujourdhui = LocalDate.now(ZoneId.of(tenant.getTimezone()));
+        ActiverCaisseRequest activation = new ActiverCaisseRequest();
+        activation.setSoldeInitialEspeces(new BigDecimal("10000"));
+        activation.setSoldeInitialWave(new BigDecimal("5000"));
+        activation.setSoldeInitialOm(BigDecimal.ZERO);
+        activation.setSoldeInitialVirement(BigDecimal.ZERO);
+        activation.setDateActivation(aujourdhui.minusDays(10).atTime(8, 0));
+        caisseService.activerCaisse(activation, String.valueOf(admin.getId()));
+
+        vente("1500", jour(-5));
+        depense("500", jour(-3));
+        mouvementRepository.save(MouvementCaisseManuelEntity.builder()
+                .tenant(tenant)
+                .typeMouvement(MouvementCaisseManuelEntity.TypeMouvement.ENTREE)
+                .compte(CompteCaisse.WAVE)
+                .montant(new BigDecimal("2000"))
+                .motif("Dépôt")
+                .dateMouvement(jour(-2))
+                .build());
+        entityManager.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("cloturerJournee — le solde repart de la clôture et n'ajoute que les flux postérieurs")
+    void soldeCalculeDepuisLaDerniereCloture() {
+        CaisseSoldeDto sansCloture = caisseService.getSoldeActuel();
+        CaisseSoldeDto historiqueSansCloture = caisseService.getSoldeAt(aujourdhui.minusDays(2));
+        assertThat(sansCloture.getSoldeEspeces()).isEqualByComparingTo("11000");
+        assertThat(sansCloture.getSoldeWave()).isEqualByComparingTo("7000");
+
+        assertThat(caisseService.cloturerJournee(config(), aujourdhui.minusDays(4))).isTrue();
+        assertThat(caisseService.cloturerJournee(config(), aujourdhui.minusDays(1))).isTrue();
+        entityManager.flush();
+
+        // Mêmes soldes, calculés à partir des clôtures
+        assertThat(caisseService.getSoldeActuel().getSoldeTotal())
+                .isEqualByComparingTo(sansCloture.getSoldeTotal());
+        assertThat(caisseService.getSoldeAt(aujourdhui.minusDays(2)).getSoldeTotal())
+                .isEqualByComparingTo(historiqueSansCloture.getSoldeTotal());
+
+        // La clôture de la veille est bien le point de départ : une vente du jour s'y ajoute
+        CaisseSoldeJournalierEntity clotureEspeces = soldeJournalierRepository
+                .findDerniereClotureAvant(tenant, aujourdhui).stream()
+                .filter(c -> c.getCompte() == CompteCaisse.ESPECES)
+                .findFirst().orElseThrow();
+        assertThat(clotureEspeces.getJour()).isEqualTo(aujourdhui.minusDays(1));
+        clotureEspeces.setSoldeCloture(clotureEspeces.getSoldeCloture().add(BigDecimal.ONE));
+        vente("1000", LocalDateTime.now(ZoneId.of(tenant.getTimezone())));
+        entityManager.flush();
+
+        assertThat(caisseService.getSoldeActuel().getSoldeEspeces()).isEqualByComparingTo("12001");
+    }
+
+    @Test
+    @DisplayName("Écriture antidatée — clôtures supprimées à partir de son jour, solde exact")
+    void ecritureAntidatee_invalideLesClotures() {
+        caisseService.cloturerJournee(config(), aujourdhui.minusDays(6));
+        caisseService.cloturerJournee(config(), aujourdhui.minusDays(1));
+        entityManager.flush();
+
+        DepenseEntity depense = DepenseEntity.builder()
+                .libelle("Réparation")
+                .montant(new BigDecimal("300"))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(jour(-4))
+                .build();
+        depenseService.creerDepense(depense, admin);
+        entityManager.flush();
+
+        // Seule la clôture de J-6 (antérieure à la dépense) survit
+        assertThat(soldeJournalierRepository.findDerniereClotureAvant(tenant, aujourdhui))
+                .allSatisfy(c -> assertThat(c.getJour()).isEqualTo(aujourdhui.minusDays(6)))
+                .hasSize(CompteCaisse.values().length);
+        assertThat(caisseService.getSoldeActuel().getSoldeEspeces()).isEqualByComparingTo("10700");
+    }
+
+    @Test
+    @DisplayName("getSoldeSerie — chaque point égale getSoldeAt du jour, avant l'activation compris")
+    void serieEgaleAuxSoldesJourParJour() {
+        caisseService.cloturerJournee(config(), aujourdhui.minusDays(4));
+        entityManager.flush();
+
+        List<CaisseSoldeJourDto> serie = caisseService.getSoldeSerie(aujourdhui.minusDays(12), aujourdhui);
+
+        assertThat(serie).hasSize(13);
+        for (CaisseSoldeJourDto point : serie) {
+            CaisseSoldeDto attendu = caisseService.getSoldeAt(point.getJour());
+            assertThat(point.getSoldeEspeces()).as("Espèces %s", point.getJour())
+                    .isEqualByComparingTo(attendu.getSoldeEspeces());
+            assertThat(point.getSoldeWave()).as("Wave %s", point.getJour())
+                    .isEqualByComparingTo(attendu.getSoldeWave());
+            assertThat(point.getSoldeTotal()).as("Total %s", point.getJour())
+                    .isEqualByComparingTo(attendu.getSoldeTotal());
+        }
+        assertThat(serie.get(0).getSoldeTotal()).isEqualByComparingTo("0");
+        assertThat(serie.get(serie.size() - 1).getSoldeEspeces()).isEqualByComparingTo("11000");
+
+        // Série démarrant après la clôture : le point de départ vient de la clôture
+        assertThat(caisseService.getSoldeSerie(aujourdhui.minusDays(2), aujourdhui.minusDays(2)))
+                .singleElement()
+                .satisfies(p -> assertThat(p.getSoldeWave()).isEqualByComparingTo("7000"));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private CaisseConfigEntity config() {
+        return caisseConfigRepository.findByTenant(tenant).orElseThrow();
+    }
+
+    private LocalDateTime jour(int decalage) {
+        return aujourdhui.plusDays(decalage).atTime(12, 0);
+    }
+
+    private void vente(String montant, LocalDateTime date) {
+        venteRepository.save(VenteEntity.builder()
+                .nomProduit("Riz")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal(montant))
+                .prixTotal(new BigDecimal(montant))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .dateVente(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+
+    private void depense(String montant, LocalDateTime date) {
+        depenseRepository.save(DepenseEntity.builder()
+                .libelle("Transport")
+                .montant(new BigDecimal(montant))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+}
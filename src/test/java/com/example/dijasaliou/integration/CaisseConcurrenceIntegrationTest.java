@@ -0,0 +1,324 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.ActiverCaisseRequest;
+import com.example.dijasaliou.dto.CaisseSoldeDto;
+import com.example.dijasaliou.dto.MouvementCaisseRequest;
+import com.example.dijasaliou.dto.TransfertCaisseRequest;
+import com.example.dijasaliou.entity.CaisseConfigEntity;
+import com.example.dijasaliou.entity.CompteCaisse;
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.MouvementCaisseManuelEntity.TypeMouvement;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.exception.ConflictException;
+import com.example.dijasaliou.repository.CaisseConfigRepository;
+import com.example.dijasaliou.repository.CaisseSoldeJournalierRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.service.CaisseClotureService;
+import com.example.dijasaliou.service.CaisseService;
+import com.example.dijasaliou.service.DepenseService;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Tests d'intégration — sorties de caisse concurrentes sans verrou sur la caisse.
+ *
+ * 32 écrivains en parallèle (8 par compte) sur une caisse à 1 000 par compte ;
+ * clôture journalière croisée avec une écriture antidatée.
+ * PAS de @Transactional : chaque opération doit être commitée pour être vue des autres.
+ * Chaque test crée son propre tenant (base H2 dédiée à cette classe).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-caisse-concurrence;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000"
+})
+@DisplayName("Tests d'intégration — Sorties de caisse concurrentes")
+class CaisseConcurrenceIntegrationTest {
+
+    private static final int ECRIVAINS = 32;
+    private static final int OPERATIONS_PAR_ECRIVAIN = 3;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private CaisseService caisseService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DepenseService depenseService;
+
+    @Autowired
+    private CaisseConfigRepository caisseConfigRepository;
+
+    @Autowired
+    private CaisseSoldeJournalierRepository soldeJournalierRepository;
+
+    @MockitoSpyBean
+    private CaisseClotureService clotureService;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        int n = SEQUENCE.incrementAndGet();
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-caisse-concurrence-" + n)
+                .nomEntreprise("Boutique Concurrence")
+                .numeroTelephone("+22177666000" + n)
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Caisse").prenom("Admin")
+                .email("admin" + n + "@caisse-concurrence.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Concurrence")
+                .numeroTelephone("+22177666000" + n)
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+        userId = String.valueOf(admin.getId());
+
+        entrerTenant();
+        ActiverCaisseRequest activation = new ActiverCaisseRequest();
+        activation.setSoldeInitialEspeces(new BigDecimal("1000"));
+        activation.setSoldeInitialWave(new BigDecimal("1000"));
+        activation.setSoldeInitialOm(new BigDecimal("1000"));
+        activation.setSoldeInitialVirement(new BigDecimal("1000"));
+        activation.setDateActivation(LocalDate.now().minusDays(1).atStartOfDay());
+        caisseService.activerCaisse(activation, userId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("32 retraits parallèles de 100 — jamais de solde négatif, chaque retrait validé est compté")
+    void retraitsParalleles_jamaisDeSoldeNegatif() throws Exception {
+        Map<CompteCaisse, AtomicInteger> valides = compteurs();
+
+        List<Integer> refus = executerEnParallele(i -> {
+            CompteCaisse compte = CompteCaisse.values()[i % 4];
+            MouvementCaisseRequest request = new MouvementCaisseRequest();
+            request.setTypeMouvement(TypeMouvement.SORTIE);
+            request.setCompte(compte);
+            request.setMontant(new BigDecimal("100"));
+            request.setMotif("Retrait " + i);
+            caisseService.creerMouvementManuel(request, userId);
+            valides.get(compte).incrementAndGet();
+        });
+
+        CaisseSoldeDto solde = caisseService.getSoldeActuel();
+        for (CompteCaisse compte : CompteCaisse.values()) {
+            int n = valides.get(compte).get();
+            // 24 tentatives de 100 sur 1 000 : 10 au plus passent
+            assertThat(n).as("retraits validés sur %s", compte).isBetween(1, 10);
+            assertThat(soldeDe(solde, compte)).as("solde %s", compte)
+                    .isEqualByComparingTo(new BigDecimal(1000 - 100 * n))
+                    .isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        }
+        assertThat(refus).hasSize(ECRIVAINS * OPERATIONS_PAR_ECRIVAIN
+                - valides.values().stream().mapToInt(AtomicInteger::get).sum());
+    }
+
+    @Test
+    @DisplayName("32 transferts parallèles en anneau — total conservé, soldes cohérents avec les transferts validés")
+    void transfertsParalleles_totalConserve() throws Exception {
+        Map<CompteCaisse, AtomicInteger> sortants = compteurs();
+        Map<CompteCaisse, AtomicInteger> entrants = compteurs();
+
+        executerEnParallele(i -> {
+            CompteCaisse source = CompteCaisse.values()[i % 4];
+            CompteCaisse destination = CompteCaisse.values()[(i + 1) % 4];
+            TransfertCaisseRequest request = new TransfertCaisseRequest();
+            request.setCompteSource(source);
+            request.setCompteDestination(destination);
+            request.setMontant(new BigDecimal("150"));
+            caisseService.creerTransfert(request, userId);
+            sortants.get(source).incrementAndGet();
+            entrants.get(destination).incrementAndGet();
+        });
+
+        CaisseSoldeDto solde = caisseService.getSoldeActuel();
+        assertThat(solde.getSoldeTotal()).isEqualByComparingTo("4000");
+        for (CompteCaisse compte : CompteCaisse.values()) {
+            int net = entrants.get(compte).get() - sortants.get(compte).get();
+            assertThat(soldeDe(solde, compte)).as("solde %s", compte)
+                    .isEqualByComparingTo(new BigDecimal(1000 + 150 * net))
+                    .isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        }
+        assertThat(sortants.values().stream().mapToInt(AtomicInteger::get).sum()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Dépense antidatée commitée pendant le calcul d'une clôture — clôture rejetée, jamais périmée")
+    void clotureCroiseeAvecEcritureAntidatee_rejetee() throws Exception {
+        LocalDate hier = LocalDate.now(ZoneId.of(tenant.getTimezone())).minusDays(1);
+        CaisseConfigEntity config = caisseConfigRepository.findAllAvecTenant().stream()
+                .filter(c -> c.getTenant().getId().equals(tenant.getId()))
+                .findFirst().orElseThrow();
+
+        // La clôture s'arrête entre son calcul et son enregistrement
+        CountDownLatch calculee = new CountDownLatch(1);
+        CountDownLatch depenseCommitee = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            calculee.countDown();
+            depenseCommitee.await(30, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(clotureService).enregistrerCloture(any(), any(), anyMap(), anyLong());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> cloture = pool.submit(() -> caisseService.cloturerJournee(config, hier));
+            assertThat(calculee.await(30, TimeUnit.SECONDS)).isTrue();
+
+            depenseService.creerDepense(DepenseEntity.builder()
+                    .libelle("Réparation")
+                    .montant(new BigDecimal("300"))
+                    .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                    .modePaiement(ModePaiementCaisse.ESPECES)
+                    .dateDepense(hier.atTime(12, 0))
+                    .build(), admin);
+            depenseCommitee.countDown();
+
+            // Soldes calculés sans la dépense : la clôture ne doit pas être enregistrée
+            assertThatThrownBy(() -> cloture.get(30, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(OptimisticLockingFailureException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(soldeJournalierRepository.findDerniereClotureAvant(tenant, hier.plusDays(1))).isEmpty();
+
+        // Tick suivant du job : clôture refaite avec la dépense
+        assertThat(caisseService.cloturerJournee(config, hier)).isTrue();
+        assertThat(soldeJournalierRepository.findDerniereClotureAvant(tenant, hier.plusDays(1)))
+                .filteredOn(c -> c.getCompte() == CompteCaisse.ESPECES)
+                .singleElement()
+                .satisfies(c -> assertThat(c.getSoldeCloture()).isEqualByComparingTo("700"));
+        assertThat(caisseService.getSoldeActuel().getSoldeEspeces()).isEqualByComparingTo("700");
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private interface Operation {
+        void executer(int ecrivain);
+    }
+
+    /**
+     * Lance {@link #ECRIVAINS} threads démarrés ensemble, chacun répétant l'opération.
+     * Retourne les numéros d'écrivain des opérations refusées (solde insuffisant ou 409).
+     */
+    private List<Integer> executerEnParallele(Operation operation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(ECRIVAINS);
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Future<List<Integer>>> resultats = new ArrayList<>();
+        try {
+            for (int e = 0; e < ECRIVAINS; e++) {
+                int ecrivain = e;
+                Callable<List<Integer>> tache = () -> {
+                    List<Integer> refus = new ArrayList<>();
+                    entrerTenant();
+                    try {
+                        depart.await();
+                        for (int k = 0; k < OPERATIONS_PAR_ECRIVAIN; k++) {
+                            try {
+                                operation.executer(ecrivain);
+                            } catch (IllegalArgumentException | ConflictException refusee) {
+                                refus.add(ecrivain);
+                            }
+                        }
+                    } finally {
+                        TenantContext.clear();
+                    }
+                    return refus;
+                };
+                resultats.add(pool.submit(tache));
+            }
+            depart.countDown();
+
+            List<Integer> refus = new ArrayList<>();
+            for (Future<List<Integer>> resultat : resultats) {
+                refus.addAll(resultat.get(60, TimeUnit.SECONDS));
+            }
+            return refus;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void entrerTenant() {
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+    }
+
+    private static Map<CompteCaisse, AtomicInteger> compteurs() {
+        Map<CompteCaisse, AtomicInteger> compteurs = new EnumMap<>(CompteCaisse.class);
+        for (CompteCaisse compte : CompteCaisse.values()) {
+            compteurs.put(compte, new AtomicInteger());
+        }
+        return compteurs;
+    }
+
+    private static BigDecimal soldeDe(CaisseSoldeDto solde, CompteCaisse compte) {
+        return switch (compte) {
+            case ESPECES      -> solde.getSoldeEspeces();
+            case WAVE         -> solde.getSoldeWave();
+            case ORANGE_MONEY -> solde.getSoldeOm();
+            case VIREMENT     -> solde.getSoldeVirement();
+        };
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.ActiverCaisseRequest;
+import com.example.dijasaliou.dto.CaisseHistoriquePageDto;
+import com.example.dijasaliou.dto.MouvementHistoriqueDto;
+import com.example.dijasaliou.dto.MouvementHistoriqueDto.TypeHistorique;
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.ClientEntity;
+import com.example.dijasaliou.entity.CompteCaisse;
+import com.example.dijasaliou.entity.CreditClientEntity;
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.MouvementCaisseManuelEntity;
+import com.example.dijasaliou.entity.PaiementCreditEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.TransfertCaisseEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.ClientRepository;
+import com.example.dijasaliou.repository.CreditClientRepository;
+import com.example.dijasaliou.repository.DepenseRepository;
+import com.example.dijasaliou.repository.MouvementCaisseManuelRepository;
+import com.example.dijasaliou.repository.PaiementCreditRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.TransfertCaisseRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.CaisseService;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests d'intégration — historique de caisse paginé par curseur (getHistoriquePage).
+ *
+ * Sept opérations impactant la caisse sur 3 jours, dont deux ventes à la même
+ * seconde et un transfert / mouvement manuel ex æquo ; une vente à CRÉDIT (hors caisse).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-caisse-historique;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Historique de caisse paginé")
+class CaisseHistoriqueIntegrationTest {
+
+    @Autowired
+    private CaisseService caisseService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private DepenseRepository depenseRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private CreditClientRepository creditClientRepository;
+
+    @Autowired
+    private PaiementCreditRepository paiementCreditRepository;
+
+    @Autowired
+    private TransfertCaisseRepository transfertRepository;
+
+    @Autowired
+    private MouvementCaisseManuelRepository mouvementRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private LocalDate aujourdhui;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-caisse-historique")
+                .nomEntreprise("Boutique Historique")
+                .numeroTelephone("+221777777777")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Diop").prenom("Awa")
+                .email("admin@caisse-historique.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Historique")
+                .numeroTelephone("+221777777777")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+
+        aujourdhui = LocalDate.now(ZoneId.of(tenant.getTimezone()));
+        ActiverCaisseRequest activation = new ActiverCaisseRequest();
+        activation.setSoldeInitialEspeces(new BigDecimal("10000"));
+        activation.setSoldeInitialWave(BigDecimal.ZERO);
+        activation.setSoldeInitialOm(BigDecimal.ZERO);
+        activation.setSoldeInitialVirement(BigDecimal.ZERO);
+        activation.setDateActivation(aujourdhui.minusDays(10).atTime(8, 0));
+        caisseService.activerCaisse(activation, String.valueOf(admin.getId()));
+
+        LocalDateTime midiJ3 = aujourdhui.minusDays(3).atTime(12, 0);
+        vente("1500", VenteEntity.ModePaiementVente.ESPECES, midiJ3);
+        vente("700", VenteEntity.ModePaiementVente.WAVE, midiJ3);
+        vente("900", VenteEntity.ModePaiementVente.CREDIT, midiJ3);
+
+        achatRepository.save(AchatEntity.builder()
+                .nomProduit("Sucre")
+                .quantite(2.0)
+                .prixUnitaire(new BigDecimal("400"))
+                .prixTotal(new BigDecimal("800"))
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateAchat(aujourdhui.minusDays(2).atTime(10, 0))
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+        depenseRepository.save(DepenseEntity.builder()
+                .libelle("Transport")
+                .montant(new BigDecimal("300"))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(aujourdhui.minusDays(2).atTime(9, 0))
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+
+        LocalDateTime midiJ1 = aujourdhui.minusDays(1).atTime(12, 0);
+        transfertRepository.save(TransfertCaisseEntity.builder()
+                .tenant(tenant)
+                .compteSource(CompteCaisse.ESPECES)
+                .compteDestination(CompteCaisse.WAVE)
+                .montant(new BigDecimal("1000"))
+                .dateTransfert(midiJ1)
+                .faitPar(String.valueOf(admin.getId()))
+                .build());
+        mouvementRepository.save(MouvementCaisseManuelEntity.builder()
+                .tenant(tenant)
+                .typeMouvement(MouvementCaisseManuelEntity.TypeMouvement.ENTREE)
+                .compte(CompteCaisse.ESPECES)
+                .montant(new BigDecimal("2000"))
+                .motif("Apport")
+                .dateMouvement(midiJ1)
+                .faitPar(String.valueOf(admin.getId()))
+                .build());
+
+        ClientEntity client = clientRepository.save(ClientEntity.builder()
+                .nom("Moussa")
+                .tenant(tenant)
+                .build());
+        CreditClientEntity credit = creditClientRepository.save(CreditClientEntity.builder()
+                .client(client)
+                .montantInitial(new BigDecimal("900"))
+                .montantRestant(new BigDecimal("400"))
+                .tenant(tenant)
+                .build());
+        paiementCreditRepository.save(PaiementCreditEntity.builder()
+                .credit(credit)
+                .montantPaye(new BigDecimal("500"))
+                .modePaiement(PaiementCreditEntity.ModePaiement.ORANGE_MONEY)
+                .datePaiement(aujourdhui.minusDays(1))
+                .employe(admin)
+                .build());
+        entityManager.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("Pages de 2 — toutes les opérations, une seule fois, ordre (date, id) décroissant")
+    void parcoursParCurseur_couvreToutHistoriqueSansDoublon() {
+        List<MouvementHistoriqueDto> parcourus = new ArrayList<>();
+        String curseur = null;
+        int pages = 0;
+        do {
+            CaisseHistoriquePageDto page = caisseService.getHistoriquePage(null, null, curseur, 2);
+            assertThat(page.getMouvements()).hasSizeLessThanOrEqualTo(2);
+            parcourus.addAll(page.getMouvements());
+            curseur = page.getCurseurSuivant();
+            pages++;
+        } while (curseur != null && pages < 10);
+
+        assertThat(pages).isEqualTo(4);
+        assertThat(parcourus).hasSize(7);
+        assertThat(parcourus).extracting(MouvementHistoriqueDto::getId).doesNotHaveDuplicates();
+        assertThat(parcourus).isSortedAccordingTo(
+                Comparator.comparing(MouvementHistoriqueDto::getDate)
+                        .thenComparing(MouvementHistoriqueDto::getId)
+                        .reversed());
+        assertThat(parcourus).extracting(MouvementHistoriqueDto::getType)
+                .containsOnlyOnce(TypeHistorique.ACHAT, TypeHistorique.DEPENSE, TypeHistorique.TRANSFERT,
+                        TypeHistorique.ENTREE, TypeHistorique.PAIEMENT_CREDIT)
+                .doesNotContain(TypeHistorique.SORTIE);
+
+        // Même résultat qu'une page unique
+        assertThat(caisseService.getHistoriquePage(null, null, null, 200).getMouvements())
+                .extracting(MouvementHistoriqueDto::getId)
+                .containsExactlyElementsOf(parcourus.stream().map(MouvementHistoriqueDto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Paiement crédit placé à 00:00, compte du mode de paiement et nom de l'employé")
+    void paiementCredit_placeEnDebutDeJournee() {
+        MouvementHistoriqueDto paiement = caisseService.getHistoriquePage(null, null, null, 50)
+                .getMouvements().stream()
+                .filter(m -> m.getType() == TypeHistorique.PAIEMENT_CREDIT)
+                .findFirst().orElseThrow();
+
+        assertThat(paiement.getDate()).isEqualTo(aujourdhui.minusDays(1).atStartOfDay());
+        assertThat(paiement.getCompte()).isEqualTo(CompteCaisse.ORANGE_MONEY);
+        assertThat(paiement.getMotif()).isEqualTo("Moussa");
+        assertThat(paiement.getFaitParNom()).isEqualTo("Awa Diop");
+    }
+
+    @Test
+    @DisplayName("Bornes fromDate / asOfDate et curseur invalide")
+    void bornesEtCurseurInvalide() {
+        CaisseHistoriquePageDto jourJ2 = caisseService.getHistoriquePage(
+                aujourdhui.minusDays(2), aujourdhui.minusDays(2), null, 50);
+        assertThat(jourJ2.getMouvements()).extracting(MouvementHistoriqueDto::getType)
+                .containsExactly(TypeHistorique.ACHAT, TypeHistorique.DEPENSE);
+        assertThat(jourJ2.getCurseurSuivant()).isNull();
+
+        assertThatThrownBy(() -> caisseService.getHistoriquePage(null, null, "pas-un-curseur", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void vente(String montant, VenteEntity.ModePaiementVente mode, LocalDateTime date) {
+        venteRepository.save(VenteEntity.builder()
+                .nomProduit("Riz")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal(montant))
+                .prixTotal(new BigDecimal(montant))
+                .modePaiement(mode)
+                .dateVente(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+}
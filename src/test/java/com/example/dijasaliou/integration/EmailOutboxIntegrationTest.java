@@ -0,0 +1,166 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.EmailOutboxEntity;
+import com.example.dijasaliou.repository.EmailOutboxRepository;
+import com.example.dijasaliou.service.EmailOutboxService;
+import com.example.dijasaliou.service.EmailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Tests d'intégration — file d'envoi des emails (table email_outbox).
+ *
+ * PAS de @Transactional : l'insertion dans la transaction de l'appelant et les
+ * réservations concurrentes sont vérifiées sur des transactions réellement validées.
+ * Brevo non configuré : la relève planifiée n'envoie rien.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-email-outbox;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000"
+})
+@DisplayName("Tests d'intégration — File d'envoi des emails")
+class EmailOutboxIntegrationTest {
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("ajouter — l'email suit la transaction de l'appelant (rollback → pas d'email)")
+    void ajouter_suitLaTransaction() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            outboxService.ajouter("annule@boutique.com", "Annulé", "<p>x</p>", null);
+            status.setRollbackOnly();
+        });
+        tx.executeWithoutResult(status ->
+                outboxService.ajouter("valide@boutique.com", "Validé", "<p>x</p>", null));
+
+        List<EmailOutboxEntity> emails = outboxRepository.findAll();
+        assertThat(emails).extracting(EmailOutboxEntity::getDestinataire).containsExactly("valide@boutique.com");
+        assertThat(emails.get(0).getStatut()).isEqualTo(EmailOutboxEntity.Statut.EN_ATTENTE);
+    }
+
+    @Test
+    @DisplayName("ajouter — destinataire null ou sujet trop long : la transaction de l'appelant est validée")
+    void ajouter_valeursInvalides_neBloquePasLAppelant() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            outboxService.ajouter("valide@boutique.com", "Avant", "<p>x</p>", null);
+            outboxService.ajouter(null, "Facture sans email", "<p>x</p>", null);
+            outboxService.ajouter("long@boutique.com", "S".repeat(600), "<p>x</p>", null);
+        });
+
+        assertThat(outboxRepository.findAll())
+                .extracting(EmailOutboxEntity::getDestinataire, email -> email.getSujet().length())
+                .containsExactlyInAnyOrder(
+                        tuple("valide@boutique.com", 5),
+                        tuple("long@boutique.com", 500));
+    }
+
+    @Test
+    @DisplayName("reserver — deux instances qui lisent les mêmes lignes ne réservent jamais la même")
+    void reserver_uneSeuleInstanceParLigne() {
+        Long id1 = outboxService.ajouter("a@boutique.com", "A", "<p>a</p>", null).getId();
+        Long id2 = outboxService.ajouter("b@boutique.com", "B", "<p>b</p>", null).getId();
+        LocalDateTime maintenant = LocalDateTime.now().plusSeconds(1);
+        LocalDateTime jusquA = maintenant.plusMinutes(5).truncatedTo(ChronoUnit.MILLIS);
+
+        List<Long> ids = outboxRepository.findIdsAEnvoyer(maintenant, PageRequest.of(0, 10));
+        assertThat(ids).containsExactly(id1, id2);
+
+        assertThat(outboxRepository.reserver(ids, "instance-a", maintenant, jusquA)).isEqualTo(2);
+        // Seconde instance, même lecture : plus rien à réserver
+        assertThat(outboxRepository.reserver(ids, "instance-b", maintenant, jusquA)).isZero();
+        assertThat(outboxRepository.findReserves(ids, "instance-a", jusquA))
+                .extracting(EmailOutboxEntity::getId).containsExactlyInAnyOrder(id1, id2);
+        assertThat(outboxRepository.findReserves(ids, "instance-b", jusquA)).isEmpty();
+        assertThat(outboxRepository.findIdsAEnvoyer(maintenant, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("reserver — réservation expirée (instance arrêtée) : la ligne est reprise")
+    void reserver_reservationExpireeReprise() {
+        Long id = outboxService.ajouter("a@boutique.com", "A", "<p>a</p>", null).getId();
+        LocalDateTime t0 = LocalDateTime.now().plusSeconds(1);
+        outboxRepository.reserver(List.of(id), "instance-a", t0, t0.plusMinutes(5));
+
+        LocalDateTime apresExpiration = t0.plusMinutes(6);
+        assertThat(outboxRepository.findIdsAEnvoyer(apresExpiration, PageRequest.of(0, 10))).containsExactly(id);
+        assertThat(outboxRepository.reserver(List.of(id), "instance-b", apresExpiration, apresExpiration.plusMinutes(5)))
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("reprogrammer / marquerEnvoye — tentatives comptées, ligne due seulement après le délai")
+    void reprogrammer_puisEnvoye() {
+        Long id = outboxService.ajouter("a@boutique.com", "A", "<p>a</p>", null).getId();
+        LocalDateTime maintenant = LocalDateTime.now().plusSeconds(1);
+        outboxRepository.reserver(List.of(id), "instance-a", maintenant, maintenant.plusMinutes(5));
+
+        assertThat(outboxRepository.reprogrammer(id, "instance-a", maintenant.plusSeconds(30), "503 Service Unavailable"))
+                .isEqualTo(1);
+        assertThat(outboxRepository.findIdsAEnvoyer(maintenant, PageRequest.of(0, 10))).isEmpty();
+        assertThat(outboxRepository.findIdsAEnvoyer(maintenant.plusSeconds(31), PageRequest.of(0, 10))).containsExactly(id);
+
+        outboxRepository.reserver(List.of(id), "instance-b", maintenant.plusSeconds(31), maintenant.plusMinutes(6));
+        assertThat(outboxRepository.marquerEnvoye(id, "instance-b", maintenant.plusSeconds(31))).isEqualTo(1);
+        EmailOutboxEntity email = outboxRepository.findById(id).orElseThrow();
+        assertThat(email.getStatut()).isEqualTo(EmailOutboxEntity.Statut.ENVOYE);
+        assertThat(email.getTentatives()).isEqualTo(2);
+        assertThat(email.getDerniereErreur()).isNull();
+    }
+
+    @Test
+    @DisplayName("marquerEnvoye / reprogrammer / marquerEchec / liberer — sans effet si la réservation a été reprise")
+    void resultat_reservationReprise_ignore() {
+        Long id = outboxService.ajouter("a@boutique.com", "A", "<p>a</p>", null).getId();
+        LocalDateTime t0 = LocalDateTime.now().plusSeconds(1);
+        outboxRepository.reserver(List.of(id), "instance-a", t0, t0.plusMinutes(5));
+        LocalDateTime apresExpiration = t0.plusMinutes(6);
+        outboxRepository.reserver(List.of(id), "instance-b", apresExpiration, apresExpiration.plusMinutes(5));
+
+        // Résultat tardif de l'instance A : la réservation de B est conservée
+        assertThat(outboxRepository.reprogrammer(id, "instance-a", apresExpiration, "503")).isZero();
+        assertThat(outboxRepository.marquerEchec(id, "instance-a", "400")).isZero();
+        assertThat(outboxRepository.marquerEnvoye(id, "instance-a", apresExpiration)).isZero();
+        assertThat(outboxRepository.liberer(List.of(id), "instance-a")).isZero();
+
+        EmailOutboxEntity email = outboxRepository.findById(id).orElseThrow();
+        assertThat(email.getStatut()).isEqualTo(EmailOutboxEntity.Statut.EN_COURS);
+        assertThat(email.getReservePar()).isEqualTo("instance-b");
+        assertThat(email.getTentatives()).isZero();
+
+        assertThat(outboxRepository.marquerEnvoye(id, "instance-b", apresExpiration)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.ExportService;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — export des ventes en flux, par tranches.
+ *
+ * 2 050 ventes en mars 2026 (plus d'une tranche de 1 000), dont 1 200 à la même
+ * seconde : le curseur (date, id) ne doit ni sauter ni répéter de ligne.
+ * Le tenant n'est pas posé dans TenantContext : l'export ne doit pas en dépendre.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-export;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Export XLSX/CSV en flux")
+class ExportIntegrationTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2026, 3, 1);
+    private static final LocalDate FIN   = LocalDate.of(2026, 3, 31);
+    private static final int NB_VENTES   = 2050;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-export")
+                .nomEntreprise("Boutique Export")
+                .numeroTelephone("+221777777777")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        UserEntity admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Export").prenom("Admin")
+                .email("admin@export.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Export")
+                .numeroTelephone("+221777777777")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        LocalDateTime memeSeconde = LocalDateTime.of(2026, 3, 15, 10, 0);
+        for (int i = 0; i < NB_VENTES; i++) {
+            LocalDateTime date = i < 1200 ? memeSeconde : DEBUT.atStartOfDay().plusMinutes(i);
+            vente(admin, "Riz " + i, date);
+        }
+        // Hors période : jamais exportées
+        vente(admin, "Avant", DEBUT.atStartOfDay().minusSeconds(1));
+        vente(admin, "Après", FIN.plusDays(1).atStartOfDay());
+        vente(admin, "=HYPERLINK(\"x\")", FIN.atTime(23, 59, 59));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("CSV — en-tête + chaque vente de la période une seule fois, formules neutralisées")
+    void csv_toutesLesVentesUneFois() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exporterVentes(tenant, DEBUT, FIN, ExportService.Format.CSV, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv).startsWith("\uFEFFDate;Produit;");
+        List<String> lignes = csv.lines().skip(1).toList();
+        assertThat(lignes).hasSize(NB_VENTES + 1);
+        assertThat(lignes.stream().map(l -> l.split(";")[1]).distinct()).hasSize(NB_VENTES + 1);
+        assertThat(csv).doesNotContain("Avant").doesNotContain("Après");
+        assertThat(lignes.get(lignes.size() - 1)).contains(";\"'=HYPERLINK(\"\"x\"\")\";");
+    }
+
+    @Test
+    @DisplayName("XLSX — classeur lisible, une ligne par vente, montants numériques")
+    void xlsx_uneLigneParVente() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exporterVentes(tenant, DEBUT, FIN, ExportService.Format.XLSX, out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Ventes");
+            assertThat(sheet.getLastRowNum()).isEqualTo(NB_VENTES + 1);
+            assertThat(sheet.getRow(0).getCell(0).getStringCellValue()).isEqualTo("Date");
+            assertThat(sheet.getRow(1).getCell(0).getLocalDateTimeCellValue()).isEqualTo(DEBUT.atStartOfDay().plusMinutes(1200));
+            assertThat(sheet.getRow(1).getCell(6).getNumericCellValue()).isEqualTo(1000.0);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void vente(UserEntity user, String produit, LocalDateTime date) {
+        venteRepository.save(VenteEntity.builder()
+                .nomProduit(produit)
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000"))
+                .prixTotal(new BigDecimal("1000"))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .dateVente(date)
+                .utilisateur(user)
+                .tenant(tenant)
+                .build());
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.FifoBackfillRapportDto;
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.entity.VenteLotConsommationEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteLotConsommationRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.FifoBackfillService;
+import com.example.dijasaliou.service.FifoCalculService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — FifoBackfillService : rejeu par tranches, limité au tenant.
+ *
+ * La taille de tranche est réduite à 2 pour que le rejeu traverse plusieurs tranches
+ * (dont des ventes à la même date, départagées par l'id).
+ *
+ * PAS de @Transactional : chaque produit est rejoué dans sa propre transaction
+ * (REQUIRES_NEW), qui ne verrait pas des données non validées. Chaque test crée
+ * ses propres tenants.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-fifo-backfill;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000",
+        "app.fifo.backfill.taille-tranche=2"
+})
+@DisplayName("Tests d'intégration — Backfill FIFO par tranches")
+class FifoBackfillIntegrationTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private FifoBackfillService fifoBackfillService;
+
+    @Autowired
+    private FifoCalculService fifoCalculService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private VenteLotConsommationRepository consommationRepository;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenantA;
+    private TenantEntity tenantB;
+    private UserEntity adminA;
+    private UserEntity adminB;
+
+    @BeforeEach
+    void setUp() {
+        int n = SEQUENCE.incrementAndGet();
+        tenantA = creerTenant("it-tenant-backfill-a" + n, "+22177555551" + n);
+        tenantB = creerTenant("it-tenant-backfill-b" + n, "+22177555552" + n);
+        adminA = creerAdmin(tenantA, "admin" + n + "@backfill-a.com");
+        adminB = creerAdmin(tenantB, "admin" + n + "@backfill-b.com");
+    }
+
+    @Test
+    @DisplayName("executerBackfill — rejeu FIFO sur plusieurs tranches, lots entamés dans l'ordre")
+    void executerBackfill_rejoueParTranches() {
+        LocalDateTime j0 = LocalDateTime.now().minusDays(10);
+        AchatEntity lot1 = achat(tenantA, adminA, "Riz", 3.0, "1000", j0);
+        AchatEntity lot2 = achat(tenantA, adminA, "Riz", 5.0, "1200", j0.plusDays(1));
+        // 5 ventes dont 2 à la même date : 3 tranches de 2
+        vente(tenantA, adminA, "Riz", 1.0, j0.plusDays(2));
+        vente(tenantA, adminA, "Riz", 1.0, j0.plusDays(3));
+        vente(tenantA, adminA, "Riz", 1.0, j0.plusDays(3));
+        vente(tenantA, adminA, "Riz", 1.0, j0.plusDays(4));
+        vente(tenantA, adminA, "Riz", 5.0, j0.plusDays(5));
+
+        List<Long> progression = new ArrayList<>();
+        FifoBackfillRapportDto rapport = fifoBackfillService.executerBackfill(tenantA, false, progression::add);
+
+        assertThat(progression).containsExactly(2L, 4L, 5L);
+        assertThat(rapport.getNbVentesTraitees()).isEqualTo(5);
+        assertThat(rapport.getNbAchatsTraites()).isEqualTo(2);
+        assertThat(rapport.getNbVentesEntierementTracees()).isEqualTo(4);
+        assertThat(rapport.getNbVentesPartiellementTracees()).isEqualTo(1);
+        assertThat(rapport.getNbAnomalies()).isEqualTo(1);
+
+        // 9 unités vendues pour 8 achetées : lot1 puis lot2 épuisés
+        assertThat(achatRepository.findById(lot1.getId()).orElseThrow().getQuantiteRestante()).isZero();
+        assertThat(achatRepository.findById(lot2.getId()).orElseThrow().getQuantiteRestante()).isZero();
+        assertThat(consommationRepository.findByAchatId(lot1.getId()))
+                .extracting(VenteLotConsommationEntity::getQuantiteConsommee)
+                .containsExactlyInAnyOrder(1.0, 1.0, 1.0);
+        assertThat(consommationRepository.findByAchatId(lot2.getId()))
+                .extracting(VenteLotConsommationEntity::getQuantiteConsommee)
+                .containsExactlyInAnyOrder(1.0, 4.0);
+        assertThat(rapport.getBeneficeTotalReconstitue())
+                .isEqualByComparingTo(new BigDecimal("3").multiply(new BigDecimal("500"))
+                        .add(new BigDecimal("5").multiply(new BigDecimal("300"))));
+    }
+
+    @Test
+    @DisplayName("executerBackfill — ne touche ni aux consommations ni aux lots d'un autre tenant")
+    void executerBackfill_isoleLeTenant() {
+        LocalDateTime j0 = LocalDateTime.now().minusDays(5);
+        achat(tenantA, adminA, "Huile", 10.0, "2000", j0);
+        VenteEntity venteA = vente(tenantA, adminA, "Huile", 4.0, j0.plusDays(1));
+
+        AchatEntity lotB = achat(tenantB, adminB, "Huile", 10.0, "2000", j0);
+        VenteEntity venteB = vente(tenantB, adminB, "Huile", 6.0, j0.plusDays(1));
+        fifoCalculService.consommerStockFifo(venteB);
+
+        fifoBackfillService.executerBackfill(tenantA, false);
+        fifoBackfillService.executerBackfill(tenantA, false); // idempotent
+
+        assertThat(consommationRepository.findByVenteId(venteB.getId()))
+                .singleElement()
+                .extracting(VenteLotConsommationEntity::getQuantiteConsommee)
+                .isEqualTo(6.0);
+        assertThat(achatRepository.findById(lotB.getId()).orElseThrow().getQuantiteRestante()).isEqualTo(4.0);
+        assertThat(consommationRepository.findByVenteId(venteA.getId()))
+                .singleElement()
+                .extracting(VenteLotConsommationEntity::getQuantiteConsommee)
+                .isEqualTo(4.0);
+    }
+
+    @Test
+    @DisplayName("executerBackfill(dryRun) — rapport calculé sans aucune écriture")
+    void executerBackfill_dryRun_nEcritRien() {
+        LocalDateTime j0 = LocalDateTime.now().minusDays(5);
+        AchatEntity lot = achat(tenantA, adminA, "Sucre", 10.0, "500", j0);
+        vente(tenantA, adminA, "Sucre", 3.0, j0.plusDays(1));
+
+        FifoBackfillRapportDto rapport = fifoBackfillService.executerBackfill(tenantA, true);
+
+        assertThat(rapport.getNbConsommationsCreees()).isEqualTo(1);
+        assertThat(consommationRepository.findByAchatId(lot.getId())).isEmpty();
+        assertThat(achatRepository.findById(lot.getId()).orElseThrow().getQuantiteRestante()).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("executerBackfill — nom de produit exact, comme le FIFO en ligne : backfill puis rejeu identiques")
+    void executerBackfill_nomExactCommeLeFifoEnLigne() {
+        LocalDateTime j0 = LocalDateTime.now().minusDays(5);
+        AchatEntity lot = achat(tenantA, adminA, "Collier", 10.0, "500", j0);
+        VenteEntity exacte = vente(tenantA, adminA, "Collier", 2.0, j0.plusDays(1));
+        VenteEntity variante = vente(tenantA, adminA, "collier ", 3.0, j0.plusDays(2));
+
+        FifoBackfillRapportDto rapport = fifoBackfillService.executerBackfill(tenantA, false);
+
+        // Le FIFO en ligne (findLotsDisponiblesFifo) ne rattache pas "collier " aux lots de "Collier"
+        assertThat(achatRepository.findLotsDisponiblesFifo("collier ", tenantA)).isEmpty();
+        assertThat(consommationRepository.findByVenteId(variante.getId())).isEmpty();
+        assertThat(consommationRepository.findByVenteId(exacte.getId()))
+                .singleElement()
+                .extracting(VenteLotConsommationEntity::getQuantiteConsommee)
+                .isEqualTo(2.0);
+        assertThat(achatRepository.findById(lot.getId()).orElseThrow().getQuantiteRestante()).isEqualTo(8.0);
+        assertThat(rapport.getNbVentesNonTracees()).isEqualTo(1);
+
+        // Second passage : mêmes chiffres
+        FifoBackfillRapportDto second = fifoBackfillService.executerBackfill(tenantA, false);
+        assertThat(second.getBeneficeTotalReconstitue()).isEqualByComparingTo(rapport.getBeneficeTotalReconstitue());
+        assertThat(achatRepository.findById(lot.getId()).orElseThrow().getQuantiteRestante()).isEqualTo(8.0);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private TenantEntity creerTenant(String uuid, String telephone) {
+        return tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid(uuid)
+                .nomEntreprise("Boutique " + uuid)
+                .numeroTelephone(telephone)
+                .plan(TenantEntity.Plan.PRO)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+    }
+
+    private UserEntity creerAdmin(TenantEntity tenant, String email) {
+        return userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Backfill").prenom("Admin")
+                .email(email)
+                .motDePasse("encoded")
+                .nomEntreprise(tenant.getNomEntreprise())
+                .numeroTelephone(tenant.getNumeroTelephone())
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+    }
+
+    private AchatEntity achat(TenantEntity tenant, UserEntity admin, String nomProduit,
+                              double quantite, String prixUnitaire, LocalDateTime date) {
+        BigDecimal prix = new BigDecimal(prixUnitaire);
+        return achatRepository.save(AchatEntity.builder()
+                .nomProduit(nomProduit)
+                .quantite(quantite)
+                .prixUnitaire(prix)
+                .prixTotal(prix.multiply(BigDecimal.valueOf(quantite)))
+                .dateAchat(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+
+    private VenteEntity vente(TenantEntity tenant, UserEntity admin, String nomProduit,
+                              double quantite, LocalDateTime date) {
+        return venteRepository.save(VenteEntity.builder()
+                .nomProduit(nomProduit)
+                .quantite(quantite)
+                .prixUnitaire(new BigDecimal("1500"))
+                .prixTotal(new BigDecimal("1500").multiply(BigDecimal.valueOf(quantite)))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .dateVente(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+}
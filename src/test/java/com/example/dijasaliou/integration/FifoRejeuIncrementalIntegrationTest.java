@@ -0,0 +1,228 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.entity.VenteLotConsommationEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteLotConsommationRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.FifoCalculService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — FifoCalculService : rejeu FIFO incrémental d'un produit
+ * à partir du point de modification.
+ *
+ * Jeu de départ : lot1 = 3 unités (J0), lot2 = 10 unités (J1) ;
+ * ventes v1, v2, v3 de 2 unités (J2, J3, J4), consommées au fil de l'eau.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-fifo-rejeu;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Rejeu FIFO incrémental")
+class FifoRejeuIncrementalIntegrationTest {
+
+    @Autowired
+    private FifoCalculService fifoCalculService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private VenteLotConsommationRepository consommationRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private LocalDateTime j0;
+    private AchatEntity lot1;
+    private AchatEntity lot2;
+    private VenteEntity v1;
+    private VenteEntity v2;
+    private VenteEntity v3;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-fifo-rejeu")
+                .nomEntreprise("Boutique Rejeu")
+                .numeroTelephone("+221776666666")
+                .plan(TenantEntity.Plan.PRO)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Rejeu").prenom("Admin")
+                .email("admin@fifo-rejeu.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Rejeu")
+                .numeroTelephone("+221776666666")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        j0 = LocalDateTime.now().minusDays(10);
+        lot1 = achat(3.0, "1000", j0);
+        lot2 = achat(10.0, "1200", j0.plusDays(1));
+        v1 = vente(2.0, j0.plusDays(2));
+        v2 = vente(2.0, j0.plusDays(3));
+        v3 = vente(2.0, j0.plusDays(4));
+        entityManager.flush();
+        // v1 : lot1 ×2 — v2 : lot1 ×1 + lot2 ×1 — v3 : lot2 ×2
+        List.of(v1, v2, v3).forEach(fifoCalculService::consommerStockFifo);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Quantité d'une ancienne vente réduite — les ventes suivantes reprennent le vrai ordre FIFO")
+    void modificationVente_rejoueLesVentesPosterieures() {
+        v1.setQuantite(1.0);
+        v1.calculerPrixTotal();
+        venteRepository.save(v1);
+
+        fifoCalculService.rejouerApresModificationVente(v1, "Riz", v1.getDateVente());
+        entityManager.flush();
+        entityManager.clear();
+
+        // v1 : lot1 ×1 — v2 : lot1 ×2 (et non plus lot1 ×1 + lot2 ×1) — v3 : lot2 ×2
+        assertThat(consommeParLot(v1)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 1.0));
+        assertThat(consommeParLot(v2)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 2.0));
+        assertThat(consommeParLot(v3)).containsExactlyInAnyOrderEntriesOf(Map.of(lot2.getId(), 2.0));
+        assertThat(restant(lot1)).isZero();
+        assertThat(restant(lot2)).isEqualTo(8.0);
+    }
+
+    @Test
+    @DisplayName("Modification d'une vente récente — les consommations antérieures ne sont pas réécrites")
+    void modificationVente_neTouchePasAuxVentesAnterieures() {
+        Long idConsommationV1 = consommationRepository.findByVenteId(v1.getId()).get(0).getId();
+
+        v3.setQuantite(3.0);
+        v3.calculerPrixTotal();
+        venteRepository.save(v3);
+        fifoCalculService.rejouerApresModificationVente(v3, "Riz", v3.getDateVente());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(consommationRepository.findByVenteId(v1.getId()))
+                .extracting(VenteLotConsommationEntity::getId)
+                .containsExactly(idConsommationV1);
+        assertThat(consommeParLot(v3)).containsExactlyInAnyOrderEntriesOf(Map.of(lot2.getId(), 3.0));
+        assertThat(restant(lot2)).isEqualTo(6.0);
+    }
+
+    @Test
+    @DisplayName("Quantité d'un lot augmentée — rejeu depuis la première vente qui y a puisé")
+    void modificationAchat_rejoueDepuisLaPremiereConsommation() {
+        LocalDateTime ancienneDate = lot1.getDateAchat();
+        lot1.setQuantite(6.0);
+        lot1.calculerPrixTotal();
+        achatRepository.save(lot1);
+
+        fifoCalculService.rejouerApresModificationAchat(lot1, "Riz", ancienneDate);
+        entityManager.flush();
+        entityManager.clear();
+
+        // 6 unités dans lot1 : les trois ventes y puisent entièrement
+        assertThat(consommeParLot(v1)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 2.0));
+        assertThat(consommeParLot(v2)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 2.0));
+        assertThat(consommeParLot(v3)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 2.0));
+        assertThat(restant(lot1)).isZero();
+        assertThat(restant(lot2)).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("Produit renommé à la casse près — l'ancien nom est rejoué comme un autre produit")
+    void modificationVente_renommageCasseSeule_rejoueLAncienProduit() {
+        v2.setNomProduit("riz ");
+        venteRepository.save(v2);
+
+        fifoCalculService.rejouerApresModificationVente(v2, "Riz", v2.getDateVente());
+        entityManager.flush();
+        entityManager.clear();
+
+        // Les requêtes du rejeu comparent le nom exact : "riz " n'a aucun lot,
+        // et v3 reprend dans lot1 l'unité que v2 y avait prise
+        assertThat(consommeParLot(v2)).isEmpty();
+        assertThat(consommeParLot(v3)).containsExactlyInAnyOrderEntriesOf(Map.of(lot1.getId(), 1.0, lot2.getId(), 1.0));
+        assertThat(restant(lot1)).isZero();
+        assertThat(restant(lot2)).isEqualTo(9.0);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private Map<String, Double> consommeParLot(VenteEntity vente) {
+        return consommationRepository.findByVenteId(vente.getId()).stream()
+                .collect(Collectors.toMap(c -> c.getAchat().getId(),
+                        VenteLotConsommationEntity::getQuantiteConsommee, Double::sum));
+    }
+
+    private double restant(AchatEntity lot) {
+        return achatRepository.findById(lot.getId()).orElseThrow().getQuantiteRestante();
+    }
+
+    private AchatEntity achat(double quantite, String prixUnitaire, LocalDateTime date) {
+        BigDecimal prix = new BigDecimal(prixUnitaire);
+        return achatRepository.save(AchatEntity.builder()
+                .nomProduit("Riz")
+                .quantite(quantite)
+                .prixUnitaire(prix)
+                .prixTotal(prix.multiply(BigDecimal.valueOf(quantite)))
+                .dateAchat(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+
+    private VenteEntity vente(double quantite, LocalDateTime date) {
+        return venteRepository.save(VenteEntity.builder()
+                .nomProduit("Riz")
+                .quantite(quantite)
+                .prixUnitaire(new BigDecimal("1500"))
+                .prixTotal(new BigDecimal("1500").multiply(BigDecimal.valueOf(quantite)))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .dateVente(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.dto.CreateBonLivraisonRequest;
+import com.example.dijasaliou.dto.RapportJobDto;
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.service.BonLivraisonService;
+import com.example.dijasaliou.service.DepenseService;
+import com.example.dijasaliou.service.DonneesVersionService;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.RapportJobService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — rapports PDF générés en arrière-plan et gardés en cache disque.
+ *
+ * PAS de @Transactional : la génération tourne sur un thread @Async et la version des
+ * données n'est incrémentée qu'après commit. Chaque test crée son propre tenant.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-rapport-job;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000",
+        "app.rapports.cache-dir=target/it-rapports-cache"
+})
+@DisplayName("Tests d'intégration — Rapports PDF en arrière-plan")
+class RapportJobIntegrationTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final Duration DELAI = Duration.ofSeconds(30);
+
+    @Autowired
+    private RapportJobService rapportJobService;
+
+    @Autowired
+    private DonneesVersionService donneesVersionService;
+
+    @Autowired
+    private DepenseService depenseService;
+
+    @Autowired
+    private BonLivraisonService bonLivraisonService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private LocalDate debut;
+    private LocalDate fin;
+
+    @BeforeEach
+    void setUp() {
+        int n = SEQUENCE.incrementAndGet();
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-rapport-job-" + n)
+                .nomEntreprise("Boutique Rapport")
+                .numeroTelephone("+22177555000" + n)
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Rapport").prenom("Admin")
+                .email("admin" + n + "@rapport-job.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Rapport")
+                .numeroTelephone("+22177555000" + n)
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+
+        fin = LocalDate.now().minusDays(1);
+        debut = fin.minusDays(29);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("Demandes identiques — une seule génération, puis servie depuis le cache")
+    void demandesIdentiques_memeRapport() throws Exception {
+        RapportJobDto premier = rapportJobService.soumettre(tenant, debut, fin);
+        RapportJobDto second = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(second.getId()).isEqualTo(premier.getId());
+
+        Path fichier = rapportJobService.attendre(tenant, premier.getId(), DELAI).orElseThrow();
+        byte[] contenu = Files.readAllBytes(fichier);
+        assertThat(new String(contenu, 0, 5, StandardCharsets.US_ASCII)).isEqualTo("%PDF-");
+
+        RapportJobDto enCache = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(enCache.getId()).isEqualTo(premier.getId());
+        assertThat(enCache.getStatut()).isEqualTo(RapportJobDto.Statut.TERMINE);
+        assertThat(enCache.getTelechargement()).isEqualTo("/rapports/pdf/" + premier.getId());
+        assertThat(rapportJobService.statut(tenant, premier.getId()))
+                .hasValueSatisfying(s -> assertThat(s.getStatut()).isEqualTo(RapportJobDto.Statut.TERMINE));
+    }
+
+    @Test
+    @DisplayName("Écriture commitée — nouvelle version des données, nouveau rapport")
+    void ecritureCommitee_invalideLeRapport() {
+        RapportJobDto avant = rapportJobService.soumettre(tenant, debut, fin);
+        rapportJobService.attendre(tenant, avant.getId(), DELAI).orElseThrow();
+        long version = donneesVersionService.versionCourante(tenant);
+
+        depenseService.creerDepense(DepenseEntity.builder()
+                .libelle("Transport")
+                .montant(new BigDecimal("500"))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(LocalDateTime.now().minusDays(2))
+                .build(), admin);
+
+        assertThat(donneesVersionService.versionCourante(tenant)).isEqualTo(version + 1);
+        RapportJobDto apres = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(apres.getId()).isNotEqualTo(avant.getId());
+        assertThat(rapportJobService.attendre(tenant, apres.getId(), DELAI)).isPresent();
+        // L'ancien fichier reste servable tant que le cache n'a pas besoin de place
+        assertThat(rapportJobService.fichierPret(tenant, avant.getId())).isPresent();
+    }
+
+    @Test
+    @DisplayName("Nom ou logo de l'entreprise modifié — nouveau rapport, même sans écriture de données")
+    void identiteEntrepriseModifiee_nouveauRapport() {
+        RapportJobDto avant = rapportJobService.soumettre(tenant, debut, fin);
+        rapportJobService.attendre(tenant, avant.getId(), DELAI).orElseThrow();
+        long version = donneesVersionService.versionCourante(tenant);
+
+        tenant.setNomEntreprise("Boutique Rapport Renommée");
+        tenant = tenantRepository.saveAndFlush(tenant);
+        RapportJobDto apresNom = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(apresNom.getId()).isNotEqualTo(avant.getId());
+        rapportJobService.attendre(tenant, apresNom.getId(), DELAI).orElseThrow();
+
+        tenant.setLogoUrl("https://cdn.example.com/logo-" + tenant.getTenantUuid() + ".png");
+        tenant = tenantRepository.saveAndFlush(tenant);
+        RapportJobDto apresLogo = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(apresLogo.getId()).isNotIn(avant.getId(), apresNom.getId());
+
+        assertThat(donneesVersionService.versionCourante(tenant)).isEqualTo(version);
+        assertThat(rapportJobService.attendre(tenant, apresLogo.getId(), DELAI)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Bon de livraison créé puis supprimé — la clé du rapport change à chaque écriture")
+    void bonLivraison_invalideLeRapport() {
+        RapportJobDto avant = rapportJobService.soumettre(tenant, debut, fin);
+        rapportJobService.attendre(tenant, avant.getId(), DELAI).orElseThrow();
+
+        CreateBonLivraisonRequest.LigneBLRequest ligne = new CreateBonLivraisonRequest.LigneBLRequest();
+        ligne.setNomProduit("Riz");
+        ligne.setQuantite(2.0);
+        CreateBonLivraisonRequest request = new CreateBonLivraisonRequest();
+        request.setClientNom("Fatou Diallo");
+        request.setAdresseLivraison("Rue 10, Dakar");
+        request.setLignes(List.of(ligne));
+        String id = bonLivraisonService.creer(request).getId();
+
+        RapportJobDto apresCreation = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(apresCreation.getId()).isNotEqualTo(avant.getId());
+        rapportJobService.attendre(tenant, apresCreation.getId(), DELAI).orElseThrow();
+
+        bonLivraisonService.supprimer(id);
+
+        RapportJobDto apresSuppression = rapportJobService.soumettre(tenant, debut, fin);
+        assertThat(apresSuppression.getId()).isNotIn(avant.getId(), apresCreation.getId());
+        assertThat(rapportJobService.attendre(tenant, apresSuppression.getId(), DELAI)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Clé d'un autre tenant ou mal formée — introuvable")
+    void cleEtrangere_introuvable() {
+        RapportJobDto job = rapportJobService.soumettre(tenant, debut, fin);
+        rapportJobService.attendre(tenant, job.getId(), DELAI).orElseThrow();
+
+        TenantEntity autre = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-rapport-job-autre-" + SEQUENCE.incrementAndGet())
+                .nomEntreprise("Autre Boutique")
+                .numeroTelephone("+221775559999")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        assertThat(rapportJobService.statut(autre, job.getId())).isEmpty();
+        assertThat(rapportJobService.fichierPret(autre, job.getId())).isEmpty();
+        assertThat(rapportJobService.fichierPret(tenant, "../" + job.getId())).isEmpty();
+    }
+}
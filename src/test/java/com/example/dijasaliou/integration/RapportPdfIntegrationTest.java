@@ -0,0 +1,207 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.DepenseRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.RapportService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — rapport PDF : requêtes agrégées par section.
+ *
+ * Période : du 1er au 31 mars 2026, période précédente : du 29 janvier au 28 février.
+ * Un second tenant a des ventes sur les mêmes dates : elles ne doivent jamais compter.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-rapport-pdf;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Rapport PDF agrégé en base")
+class RapportPdfIntegrationTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2026, 3, 1);
+    private static final LocalDate FIN   = LocalDate.of(2026, 3, 31);
+
+    @Autowired
+    private RapportService rapportService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private DepenseRepository depenseRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(tenant("it-tenant-rapport-pdf"));
+        UserEntity admin = userRepository.saveAndFlush(admin(tenant, "admin@rapport-pdf.com"));
+        TenantEntity autre = tenantRepository.saveAndFlush(tenant("it-tenant-rapport-pdf-autre"));
+        UserEntity adminAutre = userRepository.saveAndFlush(admin(autre, "admin@rapport-pdf-autre.com"));
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+
+        vente(admin, "Riz", "1000", VenteEntity.ModePaiementVente.ESPECES, DEBUT.atStartOfDay());
+        vente(admin, "Riz", "1000", VenteEntity.ModePaiementVente.WAVE, LocalDateTime.of(2026, 3, 10, 9, 0));
+        vente(admin, "Huile", "3000", VenteEntity.ModePaiementVente.ESPECES, FIN.atTime(23, 59, 59));
+        vente(admin, "Sucre", "500", VenteEntity.ModePaiementVente.CREDIT, LocalDateTime.of(2026, 3, 15, 9, 0));
+        // Période précédente (bornes comprises) et hors périodes
+        vente(admin, "Riz", "800", VenteEntity.ModePaiementVente.ESPECES, LocalDate.of(2026, 1, 29).atStartOfDay());
+        vente(admin, "Riz", "700", VenteEntity.ModePaiementVente.ESPECES, LocalDateTime.of(2026, 2, 28, 18, 0));
+        vente(admin, "Riz", "9999", VenteEntity.ModePaiementVente.ESPECES, LocalDateTime.of(2026, 1, 28, 18, 0));
+        vente(admin, "Riz", "9999", VenteEntity.ModePaiementVente.ESPECES, LocalDate.of(2026, 4, 1).atStartOfDay());
+        // Autre tenant, mêmes dates
+        vente(adminAutre, "Riz", "50000", VenteEntity.ModePaiementVente.ESPECES, LocalDateTime.of(2026, 3, 10, 9, 0));
+
+        depense(admin, "400", DepenseEntity.CategorieDepense.AUTRE, LocalDateTime.of(2026, 3, 5, 9, 0));
+        depense(admin, "600", DepenseEntity.CategorieDepense.AUTRE, LocalDateTime.of(2026, 3, 6, 9, 0));
+        depense(admin, "250", DepenseEntity.CategorieDepense.AUTRE, LocalDateTime.of(2026, 2, 6, 9, 0));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("sumComparaisonPeriodes — période actuelle et précédente en une ligne, tenant isolé")
+    void comparaison_uneLignePourLesDeuxPeriodes() {
+        LocalDate debutPrev = LocalDate.of(2026, 1, 29);
+
+        List<Object[]> ventes = venteRepository.sumComparaisonPeriodes(
+                tenant, debutPrev.atStartOfDay(), DEBUT.atStartOfDay(), FIN.plusDays(1).atStartOfDay());
+        assertThat(ventes).hasSize(1);
+        assertThat(((Number) ventes.get(0)[0]).longValue()).isEqualTo(4);
+        assertThat(new BigDecimal(ventes.get(0)[1].toString())).isEqualByComparingTo("5500");
+        assertThat(((Number) ventes.get(0)[2]).longValue()).isEqualTo(2);
+        assertThat(new BigDecimal(ventes.get(0)[3].toString())).isEqualByComparingTo("1500");
+
+        Object[] depenses = depenseRepository.sumComparaisonPeriodes(
+                tenant, debutPrev.atStartOfDay(), DEBUT.atStartOfDay(), FIN.plusDays(1).atStartOfDay()).get(0);
+        assertThat(new BigDecimal(depenses[1].toString())).isEqualByComparingTo("1000");
+        assertThat(new BigDecimal(depenses[3].toString())).isEqualByComparingTo("250");
+    }
+
+    @Test
+    @DisplayName("findTopProduitsPeriode / findDernieresVentesPeriode — tri et limite faits en base")
+    void topEtReleve_limitesEnBase() {
+        List<Object[]> top = venteRepository.findTopProduitsPeriode(
+                tenant, DEBUT.atStartOfDay(), FIN.plusDays(1).atStartOfDay(), PageRequest.of(0, 2));
+        assertThat(top).extracting(row -> row[0]).containsExactly("Huile", "Riz");
+        assertThat(new BigDecimal(top.get(1)[2].toString())).isEqualByComparingTo("2000");
+
+        List<Object[]> releve = venteRepository.findDernieresVentesPeriode(
+                tenant, DEBUT.atStartOfDay(), FIN.plusDays(1).atStartOfDay(), PageRequest.of(0, 2));
+        assertThat(releve).extracting(row -> row[1]).containsExactly("Huile", "Sucre");
+    }
+
+    @Test
+    @DisplayName("genererRapportPdf — document produit à partir des agrégats")
+    void genererRapportPdf_produitUnPdf() {
+        byte[] pdf = rapportService.genererRapportPdf(DEBUT, FIN);
+
+        assertThat(pdf).isNotEmpty();
+        assertThat(new String(pdf, 0, 5, StandardCharsets.US_ASCII)).isEqualTo("%PDF-");
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private TenantEntity tenant(String uuid) {
+        return TenantEntity.builder()
+                .tenantUuid(uuid)
+                .nomEntreprise("Boutique Rapport")
+                .numeroTelephone("+221777777777")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build();
+    }
+
+    private UserEntity admin(TenantEntity t, String email) {
+        return UserEntity.builder()
+                .nom("Rapport").prenom("Admin")
+                .email(email)
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Rapport")
+                .numeroTelephone("+221777777777")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(t)
+                .build();
+    }
+
+    private void vente(UserEntity user, String produit, String montant,
+                       VenteEntity.ModePaiementVente mode, LocalDateTime date) {
+        venteRepository.save(VenteEntity.builder()
+                .nomProduit(produit)
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal(montant))
+                .prixTotal(new BigDecimal(montant))
+                .modePaiement(mode)
+                .dateVente(date)
+                .utilisateur(user)
+                .tenant(user.getTenant())
+                .build());
+    }
+
+    private void depense(UserEntity user, String montant, DepenseEntity.CategorieDepense categorie,
+                         LocalDateTime date) {
+        depenseRepository.save(DepenseEntity.builder()
+                .libelle("Frais")
+                .montant(new BigDecimal(montant))
+                .categorie(categorie)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(date)
+                .utilisateur(user)
+                .tenant(user.getTenant())
+                .build());
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.DepenseEntity;
+import com.example.dijasaliou.entity.ModePaiementCaisse;
+import com.example.dijasaliou.entity.RollupJourEtatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.DepenseRepository;
+import com.example.dijasaliou.repository.RollupJourEtatRepository;
+import com.example.dijasaliou.repository.RollupJourRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.DepenseService;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.RollupJourService;
+import com.example.dijasaliou.service.RollupJourTotaux;
+import com.example.dijasaliou.service.TacheVerrouService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — agrégats journaliers de reporting (rollup_jour).
+ *
+ * Ventes : Espèces 1 500 à J-5, Crédit 2 000 à J-4, perte (casse) à J-3, Wave 700 à J-2,
+ * Espèces 300 aujourd'hui ; dépense 500 à J-3. J = aujourd'hui, fuseau du tenant.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-rollup-jour;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Agrégats journaliers de reporting")
+class RollupJourIntegrationTest {
+
+    @Autowired
+    private RollupJourService rollupJourService;
+
+    @Autowired
+    private DepenseService depenseService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private DepenseRepository depenseRepository;
+
+    @Autowired
+    private RollupJourRepository rollupRepository;
+
+    @Autowired
+    private RollupJourEtatRepository etatRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private LocalDate aujourdhui;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-rollup-jour")
+                .nomEntreprise("Boutique Rollup")
+                .numeroTelephone("+221777777777")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Rollup").prenom("Admin")
+                .email("admin@rollup-jour.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Rollup")
+                .numeroTelephone("+221777777777")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        tenantService.getCurrentTenantSnapshot();
+
+        aujourdhui = LocalDate.now(ZoneId.of(tenant.getTimezone()));
+        vente("1500", VenteEntity.ModePaiementVente.ESPECES, null, jour(-5));
+        vente("2000", VenteEntity.ModePaiementVente.CREDIT, null, jour(-4));
+        vente("0", VenteEntity.ModePaiementVente.ESPECES, VenteEntity.TypeSortie.PERTE_CASSE, jour(-3));
+        vente("700", VenteEntity.ModePaiementVente.WAVE, null, jour(-2));
+        vente("300", VenteEntity.ModePaiementVente.ESPECES, null, aujourdhui.atTime(0, 5));
+        depenseRepository.save(DepenseEntity.builder()
+                .libelle("Transport")
+                .montant(new BigDecimal("500"))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(jour(-3))
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+        entityManager.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("rattraper — premier tick crée l'état, le suivant agrège jusqu'à la veille")
+    void rattrapage_agregeLesJourneesTerminees() {
+        RollupJourTotaux brut = rollupJourService.totaux(tenant, aujourdhui.minusDays(10), aujourdhui);
+
+        assertThat(rollupJourService.rattraper(tenant)).isZero();
+        assertThat(etat().getCalculeJusquAu()).isNull();
+
+        // Point de départ = veille de la plus ancienne vente (J-5), jusqu'à hier
+        assertThat(rollupJourService.rattraper(tenant)).isEqualTo(5);
+        assertThat(etat().getCalculeJusquAu()).isEqualTo(aujourdhui.minusDays(1));
+        assertThat(rollupRepository.count()).isPositive();
+
+        RollupJourTotaux totaux = rollupJourService.totaux(tenant, aujourdhui.minusDays(10), aujourdhui);
+        assertMemesTotaux(totaux, brut);
+        assertThat(totaux.caEncaisse()).isEqualByComparingTo("2500");
+        assertThat(totaux.nbVentesEncaissees()).isEqualTo(3);
+        assertThat(totaux.montantVentes()).isEqualByComparingTo("4500");
+        assertThat(totaux.nbVentes()).isEqualTo(5);
+        assertThat(totaux.nbSorties()).isEqualTo(1);
+        assertThat(totaux.montantDepenses()).isEqualByComparingTo("500");
+
+        // Période à cheval : agrégats jusqu'à J-3, rien de J-2 compté deux fois
+        assertThat(rollupJourService.totaux(tenant, aujourdhui.minusDays(4), aujourdhui.minusDays(3)).montantVentes())
+                .isEqualByComparingTo("2000");
+        assertThat(rollupJourService.compterVentes(tenant)).isEqualTo(venteRepository.countByTenantId(tenant.getId()));
+    }
+
+    @Test
+    @DisplayName("Écriture antidatée — agrégats supprimés depuis son jour, totaux exacts")
+    void ecritureAntidatee_invalideLesAgregats() {
+        rollupJourService.rattraper(tenant);
+        rollupJourService.rattraper(tenant);
+        assertThat(etat().getCalculeJusquAu()).isEqualTo(aujourdhui.minusDays(1));
+
+        DepenseEntity depense = DepenseEntity.builder()
+                .libelle("Réparation")
+                .montant(new BigDecimal("300"))
+                .categorie(DepenseEntity.CategorieDepense.AUTRE)
+                .modePaiement(ModePaiementCaisse.ESPECES)
+                .dateDepense(jour(-4))
+                .build();
+        depenseService.creerDepense(depense, admin);
+        entityManager.flush();
+
+        assertThat(etat().getCalculeJusquAu()).isEqualTo(aujourdhui.minusDays(5));
+        RollupJourTotaux totaux = rollupJourService.totaux(tenant, aujourdhui.minusDays(10), aujourdhui);
+        assertThat(totaux.montantDepenses()).isEqualByComparingTo("800");
+        assertThat(totaux.nbDepenses()).isEqualTo(2);
+
+        // Le tick suivant réagrège J-4..J-1
+        assertThat(rollupJourService.rattraper(tenant)).isEqualTo(4);
+        assertMemesTotaux(rollupJourService.totaux(tenant, aujourdhui.minusDays(10), aujourdhui), totaux);
+    }
+
+    @Test
+    @DisplayName("Tranches — tenant et état lus uniquement par la requête de leur tranche")
+    void requetesParTranche_filtrentEnBase() {
+        rollupJourService.rattraper(tenant);
+        int nbTranches = 3;
+        int sienne = TacheVerrouService.tranche(tenant.getId(), nbTranches);
+
+        for (int tranche = 0; tranche < nbTranches; tranche++) {
+            int t = tranche;
+            List<Long> tenants = tenantRepository.findByDeletedFalseDansTranche(nbTranches, t).stream()
+                    .map(TenantEntity::getId).toList();
+            List<Long> etats = etatRepository.findCalculeJusquAuParTenant(nbTranches, t).stream()
+                    .map(row -> (Long) row[0]).toList();
+
+            assertThat(tenants).allMatch(id -> TacheVerrouService.tranche(id, nbTranches) == t);
+            assertThat(etats).allMatch(id -> TacheVerrouService.tranche(id, nbTranches) == t);
+            if (t == sienne) {
+                assertThat(tenants).contains(tenant.getId());
+                assertThat(etats).contains(tenant.getId());
+            } else {
+                assertThat(tenants).doesNotContain(tenant.getId());
+                assertThat(etats).doesNotContain(tenant.getId());
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private RollupJourEtatEntity etat() {
+        entityManager.clear();
+        return etatRepository.findByTenant(tenant).orElseThrow();
+    }
+
+    private void assertMemesTotaux(RollupJourTotaux obtenu, RollupJourTotaux attendu) {
+        assertThat(obtenu.caEncaisse()).isEqualByComparingTo(attendu.caEncaisse());
+        assertThat(obtenu.nbVentesEncaissees()).isEqualTo(attendu.nbVentesEncaissees());
+        assertThat(obtenu.montantVentes()).isEqualByComparingTo(attendu.montantVentes());
+        assertThat(obtenu.nbVentes()).isEqualTo(attendu.nbVentes());
+        assertThat(obtenu.nbSorties()).isEqualTo(attendu.nbSorties());
+        assertThat(obtenu.montantDepenses()).isEqualByComparingTo(attendu.montantDepenses());
+        assertThat(obtenu.nbDepenses()).isEqualTo(attendu.nbDepenses());
+        assertThat(obtenu.montantAchats()).isEqualByComparingTo(attendu.montantAchats());
+    }
+
+    private LocalDateTime jour(int decalage) {
+        return aujourdhui.plusDays(decalage).atTime(12, 0);
+    }
+
+    private void vente(String montant, VenteEntity.ModePaiementVente mode,
+                       VenteEntity.TypeSortie typeSortie, LocalDateTime date) {
+        venteRepository.save(VenteEntity.builder()
+                .nomProduit("Riz")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal(montant))
+                .prixTotal(new BigDecimal(montant))
+                .modePaiement(mode)
+                .typeSortie(typeSortie)
+                .dateVente(date)
+                .utilisateur(admin)
+                .tenant(tenant)
+                .build());
+    }
+}
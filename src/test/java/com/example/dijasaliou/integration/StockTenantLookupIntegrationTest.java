@@ -0,0 +1,183 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.jwt.JwtService;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.StockProduitService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests d'intégration — GET /stock : nombre de lectures de la table tenants par requête.
+ *
+ * Un StatementInspector Hibernate compte les SELECT dont la table principale est
+ * "tenants" (les sous-requêtes du filtre tenantFilter ne sont pas comptées).
+ * Le nombre de lectures doit être identique avec 2 ou 40 produits en stock.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-stock;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.dijasaliou.integration.StockTenantLookupIntegrationTest$CompteurLecturesTenant"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Stock : lectures du tenant par requête")
+class StockTenantLookupIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private StockProduitService stockProduitService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+    private String jwt;
+    private int nbProduits;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-stock")
+                .nomEntreprise("Boutique Stock")
+                .numeroTelephone("+221773333333")
+                .plan(TenantEntity.Plan.PRO)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Stock").prenom("Admin")
+                .email("admin@stock.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Stock")
+                .numeroTelephone("+221773333333")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        jwt = jwtService.generateToken("admin@stock.com", "it-tenant-stock", UserEntity.Role.ADMIN);
+        nbProduits = 0;
+    }
+
+    @Test
+    @DisplayName("GET /stock — lectures du tenant constantes quel que soit le nombre de produits")
+    void getStock_lecturesTenantIndependantesDuNombreDeProduits() throws Exception {
+        ajouterProduits(2);
+        int lecturesPetitStock = lecturesTenantPourGetStock();
+
+        ajouterProduits(38);
+        int lecturesGrandStock = lecturesTenantPourGetStock();
+
+        assertThat(lecturesGrandStock).isEqualTo(lecturesPetitStock);
+        // SubscriptionExpirationFilter (entité) + snapshot de la requête, caches vides
+        assertThat(lecturesGrandStock).isLessThanOrEqualTo(2);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Exécute GET /stock, caches vidés, et retourne le nombre de SELECT sur la table tenants. */
+    private int lecturesTenantPourGetStock() throws Exception {
+        cacheManager.getCacheNames().forEach(nom -> cacheManager.getCache(nom).clear());
+        CompteurLecturesTenant.reinitialiser();
+
+        mockMvc.perform(get("/stock")
+                        .header("Authorization", "Bearer " + jwt)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(nbProduits)));
+
+        return CompteurLecturesTenant.lectures();
+    }
+
+    private void ajouterProduits(int nombre) {
+        for (int i = 0; i < nombre; i++, nbProduits++) {
+            achatRepository.save(AchatEntity.builder()
+                    .nomProduit("Produit " + nbProduits)
+                    .quantite(10.0)
+                    .prixUnitaire(new BigDecimal("1000"))
+                    .prixTotal(new BigDecimal("10000"))
+                    .dateAchat(LocalDateTime.now())
+                    .utilisateur(admin)
+                    .tenant(tenant)
+                    .build());
+        }
+        achatRepository.flush();
+        stockProduitService.reconstruire(tenant);
+    }
+
+    /**
+     * Compte les SELECT dont la table principale est "tenants".
+     * Instancié par Hibernate (propriété hibernate.session_factory.statement_inspector).
+     */
+    public static class CompteurLecturesTenant implements StatementInspector {
+
+        private static final Pattern SELECT_TENANTS =
+                Pattern.compile("^select [^(]* from tenants\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+        private static final AtomicInteger LECTURES = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            if (SELECT_TENANTS.matcher(sql.trim()).matches()) {
+                LECTURES.incrementAndGet();
+            }
+            return sql;
+        }
+
+        static void reinitialiser() {
+            LECTURES.set(0);
+        }
+
+        static int lectures() {
+            return LECTURES.get();
+        }
+    }
+}
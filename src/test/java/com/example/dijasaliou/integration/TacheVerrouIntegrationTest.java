@@ -0,0 +1,141 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.annotation.TacheExclusive;
+import com.example.dijasaliou.entity.TacheVerrouEntity;
+import com.example.dijasaliou.repository.TacheVerrouRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.TacheVerrouService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — verrous des tâches planifiées (table tache_verrou).
+ *
+ * PAS de @Transactional : les verrous sont pris et relâchés dans leurs propres
+ * transactions. Chaque test utilise ses propres noms de tâche.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-tache-verrou;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000"
+})
+@DisplayName("Tests d'intégration — Verrous des tâches planifiées")
+class TacheVerrouIntegrationTest {
+
+    private static final Duration MAX = Duration.ofMinutes(30);
+
+    @Autowired
+    private TacheVerrouService verrouService;
+
+    @Autowired
+    private TacheVerrouRepository verrouRepository;
+
+    @Autowired
+    private TacheTest tacheTest;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        TacheTest tacheTest() {
+            return new TacheTest();
+        }
+    }
+
+    public static class TacheTest {
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @TacheExclusive(nom = "it-tache-annotee", verrouMax = "PT30M", verrouMin = "PT5M")
+        public void executer() {
+            executions.incrementAndGet();
+        }
+
+        // Lu via une méthode : les champs du proxy AOP ne sont pas ceux du bean
+        public int getExecutions() {
+            return executions.get();
+        }
+    }
+
+    @Test
+    @DisplayName("acquerir — un seul détenteur tant que le verrou n'a pas expiré")
+    void acquerir_unSeulDetenteur() {
+        LocalDateTime priseLe = verrouService.acquerir("it-verrou-a", MAX);
+        assertThat(priseLe).isNotNull();
+        assertThat(verrouService.acquerir("it-verrou-a", MAX)).isNull();
+
+        // Libéré sans durée minimale : de nouveau disponible
+        verrouService.liberer("it-verrou-a", priseLe, Duration.ZERO);
+        assertThat(verrouService.acquerir("it-verrou-a", MAX)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("acquerir — verrou d'une autre instance : refusé tant qu'il court, repris après expiration")
+    void acquerir_verrouAutreInstance() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        verrouRepository.saveAndFlush(TacheVerrouEntity.builder()
+                .nom("it-verrou-b")
+                .proprietaire("autre-instance")
+                .verrouilleLe(maintenant)
+                .verrouilleJusquA(maintenant.plusMinutes(10))
+                .build());
+        assertThat(verrouService.acquerir("it-verrou-b", MAX)).isNull();
+
+        // L'autre instance s'est arrêtée : le verrou expire
+        TacheVerrouEntity verrou = verrouRepository.findById("it-verrou-b").orElseThrow();
+        verrou.setVerrouilleJusquA(maintenant.minusSeconds(1));
+        verrouRepository.saveAndFlush(verrou);
+
+        assertThat(verrouService.acquerir("it-verrou-b", MAX)).isNotNull();
+        assertThat(verrouRepository.findById("it-verrou-b").orElseThrow().getProprietaire())
+                .isEqualTo(verrouService.getProprietaire());
+    }
+
+    @Test
+    @DisplayName("liberer — durée minimale : le même tick n'est pas rejoué par une instance en retard")
+    void liberer_dureeMinimale() {
+        LocalDateTime priseLe = verrouService.acquerir("it-verrou-c", MAX);
+        verrouService.liberer("it-verrou-c", priseLe, Duration.ofMinutes(5));
+
+        assertThat(verrouService.acquerir("it-verrou-c", MAX)).isNull();
+    }
+
+    @Test
+    @DisplayName("executerParTranches — chaque tranche traitée une fois par tick")
+    void executerParTranches_chaqueTrancheUneFois() {
+        List<Integer> traitees = new ArrayList<>();
+
+        int nb = verrouService.executerParTranches("it-tranches", 4, MAX, Duration.ofMinutes(5), traitees::add);
+        assertThat(nb).isEqualTo(4);
+        assertThat(traitees).containsExactlyInAnyOrder(0, 1, 2, 3);
+
+        // Seconde instance au même tick : toutes les tranches sont déjà prises
+        assertThat(verrouService.executerParTranches("it-tranches", 4, MAX, Duration.ofMinutes(5), traitees::add))
+                .isZero();
+        assertThat(traitees).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("@TacheExclusive — la méthode n'est exécutée qu'une fois par tick")
+    void tacheExclusive_uneExecutionParTick() {
+        tacheTest.executer();
+        tacheTest.executer();
+
+        assertThat(tacheTest.getExecutions()).isEqualTo(1);
+        assertThat(verrouRepository.findById("it-tache-annotee")).isPresent();
+    }
+}
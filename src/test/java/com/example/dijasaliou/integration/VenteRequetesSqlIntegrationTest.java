@@ -0,0 +1,202 @@
+package com.example.dijasaliou.integration;
+
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.TenantRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.example.dijasaliou.repository.VenteRepository;
+import com.example.dijasaliou.service.EmailService;
+import com.example.dijasaliou.service.StockProduitService;
+import com.example.dijasaliou.service.TenantService;
+import com.example.dijasaliou.service.VenteService;
+import com.example.dijasaliou.tenant.TenantContext;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests d'intégration — VenteService.creerVente : nombre de requêtes SQL par vente.
+ *
+ * Un StatementInspector Hibernate compte toutes les requêtes émises pendant
+ * creerVente (flush compris). Le contexte de vente étant chargé une seule fois
+ * depuis le ledger stock_produit, ce nombre ne doit pas dépendre de l'historique
+ * d'achats/ventes du produit.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@TestPropertySource(locations = "classpath:application-integration.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:dijasaliou-it-vente-sql;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.example.dijasaliou.integration.VenteRequetesSqlIntegrationTest$CompteurRequetes"
+})
+@Transactional
+@DisplayName("Tests d'intégration — Vente : requêtes SQL par creerVente")
+class VenteRequetesSqlIntegrationTest {
+
+    /** Contexte (ledger + admin), insert vente, màj ledger, FIFO (lots, consommation, lot). */
+    private static final int REQUETES_MAX_PAR_VENTE = 10;
+
+    @Autowired
+    private VenteService venteService;
+
+    @Autowired
+    private TenantService tenantService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    @Autowired
+    private StockProduitService stockProduitService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    private TenantEntity tenant;
+    private UserEntity admin;
+
+    @BeforeEach
+    void setUp() {
+        tenant = tenantRepository.saveAndFlush(TenantEntity.builder()
+                .tenantUuid("it-tenant-vente-sql")
+                .nomEntreprise("Boutique Vente")
+                .numeroTelephone("+221774444444")
+                .plan(TenantEntity.Plan.PRO)
+                .actif(true)
+                .essaiUtilise(true)
+                .dateExpiration(LocalDate.now().plusDays(30).atStartOfDay())
+                .build());
+
+        admin = userRepository.saveAndFlush(UserEntity.builder()
+                .nom("Vente").prenom("Admin")
+                .email("admin@vente-sql.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Vente")
+                .numeroTelephone("+221774444444")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build());
+
+        TenantContext.setCurrentTenant(tenant.getTenantUuid());
+        TenantContext.setCurrentTenantPk(tenant.getId());
+        // Snapshot chargé avant la mesure, comme dans une requête HTTP (filtre JWT)
+        tenantService.getCurrentTenantSnapshot();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("creerVente — nombre de requêtes constant quel que soit l'historique du produit")
+    void creerVente_requetesIndependantesDeLHistorique() {
+        ajouterHistorique("Riz", 1, 0);
+        ajouterHistorique("Huile", 30, 25);
+        stockProduitService.reconstruire(tenant);
+        entityManager.flush();
+        entityManager.clear();
+
+        int requetesPetitHistorique = requetesPourCreerVente("Riz");
+        int requetesGrandHistorique = requetesPourCreerVente("Huile");
+
+        assertThat(requetesGrandHistorique).isEqualTo(requetesPetitHistorique);
+        assertThat(requetesGrandHistorique).isLessThanOrEqualTo(REQUETES_MAX_PAR_VENTE);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /** Crée une vente d'une unité (flush compris) et retourne le nombre de requêtes émises. */
+    private int requetesPourCreerVente(String nomProduit) {
+        CompteurRequetes.reinitialiser();
+
+        venteService.creerVente(VenteEntity.builder()
+                .nomProduit(nomProduit)
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1500"))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .build(), admin);
+        entityManager.flush();
+
+        int requetes = CompteurRequetes.requetes();
+        entityManager.clear();
+        return requetes;
+    }
+
+    private void ajouterHistorique(String nomProduit, int nbAchats, int nbVentes) {
+        for (int i = 0; i < nbAchats; i++) {
+            achatRepository.save(AchatEntity.builder()
+                    .nomProduit(nomProduit)
+                    .quantite(10.0)
+                    .prixUnitaire(new BigDecimal("1000"))
+                    .prixTotal(new BigDecimal("10000"))
+                    .dateAchat(LocalDateTime.now().minusDays(nbAchats - i))
+                    .utilisateur(admin)
+                    .tenant(tenant)
+                    .build());
+        }
+        for (int i = 0; i < nbVentes; i++) {
+            venteRepository.save(VenteEntity.builder()
+                    .nomProduit(nomProduit)
+                    .quantite(1.0)
+                    .prixUnitaire(new BigDecimal("1500"))
+                    .prixTotal(new BigDecimal("1500"))
+                    .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                    .dateVente(LocalDateTime.now().minusDays(nbVentes - i))
+                    .utilisateur(admin)
+                    .tenant(tenant)
+                    .build());
+        }
+    }
+
+    /**
+     * Compte toutes les requêtes SQL préparées par Hibernate.
+     * Instancié par Hibernate (propriété hibernate.session_factory.statement_inspector).
+     */
+    public static class CompteurRequetes implements StatementInspector {
+
+        private static final AtomicInteger REQUETES = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            REQUETES.incrementAndGet();
+            return sql;
+        }
+
+        static void reinitialiser() {
+            REQUETES.set(0);
+        }
+
+        static int requetes() {
+            return REQUETES.get();
+        }
+    }
+}
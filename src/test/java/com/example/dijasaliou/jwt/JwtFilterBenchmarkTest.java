@@ -0,0 +1,108 @@
+package com.example.dijasaliou.jwt;
+
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.service.TenantCacheService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mesure le débit de JwtAuthenticationFilter pour un terminal de caisse qui renvoie
+ * toujours le même token :
+ * - avant : 4 parseClaimsJws complets par requête (email, validation, tenant, rôle)
+ * - après : parseAndVerify(), une seule vérification puis claims servis par le cache
+ *
+ * Désactivé par défaut (trop long pour la CI) :
+ *   mvn test -Dtest=JwtFilterBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Benchmark — filtre JWT, parse unique + cache vs 4 parses")
+class JwtFilterBenchmarkTest {
+
+    private static final String SECRET = "dijasaliou-secret-key-for-tests!!";
+    private static final int CHAUFFE    = 20_000;
+    private static final int ITERATIONS = 200_000;
+
+    private JwtService jwtService;
+    private JwtAuthenticationFilter filtre;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpirationMs", 3_600_000L);
+        filtre = new JwtAuthenticationFilter(jwtService, mock(TenantCacheService.class));
+        token = jwtService.generateToken("caisse@boutique.com", "uuid-boutique", 7L, UserEntity.Role.USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Parse unique + cache : débit supérieur à l'ancien pipeline")
+    void comparerAncienPipelineEtParseUnique() throws Exception {
+        Key cle = Keys.hmacShaKeyFor(SECRET.getBytes());
+
+        double avant = mesurer(() -> {
+            // Ancien doFilterInternal : getEmail, validateToken, getTenantId, getRole
+            String email = null;
+            for (int i = 0; i < 4; i++) {
+                Claims claims = Jwts.parserBuilder().setSigningKey(cle).build()
+                        .parseClaimsJws(token).getBody();
+                email = claims.getSubject();
+            }
+            assertThat(email).isNotNull();
+        });
+
+        double apres = mesurer(() -> {
+            MockHttpServletRequest requete = new MockHttpServletRequest("GET", "/api/stock");
+            requete.addHeader("Authorization", "Bearer " + token);
+            filtre.doFilter(requete, new MockHttpServletResponse(), new MockFilterChain());
+            SecurityContextHolder.clearContext();
+        });
+
+        log.info("[BENCH jwt] avant (4 parses)         : {} requêtes/s", Math.round(avant));
+        log.info("[BENCH jwt] après (parse unique+cache): {} requêtes/s", Math.round(apres));
+
+        assertThat(apres).isGreaterThan(avant);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    @FunctionalInterface
+    private interface Operation {
+        void executer() throws Exception;
+    }
+
+    /** Requêtes par seconde, après une phase de chauffe. */
+    private static double mesurer(Operation operation) throws Exception {
+        for (int i = 0; i < CHAUFFE; i++) {
+            operation.executer();
+        }
+        long debut = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.executer();
+        }
+        return ITERATIONS / ((System.nanoTime() - debut) / 1e9);
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.dijasaliou.jwt;
 
+import com.example.dijasaliou.entity.UserEntity;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+import java.util.Base64;
+
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("Tests unitaires — JwtService (sécurité multi-tenant)")
@@ -98,6 +104,29 @@ class JwtServiceTest {
         assertThat(tenantId).isNull();
     }
 
+    // =========================================================
+    // getTenantPkFromToken — paramètre du filtre Hibernate
+    // =========================================================
+
+    @Test
+    @DisplayName("getTenantPkFromToken() — retourne la clé primaire du tenant incluse dans le token")
+    void getTenantPkFromToken_retourneTenantPk() {
+        String token = jwtService.generateToken("amadou@example.com", "uuid-boutique-dijasal", 42L,
+                UserEntity.Role.ADMIN);
+
+        assertThat(jwtService.getTenantPkFromToken(token)).isEqualTo(42L);
+        assertThat(jwtService.getTenantIdFromToken(token)).isEqualTo("uuid-boutique-dijasal");
+    }
+
+    @Test
+    @DisplayName("getTenantPkFromToken() — retourne null pour un token émis sans tenant_pk")
+    void getTenantPkFromToken_retourneNullSiAbsent() {
+        String token = jwtService.generateToken("amadou@example.com", "uuid-boutique-dijasal",
+                UserEntity.Role.ADMIN);
+
+        assertThat(jwtService.getTenantPkFromToken(token)).isNull();
+    }
+
     @Test
     @DisplayName("getTenantIdFromToken() — deux tenants ne se confondent jamais [CRITIQUE isolation]")
     void getTenantIdFromToken_isolationEntreDeuxTenants() {
@@ -113,6 +142,75 @@ class JwtServiceTest {
         assertThat(tenantId1).isNotEqualTo(tenantId2);
     }
 
+    // =========================================================
+    // parseAndVerify — une seule vérification, claims en cache
+    // =========================================================
+
+    @Test
+    @DisplayName("parseAndVerify() — retourne tous les claims du token en une passe")
+    void parseAndVerify_retourneTousLesClaims() {
+        String token = jwtService.generateToken("amadou@example.com", "uuid-boutique-dijasal", 42L,
+                UserEntity.Role.ADMIN);
+
+        JwtClaims claims = jwtService.parseAndVerify(token);
+
+        assertThat(claims.email()).isEqualTo("amadou@example.com");
+        assertThat(claims.tenantId()).isEqualTo("uuid-boutique-dijasal");
+        assertThat(claims.tenantPk()).isEqualTo(42L);
+        assertThat(claims.role()).isEqualTo("ADMIN");
+        assertThat(claims.expiration()).isAfter(Instant.now());
+    }
+
+    @Test
+    @DisplayName("parseAndVerify() — un token déjà vérifié est servi depuis le cache")
+    void parseAndVerify_tokenDejaVerifie_servisDepuisLeCache() {
+        String token = jwtService.generateToken("amadou@example.com", "uuid-tenant");
+
+        JwtClaims premier = jwtService.parseAndVerify(token);
+        JwtClaims second = jwtService.parseAndVerify(token);
+
+        assertThat(second).isSameAs(premier);
+    }
+
+    @Test
+    @DisplayName("parseAndVerify() — un token falsifié n'est jamais servi par le cache [CRITIQUE]")
+    void parseAndVerify_tokenFalsifie_rejeteMalgreLeCache() {
+        String token = jwtService.generateToken("amadou@example.com", "uuid-tenant-1");
+        jwtService.parseAndVerify(token);
+
+        // Même en-tête et même signature, payload modifié → empreinte différente → vérification complète
+        String[] parties = token.split("\\.");
+        String payloadFalsifie = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                "{\"sub\":\"amadou@example.com\",\"tenant_id\":\"uuid-tenant-2\"}".getBytes());
+        String tokenFalsifie = parties[0] + "." + payloadFalsifie + "." + parties[2];
+
+        assertThatThrownBy(() -> jwtService.parseAndVerify(tokenFalsifie))
+                .isInstanceOf(JwtException.class);
+        assertThat(jwtService.validateToken(tokenFalsifie)).isFalse();
+    }
+
+    @Test
+    @DisplayName("parseAndVerify() — un token expiré est rejeté")
+    void parseAndVerify_tokenExpire_rejete() {
+        JwtService serviceExpire = new JwtService();
+        ReflectionTestUtils.setField(serviceExpire, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(serviceExpire, "jwtExpirationMs", -1000L);
+        String tokenExpire = serviceExpire.generateToken("amadou@example.com", "uuid-tenant");
+
+        assertThatThrownBy(() -> jwtService.parseAndVerify(tokenExpire))
+                .isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    @DisplayName("JwtClaims.estExpire() — vrai dès que l'exp est atteinte")
+    void jwtClaims_estExpire() {
+        Instant exp = Instant.parse("2026-01-01T10:00:00Z");
+        JwtClaims claims = new JwtClaims("a@b.com", null, null, null, exp);
+
+        assertThat(claims.estExpire(exp.minusSeconds(1))).isFalse();
+        assertThat(claims.estExpire(exp)).isTrue();
+    }
+
     // =========================================================
     // validateToken
     // =========================================================
@@ -1,6 +1,7 @@
 package com.example.dijasaliou.repository;
 
 import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.StockProduitEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +16,7 @@ import org.springframework.data.domain.PageRequest;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -133,6 +135,149 @@ class AchatRepositoryTest {
         assertThat(result).isNull();
     }
 
+    // ==================== agregerStockParProduit ====================
+
+    @Test
+    @DisplayName("agregerStockParProduit — regroupe par nom normalisé (casse/espaces) avec sommes pondérées")
+    void agregerStockParProduit_RegroupeParNomNormalise() {
+        // Arrange — même produit saisi avec une casse et des espaces différents
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Collier en or")
+                .quantite(10.0)
+                .prixUnitaire(new BigDecimal("5000.00"))
+                .prixTotal(new BigDecimal("50000.00"))
+                .dateAchat(LocalDateTime.of(2025, 1, 10, 0, 0))
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("COLLIER EN OR ")
+                .quantite(5.0)
+                .prixUnitaire(new BigDecimal("6000.00"))
+                .prixTotal(new BigDecimal("30000.00"))
+                .dateAchat(LocalDateTime.of(2025, 2, 15, 0, 0))
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Collier en or")
+                .quantite(99.0)
+                .prixUnitaire(new BigDecimal("1.00"))
+                .prixTotal(new BigDecimal("99.00"))
+                .dateAchat(LocalDateTime.of(2025, 2, 15, 0, 0))
+                .utilisateur(autreUtilisateur)
+                .tenant(autreTenant)
+                .build());
+
+        // Act
+        List<Object[]> rows = achatRepository.agregerStockParProduit(tenant, null);
+
+        // Assert — [nom, nbAchats, sum(qte), sum(prix × qte)], autre tenant exclu
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)[0]).isEqualTo("collier en or");
+        assertThat(((Number) rows.get(0)[1]).longValue()).isEqualTo(2L);
+        assertThat(((Number) rows.get(0)[2]).doubleValue()).isEqualTo(15.0);
+        assertThat(new BigDecimal(rows.get(0)[3].toString())).isEqualByComparingTo("80000");
+    }
+
+    @Test
+    @DisplayName("findDerniersAttributsParProduit — une ligne par produit, chaque attribut de son dernier achat renseigné")
+    void findDerniersAttributsParProduit_UneLigneParProduit() {
+        // Arrange
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Bague")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000.00"))
+                .prixTotal(new BigDecimal("1000.00"))
+                .dateAchat(LocalDateTime.of(2025, 1, 1, 0, 0))
+                .codeBarre("111")
+                .photoUrl("https://cdn/bague.jpg")
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Bague")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000.00"))
+                .prixTotal(new BigDecimal("1000.00"))
+                .dateAchat(LocalDateTime.of(2025, 3, 1, 0, 0))
+                .codeBarre("333")
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+        entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Montre")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000.00"))
+                .prixTotal(new BigDecimal("1000.00"))
+                .dateAchat(LocalDateTime.of(2025, 4, 1, 0, 0))
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+
+        // Act
+        List<Object[]> rows = achatRepository.findDerniersAttributsParProduit(tenant.getId(), "bague");
+        List<Object[]> tous = achatRepository.findDerniersAttributsParProduit(tenant.getId(), null);
+
+        // Assert — [nom, dateDernier, unite, datePhoto, photo, dateCode, code, dateCategorie, categorie, datePrix, prix]
+        assertThat(rows).hasSize(1);
+        Object[] bague = rows.get(0);
+        assertThat(bague[0]).isEqualTo("bague");
+        assertThat(date(bague[1])).isEqualTo(LocalDateTime.of(2025, 3, 1, 0, 0));
+        assertThat(bague[6]).isEqualTo("333");
+        // Photo absente du dernier achat : celle du précédent, avec sa date
+        assertThat(bague[4]).isEqualTo("https://cdn/bague.jpg");
+        assertThat(date(bague[3])).isEqualTo(LocalDateTime.of(2025, 1, 1, 0, 0));
+        assertThat(bague[8]).isNull();
+        assertThat(bague[7]).isNull();
+        assertThat(tous).extracting(r -> r[0]).containsExactlyInAnyOrder("bague", "montre");
+    }
+
+    @Test
+    @DisplayName("findDerniersAttributsParProduit — achats de même date : le dernier créé l'emporte, comme dans le ledger")
+    void findDerniersAttributsParProduit_DatesEgales_PlusGrandIdGagne() {
+        // Arrange — deux achats à la même seconde
+        LocalDateTime meme = LocalDateTime.of(2025, 5, 1, 10, 30);
+        AchatEntity premier = entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Parfum")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000.00"))
+                .prixTotal(new BigDecimal("1000.00"))
+                .dateAchat(meme)
+                .unite("flacon")
+                .codeBarre("111")
+                .photoUrl("https://cdn/parfum-1.jpg")
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+        AchatEntity second = entityManager.persistAndFlush(AchatEntity.builder()
+                .nomProduit("Parfum")
+                .quantite(1.0)
+                .prixUnitaire(new BigDecimal("1000.00"))
+                .prixTotal(new BigDecimal("1000.00"))
+                .dateAchat(meme)
+                .unite("carton")
+                .codeBarre("222")
+                .photoUrl("https://cdn/parfum-2.jpg")
+                .utilisateur(utilisateur)
+                .tenant(tenant)
+                .build());
+
+        // Act
+        Object[] parfum = achatRepository.findDerniersAttributsParProduit(tenant.getId(), "parfum").get(0);
+
+        // Ledger tenu incrémentalement : achats appliqués dans l'ordre de création
+        StockProduitEntity ligne = StockProduitEntity.builder().nomNormalise("parfum").build();
+        ligne.appliquerAchat(premier, 1);
+        ligne.appliquerAchat(second, 1);
+
+        // Assert — même gagnant des deux côtés : le plus grand id
+        assertThat(second.getId()).isGreaterThan(premier.getId());
+        assertThat(parfum[2]).isEqualTo("carton").isEqualTo(ligne.getUnite());
+        assertThat(parfum[4]).isEqualTo("https://cdn/parfum-2.jpg").isEqualTo(ligne.getPhotoUrl());
+        assertThat(parfum[6]).isEqualTo("222").isEqualTo(ligne.getCodeBarre());
+    }
+
     // ==================== findAllWithSearch ====================
 
     @Test
@@ -305,4 +450,8 @@ class AchatRepositoryTest {
         assertThat(page.getTotalElements()).isEqualTo(1L);
         assertThat(page.getContent().get(0).getNomProduit()).isEqualTo("Produit Janvier");
     }
+
+    private static LocalDateTime date(Object valeur) {
+        return valeur instanceof java.sql.Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) valeur;
+    }
 }
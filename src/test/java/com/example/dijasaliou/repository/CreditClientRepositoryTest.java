@@ -5,7 +5,6 @@ import com.example.dijasaliou.entity.CreditClientEntity;
 import com.example.dijasaliou.entity.CreditClientEntity.StatutCredit;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
-import com.example.dijasaliou.entity.VenteEntity;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,8 +16,6 @@ import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -267,60 +264,4 @@ class CreditClientRepositoryTest {
 
         assertThat(page.getTotalElements()).isEqualTo(1L);
     }
-
-    // ==================== sumCreditsRestantParPeriode ====================
-
-    @Test
-    @DisplayName("sumCreditsRestantParPeriode — doit agréger les crédits sur ventes de la période")
-    void sumCreditsRestantParPeriode_DoitAgregerParPeriode() {
-        // Crée une vente dans la période de test
-        VenteEntity vente = em.persistAndFlush(VenteEntity.builder()
-                .quantite(1.0)
-                .nomProduit("Collier Test")
-                .prixUnitaire(new BigDecimal("5000"))
-                .prixTotal(new BigDecimal("5000"))
-                .dateVente(LocalDateTime.of(2025, 6, 15, 0, 0))
-                .utilisateur(user)
-                .tenant(tenant)
-                .build());
-
-        // Crée un crédit lié à cette vente
-        em.persistAndFlush(CreditClientEntity.builder()
-                .client(client1)
-                .vente(vente)
-                .montantInitial(new BigDecimal("5000"))
-                .montantRestant(new BigDecimal("3000"))
-                .statut(StatutCredit.PARTIEL)
-                .tenant(tenant)
-                .build());
-
-        LocalDateTime debut = LocalDateTime.of(2025, 6, 1, 0, 0);
-        LocalDateTime fin = LocalDateTime.of(2025, 6, 30, 23, 59, 59);
-
-        List<Object[]> result = repo.sumCreditsRestantParPeriode(
-                debut, fin, StatutCredit.SOLDE, "tenant-001");
-
-        assertThat(result).hasSize(1);
-        long count = ((Number) result.get(0)[0]).longValue();
-        BigDecimal sum = (BigDecimal) result.get(0)[1];
-        assertThat(count).isEqualTo(1L);
-        assertThat(sum).isEqualByComparingTo(new BigDecimal("3000"));
-    }
-
-    @Test
-    @DisplayName("sumCreditsRestantParPeriode — hors période retourne count=0 et sum=0")
-    void sumCreditsRestantParPeriode_HorsPeriodeRetourneZero() {
-        LocalDateTime debut = LocalDateTime.of(2020, 1, 1, 0, 0);
-        LocalDateTime fin = LocalDateTime.of(2020, 12, 31, 23, 59, 59);
-
-        List<Object[]> result = repo.sumCreditsRestantParPeriode(
-                debut, fin, StatutCredit.SOLDE, "tenant-001");
-
-        // L'agrégat JPQL sans GROUP BY retourne toujours 1 ligne : [0, 0] si aucun résultat
-        assertThat(result).hasSize(1);
-        long count = ((Number) result.get(0)[0]).longValue();
-        BigDecimal sum = (BigDecimal) result.get(0)[1];
-        assertThat(count).isEqualTo(0L);
-        assertThat(sum).isEqualByComparingTo(BigDecimal.ZERO);
-    }
 }
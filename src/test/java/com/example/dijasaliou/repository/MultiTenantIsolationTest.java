@@ -144,7 +144,7 @@ class MultiTenantIsolationTest {
     @Test
     @DisplayName("Filtre tenant-A — findAll() retourne uniquement les ventes de A")
     void avecFiltreA_findAll_retourneSeulementVentesA() {
-        activerFiltre("tenant-iso-A");
+        activerFiltre(tenantA);
 
         List<VenteEntity> ventes = venteRepository.findAll();
 
@@ -159,7 +159,7 @@ class MultiTenantIsolationTest {
     @Test
     @DisplayName("Filtre tenant-B — findAll() retourne uniquement la vente de B")
     void avecFiltreB_findAll_retourneSeulementVentesB() {
-        activerFiltre("tenant-iso-B");
+        activerFiltre(tenantB);
 
         List<VenteEntity> ventes = venteRepository.findAll();
 
@@ -174,7 +174,7 @@ class MultiTenantIsolationTest {
     @Test
     @DisplayName("Filtre tenant-A — les crédits du tenant B sont invisibles")
     void avecFiltreA_creditsB_invisibles() {
-        activerFiltre("tenant-iso-A");
+        activerFiltre(tenantA);
 
         List<CreditClientEntity> credits = creditClientRepository.findAll();
 
@@ -202,9 +202,9 @@ class MultiTenantIsolationTest {
 
     // ==================== Helpers ====================
 
-    private void activerFiltre(String tenantUuid) {
+    private void activerFiltre(TenantEntity tenant) {
         Session session = entityManager.unwrap(Session.class);
-        session.enableFilter("tenantFilter").setParameter("tenantId", tenantUuid);
+        session.enableFilter("tenantFilter").setParameter("tenantPk", tenant.getId());
     }
 
     private void desactiverFiltre() {
@@ -0,0 +1,162 @@
+package com.example.dijasaliou.repository;
+
+import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.VenteEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mesure GET /stock : hydratation des entités (findAllByTenant + regroupement Java)
+ * contre les agrégats SQL (agregerStockParProduit), sur un tenant de 50 000 lignes.
+ *
+ * Désactivé par défaut (trop long pour la CI) :
+ *   mvn test -Dtest=StockAgregatBenchmarkTest -Dbenchmark=true
+ */
+@DataJpaTest
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Benchmark — agrégats de stock SQL vs entités")
+class StockAgregatBenchmarkTest {
+
+    private static final int NB_PRODUITS = 500;
+    private static final int NB_ACHATS   = 25_000;
+    private static final int NB_VENTES   = 25_000;
+    private static final int ITERATIONS  = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AchatRepository achatRepository;
+
+    @Autowired
+    private VenteRepository venteRepository;
+
+    private TenantEntity tenant;
+
+    @BeforeEach
+    void setUp() {
+        tenant = entityManager.persistAndFlush(TenantEntity.builder()
+                .tenantUuid("bench-tenant-001")
+                .nomEntreprise("Boutique Benchmark")
+                .numeroTelephone("+221770000000")
+                .plan(TenantEntity.Plan.BUSINESS)
+                .build());
+        UserEntity utilisateur = entityManager.persistAndFlush(UserEntity.builder()
+                .nom("Bench").prenom("Mark")
+                .email("bench@test.com")
+                .motDePasse("encoded")
+                .nomEntreprise("Boutique Benchmark")
+                .numeroTelephone("+221770000000")
+                .build());
+
+        LocalDateTime debut = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (int i = 0; i < NB_ACHATS; i++) {
+            entityManager.persist(AchatEntity.builder()
+                    .nomProduit("Produit " + (i % NB_PRODUITS))
+                    .quantite(10.0)
+                    .prixUnitaire(new BigDecimal("1000.00"))
+                    .prixTotal(new BigDecimal("10000.00"))
+                    .dateAchat(debut.plusMinutes(i))
+                    .codeBarre("CB" + (i % NB_PRODUITS))
+                    .utilisateur(utilisateur)
+                    .tenant(tenant)
+                    .build());
+            vider(i);
+        }
+        for (int i = 0; i < NB_VENTES; i++) {
+            entityManager.persist(VenteEntity.builder()
+                    .nomProduit("Produit " + (i % NB_PRODUITS))
+                    .quantite(3.0)
+                    .prixUnitaire(new BigDecimal("1500.00"))
+                    .prixTotal(new BigDecimal("4500.00"))
+                    .dateVente(debut.plusMinutes(i))
+                    .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                    .utilisateur(utilisateur)
+                    .tenant(tenant)
+                    .build());
+            vider(i);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        tenant = entityManager.find(TenantEntity.class, tenant.getId());
+    }
+
+    @Test
+    @DisplayName("Agrégats SQL : même résultat, moins de mémoire et de temps que l'hydratation")
+    void comparerHydratationEtAgregats() {
+        Mesure entites = mesurer(() -> {
+            Map<String, Double> achete = achatRepository.findAllByTenant(tenant).stream()
+                    .collect(Collectors.groupingBy(a -> a.getNomProduit().toLowerCase().trim(),
+                            Collectors.summingDouble(AchatEntity::getQuantite)));
+            Map<String, Double> vendu = venteRepository.findAllByTenant(tenant).stream()
+                    .collect(Collectors.groupingBy(v -> v.getNomProduit().toLowerCase().trim(),
+                            Collectors.summingDouble(VenteEntity::getQuantite)));
+            return achete.size() + vendu.size();
+        });
+
+        Mesure agregats = mesurer(() -> {
+            // Même travail que StockProduitService.calculerDepuisHistorique (3 requêtes scalaires)
+            achatRepository.findDerniersAttributsParProduit(tenant.getId(), null);
+            return achatRepository.agregerStockParProduit(tenant, null).size()
+                    + venteRepository.agregerStockParProduit(tenant, null).size();
+        });
+
+        log.info("[BENCH stock] {} lignes, {} produits", NB_ACHATS + NB_VENTES, NB_PRODUITS);
+        log.info("[BENCH stock] entités  : {} ms/itération, {} Ko alloués/itération", entites.ms, entites.ko);
+        log.info("[BENCH stock] agrégats : {} ms/itération, {} Ko alloués/itération", agregats.ms, agregats.ko);
+
+        assertThat(agregats.resultat).isEqualTo(entites.resultat).isEqualTo(2 * NB_PRODUITS);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private record Mesure(long ms, long ko, int resultat) {}
+
+    private Mesure mesurer(Supplier<Integer> operation) {
+        operation.get(); // chauffe
+        entityManager.clear();
+
+        long allocAvant = octetsAlloues();
+        long debut = System.nanoTime();
+        int resultat = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            resultat = operation.get();
+            entityManager.clear();
+        }
+        long ms = (System.nanoTime() - debut) / 1_000_000 / ITERATIONS;
+        long ko = (octetsAlloues() - allocAvant) / 1024 / ITERATIONS;
+        return new Mesure(ms, ko, resultat);
+    }
+
+    /** Octets alloués par le thread courant (indépendant du passage du GC). */
+    private static long octetsAlloues() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private void vider(int i) {
+        if (i % 1_000 == 999) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.dijasaliou.repository;
 
+import com.example.dijasaliou.entity.ClientEntity;
+import com.example.dijasaliou.entity.CreditClientEntity;
+import com.example.dijasaliou.entity.CreditClientEntity.StatutCredit;
+import com.example.dijasaliou.entity.PaiementCreditEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.entity.VenteEntity;
@@ -254,58 +258,77 @@ class VenteRepositoryTest {
         assertThat(pageTenant2.getTotalElements()).isEqualTo(1L);
     }
 
-    // ==================== sumDirectVentesParModeEtPeriode ====================
+    // ==================== sumRapportModePaiement ====================
 
     @Test
-    @DisplayName("sumDirectVentesParModeEtPeriode — doit agréger par mode, hors CREDIT")
-    void sumDirectVentesParModeEtPeriode_DoitAgregerSaufCredit() {
-        LocalDateTime debut = LocalDateTime.of(2025, 1, 1, 0, 0);
-        LocalDateTime fin = LocalDateTime.of(2025, 1, 31, 23, 59);
-
-        List<Object[]> result = repo.sumDirectVentesParModeEtPeriode(
-                debut, fin, ModePaiementVente.CREDIT, "tenant-vente-001");
+    @DisplayName("sumRapportModePaiement — ventes directes agrégées par mode, hors CREDIT")
+    void sumRapportModePaiement_VentesDirectesSaufCredit() {
+        List<Object[]> result = rapportJanvier();
 
+        List<Object[]> ventes = lignes(result, "VENTE");
         // En janvier 2025 pour tenant-001 (hors CREDIT) : ESPECES (10000) + WAVE (3000) = 2 lignes
-        assertThat(result).hasSize(2);
+        assertThat(ventes).hasSize(2);
+        assertThat(ventes).noneMatch(row -> "CREDIT".equals(row[1]));
 
-        // Vérifie que CREDIT est absent des résultats
-        boolean creditPresent = result.stream()
-                .anyMatch(row -> ModePaiementVente.CREDIT.equals(row[0]));
-        assertThat(creditPresent).isFalse();
+        Object[] especes = ventes.stream().filter(row -> "ESPECES".equals(row[1])).findFirst().orElseThrow();
+        assertThat(((Number) especes[2]).longValue()).isEqualTo(1L);
+        assertThat(new BigDecimal(especes[3].toString())).isEqualByComparingTo(new BigDecimal("10000"));
     }
 
     @Test
-    @DisplayName("sumDirectVentesParModeEtPeriode — vérifie les montants ESPECES")
-    void sumDirectVentesParModeEtPeriode_VerifieMontantsEspeces() {
-        LocalDateTime debut = LocalDateTime.of(2025, 1, 1, 0, 0);
-        LocalDateTime fin = LocalDateTime.of(2025, 1, 31, 23, 59);
-
-        List<Object[]> result = repo.sumDirectVentesParModeEtPeriode(
-                debut, fin, ModePaiementVente.CREDIT, "tenant-vente-001");
+    @DisplayName("sumRapportModePaiement — reste dû des crédits et remboursements de la période")
+    void sumRapportModePaiement_CreditRestantEtRemboursements() {
+        VenteEntity venteCredit = em.persistAndFlush(VenteEntity.builder()
+                .quantite(1.0)
+                .nomProduit("Bague or")
+                .prixUnitaire(new BigDecimal("8000"))
+                .prixTotal(new BigDecimal("8000"))
+                .dateVente(LocalDateTime.of(2025, 1, 31, 23, 0))
+                .modePaiement(ModePaiementVente.CREDIT)
+                .utilisateur(user)
+                .tenant(tenant)
+                .build());
+        ClientEntity client = em.persistAndFlush(ClientEntity.builder()
+                .nom("Aminata Diallo")
+                .tenant(tenant)
+                .build());
+        CreditClientEntity credit = em.persistAndFlush(CreditClientEntity.builder()
+                .client(client)
+                .vente(venteCredit)
+                .montantInitial(new BigDecimal("8000"))
+                .montantRestant(new BigDecimal("3000"))
+                .statut(StatutCredit.PARTIEL)
+                .tenant(tenant)
+                .build());
+        paiement(credit, "5000", PaiementCreditEntity.ModePaiement.WAVE, LocalDate.of(2025, 1, 31));
+        paiement(credit, "1000", PaiementCreditEntity.ModePaiement.WAVE, LocalDate.of(2025, 2, 1)); // hors période
 
-        Object[] especes = result.stream()
-                .filter(row -> ModePaiementVente.ESPECES.equals(row[0]))
-                .findFirst()
-                .orElseThrow();
+        List<Object[]> result = rapportJanvier();
 
-        long countEspeces = ((Number) especes[1]).longValue();
-        BigDecimal sumEspeces = (BigDecimal) especes[2];
+        List<Object[]> credits = lignes(result, "CREDIT_RESTANT");
+        assertThat(credits).hasSize(1);
+        assertThat(((Number) credits.get(0)[2]).longValue()).isEqualTo(1L);
+        assertThat(new BigDecimal(credits.get(0)[3].toString())).isEqualByComparingTo(new BigDecimal("3000"));
 
-        // 1 vente ESPECES en janvier pour tenant-001 (vente1 = 10000)
-        assertThat(countEspeces).isEqualTo(1L);
-        assertThat(sumEspeces).isEqualByComparingTo(new BigDecimal("10000"));
+        List<Object[]> remboursements = lignes(result, "REMBOURSEMENT");
+        assertThat(remboursements).hasSize(1);
+        assertThat(remboursements.get(0)[1]).isEqualTo("WAVE");
+        assertThat(new BigDecimal(remboursements.get(0)[3].toString())).isEqualByComparingTo(new BigDecimal("5000"));
     }
 
     @Test
-    @DisplayName("sumDirectVentesParModeEtPeriode — doit retourner liste vide hors période")
-    void sumDirectVentesParModeEtPeriode_HorsPeriodeRetourneVide() {
-        LocalDateTime debut = LocalDateTime.of(2020, 1, 1, 0, 0);
-        LocalDateTime fin = LocalDateTime.of(2020, 12, 31, 23, 59);
-
-        List<Object[]> result = repo.sumDirectVentesParModeEtPeriode(
-                debut, fin, ModePaiementVente.CREDIT, "tenant-vente-001");
-
-        assertThat(result).isEmpty();
+    @DisplayName("sumRapportModePaiement — hors période : seule la ligne CREDIT_RESTANT, à zéro")
+    void sumRapportModePaiement_HorsPeriode() {
+        List<Object[]> result = repo.sumRapportModePaiement(tenant,
+                LocalDateTime.of(2020, 1, 1, 0, 0), LocalDateTime.of(2021, 1, 1, 0, 0),
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31),
+                ModePaiementVente.CREDIT, StatutCredit.SOLDE);
+
+        // L'agrégat sans GROUP BY retourne toujours 1 ligne : [.., 0, 0] si aucun crédit
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0)[0]).isEqualTo("CREDIT_RESTANT");
+        assertThat(((Number) result.get(0)[2]).longValue()).isZero();
+        assertThat(new BigDecimal(result.get(0)[3].toString())).isEqualByComparingTo(BigDecimal.ZERO);
     }
 
     // ==================== findByUtilisateurWithSearch ====================
@@ -353,4 +376,27 @@ class VenteRepositoryTest {
         assertThat(page.getContent()).hasSize(2);
         assertThat(page.getTotalPages()).isEqualTo(2);
     }
+
+    // ==================== helpers ====================
+
+    private List<Object[]> rapportJanvier() {
+        return repo.sumRapportModePaiement(tenant,
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 2, 1, 0, 0),
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                ModePaiementVente.CREDIT, StatutCredit.SOLDE);
+    }
+
+    private static List<Object[]> lignes(List<Object[]> rapport, String source) {
+        return rapport.stream().filter(row -> source.equals(row[0])).toList();
+    }
+
+    private void paiement(CreditClientEntity credit, String montant,
+                          PaiementCreditEntity.ModePaiement mode, LocalDate date) {
+        em.persistAndFlush(PaiementCreditEntity.builder()
+                .credit(credit)
+                .montantPaye(new BigDecimal(montant))
+                .modePaiement(mode)
+                .datePaiement(date)
+                .build());
+    }
 }
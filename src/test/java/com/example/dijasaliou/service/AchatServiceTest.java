@@ -36,6 +36,9 @@ class AchatServiceTest {
     @Mock private AchatRepository achatRepository;
     @Mock private TenantService tenantService;
     @Mock private StockService stockService;
+    @Mock private StockProduitService stockProduitService;
+    @Mock private FifoCalculService fifoCalculService;
+    @Mock private InvalidationDonneesService invalidationDonneesService;
 
     @InjectMocks
     private AchatService achatService;
@@ -221,11 +224,14 @@ class AchatServiceTest {
         when(achatRepository.findById("test-id-1")).thenReturn(Optional.of(achatValide));
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
         when(achatRepository.save(any())).thenReturn(achatValide);
+        String ancienNom = achatValide.getNomProduit();
+        LocalDateTime ancienneDate = achatValide.getDateAchat();
 
         AchatEntity resultat = achatService.modifierAchat("test-id-1", modifie);
 
         assertThat(resultat).isNotNull();
         verify(achatRepository).save(any());
+        verify(fifoCalculService).rejouerApresModificationAchat(achatValide, ancienNom, ancienneDate);
     }
 
     @Test
@@ -0,0 +1,106 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — ActiviteUtilisateurService (write-behind)")
+class ActiviteUtilisateurServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    @Mock
+    private UserRepository userRepository;
+
+    private ActiviteUtilisateurService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ActiviteUtilisateurService(userRepository);
+    }
+
+    @Test
+    @DisplayName("enregistrer() — aucune écriture BDD sur le thread de la requête")
+    void enregistrer_aucuneEcritureImmediate() {
+        service.enregistrer("amadou@example.com", T0);
+
+        verifyNoInteractions(userRepository);
+        assertThat(service.nombreEnAttente()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("enregistrer() — throttle : une seule mise en tampon par utilisateur dans la fenêtre")
+    void enregistrer_throttleParUtilisateur() {
+        service.enregistrer("amadou@example.com", T0);
+        service.flush();
+        service.enregistrer("amadou@example.com", T0.plusMinutes(1));
+
+        assertThat(service.nombreEnAttente()).isZero();
+    }
+
+    @Test
+    @DisplayName("flush() — un seul UPDATE pour tous les utilisateurs en attente, horodatage le plus récent")
+    @SuppressWarnings("unchecked")
+    void flush_unSeulUpdatePourLeLot() {
+        when(userRepository.updateDerniereConnexionEnLot(anyCollection(), any())).thenReturn(3);
+        service.enregistrer("a@example.com", T0);
+        service.enregistrer("b@example.com", T0.plusSeconds(10));
+        service.enregistrer("c@example.com", T0.plusSeconds(20));
+
+        int misAJour = service.flush();
+
+        ArgumentCaptor<Collection<String>> emails = ArgumentCaptor.forClass(Collection.class);
+        verify(userRepository, times(1)).updateDerniereConnexionEnLot(emails.capture(), eq(T0.plusSeconds(20)));
+        assertThat(emails.getValue()).containsExactlyInAnyOrder("a@example.com", "b@example.com", "c@example.com");
+        assertThat(misAJour).isEqualTo(3);
+        assertThat(service.nombreEnAttente()).isZero();
+    }
+
+    @Test
+    @DisplayName("flush() — découpe en lots de TAILLE_LOT emails")
+    void flush_decoupeEnLots() {
+        for (int i = 0; i < ActiviteUtilisateurService.TAILLE_LOT + 1; i++) {
+            service.enregistrer("user" + i + "@example.com", T0);
+        }
+
+        service.flush();
+
+        verify(userRepository, times(2)).updateDerniereConnexionEnLot(anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("flush() — rien en attente → aucune requête")
+    void flush_rienEnAttente_aucuneRequete() {
+        assertThat(service.flush()).isZero();
+
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("flush() — échec BDD → le lot reste en attente pour le prochain flush")
+    void flush_echec_lotRemisEnAttente() {
+        when(userRepository.updateDerniereConnexionEnLot(anyCollection(), any()))
+                .thenThrow(new RuntimeException("connexion perdue"))
+                .thenReturn(1);
+        service.enregistrer("amadou@example.com", T0);
+
+        assertThat(service.flush()).isZero();
+        assertThat(service.nombreEnAttente()).isEqualTo(1);
+
+        assertThat(service.flush()).isEqualTo(1);
+        assertThat(service.nombreEnAttente()).isZero();
+    }
+}
@@ -40,6 +40,7 @@ class AuthServiceTest {
     @Mock private VenteRepository venteRepository;
     @Mock private DepenseRepository depenseRepository;
     @Mock private UserPushSubscriptionRepository pushSubscriptionRepository;
+    @Mock private TenantCacheService tenantCacheService;
 
     @InjectMocks
     private AuthService authService;
@@ -92,7 +93,7 @@ class AuthServiceTest {
         when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
         when(tenantRepository.save(any())).thenReturn(tenantTest);
         when(userRepository.save(any())).thenReturn(utilisateur);
-        when(jwtService.generateToken(anyString(), anyString(), any())).thenReturn("token123");
+        when(jwtService.generateToken(anyString(), anyString(), any(), any())).thenReturn("token123");
 
         AuthResponse response = authService.register(registerRequest);
 
@@ -100,7 +101,7 @@ class AuthServiceTest {
         assertThat(response.getToken()).isEqualTo("token123");
         assertThat(response.getUser()).isNotNull();
         verify(userRepository).save(any());
-        verify(jwtService).generateToken(anyString(), anyString(), any());
+        verify(jwtService).generateToken(anyString(), anyString(), any(), any());
     }
 
     @Test
@@ -145,7 +146,7 @@ class AuthServiceTest {
         when(passwordEncoder.encode("password123")).thenReturn("encodedPassword");
         when(tenantRepository.save(any())).thenReturn(tenantTest);
         when(userRepository.save(any())).thenReturn(utilisateur);
-        when(jwtService.generateToken(anyString(), anyString(), any())).thenReturn("token123");
+        when(jwtService.generateToken(anyString(), anyString(), any(), any())).thenReturn("token123");
 
         authService.register(registerRequest);
 
@@ -162,7 +163,7 @@ class AuthServiceTest {
         when(userRepository.findByEmailAndDeletedFalse("amadou@example.com"))
                 .thenReturn(Optional.of(utilisateur));
         when(passwordEncoder.matches("password123", "encodedPassword")).thenReturn(true);
-        when(jwtService.generateToken(eq("amadou@example.com"), eq("uuid-tenant-test"), any())).thenReturn("token123");
+        when(jwtService.generateToken(eq("amadou@example.com"), eq("uuid-tenant-test"), any(), any())).thenReturn("token123");
 
         AuthResponse response = authService.login(loginRequest);
 
@@ -179,7 +180,7 @@ class AuthServiceTest {
         assertThatThrownBy(() -> authService.login(loginRequest))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Email ou mot de passe incorrect");
-        verify(jwtService, never()).generateToken(anyString(), any(), any());
+        verify(jwtService, never()).generateToken(anyString(), any(), any(), any());
     }
 
     @Test
@@ -292,6 +293,20 @@ class AuthServiceTest {
         verify(depenseRepository).deleteByUtilisateur(utilisateur);
     }
 
+    @Test
+    @DisplayName("deleteAdminAccount() — tenant désactivé et retiré du cache")
+    void deleteAdminAccount_invalideLeCacheTenant() {
+        when(userRepository.findByEmailAndDeletedFalse("amadou@example.com"))
+                .thenReturn(Optional.of(utilisateur));
+
+        authService.deleteAdminAccount("amadou@example.com");
+
+        assertThat(tenantTest.getDeleted()).isTrue();
+        assertThat(tenantTest.getActif()).isFalse();
+        verify(tenantRepository).save(tenantTest);
+        verify(tenantCacheService).evict("uuid-tenant-test");
+    }
+
     @Test
     @DisplayName("deleteAdminAccount() — lève exception si l'utilisateur n'est pas ADMIN")
     void deleteAdminAccount_leveExceptionSiNonAdmin() {
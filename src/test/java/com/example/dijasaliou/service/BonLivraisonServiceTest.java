@@ -46,6 +46,9 @@ class BonLivraisonServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private DonneesVersionService donneesVersionService;
+
     @InjectMocks
     private BonLivraisonService bonLivraisonService;
 
@@ -107,6 +110,7 @@ class BonLivraisonServiceTest {
         BonLivraisonDto dto = bonLivraisonService.creer(request);
 
         assertThat(dto.getNumeroBL()).endsWith("-0005");
+        verify(donneesVersionService).signalerModification(tenantTest);
     }
 
     // =========================================================
@@ -203,6 +207,7 @@ class BonLivraisonServiceTest {
         assertThat(blTest.getStatut()).isEqualTo(BonLivraisonEntity.Statut.LIVRE);
         assertThat(blTest.getDateLivraisonEffective()).isNotNull();
         assertThat(dto.getStatut()).isEqualTo("LIVRE");
+        verify(donneesVersionService).signalerModification(tenantTest);
     }
 
     @Test
@@ -230,6 +235,7 @@ class BonLivraisonServiceTest {
 
         assertThat(blTest.getStatut()).isEqualTo(BonLivraisonEntity.Statut.ANNULE);
         assertThat(dto.getStatut()).isEqualTo("ANNULE");
+        verify(donneesVersionService).signalerModification(tenantTest);
     }
 
     @Test
@@ -254,6 +260,7 @@ class BonLivraisonServiceTest {
         bonLivraisonService.supprimer("test-id-1");
 
         verify(bonLivraisonRepository).delete(blTest);
+        verify(donneesVersionService).signalerModification(tenantTest);
     }
 
     @Test
@@ -265,6 +272,7 @@ class BonLivraisonServiceTest {
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("99");
         verify(bonLivraisonRepository, never()).delete(any());
+        verifyNoInteractions(donneesVersionService);
     }
 
     // =========================================================
@@ -42,6 +42,8 @@ class CreditClientServiceTest {
     @Mock private ClientRepository clientRepository;
     @Mock private VenteRepository venteRepository;
     @Mock private TenantService tenantService;
+    @Mock private InvalidationDonneesService invalidationDonneesService;
+    @Mock private DonneesVersionService donneesVersionService;
 
     @InjectMocks
     private CreditClientService creditClientService;
@@ -34,6 +34,7 @@ class DepenseServiceTest {
 
     @Mock private DepenseRepository depenseRepository;
     @Mock private TenantService tenantService;
+    @Mock private InvalidationDonneesService invalidationDonneesService;
 
     @InjectMocks
     private DepenseService depenseService;
@@ -203,6 +204,25 @@ class DepenseServiceTest {
         verify(depenseRepository).save(any());
     }
 
+    @Test
+    @DisplayName("modifierDepense() — dépense antidatée : clôtures de caisse invalidées depuis l'ancienne date")
+    void modifierDepense_invalideLesCloturesDeCaisse() {
+        LocalDateTime ancienneDate = LocalDateTime.now().minusDays(10);
+        LocalDateTime nouvelleDate = LocalDateTime.now().minusDays(3);
+        depenseValide.setDateDepense(ancienneDate);
+        DepenseEntity modifiee = DepenseEntity.builder().libelle("Loyer modifié")
+                .montant(new BigDecimal("600.00")).dateDepense(nouvelleDate)
+                .categorie(DepenseEntity.CategorieDepense.LOYER).utilisateur(utilisateurTest).build();
+
+        when(depenseRepository.findById("test-id-1")).thenReturn(Optional.of(depenseValide));
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        when(depenseRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        depenseService.modifierDepense("test-id-1", modifiee);
+
+        verify(invalidationDonneesService).invaliderDepuis(tenantTest, ancienneDate, nouvelleDate);
+    }
+
     @Test
     @DisplayName("modifierDepense() — lève exception si dépense non trouvée")
     void modifierDepense_leveExceptionSiAbsente() {
@@ -0,0 +1,238 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.EmailOutboxEntity;
+import com.example.dijasaliou.repository.EmailOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — EmailOutboxService (file d'envoi des emails)")
+class EmailOutboxServiceTest {
+
+    @Mock private EmailOutboxRepository repository;
+    @Mock private SystemNotificationsService systemNotificationsService;
+    @Mock private TacheVerrouService verrouService;
+
+    private EmailOutboxService service;
+
+    /** Service actif (clé Brevo renseignée), appel Brevo remplacé par le test. */
+    private EmailOutboxService service(int debitParSeconde) {
+        service = spy(new EmailOutboxService(repository, systemNotificationsService, verrouService,
+                "cle-test", "contact@heasystock.com", "contact@heasystock.com",
+                debitParSeconde, 2, 50, 8, 30));
+        service.init();
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) service.arreter();
+    }
+
+    @Test
+    @DisplayName("relever() — lot réservé envoyé sur les threads d'envoi, chaque email marqué envoyé")
+    void relever_lotEnvoye() {
+        service(10);
+        reserve(email(1L, 0), email(2L, 0));
+        doNothing().when(service).appelerBrevo(any());
+
+        assertThat(service.relever()).isEqualTo(2);
+
+        verify(repository, timeout(2000)).marquerEnvoye(eq(1L), eq("instance-test"), any());
+        verify(repository, timeout(2000)).marquerEnvoye(eq(2L), eq("instance-test"), any());
+        verifyNoInteractions(systemNotificationsService);
+    }
+
+    @Test
+    @DisplayName("relever() — lot limité par les jetons disponibles et les envois parallèles")
+    void relever_lotLimiteParDebit() {
+        service(3);
+        when(repository.findIdsAEnvoyer(any(), any())).thenReturn(List.of());
+
+        service.relever();
+
+        // 3 jetons, 2 envois parallèles (+2 en attente) : lot de 3 au plus
+        ArgumentCaptor<Pageable> limite = ArgumentCaptor.forClass(Pageable.class);
+        verify(repository).findIdsAEnvoyer(any(), limite.capture());
+        assertThat(limite.getValue().getPageSize()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("503 — email reprogrammé avec délai, échec compté")
+    void envoyer_503_reprogramme() {
+        service(10);
+        doThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE)).when(service).appelerBrevo(any());
+        LocalDateTime avant = LocalDateTime.now();
+
+        service.envoyer(email(1L, 0));
+
+        ArgumentCaptor<LocalDateTime> prochainEssai = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).reprogrammer(eq(1L), eq("instance-test"), prochainEssai.capture(), contains("503"));
+        assertThat(prochainEssai.getValue()).isAfterOrEqualTo(avant.plusSeconds(30));
+        verify(repository, never()).marquerEchec(any(), any(), any());
+        verify(systemNotificationsService).recordEmailFailure();
+    }
+
+    @Test
+    @DisplayName("Erreur réseau — temporaire, reprogrammée")
+    void envoyer_erreurReseau_reprogramme() {
+        service(10);
+        doThrow(new ResourceAccessException("Read timed out")).when(service).appelerBrevo(any());
+
+        service.envoyer(email(1L, 2));
+
+        verify(repository).reprogrammer(eq(1L), eq("instance-test"), any(), contains("Read timed out"));
+    }
+
+    @Test
+    @DisplayName("400 — échec définitif, pas de nouvel essai")
+    void envoyer_400_echecDefinitif() {
+        service(10);
+        doThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST)).when(service).appelerBrevo(any());
+
+        service.envoyer(email(1L, 0));
+
+        verify(repository).marquerEchec(eq(1L), eq("instance-test"), contains("400"));
+        verify(repository, never()).reprogrammer(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("429 à la dernière tentative — abandonné")
+    void envoyer_tentativesEpuisees_echec() {
+        service(10);
+        doThrow(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS)).when(service).appelerBrevo(any());
+
+        service.envoyer(email(1L, 7));
+
+        verify(repository).marquerEchec(eq(1L), eq("instance-test"), contains("429"));
+    }
+
+    @Test
+    @DisplayName("Statut ENVOYE non écrit après acceptation Brevo — seule la mise à jour est retentée")
+    void envoyer_erreurBaseApresEnvoi_statutRetente() {
+        service(10);
+        doNothing().when(service).appelerBrevo(any());
+        when(repository.marquerEnvoye(eq(1L), eq("instance-test"), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection reset"))
+                .thenReturn(1);
+
+        service.envoyer(email(1L, 0));
+
+        verify(service, times(1)).appelerBrevo(any());
+        verify(repository, times(2)).marquerEnvoye(eq(1L), eq("instance-test"), any());
+        verify(repository, never()).reprogrammer(any(), any(), any(), any());
+        verify(repository, never()).marquerEchec(any(), any(), any());
+        verifyNoInteractions(systemNotificationsService);
+    }
+
+    @Test
+    @DisplayName("Base indisponible après acceptation Brevo — ni échec compté, ni nouvel essai programmé")
+    void envoyer_baseIndisponibleApresEnvoi_pasDeReprogrammation() {
+        service(10);
+        doNothing().when(service).appelerBrevo(any());
+        when(repository.marquerEnvoye(any(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        service.envoyer(email(1L, 0));
+
+        // La ligne reste réservée jusqu'à expiration
+        verify(repository, times(EmailOutboxService.ESSAIS_STATUT_ENVOYE)).marquerEnvoye(eq(1L), eq("instance-test"), any());
+        verify(repository, never()).reprogrammer(any(), any(), any(), any());
+        verify(repository, never()).marquerEchec(any(), any(), any());
+        verifyNoInteractions(systemNotificationsService);
+    }
+
+    @Test
+    @DisplayName("delaiAvantEssai — doublé à chaque tentative, borné à une heure")
+    void delaiAvantEssai() {
+        service(10);
+
+        assertThat(service.delaiAvantEssai(1)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(service.delaiAvantEssai(3)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(service.delaiAvantEssai(12)).isEqualTo(EmailOutboxService.DELAI_MAX);
+    }
+
+    @Test
+    @DisplayName("Brevo non configuré — aucune relève")
+    void brevoNonConfigure_aucuneReleve() {
+        EmailOutboxService inactif = new EmailOutboxService(repository, systemNotificationsService, verrouService,
+                "disabled", "contact@heasystock.com", "contact@heasystock.com", 5, 2, 50, 8, 30);
+        inactif.init();
+
+        assertThat(inactif.relever()).isZero();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("ajouter() — destinataire absent ou invalide : rien n'est inséré")
+    void ajouter_destinataireInvalide_ignore() {
+        service = new EmailOutboxService(repository, systemNotificationsService, verrouService,
+                "disabled", "contact@heasystock.com", "contact@heasystock.com", 5, 2, 50, 8, 30);
+
+        assertThat(service.ajouter(null, "Facture", "<p>x</p>", null)).isNull();
+        assertThat(service.ajouter("   ", "Facture", "<p>x</p>", null)).isNull();
+        assertThat(service.ajouter("pas-une-adresse", "Facture", "<p>x</p>", null)).isNull();
+        assertThat(service.ajouter("a".repeat(250) + "@x.com", "Facture", "<p>x</p>", null)).isNull();
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("ajouter() — sujet tronqué à la taille de la colonne, adresse nettoyée, Reply-To invalide ignoré")
+    void ajouter_valeursAjustees() {
+        service = new EmailOutboxService(repository, systemNotificationsService, verrouService,
+                "disabled", "contact@heasystock.com", "contact@heasystock.com", 5, 2, 50, 8, 30);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        EmailOutboxEntity email = service.ajouter(" awa@boutique.com ", "S".repeat(600), null, "sans-arobase");
+
+        assertThat(email.getDestinataire()).isEqualTo("awa@boutique.com");
+        assertThat(email.getSujet()).hasSize(EmailOutboxService.TAILLE_SUJET);
+        assertThat(email.getContenuHtml()).isEmpty();
+        assertThat(email.getReplyTo()).isNull();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private void reserve(EmailOutboxEntity... emails) {
+        List<Long> ids = Arrays.stream(emails).map(EmailOutboxEntity::getId).toList();
+        when(verrouService.getProprietaire()).thenReturn("instance-test");
+        when(repository.findIdsAEnvoyer(any(), any())).thenReturn(ids);
+        when(repository.reserver(eq(ids), eq("instance-test"), any(), any())).thenReturn(emails.length);
+        when(repository.findReserves(eq(ids), eq("instance-test"), any())).thenReturn(List.of(emails));
+    }
+
+    private static EmailOutboxEntity email(Long id, int tentatives) {
+        return EmailOutboxEntity.builder()
+                .id(id)
+                .destinataire("admin" + id + "@boutique.com")
+                .sujet("Sujet " + id)
+                .contenuHtml("<p>Bonjour</p>")
+                .statut(EmailOutboxEntity.Statut.EN_COURS)
+                .reservePar("instance-test")
+                .tentatives(tentatives)
+                .prochainEssai(LocalDateTime.now())
+                .dateCreation(LocalDateTime.now())
+                .build();
+    }
+}
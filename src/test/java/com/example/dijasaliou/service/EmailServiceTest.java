@@ -0,0 +1,238 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.dto.ContactRequest;
+import com.example.dijasaliou.entity.FactureEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Contenu des emails construits à partir des templates de src/main/resources/templates/email.
+ *
+ * Les fichiers de src/test/resources/emails/reference sont la sortie de l'ancien EmailService
+ * (text blocks + String.formatted), capturée avant le passage aux templates pour les entrées
+ * utilisées ici : le rendu des templates doit leur être identique au caractère près.
+ * La facture n'y figure pas — sa mise en page a changé avec les templates.
+ */
+@DisplayName("Tests unitaires — EmailService (templates)")
+class EmailServiceTest {
+
+    private EmailOutboxService outboxService;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        EmailTemplateService templateService = new EmailTemplateService();
+        templateService.init();
+        outboxService = Mockito.mock(EmailOutboxService.class);
+        emailService = new EmailService(outboxService, templateService);
+        ReflectionTestUtils.setField(emailService, "supportEmail", "support@heasystock.com");
+        ReflectionTestUtils.setField(emailService, "frontendUrl", "https://app.heasystock.com");
+        ReflectionTestUtils.setField(emailService, "backendUrl", "https://api.heasystock.com");
+        emailService.init();
+    }
+
+    @Test
+    @DisplayName("Vérification — lien vers le backend avec le token")
+    void sendVerificationEmail() {
+        emailService.sendVerificationEmail("awa@boutique.com", "tok-123", "Awa");
+
+        assertThat(html("awa@boutique.com"))
+                .contains("Bienvenue sur HeasyStock, Awa !")
+                .contains("href='https://api.heasystock.com/api/auth/verify-email?token=tok-123'")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    @DisplayName("Réinitialisation — lien vers le front, affiché deux fois")
+    void sendPasswordResetEmail() {
+        emailService.sendPasswordResetEmail("awa@boutique.com", "tok-456", "Awa");
+
+        String html = html("awa@boutique.com");
+        assertThat(html).contains("Bonjour Awa,").doesNotContain("{{");
+        assertThat(html.split("https://app.heasystock.com/reset-password/tok-456", -1)).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Contact — envoyé au support, Reply-To sur l'expéditeur, téléphone par défaut")
+    void sendContactEmail() {
+        ContactRequest request = new ContactRequest();
+        request.setNom("Moussa");
+        request.setEmail("moussa@client.com");
+        request.setEntreprise("Boutique Moussa");
+        request.setSujet("Question");
+        request.setMessage("Bonjour, une question.");
+
+        emailService.sendContactEmail(request);
+
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(outboxService).ajouter(eq("support@heasystock.com"), contains("Question"), html.capture(),
+                eq("moussa@client.com"));
+        assertThat(html.getValue())
+                .contains("<a href=\"mailto:moussa@client.com\">moussa@client.com</a>")
+                .contains("<span>Non renseigné</span>")
+                .contains("<div class=\"message-box\">Bonjour, une question.</div>")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    @DisplayName("Confirmation de paiement — montant formaté, CSS intact, liens front et support")
+    void sendPaymentConfirmationEmail() {
+        emailService.sendPaymentConfirmationEmail("awa@boutique.com", "Awa Diop", "Boutique Awa",
+                "PREMIUM", 15.5, "EUR", "01/02/2027");
+
+        assertThat(html("awa@boutique.com"))
+                .contains("Votre abonnement <strong>PREMIUM</strong>")
+                .contains("<strong>" + String.format("%.2f %s", 15.5, "EUR") + "</strong>")
+                .contains("#10b981 0%, #059669 100%")
+                .contains("href=\"https://app.heasystock.com/dashboard\"")
+                .contains("<a href=\"mailto:support@heasystock.com\">support@heasystock.com</a>")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    @DisplayName("Alerte de stock — variante du niveau (couleur, titre, action) et pluriel")
+    void sendStockAlertEmail_niveaux() {
+        String rupture = emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 0, 0);
+        String critique = emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 3, 5);
+        String surveillance = emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 14, 15);
+
+        assertThat(rupture)
+                .contains("background: #dc2626;")
+                .contains("<h1>RUPTURE DE STOCK</h1>")
+                .contains("Le produit <strong>Riz</strong> est en <strong>RUPTURE DE STOCK</strong>.")
+                .contains("0 unité en stock")
+                .doesNotContain("{{");
+        assertThat(critique)
+                .contains("color: #ea580c; font-weight: bold;\">3 unités</span>")
+                .contains("<span class=\"value\">5 unités</span>")
+                .contains("href=\"https://app.heasystock.com/achats\"");
+        assertThat(surveillance).contains("<div class=\"alert-icon\">INFO</div>");
+    }
+
+    @Test
+    @DisplayName("Alerte de stock — sujet selon le niveau")
+    void sendStockAlertEmail_sujet() {
+        emailService.sendStockAlertEmail("awa@boutique.com", "Awa", "Boutique Awa", "Riz", 3, 5);
+
+        verify(outboxService).ajouter(eq("awa@boutique.com"), eq("STOCK CRITIQUE - Riz (3 restants)"), anyString(), isNull());
+    }
+
+    @Test
+    @DisplayName("Alerte de stock — échec de mise en file propagé (la transaction de l'appelant est déjà compromise)")
+    void sendStockAlertEmail_echecMiseEnFilePropage() {
+        IllegalStateException echec = new IllegalStateException("insert refusé");
+        Mockito.when(outboxService.ajouter(anyString(), anyString(), anyString(), isNull())).thenThrow(echec);
+
+        assertThatThrownBy(() -> emailService.sendStockAlertEmail("awa@boutique.com", "Awa", "Boutique Awa", "Riz", 3, 5))
+                .isSameAs(echec);
+    }
+
+    @Test
+    @DisplayName("Facture — émetteur = email du support, colonne client avec les infos de la facture")
+    void sendFactureEmail() {
+        FactureEntity facture = FactureEntity.builder()
+                .numeroFacture("FAC-2026-0001")
+                .nomEntreprise("Boutique Awa")
+                .adminPrenom("Awa")
+                .adminNom("Diop")
+                .adminEmail("awa@boutique.com")
+                .ville("Dakar")
+                .pays("Sénégal")
+                .plan("PREMIUM")
+                .montantCFA(10000.0)
+                .dateFacture(LocalDateTime.of(2026, 10, 1, 10, 0))
+                .dateDebutPeriode(LocalDateTime.of(2026, 10, 1, 0, 0))
+                .dateFinPeriode(LocalDateTime.of(2026, 11, 1, 0, 0))
+                .statut(FactureEntity.StatutFacture.PAYEE)
+                .build();
+
+        emailService.sendFactureEmail(facture);
+
+        assertThat(html("awa@boutique.com"))
+                .contains("FACTURE N° FAC-2026-0001")
+                .contains("Date : 01/10/2026")
+                .contains("<span class=\"statut-badge\">Payée</span>")
+                .contains("<p>Plateforme SaaS de gestion de boutique</p>\n        <p>support@heasystock.com</p>")
+                .contains("<p class=\"company\">Boutique Awa</p>\n        <p>Awa Diop</p>\n        <p>Dakar, Sénégal</p>")
+                .contains("<td>01/10/2026 → 01/11/2026</td>")
+                .contains("<td>—</td>")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    @DisplayName("Référence — vérification, réinitialisation, contact : identiques à l'ancien EmailService")
+    void rendu_identiqueALAncienCode_comptes() throws Exception {
+        emailService.sendVerificationEmail("awa@boutique.com", "tok-123", "Awa");
+        assertThat(dernierHtml()).isEqualTo(reference("verification"));
+
+        emailService.sendPasswordResetEmail("awa@boutique.com", "tok-456", "Awa");
+        assertThat(dernierHtml()).isEqualTo(reference("reinitialisation"));
+
+        ContactRequest request = new ContactRequest();
+        request.setNom("Moussa");
+        request.setEmail("moussa@client.com");
+        request.setEntreprise("Boutique Moussa");
+        request.setSujet("Question");
+        request.setMessage("Bonjour, une question.");
+        emailService.sendContactEmail(request);
+        assertThat(dernierHtml()).isEqualTo(reference("contact"));
+    }
+
+    @Test
+    @DisplayName("Référence — confirmation de paiement : identique à l'ancien EmailService")
+    void rendu_identiqueALAncienCode_paiement() throws Exception {
+        emailService.sendPaymentConfirmationEmail("awa@boutique.com", "Awa Diop", "Boutique Awa",
+                "PREMIUM", 15.5, "EUR", "01/02/2027");
+
+        // Référence capturée en Locale.ROOT ; le montant suit la locale par défaut, comme avant
+        assertThat(dernierHtml()).isEqualTo(reference("confirmation-paiement")
+                .replace("15.50 EUR", String.format("%.2f %s", 15.5, "EUR")));
+    }
+
+    @Test
+    @DisplayName("Référence — alerte de stock, les quatre niveaux : identiques à l'ancien EmailService")
+    void rendu_identiqueALAncienCode_alerteStock() throws Exception {
+        assertThat(emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 0, 0))
+                .isEqualTo(reference("alerte-stock-rupture"));
+        assertThat(emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 3, 5))
+                .isEqualTo(reference("alerte-stock-critique"));
+        assertThat(emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 8, 10))
+                .isEqualTo(reference("alerte-stock-faible"));
+        assertThat(emailService.buildStockAlertEmailContent("Awa", "Boutique Awa", "Riz", 14, 15))
+                .isEqualTo(reference("alerte-stock-surveillance"));
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private String html(String destinataire) {
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(outboxService).ajouter(eq(destinataire), anyString(), html.capture(), isNull());
+        return html.getValue();
+    }
+
+    /** Contenu du dernier email mis en file. */
+    private String dernierHtml() {
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(outboxService, atLeastOnce()).ajouter(anyString(), anyString(), html.capture(), any());
+        return html.getValue();
+    }
+
+    static String reference(String nom) throws IOException {
+        return new ClassPathResource("emails/reference/" + nom + ".html").getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.dijasaliou.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mesure le rendu de 10 000 emails d'alerte de stock :
+ * - avant : text block de ~5 600 caractères passé à String.formatted à chaque envoi
+ *   (analyse du format, 18 arguments, message concaténé à part)
+ * - après : template précompilé, variante du niveau liée au démarrage, builder réutilisé
+ *
+ * Le format « avant » est le text block de l'ancien EmailService, copié tel quel dans
+ * src/test/resources/emails/reference/alerte-stock.ancien-format.txt. Avant de mesurer,
+ * on vérifie qu'il reproduit les sorties de référence de l'ancien code (voir EmailServiceTest)
+ * puis que le template rend le même HTML sur les entrées du benchmark.
+ *
+ * Désactivé par défaut (trop long pour la CI) :
+ *   mvn test -Dtest=EmailTemplateBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Benchmark — emails d'alerte de stock, template précompilé vs String.formatted")
+class EmailTemplateBenchmarkTest {
+
+    private static final int EMAILS = 10_000;
+    private static final int TOURS  = 5;
+    private static final String FRONTEND_URL = "https://app.heasystock.com";
+
+    private EmailService emailService;
+    private String formatAncien;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        EmailTemplateService templateService = new EmailTemplateService();
+        templateService.init();
+        emailService = new EmailService(mock(EmailOutboxService.class), templateService);
+        ReflectionTestUtils.setField(emailService, "supportEmail", "support@heasystock.com");
+        ReflectionTestUtils.setField(emailService, "frontendUrl", FRONTEND_URL);
+        ReflectionTestUtils.setField(emailService, "backendUrl", "https://api.heasystock.com");
+        emailService.init();
+
+        formatAncien = new ClassPathResource("emails/reference/alerte-stock.ancien-format.txt")
+                .getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Template précompilé : même HTML que l'ancien code, moins d'allocations")
+    void comparerFormattedEtTemplate() throws Exception {
+        assertThat(ancien("Awa", "Boutique Awa", "Riz", 0, 0)).isEqualTo(EmailServiceTest.reference("alerte-stock-rupture"));
+        assertThat(ancien("Awa", "Boutique Awa", "Riz", 3, 5)).isEqualTo(EmailServiceTest.reference("alerte-stock-critique"));
+        assertThat(ancien("Awa", "Boutique Awa", "Riz", 8, 10)).isEqualTo(EmailServiceTest.reference("alerte-stock-faible"));
+        assertThat(ancien("Awa", "Boutique Awa", "Riz", 14, 15)).isEqualTo(EmailServiceTest.reference("alerte-stock-surveillance"));
+
+        IntFunction<String> ancien = i -> ancien(
+                "Awa Diop", "Boutique Benchmark", "Produit " + (i % 500), i % 16, 5);
+        IntFunction<String> template = i -> emailService.buildStockAlertEmailContent(
+                "Awa Diop", "Boutique Benchmark", "Produit " + (i % 500), i % 16, 5);
+
+        for (int i = 0; i < 16; i++) {
+            assertThat(template.apply(i)).isEqualTo(ancien.apply(i));
+        }
+
+        Mesure avant = mesurer(ancien);
+        Mesure apres = mesurer(template);
+
+        log.info("[BENCH email] {} emails d'alerte de stock ({} caractères)", EMAILS, avant.caracteres / EMAILS);
+        log.info("[BENCH email] String.formatted : {} ms, {} Ko alloués", avant.ms, avant.ko);
+        log.info("[BENCH email] template         : {} ms, {} Ko alloués", apres.ms, apres.ko);
+
+        assertThat(apres.caracteres).isEqualTo(avant.caracteres);
+        assertThat(apres.ko).isLessThan(avant.ko);
+    }
+
+    /** Rendu de l'ancien EmailService : mêmes arguments, dans le même ordre. */
+    private String ancien(String userName, String nomEntreprise, String nomProduit, int stockActuel, int seuilAlerte) {
+        EmailService.NiveauAlerte niveau = EmailService.NiveauAlerte.de(stockActuel);
+        String message = "Le produit <strong>" + nomProduit + "</strong> " + niveau.constat;
+        String pluriel = stockActuel > 1 ? "s" : "";
+        return formatAncien.formatted(
+                niveau.couleur, niveau.couleur, niveau.couleur, niveau.icone, niveau.criticite,
+                nomEntreprise, userName, message, stockActuel, pluriel,
+                nomEntreprise, nomProduit, niveau.couleur, stockActuel, pluriel,
+                seuilAlerte, niveau.action, FRONTEND_URL);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private record Mesure(long ms, long ko, long caracteres) {}
+
+    /** Meilleur tour de {@link #EMAILS} rendus, après un tour de chauffe. */
+    private static Mesure mesurer(IntFunction<String> rendu) {
+        Mesure meilleure = null;
+        for (int tour = 0; tour <= TOURS; tour++) {
+            long allocAvant = octetsAlloues();
+            long debut = System.nanoTime();
+            long caracteres = 0;
+            for (int i = 0; i < EMAILS; i++) {
+                caracteres += rendu.apply(i).length();
+            }
+            Mesure mesure = new Mesure((System.nanoTime() - debut) / 1_000_000,
+                    (octetsAlloues() - allocAvant) / 1024, caracteres);
+            if (tour > 0 && (meilleure == null || mesure.ms < meilleure.ms)) {
+                meilleure = mesure;
+            }
+        }
+        return meilleure;
+    }
+
+    /** Octets alloués par le thread courant (indépendant du passage du GC). */
+    private static long octetsAlloues() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
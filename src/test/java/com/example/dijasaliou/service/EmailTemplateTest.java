@@ -0,0 +1,104 @@
+package com.example.dijasaliou.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Tests unitaires — EmailTemplate (templates précompilés)")
+class EmailTemplateTest {
+
+    @Test
+    @DisplayName("compiler() — variables dans l'ordre d'apparition, répétitions rendues à chaque place")
+    void compiler_puisRendre() {
+        EmailTemplate template = EmailTemplate.compiler("test",
+                "<p>Bonjour {{nom}}, {{ stock }} unité{{pluriel}} — {{nom}}</p>");
+
+        assertThat(template.getVariables()).containsExactly("nom", "stock", "pluriel");
+        assertThat(template.getTailleFixe()).isEqualTo("<p>Bonjour ,  unité — </p>".length());
+        assertThat(template.rendu().avec("nom", "Awa").avec("stock", 3).avec("pluriel", "s").rendre())
+                .isEqualTo("<p>Bonjour Awa, 3 unités — Awa</p>");
+    }
+
+    @Test
+    @DisplayName("CSS et '%' conservés tels quels (plus d'échappement %%)")
+    void compiler_cssConserve() {
+        EmailTemplate template = EmailTemplate.compiler("css",
+                ".header { background: linear-gradient(135deg, #10b981 0%, #059669 100%); }");
+
+        assertThat(template.getVariables()).isEmpty();
+        assertThat(template.rendu().rendre())
+                .isEqualTo(".header { background: linear-gradient(135deg, #10b981 0%, #059669 100%); }");
+    }
+
+    @Test
+    @DisplayName("lier() — variables figées intégrées aux parties fixes, les autres restent à renseigner")
+    void lier_integreLesVariablesFigees() {
+        EmailTemplate template = EmailTemplate.compiler("test", "<a href=\"{{url}}/achats\">{{produit}}</a>{{url}}");
+
+        EmailTemplate lie = template.lier(Map.of("url", "https://app.heasystock.com"));
+
+        assertThat(lie.getVariables()).containsExactly("produit");
+        assertThat(lie.getTailleFixe()).isEqualTo(
+                "<a href=\"https://app.heasystock.com/achats\"></a>https://app.heasystock.com".length());
+        assertThat(lie.rendu().avec("produit", "Riz").rendre())
+                .isEqualTo("<a href=\"https://app.heasystock.com/achats\">Riz</a>https://app.heasystock.com");
+        // Le template d'origine n'est pas modifié
+        assertThat(template.getVariables()).containsExactly("url", "produit");
+    }
+
+    @Test
+    @DisplayName("Valeur null rendue vide")
+    void rendre_valeurNullVide() {
+        EmailTemplate template = EmailTemplate.compiler("test", "[{{a}}]");
+
+        assertThat(template.rendu().avec("a", null).rendre()).isEqualTo("[]");
+    }
+
+    @Test
+    @DisplayName("Variable non renseignée — IllegalStateException au rendu")
+    void rendre_variableManquante() {
+        EmailTemplate template = EmailTemplate.compiler("test", "{{a}} {{b}}");
+
+        assertThatThrownBy(() -> template.rendu().avec("a", "x").rendre())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'b'");
+    }
+
+    @Test
+    @DisplayName("Variable inconnue — IllegalArgumentException (avec() et lier())")
+    void variableInconnue() {
+        EmailTemplate template = EmailTemplate.compiler("test", "{{a}}");
+
+        assertThatThrownBy(() -> template.rendu().avec("z", "x")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> template.lier(Map.of("z", "x"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Template mal formé — rejeté à la compilation")
+    void compiler_malForme() {
+        assertThatThrownBy(() -> EmailTemplate.compiler("test", "<p>{{nom</p>"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("non fermé");
+        assertThatThrownBy(() -> EmailTemplate.compiler("test", "<p>{{nom complet}}</p>"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("invalide");
+    }
+
+    @Test
+    @DisplayName("Rendus successifs sur le même thread — le builder réutilisé ne mélange pas les emails")
+    void rendre_builderReutilise() {
+        EmailTemplate template = EmailTemplate.compiler("test", "<p>{{texte}}</p>");
+        String gros = "x".repeat(EmailTemplate.CAPACITE_MAX_CONSERVEE + 1);
+
+        String premier = template.rendu().avec("texte", "premier email assez long").rendre();
+        String enorme = template.rendu().avec("texte", gros).rendre();
+        String court = template.rendu().avec("texte", "b").rendre();
+
+        assertThat(premier).isEqualTo("<p>premier email assez long</p>");
+        assertThat(enorme).hasSize(gros.length() + 7);
+        assertThat(court).isEqualTo("<p>b</p>");
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — InvalidationDonneesService")
+class InvalidationDonneesServiceTest {
+
+    @Mock private DonneesVersionService donneesVersionService;
+    @Mock private CaisseClotureService caisseClotureService;
+    @Mock private RollupJourService rollupJourService;
+
+    @InjectMocks
+    private InvalidationDonneesService invalidationDonneesService;
+
+    private TenantEntity tenant;
+    private LocalDate aujourdhui;
+
+    @BeforeEach
+    void setUp() {
+        tenant = new TenantEntity();
+        tenant.setId(1L);
+        tenant.setTenantUuid("uuid-tenant-test");
+        tenant.setTimezone("Africa/Dakar");
+        aujourdhui = LocalDate.now(ZoneId.of("Africa/Dakar"));
+    }
+
+    @Test
+    @DisplayName("Écriture du jour — version des données changée, clôtures et agrégats intacts")
+    void ecritureDuJour_versionSeulement() {
+        invalidationDonneesService.invaliderDepuis(tenant, aujourdhui.atTime(10, 0));
+
+        verify(donneesVersionService).signalerModification(tenant);
+        verifyNoInteractions(caisseClotureService, rollupJourService);
+    }
+
+    @Test
+    @DisplayName("Date inconnue — version des données changée quand même")
+    void dateInconnue_versionSeulement() {
+        invalidationDonneesService.invaliderDepuis(tenant, (LocalDate) null);
+
+        verify(donneesVersionService).signalerModification(tenant);
+        verifyNoInteractions(caisseClotureService, rollupJourService);
+    }
+
+    @Test
+    @DisplayName("Écriture antidatée — version, clôtures et agrégats invalidés depuis son jour")
+    void ecritureAntidatee_invalideTout() {
+        invalidationDonneesService.invaliderDepuis(tenant, aujourdhui.minusDays(3).atTime(18, 0));
+
+        verify(donneesVersionService).signalerModification(tenant);
+        verify(caisseClotureService).invaliderDepuis(tenant, aujourdhui.minusDays(3));
+        verify(rollupJourService).invaliderDepuis(tenant, aujourdhui.minusDays(3));
+    }
+
+    @Test
+    @DisplayName("Modification — invalidation depuis la plus ancienne des deux dates")
+    void modification_plusAncienneDate() {
+        invalidationDonneesService.invaliderDepuis(tenant,
+                aujourdhui.minusDays(2).atTime(9, 0), aujourdhui.minusDays(5).atTime(9, 0));
+
+        verify(caisseClotureService).invaliderDepuis(tenant, aujourdhui.minusDays(5));
+        verify(rollupJourService).invaliderDepuis(tenant, aujourdhui.minusDays(5));
+    }
+}
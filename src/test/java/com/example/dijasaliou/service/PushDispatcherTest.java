@@ -0,0 +1,237 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.repository.SuperAdminPushSubscriptionRepository;
+import com.example.dijasaliou.repository.UserPushSubscriptionRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.message.BasicHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Envois réels (chiffrement + HTTP) vers un serveur push local qui répond
+ * le statut programmé pour chaque chemin.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — PushDispatcher")
+class PushDispatcherTest {
+
+    @Mock private UserPushSubscriptionRepository userRepository;
+    @Mock private SuperAdminPushSubscriptionRepository superAdminRepository;
+
+    private HttpServer serveur;
+    private final Map<String, Deque<Integer>> statuts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> recus = new ConcurrentHashMap<>();
+
+    private PushDispatcher dispatcher;
+    private String p256dh;
+    private String auth;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serveur = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveur.createContext("/", echange -> {
+            echange.getRequestBody().readAllBytes();
+            String chemin = echange.getRequestURI().getPath();
+            recus.computeIfAbsent(chemin, c -> new AtomicInteger()).incrementAndGet();
+            Deque<Integer> programme = statuts.get(chemin);
+            Integer statut = programme != null ? programme.poll() : null;
+            echange.sendResponseHeaders(statut != null ? statut : 201, -1);
+            echange.close();
+        });
+        serveur.start();
+
+        KeyPair vapid = paireEc();
+        KeyPair appareil = paireEc();
+        p256dh = base64(point((ECPublicKey) appareil.getPublic()));
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        auth = base64(secret);
+
+        dispatcher = new PushDispatcher(userRepository, superAdminRepository,
+                base64(point((ECPublicKey) vapid.getPublic())),
+                base64(fixe(((ECPrivateKey) vapid.getPrivate()).getS())),
+                "mailto:test@heasystock.com",
+                1, 2, 10, 3, 10);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.arreter();
+        serveur.stop(0);
+    }
+
+    @Test
+    @DisplayName("Appareils joints — derniereUtilisation écrite en un seul UPDATE")
+    void envoyer_succes_derniereUtilisationEnLot() {
+        dispatcher.envoyer(List.of(utilisateur(1L, "/ok-1"), utilisateur(2L, "/ok-2")), "{}");
+        attendre(() -> compteur("envoyes") == 2);
+
+        dispatcher.appliquerResultats();
+
+        verify(userRepository).updateDerniereUtilisationEnLot(
+                argThat(ids -> ids.containsAll(List.of(1L, 2L)) && ids.size() == 2), any());
+        verify(userRepository, never()).deleteByEndpointEnLot(anyCollection());
+        verifyNoInteractions(superAdminRepository);
+    }
+
+    @Test
+    @DisplayName("404/410 — subscriptions supprimées en lot, par origine")
+    void envoyer_expirees_supprimeesEnLot() {
+        statuts.put("/expire-1", new ArrayDeque<>(List.of(410)));
+        statuts.put("/expire-2", new ArrayDeque<>(List.of(404)));
+        PushDispatcher.Destinataire superAdmin = new PushDispatcher.Destinataire(
+                PushDispatcher.Origine.SUPER_ADMIN, 3L, url("/expire-2"), p256dh, auth);
+
+        dispatcher.envoyer(List.of(utilisateur(1L, "/expire-1"), superAdmin), "{}");
+        attendre(() -> compteur("expires") == 2);
+        when(userRepository.deleteByEndpointEnLot(anyCollection())).thenReturn(1);
+        when(superAdminRepository.deleteByEndpointEnLot(anyCollection())).thenReturn(1);
+
+        assertThat(dispatcher.appliquerResultats()).isEqualTo(2);
+        verify(userRepository).deleteByEndpointEnLot(List.of(url("/expire-1")));
+        verify(superAdminRepository).deleteByEndpointEnLot(List.of(url("/expire-2")));
+    }
+
+    @Test
+    @DisplayName("503 puis 201 — nouvel essai après délai, envoi compté une fois")
+    void envoyer_indisponible_nouvelEssai() {
+        statuts.put("/indispo", new ArrayDeque<>(List.of(503)));
+
+        dispatcher.envoyer(List.of(utilisateur(1L, "/indispo")), "{}");
+        attendre(() -> compteur("envoyes") == 1);
+
+        assertThat(recus.get("/indispo").get()).isEqualTo(2);
+        assertThat(compteur("nouveauxEssais")).isEqualTo(1);
+        assertThat(compteur("echecs")).isZero();
+    }
+
+    @Test
+    @DisplayName("429 répété — abandon après le nombre max de tentatives")
+    void envoyer_429_abandonApresTentativesMax() {
+        statuts.put("/limite", new ArrayDeque<>(List.of(429, 429, 429, 429)));
+
+        dispatcher.envoyer(List.of(utilisateur(1L, "/limite")), "{}");
+        attendre(() -> compteur("echecs") == 1);
+
+        assertThat(recus.get("/limite").get()).isEqualTo(3);
+        assertThat(compteur("envoyes")).isZero();
+    }
+
+    @Test
+    @DisplayName("File pleine — soumission refusée sans bloquer l'appelant")
+    void soumettre_filePleine_rejete() throws Exception {
+        CountDownLatch bloque = new CountDownLatch(1);
+        CountDownLatch demarre = new CountDownLatch(1);
+        assertThat(dispatcher.soumettre(() -> {
+            demarre.countDown();
+            try {
+                bloque.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })).isTrue();
+        demarre.await(5, TimeUnit.SECONDS);
+
+        // 1 worker occupé, file de 2 : la troisième soumission est refusée
+        assertThat(dispatcher.soumettre(() -> { })).isTrue();
+        assertThat(dispatcher.soumettre(() -> { })).isTrue();
+        assertThat(dispatcher.soumettre(() -> { })).isFalse();
+        assertThat(compteur("rejetes")).isEqualTo(1);
+        assertThat(compteur("fileAttente")).isEqualTo(2);
+        bloque.countDown();
+    }
+
+    @Test
+    @DisplayName("delaiAvantEssai — Retry-After respecté, délai exponentiel borné")
+    void delaiAvantEssai() {
+        assertThat(dispatcher.delaiAvantEssai(1, new BasicHeader("Retry-After", "3"))).isEqualTo(3_000);
+        assertThat(dispatcher.delaiAvantEssai(1, new BasicHeader("Retry-After", "3600")))
+                .isEqualTo(PushDispatcher.DELAI_MAX_MS);
+        // Base 10 ms : 3e tentative → 40 ms ± 20 %
+        assertThat(dispatcher.delaiAvantEssai(3, null)).isBetween(32L, 48L);
+        assertThat(dispatcher.delaiAvantEssai(30, null)).isEqualTo(PushDispatcher.DELAI_MAX_MS);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private PushDispatcher.Destinataire utilisateur(Long id, String chemin) {
+        return new PushDispatcher.Destinataire(PushDispatcher.Origine.UTILISATEUR, id, url(chemin), p256dh, auth);
+    }
+
+    private String url(String chemin) {
+        return "http://localhost:" + serveur.getAddress().getPort() + chemin;
+    }
+
+    private long compteur(String nom) {
+        return ((Number) dispatcher.statistiques().get(nom)).longValue();
+    }
+
+    private static void attendre(BooleanSupplier condition) {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("délai d'attente dépassé").isLessThan(limite);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static KeyPair paireEc() throws Exception {
+        KeyPairGenerator generateur = KeyPairGenerator.getInstance("EC");
+        generateur.initialize(new ECGenParameterSpec("secp256r1"));
+        return generateur.generateKeyPair();
+    }
+
+    /** Point public non compressé (0x04 || X || Y), format des clés VAPID et p256dh. */
+    private static byte[] point(ECPublicKey cle) {
+        byte[] point = new byte[65];
+        point[0] = 0x04;
+        System.arraycopy(fixe(cle.getW().getAffineX()), 0, point, 1, 32);
+        System.arraycopy(fixe(cle.getW().getAffineY()), 0, point, 33, 32);
+        return point;
+    }
+
+    private static byte[] fixe(BigInteger valeur) {
+        byte[] octets = valeur.toByteArray();
+        byte[] resultat = new byte[32];
+        int longueur = Math.min(octets.length, 32);
+        System.arraycopy(octets, octets.length - longueur, resultat, 32 - longueur, longueur);
+        return resultat;
+    }
+
+    private static String base64(byte[] octets) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(octets);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.UserNotificationPreference;
+import com.example.dijasaliou.entity.UserNotificationType;
+import com.example.dijasaliou.repository.UserNotificationPreferenceRepository;
+import com.example.dijasaliou.repository.UserPushSubscriptionRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Lundi 2 mars 2026, 20h00 UTC : 20h à Dakar (heure par défaut du résumé quotidien),
+ * 5h du matin le mardi à Tokyo (aucun résumé dû).
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — ResumeQuotidienScheduler")
+class ResumeQuotidienSchedulerTest {
+
+    private static final Instant LUNDI_20H_UTC = Instant.parse("2026-03-02T20:00:00Z");
+    private static final LocalDate LUNDI = LocalDate.of(2026, 3, 2);
+
+    @Mock private UserPushSubscriptionRepository pushSubRepository;
+    @Mock private UserNotificationPreferenceRepository preferenceRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private UserPushNotificationService pushService;
+    @Mock private RollupJourService rollupJourService;
+    @Mock private TacheVerrouService verrouService;
+
+    private ResumeQuotidienScheduler scheduler;
+
+    private TenantEntity dakar;
+    private TenantEntity tokyo;
+    private UserEntity admin1;
+    private UserEntity admin2;
+    private UserEntity adminTokyo;
+
+    @BeforeEach
+    void setUp() {
+        UserNotificationPreferenceService preferenceService =
+                new UserNotificationPreferenceService(preferenceRepository, userRepository, new ObjectMapper());
+        scheduler = new ResumeQuotidienScheduler(
+                pushSubRepository, preferenceService, pushService, rollupJourService, verrouService);
+
+        dakar = tenant(1L, "Africa/Dakar");
+        tokyo = tenant(2L, "Asia/Tokyo");
+        admin1 = admin(10L, dakar);
+        admin2 = admin(11L, dakar);
+        adminTokyo = admin(20L, tokyo);
+        // Même filtre que MOD(t.id, :nbTranches) = :tranche dans la requête
+        when(pushSubRepository.findSubscribedUsersWithTenantByRole(eq(UserEntity.Role.ADMIN), anyInt(), anyInt()))
+                .thenAnswer(invocation -> Stream.of(admin1, admin2, adminTokyo)
+                        .filter(u -> TacheVerrouService.tranche(u.getTenant().getId(), invocation.getArgument(1))
+                                == (int) invocation.getArgument(2))
+                        .toList());
+    }
+
+    @Test
+    @DisplayName("Deux admins d'une même boutique — stats calculées une fois, envoyées aux deux")
+    void memeTenant_statsCalculeesUneFois() {
+        when(preferenceRepository.findByUsersAndTypes(anyCollection(), anyCollection())).thenReturn(List.of());
+        when(rollupJourService.totaux(dakar, LUNDI, LUNDI)).thenReturn(new RollupJourTotaux());
+
+        int envoyes = scheduler.envoyerResumes(LUNDI_20H_UTC);
+
+        assertThat(envoyes).isEqualTo(2);
+        verify(rollupJourService, times(1)).totaux(any(), any(), any());
+        verify(pushService).notifyUser(eq(admin1), eq(UserNotificationType.RESUME_QUOTIDIEN), anyString(), anyString(), eq("/dashboard"));
+        verify(pushService).notifyUser(eq(admin2), eq(UserNotificationType.RESUME_QUOTIDIEN), anyString(), anyString(), eq("/dashboard"));
+        verify(pushService, never()).notifyUser(eq(adminTokyo), any(), any(), any(), any());
+        // Préférences lues en lot, jamais par user
+        verify(preferenceRepository, times(1)).findByUsersAndTypes(anyCollection(), anyCollection());
+        verify(preferenceRepository, never()).findByUserAndType(any(), any());
+    }
+
+    @Test
+    @DisplayName("Préférences lues à l'heure locale de chaque tenant — seules celles qui peuvent partir")
+    void preferences_limiteesALHeureLocale() {
+        when(preferenceRepository.findByUsersAndTypes(anyCollection(), anyCollection())).thenReturn(List.of());
+
+        scheduler.envoyerResumes(LUNDI_20H_UTC);
+
+        // Dakar, 20h : le quotidien (actif par défaut à 20h) est lu en entier, hebdo et mensuel à 20h seulement
+        verify(preferenceRepository).findByUsersAndTypes(List.of(admin1, admin2),
+                Set.of(UserNotificationType.RESUME_QUOTIDIEN));
+        verify(preferenceRepository).findByUsersAndTypesAndHeureEnvoi(List.of(admin1, admin2),
+                Set.of(UserNotificationType.RESUME_HEBDO, UserNotificationType.RESUME_MENSUEL), 20);
+        // Tokyo, 5h : aucune heure par défaut, seules les préférences réglées sur 5h
+        verify(preferenceRepository).findByUsersAndTypesAndHeureEnvoi(List.of(adminTokyo),
+                Set.of(UserNotificationType.RESUME_QUOTIDIEN, UserNotificationType.RESUME_HEBDO,
+                        UserNotificationType.RESUME_MENSUEL), 5);
+        verifyNoMoreInteractions(preferenceRepository);
+    }
+
+    @Test
+    @DisplayName("Préférences chargées en lot — config et désactivation appliquées par admin")
+    void preferences_appliqueesParAdmin() {
+        when(preferenceRepository.findByUsersAndTypes(anyCollection(), anyCollection())).thenReturn(List.of(
+                preference(admin2, UserNotificationType.RESUME_QUOTIDIEN, false, null)));
+        UserNotificationPreference hebdo20h =
+                preference(admin1, UserNotificationType.RESUME_HEBDO, true, "{\"jour\":\"MONDAY\",\"heure\":20}");
+        when(preferenceRepository.findByUsersAndTypesAndHeureEnvoi(anyCollection(), anyCollection(), anyInt()))
+                .thenAnswer(invocation -> (int) invocation.getArgument(2) == 20 ? List.of(hebdo20h) : List.of());
+        when(rollupJourService.totaux(any(), any(), any())).thenReturn(new RollupJourTotaux());
+
+        int envoyes = scheduler.envoyerResumes(LUNDI_20H_UTC);
+
+        assertThat(envoyes).isEqualTo(2);
+        verify(pushService).notifyUser(eq(admin1), eq(UserNotificationType.RESUME_QUOTIDIEN), anyString(), anyString(), any());
+        verify(pushService).notifyUser(eq(admin1), eq(UserNotificationType.RESUME_HEBDO), anyString(), anyString(), eq("/rapports"));
+        verify(pushService, never()).notifyUser(eq(admin2), any(), any(), any(), any());
+        verify(rollupJourService).totaux(dakar, LUNDI, LUNDI);
+        verify(rollupJourService).totaux(dakar, LUNDI.minusDays(7), LUNDI.minusDays(1));
+        verify(rollupJourService, never()).totaux(eq(tokyo), any(), any());
+    }
+
+    @Test
+    @DisplayName("Aucune heure d'envoi atteinte — aucune requête de stats")
+    void aucuneHeureAtteinte_aucuneStat() {
+        int envoyes = scheduler.envoyerResumes(Instant.parse("2026-03-02T13:00:00Z"));
+
+        assertThat(envoyes).isZero();
+        verifyNoInteractions(rollupJourService, pushService);
+        // 13h à Dakar, 22h à Tokyo : aucune heure par défaut, aucune préférence lue en entier
+        verify(preferenceRepository, never()).findByUsersAndTypes(anyCollection(), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Tranches — chaque tenant n'est traité que dans sa tranche")
+    void tranches_tenantsRepartis() {
+        when(preferenceRepository.findByUsersAndTypes(anyCollection(), anyCollection())).thenReturn(List.of());
+        when(rollupJourService.totaux(dakar, LUNDI, LUNDI)).thenReturn(new RollupJourTotaux());
+
+        // dakar (id 1) est dans la tranche 1 sur 2, tokyo (id 2) dans la tranche 0
+        assertThat(scheduler.envoyerResumes(LUNDI_20H_UTC, 0, 2)).isZero();
+        assertThat(scheduler.envoyerResumes(LUNDI_20H_UTC, 1, 2)).isEqualTo(2);
+        // Le filtre de tranche est fait par la requête, pas en mémoire après lecture de tous les admins
+        verify(pushSubRepository).findSubscribedUsersWithTenantByRole(UserEntity.Role.ADMIN, 2, 0);
+        verify(pushSubRepository).findSubscribedUsersWithTenantByRole(UserEntity.Role.ADMIN, 2, 1);
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private TenantEntity tenant(Long id, String timezone) {
+        TenantEntity tenant = TenantEntity.builder()
+                .tenantUuid("tenant-resume-" + id)
+                .nomEntreprise("Boutique " + id)
+                .numeroTelephone("+221770000000")
+                .timezone(timezone)
+                .build();
+        tenant.setId(id);
+        return tenant;
+    }
+
+    private UserEntity admin(Long id, TenantEntity tenant) {
+        UserEntity user = UserEntity.builder()
+                .nom("Admin").prenom("Resume")
+                .email("admin" + id + "@resume.com")
+                .role(UserEntity.Role.ADMIN)
+                .tenant(tenant)
+                .build();
+        user.setId(id);
+        return user;
+    }
+
+    private UserNotificationPreference preference(UserEntity user, UserNotificationType type,
+                                                  boolean enabled, String config) {
+        return UserNotificationPreference.builder()
+                .user(user)
+                .tenant(user.getTenant())
+                .type(type)
+                .enabled(enabled)
+                .config(config)
+                .build();
+    }
+}
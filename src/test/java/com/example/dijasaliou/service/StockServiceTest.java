@@ -2,9 +2,12 @@ package com.example.dijasaliou.service;
 
 import com.example.dijasaliou.dto.StockDto;
 import com.example.dijasaliou.entity.AchatEntity;
+import com.example.dijasaliou.entity.StockProduitEntity;
 import com.example.dijasaliou.entity.TenantEntity;
 import com.example.dijasaliou.entity.VenteEntity;
 import com.example.dijasaliou.repository.AchatRepository;
+import com.example.dijasaliou.repository.ProduitArchiveRepository;
+import com.example.dijasaliou.repository.VenteLotConsommationRepository;
 import com.example.dijasaliou.repository.VenteRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -19,7 +22,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +37,9 @@ class StockServiceTest {
     @Mock private AchatRepository achatRepository;
     @Mock private VenteRepository venteRepository;
     @Mock private TenantService tenantService;
+    @Mock private ProduitArchiveRepository produitArchiveRepository;
+    @Mock private VenteLotConsommationRepository venteLotConsommationRepository;
+    @Mock private StockProduitService stockProduitService;
 
     @InjectMocks
     private StockService stockService;
@@ -77,8 +85,8 @@ class StockServiceTest {
     @DisplayName("obtenirTousLesStocks() — calcule les stocks de 2 produits")
     void obtenirTousLesStocks_calculeCorrectement() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(achatRepository.findAllByTenant(any())).thenReturn(Arrays.asList(achat1, achat2));
-        when(venteRepository.findAllByTenant(any())).thenReturn(Arrays.asList(vente1));
+        stubAgregats(ligne("ordinateur", 10.0, "5000.00", 3.0, "2100.00"),
+                     ligne("souris", 50.0, "500.00", 0.0, "0"));
 
         List<StockDto> resultat = stockService.obtenirTousLesStocks();
 
@@ -89,14 +97,43 @@ class StockServiceTest {
     @DisplayName("obtenirTousLesStocks() — liste vide si aucun achat")
     void obtenirTousLesStocks_retourneVideSiAucunAchat() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(achatRepository.findAllByTenant(any())).thenReturn(Collections.emptyList());
-        when(venteRepository.findAllByTenant(any())).thenReturn(Collections.emptyList());
 
         List<StockDto> resultat = stockService.obtenirTousLesStocks();
 
         assertThat(resultat).isEmpty();
     }
 
+    @Test
+    @DisplayName("obtenirTousLesStocks() — lit le ledger stock_produit sans recharger les achats/ventes")
+    void obtenirTousLesStocks_litLeLedger() {
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        when(stockProduitService.estInitialise(tenantTest)).thenReturn(true);
+        when(stockProduitService.listerAvecAchats(tenantTest))
+                .thenReturn(List.of(ligne("ordinateur", 10.0, "5000.00", 3.0, "2100.00")));
+
+        List<StockDto> resultat = stockService.obtenirTousLesStocks();
+
+        assertThat(resultat).hasSize(1);
+        assertThat(resultat.get(0).getStockDisponible()).isEqualTo(7.0);
+        assertThat(resultat.get(0).getPrixMoyenAchat()).isEqualByComparingTo("500.00");
+        assertThat(resultat.get(0).getPrixMoyenVente()).isEqualByComparingTo("700.00");
+        verify(stockProduitService, never()).calculerDepuisHistorique(any(), any());
+        verify(achatRepository, never()).findAllByTenant(any());
+    }
+
+    @Test
+    @DisplayName("obtenirTousLesStocks() — ledger vide : initialisation puis agrégats SQL")
+    void obtenirTousLesStocks_initialiseLeLedgerAuPremierAcces() {
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        stubAgregats(ligne("ordinateur", 10.0, "5000.00", 3.0, "2100.00"),
+                     ligne("souris", 50.0, "500.00", 0.0, "0"));
+
+        List<StockDto> resultat = stockService.obtenirTousLesStocks();
+
+        assertThat(resultat).hasSize(2);
+        verify(stockProduitService).initialiserLedger(tenantTest);
+    }
+
     // =========================================================
     // obtenirStockParNomProduit
     // =========================================================
@@ -151,15 +188,7 @@ class StockServiceTest {
     @DisplayName("obtenirProduitsEnRupture() — retourne les produits à stock = 0")
     void obtenirProduitsEnRupture_retourneRupture() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        AchatEntity achatRupture = AchatEntity.builder()
-                .nomProduit("Clavier").quantite(5.0).prixUnitaire(new BigDecimal("30.00"))
-                .dateAchat(LocalDateTime.now()).build();
-        VenteEntity venteRupture = VenteEntity.builder()
-                .nomProduit("Clavier").quantite(5.0).prixUnitaire(new BigDecimal("50.00"))
-                .dateVente(LocalDateTime.now()).build();
-
-        when(achatRepository.findAllByTenant(any())).thenReturn(Arrays.asList(achatRupture));
-        when(venteRepository.findAllByTenant(any())).thenReturn(Arrays.asList(venteRupture));
+        stubAgregats(ligne("clavier", 5.0, "150.00", 5.0, "250.00"));
 
         List<StockDto> resultat = stockService.obtenirProduitsEnRupture();
 
@@ -175,15 +204,7 @@ class StockServiceTest {
     @DisplayName("obtenirProduitsStockBas() — retourne les produits avec stock 1–9")
     void obtenirProduitsStockBas_retourneStockBas() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        AchatEntity achatStockBas = AchatEntity.builder()
-                .nomProduit("Ecran").quantite(15.0).prixUnitaire(new BigDecimal("200.00"))
-                .dateAchat(LocalDateTime.now()).build();
-        VenteEntity venteStockBas = VenteEntity.builder()
-                .nomProduit("Ecran").quantite(10.0).prixUnitaire(new BigDecimal("300.00"))
-                .dateVente(LocalDateTime.now()).build();
-
-        when(achatRepository.findAllByTenant(any())).thenReturn(Arrays.asList(achatStockBas));
-        when(venteRepository.findAllByTenant(any())).thenReturn(Arrays.asList(venteStockBas));
+        stubAgregats(ligne("ecran", 15.0, "3000.00", 10.0, "3000.00"));
 
         List<StockDto> resultat = stockService.obtenirProduitsStockBas();
 
@@ -240,8 +261,8 @@ class StockServiceTest {
     @DisplayName("obtenirValeurTotaleStock() — somme > 0 si stock disponible")
     void obtenirValeurTotaleStock_retourneValeur() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(achatRepository.findAllByTenant(any())).thenReturn(Arrays.asList(achat1, achat2));
-        when(venteRepository.findAllByTenant(any())).thenReturn(Arrays.asList(vente1));
+        stubAgregats(ligne("ordinateur", 10.0, "5000.00", 3.0, "2100.00"),
+                     ligne("souris", 50.0, "500.00", 0.0, "0"));
 
         BigDecimal valeur = stockService.obtenirValeurTotaleStock();
 
@@ -252,11 +273,33 @@ class StockServiceTest {
     @DisplayName("obtenirValeurTotaleStock() — zéro si aucun stock")
     void obtenirValeurTotaleStock_retourneZeroSiVide() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(achatRepository.findAllByTenant(any())).thenReturn(Collections.emptyList());
-        when(venteRepository.findAllByTenant(any())).thenReturn(Collections.emptyList());
 
         BigDecimal valeur = stockService.obtenirValeurTotaleStock();
 
         assertThat(valeur).isEqualByComparingTo(BigDecimal.ZERO);
     }
+
+    // =========================================================
+    // Helpers
+    // =========================================================
+
+    /** Ligne de stock telle que produite par les agrégats SQL (un lot d'achat). */
+    private StockProduitEntity ligne(String nom, double qteAchetee, String valeurAchats,
+                                     double qteVendue, String valeurVentes) {
+        return StockProduitEntity.builder()
+                .nomNormalise(nom)
+                .nbAchats(1L)
+                .quantiteAchetee(qteAchetee)
+                .valeurAchats(new BigDecimal(valeurAchats))
+                .quantiteVendue(qteVendue)
+                .valeurVentes(new BigDecimal(valeurVentes))
+                .unite("pièce")
+                .build();
+    }
+
+    private void stubAgregats(StockProduitEntity... lignes) {
+        Map<String, StockProduitEntity> parNom = new LinkedHashMap<>();
+        for (StockProduitEntity l : lignes) parNom.put(l.getNomNormalise(), l);
+        when(stockProduitService.calculerDepuisHistorique(tenantTest, null)).thenReturn(parNom);
+    }
 }
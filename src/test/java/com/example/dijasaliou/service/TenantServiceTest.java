@@ -6,6 +6,8 @@ import com.example.dijasaliou.entity.UserEntity;
 import com.example.dijasaliou.repository.TenantRepository;
 import com.example.dijasaliou.repository.UserRepository;
 import com.example.dijasaliou.tenant.TenantContext;
+import com.example.dijasaliou.tenant.TenantSnapshot;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -34,6 +36,9 @@ class TenantServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TenantCacheService tenantCacheService;
+
     @InjectMocks
     private TenantService tenantService;
 
@@ -90,11 +95,11 @@ class TenantServiceTest {
     }
 
     @Test
-    @DisplayName("getCurrentTenant() — lève IllegalStateException si le repo ne trouve pas le tenant")
+    @DisplayName("getCurrentTenant() — lève IllegalStateException si le cache ne trouve pas le tenant")
     void getCurrentTenant_leveException_siTenantIntrouvableDansRepo() {
         try (MockedStatic<TenantContext> mockedStatic = mockStatic(TenantContext.class)) {
             mockedStatic.when(TenantContext::getCurrentTenant).thenReturn("uuid-inconnu");
-            when(tenantRepository.findByTenantUuid("uuid-inconnu")).thenReturn(Optional.empty());
+            when(tenantCacheService.findSnapshotByUuid("uuid-inconnu")).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> tenantService.getCurrentTenant())
                     .isInstanceOf(IllegalStateException.class)
@@ -107,16 +112,91 @@ class TenantServiceTest {
     void getCurrentTenant_succes() {
         try (MockedStatic<TenantContext> mockedStatic = mockStatic(TenantContext.class)) {
             mockedStatic.when(TenantContext::getCurrentTenant).thenReturn("uuid-tenant-test");
-            when(tenantRepository.findByTenantUuid("uuid-tenant-test")).thenReturn(Optional.of(tenantTest));
+            when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                    .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)));
 
             TenantEntity resultat = tenantService.getCurrentTenant();
 
             assertThat(resultat).isNotNull();
             assertThat(resultat.getTenantUuid()).isEqualTo("uuid-tenant-test");
             assertThat(resultat.getNomEntreprise()).isEqualTo("Boutique Test");
+            assertThat(resultat.getPlan()).isEqualTo(TenantEntity.Plan.STARTER);
         }
     }
 
+    // =========================================================
+    // Snapshot par requête (TenantContext réel, sans mockStatic)
+    // =========================================================
+
+    @AfterEach
+    void nettoyerContexte() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("getCurrentTenant() — un seul chargement par requête, quel que soit le nombre d'appels")
+    void getCurrentTenant_chargeUneSeuleFoisParRequete() {
+        TenantContext.setCurrentTenant("uuid-tenant-test");
+        when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(tenantService.getCurrentTenant().getId()).isEqualTo(1L);
+        }
+
+        verify(tenantCacheService, times(1)).findSnapshotByUuid("uuid-tenant-test");
+        verifyNoInteractions(tenantRepository);
+    }
+
+    @Test
+    @DisplayName("getCurrentTenant() — chaque appel retourne une copie : la modifier ne change pas le snapshot")
+    void getCurrentTenant_retourneUneCopieIndependante() {
+        TenantContext.setCurrentTenant("uuid-tenant-test");
+        when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)));
+
+        TenantEntity copie = tenantService.getCurrentTenant();
+        copie.setPlan(TenantEntity.Plan.GRATUIT);
+
+        assertThat(tenantService.getCurrentTenant()).isNotSameAs(copie);
+        assertThat(tenantService.getCurrentTenant().getPlan()).isEqualTo(TenantEntity.Plan.STARTER);
+        assertThat(copie.getUtilisateurs()).isNullOrEmpty();
+    }
+
+    @Test
+    @DisplayName("rafraichirTenant() — invalide le cache et recharge le snapshot au prochain appel")
+    void rafraichirTenant_rechargeLeSnapshot() {
+        TenantContext.setCurrentTenant("uuid-tenant-test");
+        TenantEntity tenantBusiness = TenantEntity.builder()
+                .id(1L).tenantUuid("uuid-tenant-test").plan(TenantEntity.Plan.BUSINESS).build();
+        when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)))
+                .thenReturn(Optional.of(TenantSnapshot.from(tenantBusiness)));
+
+        assertThat(tenantService.getCurrentTenant().getPlan()).isEqualTo(TenantEntity.Plan.STARTER);
+        tenantService.rafraichirTenant("uuid-tenant-test");
+
+        assertThat(tenantService.getCurrentTenant().getPlan()).isEqualTo(TenantEntity.Plan.BUSINESS);
+        verify(tenantCacheService).evict("uuid-tenant-test");
+        verify(tenantCacheService, times(2)).findSnapshotByUuid("uuid-tenant-test");
+    }
+
+    @Test
+    @DisplayName("TenantContext.clear() — la requête suivante recharge le snapshot")
+    void clear_oublieLeSnapshot() {
+        when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)));
+
+        TenantContext.setCurrentTenant("uuid-tenant-test");
+        tenantService.getCurrentTenant();
+        TenantContext.clear();
+
+        TenantContext.setCurrentTenant("uuid-tenant-test");
+        tenantService.getCurrentTenant();
+
+        verify(tenantCacheService, times(2)).findSnapshotByUuid("uuid-tenant-test");
+    }
+
     // =========================================================
     // isTenantDefined
     // =========================================================
@@ -180,7 +260,8 @@ class TenantServiceTest {
     void updateTenant_metsAJourNomEntreprise_etPropagehAuxUtilisateurs() {
         try (MockedStatic<TenantContext> mockedStatic = mockStatic(TenantContext.class)) {
             mockedStatic.when(TenantContext::getCurrentTenant).thenReturn("uuid-tenant-test");
-            when(tenantRepository.findByTenantUuid("uuid-tenant-test")).thenReturn(Optional.of(tenantTest));
+            when(tenantCacheService.findSnapshotByUuid("uuid-tenant-test"))
+                    .thenReturn(Optional.of(TenantSnapshot.from(tenantTest)));
             when(tenantRepository.findById(1L)).thenReturn(Optional.of(tenantTest));
             when(tenantRepository.saveAndFlush(any(TenantEntity.class))).thenReturn(tenantTest);
             when(userRepository.saveAllAndFlush(anyList())).thenReturn(Arrays.asList(adminUser, vendeurUser));
@@ -197,6 +278,7 @@ class TenantServiceTest {
             // Vérifier que le nom a été propagé aux utilisateurs
             assertThat(adminUser.getNomEntreprise()).isEqualTo("Nouveau Nom Boutique");
             assertThat(vendeurUser.getNomEntreprise()).isEqualTo("Nouveau Nom Boutique");
+            verify(tenantCacheService).evict("uuid-tenant-test");
         }
     }
 
@@ -207,6 +289,9 @@ class TenantServiceTest {
     @Test
     @DisplayName("getAdminProprietaire() — retourne l'utilisateur ADMIN du tenant")
     void getAdminProprietaire_retourneAdmin_siPresent() {
+        when(userRepository.findFirstByTenantAndRole(tenantTest, UserEntity.Role.ADMIN))
+                .thenReturn(Optional.of(adminUser));
+
         UserEntity resultat = tenantService.getAdminProprietaire(tenantTest);
 
         assertThat(resultat).isNotNull();
@@ -223,6 +308,8 @@ class TenantServiceTest {
                 .nomEntreprise("Boutique Sans Admin")
                 .utilisateurs(Collections.singletonList(vendeurUser))
                 .build();
+        when(userRepository.findFirstByTenantAndRole(tenantSansAdmin, UserEntity.Role.ADMIN))
+                .thenReturn(Optional.empty());
 
         UserEntity resultat = tenantService.getAdminProprietaire(tenantSansAdmin);
 
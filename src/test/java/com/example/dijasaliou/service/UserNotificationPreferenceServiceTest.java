@@ -0,0 +1,89 @@
+package com.example.dijasaliou.service;
+
+import com.example.dijasaliou.entity.TenantEntity;
+import com.example.dijasaliou.entity.UserEntity;
+import com.example.dijasaliou.entity.UserNotificationPreference;
+import com.example.dijasaliou.entity.UserNotificationType;
+import com.example.dijasaliou.repository.UserNotificationPreferenceRepository;
+import com.example.dijasaliou.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests unitaires — UserNotificationPreferenceService (heure d'envoi des résumés)")
+class UserNotificationPreferenceServiceTest {
+
+    private static final String EMAIL = "admin@prefs.com";
+
+    @Mock private UserNotificationPreferenceRepository repository;
+    @Mock private UserRepository userRepository;
+
+    private UserNotificationPreferenceService service;
+    private UserEntity admin;
+
+    @BeforeEach
+    void setUp() {
+        service = new UserNotificationPreferenceService(repository, userRepository, new ObjectMapper());
+        admin = UserEntity.builder()
+                .email(EMAIL)
+                .role(UserEntity.Role.ADMIN)
+                .tenant(TenantEntity.builder().tenantUuid("tenant-prefs").build())
+                .build();
+        when(userRepository.findByEmailAndDeletedFalse(EMAIL)).thenReturn(Optional.of(admin));
+    }
+
+    @Test
+    @DisplayName("updatePreference() — heure d'envoi copiée depuis la config du résumé")
+    void updatePreference_heureDeLaConfig() {
+        when(repository.findByUserAndType(admin, UserNotificationType.RESUME_HEBDO)).thenReturn(Optional.empty());
+
+        service.updatePreference(EMAIL, UserNotificationType.RESUME_HEBDO, true, "{\"jour\":\"FRIDAY\",\"heure\":18}");
+
+        assertThat(enregistree().getHeureEnvoi()).isEqualTo(18);
+    }
+
+    @Test
+    @DisplayName("updatePreference() — sans config (ou config illisible) : heure par défaut du type")
+    void updatePreference_heureParDefaut() {
+        UserNotificationPreference existante = UserNotificationPreference.builder()
+                .user(admin).tenant(admin.getTenant())
+                .type(UserNotificationType.RESUME_QUOTIDIEN)
+                .enabled(true)
+                .config("{illisible")
+                .build();
+        when(repository.findByUserAndType(admin, UserNotificationType.RESUME_QUOTIDIEN)).thenReturn(Optional.of(existante));
+
+        service.updatePreference(EMAIL, UserNotificationType.RESUME_QUOTIDIEN, false);
+
+        assertThat(enregistree().getHeureEnvoi()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("updatePreference() — type hors résumés : pas d'heure d'envoi")
+    void updatePreference_horsResume() {
+        when(repository.findByUserAndType(admin, UserNotificationType.STOCK_BAS)).thenReturn(Optional.empty());
+
+        service.updatePreference(EMAIL, UserNotificationType.STOCK_BAS, true);
+
+        assertThat(enregistree().getHeureEnvoi()).isNull();
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private UserNotificationPreference enregistree() {
+        ArgumentCaptor<UserNotificationPreference> captor = ArgumentCaptor.forClass(UserNotificationPreference.class);
+        verify(repository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -1,12 +1,11 @@
 package com.example.dijasaliou.service;
 
-import com.example.dijasaliou.dto.StockDto;
 import com.example.dijasaliou.entity.*;
 import com.example.dijasaliou.entity.CreditClientEntity.StatutCredit;
-import com.example.dijasaliou.entity.PaiementCreditEntity.ModePaiement;
 import com.example.dijasaliou.repository.ClientRepository;
 import com.example.dijasaliou.repository.CreditClientRepository;
 import com.example.dijasaliou.repository.PaiementCreditRepository;
+import com.example.dijasaliou.repository.UserRepository;
 import com.example.dijasaliou.repository.VenteRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -25,6 +24,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +45,11 @@ class VenteServiceTest {
     @Mock private ClientRepository clientRepository;
     @Mock private CreditClientRepository creditClientRepository;
     @Mock private PaiementCreditRepository paiementCreditRepository;
+    @Mock private StockProduitService stockProduitService;
+    @Mock private FifoCalculService fifoCalculService;
+    @Mock private UserRepository userRepository;
+    @Mock private InvalidationDonneesService invalidationDonneesService;
+    @Mock private DonneesVersionService donneesVersionService;
 
     @InjectMocks
     private VenteService venteService;
@@ -198,50 +203,67 @@ class VenteServiceTest {
     @Test
     @DisplayName("creerVente() — succès avec stock suffisant")
     void creerVente_succes_stockSuffisant() {
-        StockDto stock = StockDto.builder()
-                .nomProduit("Ordinateur")
-                .stockDisponible(10.0)
-                .build();
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("ordinateur", ligneStock("ordinateur", 10.0, 0.0));
 
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(stockService.obtenirStockParNomProduit("Ordinateur")).thenReturn(stock);
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
         when(venteRepository.save(any())).thenReturn(venteValide);
-        doNothing().when(stockAlertService).verifierEtEnvoyerAlerte(any());
 
         VenteEntity resultat = venteService.creerVente(venteValide, utilisateurTest);
 
         assertThat(resultat).isNotNull();
         assertThat(resultat.getNomProduit()).isEqualTo("Ordinateur");
         verify(venteRepository).save(any());
+        verify(stockProduitService).enregistrerVentes(List.of(venteValide), stocks);
+        verify(fifoCalculService).consommerStockFifo(venteValide);
+        verify(stockAlertService).verifierEtEnvoyerAlertes(Map.of("Ordinateur", 8.0), null);
+    }
+
+    @Test
+    @DisplayName("creerVente() — contexte chargé une fois : ni StockService ni alerte par SUM")
+    void creerVente_contexteChargeUneFois() {
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("ordinateur", ligneStock("ordinateur", 10.0, 0.0));
+
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
+        when(venteRepository.save(any())).thenReturn(venteValide);
+
+        venteService.creerVente(venteValide, utilisateurTest);
+
+        verify(stockProduitService, times(1)).verrouillerProduits(eq(tenantTest), anyCollection());
+        verify(userRepository, times(1)).findFirstByTenantAndRole(tenantTest, UserEntity.Role.ADMIN);
+        verify(stockService, never()).obtenirStockParNomProduit(anyString());
+        verify(stockAlertService, never()).verifierEtEnvoyerAlerte(anyString());
+        verify(stockProduitService, never()).enregistrerVente(any());
     }
 
     @Test
     @DisplayName("creerVente() — lève exception si stock insuffisant")
     void creerVente_leveExceptionStockInsuffisant() {
-        StockDto stock = StockDto.builder()
-                .nomProduit("Ordinateur")
-                .stockDisponible(1.0)
-                .build();
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("ordinateur", ligneStock("ordinateur", 10.0, 9.0)); // disponible : 1
 
-        when(stockService.obtenirStockParNomProduit("Ordinateur")).thenReturn(stock);
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
 
         assertThatThrownBy(() -> venteService.creerVente(venteValide, utilisateurTest))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Stock insuffisant");
+        verify(venteRepository, never()).save(any());
     }
 
     @Test
-    @DisplayName("creerVente() — autorisée si produit jamais acheté (pas dans le stock)")
+    @DisplayName("creerVente() — autorisée si produit jamais acheté (pas dans le stock), sans FIFO")
     void creerVente_autorisee_produitInexistantDansStock() {
-        when(stockService.obtenirStockParNomProduit("Ordinateur"))
-                .thenThrow(new RuntimeException("Produit non trouvé : Ordinateur"));
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
         when(venteRepository.save(any())).thenReturn(venteValide);
-        doNothing().when(stockAlertService).verifierEtEnvoyerAlerte(any());
 
         VenteEntity resultat = venteService.creerVente(venteValide, utilisateurTest);
 
         assertThat(resultat).isNotNull();
+        verify(fifoCalculService, never()).consommerStockFifo(any());
     }
 
     // =========================================================
@@ -266,12 +288,12 @@ class VenteServiceTest {
                 .dateEcheance(LocalDate.now().plusDays(30))
                 .build();
 
-        StockDto stock = StockDto.builder().nomProduit("Téléphone").stockDisponible(5.0).build();
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("téléphone", ligneStock("téléphone", 5.0, 0.0));
 
-        when(stockService.obtenirStockParNomProduit("Téléphone")).thenReturn(stock);
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
         when(venteRepository.save(any())).thenReturn(venteCredit);
-        doNothing().when(stockAlertService).verifierEtEnvoyerAlerte(any());
 
         venteService.creerVente(venteCredit, utilisateurTest);
 
@@ -291,18 +313,77 @@ class VenteServiceTest {
                 .clientId(null)
                 .build();
 
-        StockDto stock = StockDto.builder().nomProduit("Téléphone").stockDisponible(5.0).build();
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("téléphone", ligneStock("téléphone", 5.0, 0.0));
 
-        when(stockService.obtenirStockParNomProduit("Téléphone")).thenReturn(stock);
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
         when(venteRepository.save(any())).thenReturn(venteCredit);
-        doNothing().when(stockAlertService).verifierEtEnvoyerAlerte(any());
 
         assertThatThrownBy(() -> venteService.creerVente(venteCredit, utilisateurTest))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("client enregistré");
     }
 
+    // =========================================================
+    // creerPanier
+    // =========================================================
+
+    @Test
+    @DisplayName("creerPanier() — stock contrôlé sur le cumul des lignes d'un même produit")
+    void creerPanier_stockInsuffisantSurLeCumul_rienNEstSauvegarde() {
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("ordinateur", ligneStock("ordinateur", 10.0, 7.0)); // disponible : 3
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
+
+        List<VenteEntity> panier = List.of(ligne("Ordinateur", 2.0), ligne("ordinateur ", 2.0));
+
+        assertThatThrownBy(() -> venteService.creerPanier(panier, utilisateurTest))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Stock insuffisant");
+        verify(venteRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("creerPanier() — un saveAll, un FIFO, une invalidation de cache et une évaluation d'alertes par panier")
+    void creerPanier_traitementsUneFoisParPanier() {
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        Map<String, StockProduitEntity> stocks = new HashMap<>();
+        stocks.put("ordinateur", ligneStock("ordinateur", 10.0, 0.0));
+        stocks.put("souris", ligneStock("souris", 20.0, 0.0));
+        when(stockProduitService.verrouillerProduits(eq(tenantTest), anyCollection())).thenReturn(stocks);
+        when(venteRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(userRepository.findFirstByTenantAndRole(tenantTest, UserEntity.Role.ADMIN)).thenReturn(Optional.empty());
+
+        List<VenteEntity> panier = List.of(ligne("Ordinateur", 1.0), ligne("Souris", 2.0), ligne("Souris", 1.0));
+
+        List<VenteEntity> ventes = venteService.creerPanier(panier, utilisateurTest);
+
+        assertThat(ventes).hasSize(3).allSatisfy(v -> {
+            assertThat(v.getTenant()).isEqualTo(tenantTest);
+            assertThat(v.getUtilisateur()).isEqualTo(utilisateurTest);
+            assertThat(v.getDateVente()).isNotNull();
+        });
+        verify(venteRepository, times(1)).saveAll(anyList());
+        verify(venteRepository, never()).save(any());
+        verify(stockProduitService).enregistrerVentes(ventes, stocks);
+        verify(fifoCalculService, times(1)).consommerStockFifoPanier(ventes);
+        verify(fifoCalculService, never()).consommerStockFifo(any());
+        verify(stockService, times(1)).invalidateStockCache("uuid-tenant-test");
+        verify(stockAlertService, times(1)).verifierEtEnvoyerAlertes(anyMap(), isNull());
+        verify(stockAlertService, never()).verifierEtEnvoyerAlerte(anyString());
+        verify(stockService, never()).obtenirStockParNomProduit(anyString());
+    }
+
+    @Test
+    @DisplayName("creerPanier() — panier vide refusé")
+    void creerPanier_panierVide_leveException() {
+        assertThatThrownBy(() -> venteService.creerPanier(List.of(), utilisateurTest))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("au moins une ligne");
+    }
+
     // =========================================================
     // supprimerVente
     // =========================================================
@@ -470,11 +551,7 @@ class VenteServiceTest {
     @DisplayName("calculerRapportModePaiement() — retourne les 4 modes même si aucune vente")
     void calculerRapportModePaiement_retourne4ModesSansVentes() {
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(venteRepository.sumDirectVentesParModeEtPeriode(any(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(creditClientRepository.sumCreditsRestantParPeriode(any(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(paiementCreditRepository.sumParModeEtPeriode(any(), any(), any()))
+        when(venteRepository.sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any()))
                 .thenReturn(Collections.emptyList());
 
         Map<String, Object> rapport = venteService.calculerRapportModePaiement(
@@ -486,16 +563,12 @@ class VenteServiceTest {
     @Test
     @DisplayName("calculerRapportModePaiement() — total ESPECES correct avec ventes directes")
     void calculerRapportModePaiement_totalEspecesCorrect() {
-        List<Object[]> directVentes = new java.util.ArrayList<>();
-        directVentes.add(new Object[]{VenteEntity.ModePaiementVente.ESPECES, 3L, new BigDecimal("1500.00")});
+        List<Object[]> rows = new java.util.ArrayList<>();
+        rows.add(new Object[]{"VENTE", "ESPECES", 3L, new BigDecimal("1500.00")});
 
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(venteRepository.sumDirectVentesParModeEtPeriode(any(), any(), any(), any()))
-                .thenReturn(directVentes);
-        when(creditClientRepository.sumCreditsRestantParPeriode(any(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(paiementCreditRepository.sumParModeEtPeriode(any(), any(), any()))
-                .thenReturn(Collections.emptyList());
+        when(venteRepository.sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(rows);
 
         Map<String, Object> rapport = venteService.calculerRapportModePaiement(
                 LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
@@ -509,16 +582,12 @@ class VenteServiceTest {
     @Test
     @DisplayName("calculerRapportModePaiement() — total CREDIT depuis les crédits restants")
     void calculerRapportModePaiement_totalCreditCorrect() {
-        List<Object[]> creditRows = new java.util.ArrayList<>();
-        creditRows.add(new Object[]{2L, new BigDecimal("800.00")});
+        List<Object[]> rows = new java.util.ArrayList<>();
+        rows.add(new Object[]{"CREDIT_RESTANT", "CREDIT", 2L, new BigDecimal("800.00")});
 
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(venteRepository.sumDirectVentesParModeEtPeriode(any(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(creditClientRepository.sumCreditsRestantParPeriode(any(), any(), any(), any()))
-                .thenReturn(creditRows);
-        when(paiementCreditRepository.sumParModeEtPeriode(any(), any(), any()))
-                .thenReturn(Collections.emptyList());
+        when(venteRepository.sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(rows);
 
         Map<String, Object> rapport = venteService.calculerRapportModePaiement(
                 LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
@@ -532,19 +601,13 @@ class VenteServiceTest {
     @Test
     @DisplayName("calculerRapportModePaiement() — remboursements ajoutés aux totaux directs")
     void calculerRapportModePaiement_remboursementsAjoutesAuxTotaux() {
-        List<Object[]> directVentes = new java.util.ArrayList<>();
-        directVentes.add(new Object[]{VenteEntity.ModePaiementVente.ESPECES, 2L, new BigDecimal("1000.00")});
-
-        List<Object[]> remboursements = new java.util.ArrayList<>();
-        remboursements.add(new Object[]{ModePaiement.ESPECES, 1L, new BigDecimal("300.00")});
+        List<Object[]> rows = new java.util.ArrayList<>();
+        rows.add(new Object[]{"VENTE", "ESPECES", 2L, new BigDecimal("1000.00")});
+        rows.add(new Object[]{"REMBOURSEMENT", "ESPECES", 1L, new BigDecimal("300.00")});
 
         when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
-        when(venteRepository.sumDirectVentesParModeEtPeriode(any(), any(), any(), any()))
-                .thenReturn(directVentes);
-        when(creditClientRepository.sumCreditsRestantParPeriode(any(), any(), any(), any()))
-                .thenReturn(Collections.emptyList());
-        when(paiementCreditRepository.sumParModeEtPeriode(any(), any(), any()))
-                .thenReturn(remboursements);
+        when(venteRepository.sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(rows);
 
         Map<String, Object> rapport = venteService.calculerRapportModePaiement(
                 LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
@@ -556,6 +619,24 @@ class VenteServiceTest {
         assertThat(especes.get("nombre")).isEqualTo(3L); // 2 + 1
     }
 
+    @Test
+    @DisplayName("calculerRapportModePaiement() — mémorisé jusqu'au changement de version des données")
+    void calculerRapportModePaiement_memoriseParVersion() {
+        when(tenantService.getCurrentTenant()).thenReturn(tenantTest);
+        when(donneesVersionService.versionCourante(tenantTest)).thenReturn(4L, 4L, 5L);
+        when(venteRepository.sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(Collections.emptyList());
+        LocalDate debut = LocalDate.of(2025, 1, 1);
+        LocalDate fin = LocalDate.of(2025, 1, 31);
+
+        Map<String, Object> premier = venteService.calculerRapportModePaiement(debut, fin);
+        Map<String, Object> second = venteService.calculerRapportModePaiement(debut, fin);
+        venteService.calculerRapportModePaiement(debut, fin); // version 5 : recalcul
+
+        assertThat(second).isSameAs(premier);
+        verify(venteRepository, times(2)).sumRapportModePaiement(any(), any(), any(), any(), any(), any(), any());
+    }
+
     // =========================================================
     // modifierVente
     // =========================================================
@@ -638,6 +719,26 @@ class VenteServiceTest {
     // Helpers
     // =========================================================
 
+    private VenteEntity ligne(String nomProduit, double quantite) {
+        return VenteEntity.builder()
+                .nomProduit(nomProduit)
+                .quantite(quantite)
+                .prixUnitaire(new BigDecimal("100.00"))
+                .modePaiement(VenteEntity.ModePaiementVente.ESPECES)
+                .build();
+    }
+
+    private StockProduitEntity ligneStock(String nom, double achete, double vendu) {
+        return StockProduitEntity.builder()
+                .tenant(tenantTest)
+                .nomNormalise(nom)
+                .nbAchats(1L)
+                .quantiteAchetee(achete)
+                .valeurAchats(new BigDecimal("50.00").multiply(BigDecimal.valueOf(achete)))
+                .quantiteVendue(vendu)
+                .build();
+    }
+
     private TenantEntity autreenant() {
         TenantEntity autre = new TenantEntity();
         autre.setTenantUuid("uuid-autre-tenant");